@@ -50,6 +50,7 @@ import com.serotonin.bacnet4j.service.confirmed.ConfirmedEventNotificationReques
 import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
 import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
 import com.serotonin.bacnet4j.service.unconfirmed.IAmRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.IAmResponder;
 import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedEventNotificationRequest;
 import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedRequestService;
 import com.serotonin.bacnet4j.transport.Transport;
@@ -79,6 +80,7 @@ import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.Unsigned16;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
 import com.serotonin.bacnet4j.util.RequestUtils;
+import com.serotonin.bacnet4j.util.TimeSource;
 import com.serotonin.bacnet4j.util.scheduler.Scheduler;
 import com.serotonin.bacnet4j.util.scheduler.Scheduler.Timer;
 import com.serotonin.bacnet4j.util.sero.Utils;
@@ -97,7 +99,8 @@ public class LocalDevice {
 
     private static final int DEFAULT_SCHEDULER_THREADS = 5; 
 
-    private static final Scheduler scheduler = new Scheduler(DEFAULT_SCHEDULER_THREADS);
+    private static final Scheduler defaultScheduler = new Scheduler(DEFAULT_SCHEDULER_THREADS);
+    private final Scheduler scheduler;
     private final Transport transport;
     private final BACnetObject configuration;
     private final List<BACnetObject> localObjects = new CopyOnWriteArrayList<BACnetObject>();
@@ -114,11 +117,21 @@ public class LocalDevice {
     private final ExceptionDispatcher exceptionDispatcher = new ExceptionDispatcher();
 
     private final Timer timer;
+    private final IAmResponder iAmResponder = new IAmResponder(this);
 
     public static final Map<VendorServiceKey, SequenceDefinition> vendorServiceRequestResolutions = new HashMap<VendorServiceKey, SequenceDefinition>();
     public static final Map<VendorServiceKey, SequenceDefinition> vendorServiceResultResolutions = new HashMap<VendorServiceKey, SequenceDefinition>();
 
     public LocalDevice(int deviceId, Transport transport) {
+        this(deviceId, transport, defaultScheduler);
+    }
+
+    /**
+     * Creates a device whose timers and clock are provided by the given scheduler, e.g. a SimulatedScheduler to
+     * run the device in virtual time.
+     */
+    public LocalDevice(int deviceId, Transport transport, Scheduler scheduler) {
+        this.scheduler = scheduler;
         this.transport = transport;
         transport.setLocalDevice(this);
 
@@ -228,6 +241,17 @@ public class LocalDevice {
         return timer;
     }
 
+    /**
+     * @return the clock used for all of the timing of this device
+     */
+    public TimeSource getTimeSource() {
+        return scheduler;
+    }
+
+    public IAmResponder getIAmResponder() {
+        return iAmResponder;
+    }
+
     public synchronized void initialize() throws Exception {
         transport.initialize();
         initialized = true;
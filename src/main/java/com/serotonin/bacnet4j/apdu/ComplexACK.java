@@ -199,13 +199,22 @@ public class ComplexACK extends AckAPDU implements Segmentable {
             proposedWindowSize = queue.popU1B();
         }
         serviceChoice = queue.pop();
-        serviceData = new ByteQueue(queue.popAll());
+        serviceData = queue.popSlice(queue.size());
     }
 
     @Override
     public void parseServiceData() throws BACnetException {
+        parseServiceData(false);
+    }
+
+    /**
+     * @param lazyPropertyValues
+     *            whether to leave property values encoded until they are requested, where the service supports it
+     */
+    public void parseServiceData(boolean lazyPropertyValues) throws BACnetException {
         if (serviceData != null) {
-            service = AcknowledgementService.createAcknowledgementService(serviceChoice, serviceData);
+            service = AcknowledgementService.createAcknowledgementService(serviceChoice, serviceData,
+                    lazyPropertyValues);
             serviceData = null;
         }
     }
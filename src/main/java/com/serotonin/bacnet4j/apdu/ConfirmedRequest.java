@@ -276,7 +276,7 @@ public class ConfirmedRequest extends APDU implements Segmentable {
             proposedWindowSize = queue.popU1B();
         }
         serviceChoice = queue.pop();
-        serviceData = new ByteQueue(queue.popAll());
+        serviceData = queue.popSlice(queue.size());
         // This is called due to an incoming request, so setting to null here should be ok.
         networkPriority = null;
     }
@@ -82,7 +82,7 @@ public class UnconfirmedRequest extends APDU {
     UnconfirmedRequest(ServicesSupported services, ByteQueue queue) throws BACnetException {
         queue.pop();
         serviceChoice = queue.pop();
-        serviceData = new ByteQueue(queue.popAll());
+        serviceData = queue.popSlice(queue.size());
         UnconfirmedRequestService.checkUnconfirmedRequestService(services, serviceChoice);
     }
 
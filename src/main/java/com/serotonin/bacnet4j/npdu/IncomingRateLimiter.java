@@ -0,0 +1,262 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.serotonin.bacnet4j.apdu.ConfirmedRequest;
+import com.serotonin.bacnet4j.apdu.UnconfirmedRequest;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Token bucket limits on incoming traffic, maintained per source address and per service type. The service type is
+ * read from the APDU header without decoding the APDU, so that messages from a misbehaving device can be dropped
+ * before they cost anything more than the parsing of the NPCI.
+ * 
+ * Limits can be set for individual confirmed and unconfirmed services, and for individual network layer message
+ * types. A default limit applies to all traffic for which no specific limit is set. Traffic for which there is no
+ * limit at all is always allowed.
+ */
+public class IncomingRateLimiter {
+    /**
+     * The maximum number of buckets. When a new bucket is needed beyond this, the least recently used one is
+     * discarded.
+     */
+    public static final int MAX_BUCKETS = 10000;
+
+    private static final int CONFIRMED = 0x000;
+    private static final int UNCONFIRMED = 0x100;
+    private static final int NETWORK_MESSAGE = 0x200;
+    private static final int OTHER_APDU = 0x300;
+
+    // Copy on write, so that allow can read the limits without locking.
+    private volatile Limit[] limits = new Limit[0x400];
+    private volatile Limit defaultLimit;
+    private final Map<BucketKey, Bucket> buckets = new LinkedHashMap<BucketKey, Bucket>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BucketKey, Bucket> eldest) {
+            return size() > MAX_BUCKETS;
+        }
+    };
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Sets the limit that applies to all traffic for which no specific limit is set.
+     * 
+     * @param rate
+     *            the sustained number of messages per second allowed from a single source
+     * @param burst
+     *            the number of messages that a single source may send at once
+     */
+    public synchronized void setDefaultLimit(double rate, int burst) {
+        defaultLimit = new Limit(rate, burst);
+        // Start over with the new limit.
+        synchronized (buckets) {
+            buckets.clear();
+        }
+    }
+
+    public void setConfirmedLimit(byte serviceChoice, double rate, int burst) {
+        setLimit(CONFIRMED | (serviceChoice & 0xff), new Limit(rate, burst));
+    }
+
+    public void setUnconfirmedLimit(byte serviceChoice, double rate, int burst) {
+        setLimit(UNCONFIRMED | (serviceChoice & 0xff), new Limit(rate, burst));
+    }
+
+    public void setNetworkMessageLimit(int messageType, double rate, int burst) {
+        setLimit(NETWORK_MESSAGE | (messageType & 0xff), new Limit(rate, burst));
+    }
+
+    private synchronized void setLimit(int type, Limit limit) {
+        Limit[] copy = limits.clone();
+        copy[type] = limit;
+        limits = copy;
+        // Start over with the new limit.
+        synchronized (buckets) {
+            buckets.clear();
+        }
+    }
+
+    /**
+     * @return Returns the total number of messages that have been dropped.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Returns the number of messages that have been dropped from the given source, as far as it is still
+     *         being tracked.
+     */
+    public long getDroppedCount(Address source) {
+        long count = 0;
+        synchronized (buckets) {
+            for (Bucket bucket : buckets.values()) {
+                if (bucket.source.equals(source))
+                    count += bucket.dropped;
+            }
+        }
+        return count;
+    }
+
+    int getBucketCount() {
+        synchronized (buckets) {
+            return buckets.size();
+        }
+    }
+
+    public boolean allow(NPDU npdu) {
+        return allow(npdu, System.currentTimeMillis());
+    }
+
+    /**
+     * Takes a token from the bucket for the source and service type of the given NPDU.
+     * 
+     * @return Returns true if the NPDU should be processed, or false if it should be dropped.
+     */
+    public boolean allow(NPDU npdu, long now) {
+        int type = getType(npdu);
+        Limit limit = limits[type];
+        if (limit == null)
+            limit = defaultLimit;
+        if (limit == null)
+            return true;
+
+        BucketKey key = new BucketKey(npdu.getFrom(), type);
+        Bucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(npdu.getFrom(), limit, now);
+                buckets.put(key, bucket);
+            }
+        }
+
+        if (bucket.take(now))
+            return true;
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Determines the service type of the NPDU from the header of its APDU, without consuming the data.
+     */
+    private static int getType(NPDU npdu) {
+        if (npdu.isNetworkMessage())
+            return NETWORK_MESSAGE | (npdu.getNetworkMessageType() & 0xff);
+
+        ByteQueue queue = npdu.getNetworkMessageData();
+        if (queue.size() < 2)
+            return OTHER_APDU;
+
+        byte first = queue.peek(0);
+        int pduType = (first & 0xff) >> 4;
+        if (pduType == UnconfirmedRequest.TYPE_ID)
+            return UNCONFIRMED | (queue.peek(1) & 0xff);
+        if (pduType == ConfirmedRequest.TYPE_ID) {
+            // Segmented messages have the sequence number and window size before the service choice.
+            int index = (first & 0x08) != 0 ? 5 : 3;
+            if (queue.size() > index)
+                return CONFIRMED | (queue.peek(index) & 0xff);
+        }
+        return OTHER_APDU | pduType;
+    }
+
+    private static class Limit {
+        final double tokensPerMilli;
+        final int burst;
+
+        Limit(double rate, int burst) {
+            if (rate <= 0 || burst < 1)
+                throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+            tokensPerMilli = rate / 1000;
+            this.burst = burst;
+        }
+    }
+
+    private static class BucketKey {
+        final Address source;
+        final int type;
+
+        BucketKey(Address source, int type) {
+            this.source = source;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            return source.hashCode() * 31 + type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BucketKey))
+                return false;
+            BucketKey other = (BucketKey) obj;
+            return type == other.type && source.equals(other.source);
+        }
+    }
+
+    private static class Bucket {
+        final Address source;
+        final Limit limit;
+        double tokens;
+        long lastRefill;
+        volatile long dropped;
+
+        Bucket(Address source, Limit limit, long now) {
+            this.source = source;
+            this.limit = limit;
+            tokens = limit.burst;
+            lastRefill = now;
+        }
+
+        synchronized boolean take(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens--;
+                return true;
+            }
+            dropped++;
+            return false;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(limit.burst, tokens + (now - lastRefill) * limit.tokensPerMilli);
+                lastRefill = now;
+            }
+        }
+    }
+}
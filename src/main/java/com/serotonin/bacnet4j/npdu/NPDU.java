@@ -36,6 +36,13 @@ import com.serotonin.bacnet4j.type.primitive.OctetString;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
 
 public class NPDU {
+    /**
+     * How an NPDU was addressed when it was received.
+     */
+    public enum Reception {
+        UNICAST, LOCAL_BROADCAST, GLOBAL_BROADCAST
+    }
+
     private final Address from;
     private final Address to;
     private final OctetString linkService;
@@ -44,6 +51,7 @@ public class NPDU {
     private final boolean expectsReply;
     private final ByteQueue queue;
     private int hopcount = 0;
+    private Boolean broadcast;
 
     /**
      * Constructor for APDU messages.
@@ -87,6 +95,24 @@ public class NPDU {
     	hopcount = value;
     }
     
+    /**
+     * Set by data links that can tell whether the NPDU was received as a link layer broadcast.
+     */
+    public void setBroadcast(boolean broadcast) {
+        this.broadcast = broadcast;
+    }
+
+    /**
+     * @return Returns how the NPDU was addressed, or null if the data link did not tell.
+     */
+    public Reception getReception() {
+        if (to != null && to.isGlobal())
+            return Reception.GLOBAL_BROADCAST;
+        if (broadcast == null)
+            return null;
+        return broadcast ? Reception.LOCAL_BROADCAST : Reception.UNICAST;
+    }
+
     public OctetString getLinkService() {
         return linkService;
     }
@@ -28,14 +28,22 @@
  */
 package com.serotonin.bacnet4j.npdu;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArraySet;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.serotonin.bacnet4j.apdu.APDU;
+import com.serotonin.bacnet4j.apdu.ComplexACK;
+import com.serotonin.bacnet4j.apdu.ConfirmedRequest;
+import com.serotonin.bacnet4j.apdu.SegmentACK;
 import com.serotonin.bacnet4j.enums.MaxApduLength;
 import com.serotonin.bacnet4j.exception.BACnetException;
 import com.serotonin.bacnet4j.transport.Transport;
@@ -43,17 +51,42 @@ import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.primitive.OctetString;
 import com.serotonin.bacnet4j.type.primitive.Unsigned16;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.scheduler.TimerTask;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
 
 abstract public class Network {
     static final Logger LOG = LoggerFactory.getLogger(Network.class);
 
+    // Initial size of outgoing NPDU buffers. Large enough for an unsegmented APDU on any data link.
+    private static final int NPDU_BUFFER_LENGTH = 2048;
+
     private final int localNetworkNumber;
     private Transport transport;
     // Routing map indexed by networkNumber
     private Map<Integer, Network> routes = new HashMap<Integer, Network>();
     private Vector<Integer> routerPorts = new Vector<Integer>();
 
+    // Flow control of routed traffic
+    public static final int DEFAULT_ROUTE_QUEUE_CAPACITY = 100;
+    /**
+     * The time after which a Router-Busy-To-Network received from another router is no longer honored, if no
+     * Router-Available-To-Network was received in the meantime. See 6.6.3.6.
+     */
+    public static final long ROUTER_BUSY_TIMEOUT = 30000;
+    private int routeQueueCapacity = DEFAULT_ROUTE_QUEUE_CAPACITY;
+    // Networks on which it has been announced that this port is busy
+    private final Set<Network> busyAnnouncedOn = new CopyOnWriteArraySet<Network>();
+    /**
+     * The maximum number of APDUs per remote network that are held back while the router to that network is busy.
+     */
+    public static final int MAX_WITHHELD_APDUS = 100;
+    // Remote networks announced as busy by routers on this network, with the time at which the announcement expires
+    private final Map<Integer, Long> busyRemoteNetworks = new HashMap<Integer, Long>();
+    // APDUs held back for busy remote networks. Guarded by busyRemoteNetworks.
+    private final Map<Integer, List<WithheldAPDU>> withheldAPDUs = new HashMap<Integer, List<WithheldAPDU>>();
+
+    private volatile IncomingRateLimiter rateLimiter;
+
     // Network layer message types
     public static final int WHO_IS_ROUTER_TO_NETWORK = 0x00;
     public static final int I_AM_ROUTER_TO_NETWORK = 0x01;
@@ -88,6 +121,15 @@ abstract public class Network {
         return transport;
     }
 
+    /**
+     * @return the current time of the local device's clock, or of the system clock if there is no device yet
+     */
+    protected long currentTimeMillis() {
+        if (transport == null || transport.getLocalDevice() == null)
+            return System.currentTimeMillis();
+        return transport.getLocalDevice().getTimeSource().currentTimeMillis();
+    }
+
     /**
      * Adds a new route to remote network assigning automatically a port to the new route.
      * 
@@ -173,6 +215,266 @@ abstract public class Network {
 		}
     }
     
+    /**
+     * Sets the maximum number of messages that may be waiting in the send queue of this network before messages
+     * routed to it from other networks are refused. A value of 0 disables flow control.
+     * 
+     * The send queue is the one of the data link, as reported by {@link #getSendQueueSize()}, rather than a separate
+     * queue of routed messages: a routed message is handed to the data link right away, and a data link that can
+     * fall behind, such as MS/TP, bounds its own queue. Data links that send synchronously, such as BACnet/IP, never
+     * queue and so are never reported as busy.
+     * 
+     * @param routeQueueCapacity
+     */
+    public void setRouteQueueCapacity(int routeQueueCapacity) {
+        this.routeQueueCapacity = routeQueueCapacity;
+    }
+
+    public int getRouteQueueCapacity() {
+        return routeQueueCapacity;
+    }
+
+    /**
+     * Data links that queue outgoing messages should override this method to return the number of messages waiting
+     * to be sent, and call {@link #sendQueueChanged()} when messages leave the queue.
+     * 
+     * @return Returns the number of messages waiting to be sent on this network.
+     */
+    protected int getSendQueueSize() {
+        return 0;
+    }
+
+    /**
+     * @return Returns true if this network cannot accept routed messages at the present time.
+     */
+    public boolean isSaturated() {
+        return routeQueueCapacity > 0 && getSendQueueSize() >= routeQueueCapacity;
+    }
+
+    /**
+     * Data links on which a request must be answered within a short reply window should override this method to
+     * return true. On MS/TP, for example, a reply that is not ready in time is postponed until the requester next
+     * holds the token. Transports handle incoming requests from such networks ahead of other queued work.
+     * 
+     * @return Returns true if replies to requests received on this network are time critical.
+     */
+    public boolean hasReplyWindow() {
+        return false;
+    }
+
+    /**
+     * Must be called by data links when messages have left the send queue. Once the queue has drained to half of
+     * its capacity, a Router-Available-To-Network is sent on every network where this network was announced as busy.
+     */
+    protected void sendQueueChanged() {
+        if (busyAnnouncedOn.isEmpty() || getSendQueueSize() > routeQueueCapacity / 2)
+            return;
+
+        List<Integer> networks = getReachableNetworks();
+        for (Network ingress : busyAnnouncedOn) {
+            if (busyAnnouncedOn.remove(ingress)) {
+                LOG.debug("{} Route to network {} is available again", ingress.getLocalNetworkNumber(),
+                        getLocalNetworkNumber());
+                ingress.sendRouterFlowControl(ROUTER_AVAILABLE_TO_NETWORK, networks);
+            }
+        }
+    }
+
+    /**
+     * Announces on the ingress network that this network is busy, unless that has already been done.
+     */
+    private void announceBusy(Network ingress) {
+        if (busyAnnouncedOn.add(ingress)) {
+            LOG.debug("{} Route to network {} is busy", ingress.getLocalNetworkNumber(), getLocalNetworkNumber());
+            ingress.sendRouterFlowControl(ROUTER_BUSY_TO_NETWORK, getReachableNetworks());
+        }
+    }
+
+    /**
+     * @return Returns the network numbers that are reached through this network, i.e. its own number and the
+     *         numbers of the networks of the routers known to its transport.
+     */
+    private List<Integer> getReachableNetworks() {
+        List<Integer> networks = new ArrayList<Integer>();
+        networks.add(getLocalNetworkNumber());
+        if (transport != null) {
+            for (Integer networkNumber : transport.getNetworkRouters().keySet()) {
+                if (!networks.contains(networkNumber))
+                    networks.add(networkNumber);
+            }
+        }
+        return networks;
+    }
+
+    private void sendRouterFlowControl(int messageType, List<Integer> networks) {
+        ByteQueue data = new ByteQueue();
+        for (Integer networkNumber : networks) {
+            if (networkNumber.intValue() != getLocalNetworkNumber())
+                data.pushU2B(networkNumber);
+        }
+        try {
+            sendNetworkMessage(getLocalBroadcastAddress(), null, messageType, data.popAll(), true, false);
+        }
+        catch (BACnetException e) {
+            transport.getLocalDevice().getExceptionDispatcher().fireReceivedException(e);
+        }
+    }
+
+    /**
+     * Handles a Router-Busy-To-Network received from a router on this network. APDUs to the network are held back
+     * until a Router-Available-To-Network is received or the announcement expires.
+     * 
+     * @param networkNumber
+     */
+    public void routerBusy(int networkNumber) {
+        boolean wasBusy;
+        synchronized (busyRemoteNetworks) {
+            wasBusy = busyRemoteNetworks.put(networkNumber, currentTimeMillis() + ROUTER_BUSY_TIMEOUT) != null;
+        }
+        if (!wasBusy && transport != null)
+            transport.getLocalDevice().getTimer().schedule(new RouterBusyExpiry(networkNumber), ROUTER_BUSY_TIMEOUT);
+    }
+
+    /**
+     * Handles a Router-Available-To-Network received from a router on this network, and sends the APDUs that were
+     * held back for the network.
+     * 
+     * @param networkNumber
+     */
+    public void routerAvailable(int networkNumber) {
+        List<WithheldAPDU> withheld;
+        synchronized (busyRemoteNetworks) {
+            busyRemoteNetworks.remove(networkNumber);
+            withheld = withheldAPDUs.remove(networkNumber);
+        }
+        if (withheld != null) {
+            LOG.debug("{} Router to network {} is available, sending {} withheld APDUs", getLocalNetworkNumber(),
+                    networkNumber, withheld.size());
+            for (WithheldAPDU w : withheld) {
+                try {
+                    sendAPDU(w.recipient, w.router, w.apdu, w.broadcast);
+                }
+                catch (BACnetException e) {
+                    transport.getLocalDevice().getExceptionDispatcher().fireReceivedException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param networkNumber
+     * @return Returns true if the router to the given remote network has announced that it is busy.
+     */
+    public boolean isRouterBusy(int networkNumber) {
+        synchronized (busyRemoteNetworks) {
+            return getBusyExpiry(networkNumber) > 0;
+        }
+    }
+
+    /**
+     * @return Returns the time at which the busy announcement for the network expires, or 0 if it is not busy.
+     */
+    private long getBusyExpiry(int networkNumber) {
+        Long expiry = busyRemoteNetworks.get(networkNumber);
+        if (expiry == null || expiry < currentTimeMillis())
+            return 0;
+        return expiry;
+    }
+
+    /**
+     * Holds back the APDU if the router to the recipient's network is busy. Confirmed requests and segments are
+     * not held back, because the transport retries them on its own timeout: a withheld copy would be sent late,
+     * possibly after its invoke id has been reused, and each retry would add another one.
+     * 
+     * @return Returns true if the APDU was held back, or false if it can be sent.
+     * @throws BACnetException
+     *             if the router is busy and the APDU is retried by the transport, or too many APDUs are already
+     *             waiting for it
+     */
+    private boolean withhold(Address recipient, OctetString router, APDU apdu, boolean broadcast)
+            throws BACnetException {
+        int networkNumber = recipient.getNetworkNumber().intValue();
+        synchronized (busyRemoteNetworks) {
+            if (getBusyExpiry(networkNumber) == 0)
+                return false;
+
+            if (isRetriedByTransport(apdu))
+                throw new BACnetException("Router to network " + networkNumber + " is busy");
+
+            List<WithheldAPDU> withheld = withheldAPDUs.get(networkNumber);
+            if (withheld == null) {
+                withheld = new ArrayList<WithheldAPDU>();
+                withheldAPDUs.put(networkNumber, withheld);
+            }
+            if (withheld.size() >= MAX_WITHHELD_APDUS)
+                throw new BACnetException("Router to network " + networkNumber + " is busy and "
+                        + MAX_WITHHELD_APDUS + " APDUs are already waiting for it");
+            withheld.add(new WithheldAPDU(recipient, router, apdu, broadcast));
+            return true;
+        }
+    }
+
+    private static boolean isRetriedByTransport(APDU apdu) {
+        if (apdu instanceof ConfirmedRequest || apdu instanceof SegmentACK)
+            return true;
+        return apdu instanceof ComplexACK && ((ComplexACK) apdu).isSegmentedMessage();
+    }
+
+    private static class WithheldAPDU {
+        final Address recipient;
+        final OctetString router;
+        final APDU apdu;
+        final boolean broadcast;
+
+        WithheldAPDU(Address recipient, OctetString router, APDU apdu, boolean broadcast) {
+            this.recipient = recipient;
+            this.router = router;
+            this.apdu = apdu;
+            this.broadcast = broadcast;
+        }
+    }
+
+    /**
+     * Treats the remote network as available once its busy announcement has expired without being renewed.
+     */
+    private class RouterBusyExpiry extends TimerTask {
+        private final int networkNumber;
+
+        RouterBusyExpiry(int networkNumber) {
+            this.networkNumber = networkNumber;
+        }
+
+        @Override
+        public void run() {
+            long remaining;
+            synchronized (busyRemoteNetworks) {
+                Long expiry = busyRemoteNetworks.get(networkNumber);
+                if (expiry == null)
+                    // Router-Available-To-Network was received.
+                    return;
+                remaining = expiry - currentTimeMillis();
+            }
+            if (remaining > 0)
+                transport.getLocalDevice().getTimer().schedule(new RouterBusyExpiry(networkNumber), remaining);
+            else
+                routerAvailable(networkNumber);
+        }
+    }
+
+    /**
+     * Sets the limits applied to incoming traffic, or null (the default) to apply none. Messages exceeding the limits
+     * are dropped before their APDUs are decoded.
+     * 
+     * @param rateLimiter
+     */
+    public void setRateLimiter(IncomingRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public IncomingRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
     abstract public long getBytesOut();
 
     abstract public long getBytesIn();
@@ -199,8 +501,6 @@ abstract public class Network {
 
     public final void sendAPDU(Address recipient, OctetString router, APDU apdu, boolean broadcast)
             throws BACnetException {
-        ByteQueue npdu = new ByteQueue();
-
         NPCI npci = null;
         
         if (recipient.isGlobal()) {
@@ -227,6 +527,8 @@ abstract public class Network {
             	}
 		        LOG.debug("{}{} Route APDU to {}: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), recipient, apdu);
             	localRoute.route(getLocalAddress(), recipient, apdu, broadcast);
+            } else if (withhold(recipient, router, apdu, broadcast)) {
+                LOG.debug("{}{} Router to {} is busy, withholding APDU: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), recipient, apdu);
             } else {
             	npci = new NPCI(recipient, null, apdu.expectsReply());
             }
@@ -236,19 +538,23 @@ abstract public class Network {
 	        if (apdu.getNetworkPriority() != null)
 	            npci.priority(apdu.getNetworkPriority());
 	
-	        npci.write(npdu);
+	        ByteQueue npdu = ByteQueue.pooled(NPDU_BUFFER_LENGTH);
+	        try {
+	            npci.write(npdu);
 	
-	        apdu.write(npdu);
+	            apdu.write(npdu);
 	
-	        LOG.debug("{}{} Send APDU to {}: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), recipient, npdu);
-       		sendNPDU(recipient, router, npdu, broadcast, apdu.expectsReply());
+	            LOG.debug("{}{} Send APDU to {}: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), recipient, npdu);
+	            sendNPDU(recipient, router, npdu, broadcast, apdu.expectsReply());
+	        }
+	        finally {
+	            npdu.release();
+	        }
         }
     }
 
     public final void sendNetworkMessage(Address recipient, OctetString router, int messageType, byte[] msg,
             boolean broadcast, boolean expectsReply) throws BACnetException {
-        ByteQueue npdu = new ByteQueue();
-
         NPCI npci = null;
 
         if (recipient.isGlobal()) {
@@ -283,17 +589,27 @@ abstract public class Network {
         }
         
         if(npci != null) {
-	        npci.write(npdu);
+	        ByteQueue npdu = ByteQueue.pooled(NPDU_BUFFER_LENGTH);
+	        try {
+	            npci.write(npdu);
 	
-	        // Network message
-	        if (msg != null)
-	            npdu.push(msg);
+	            // Network message
+	            if (msg != null)
+	                npdu.push(msg);
 	
-	        LOG.debug("{}{} Send NPDU to {}: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), recipient, npdu);
-        	sendNPDU(recipient, router, npdu, broadcast, expectsReply);
+	            LOG.debug("{}{} Send NPDU to {}: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), recipient, npdu);
+	            sendNPDU(recipient, router, npdu, broadcast, expectsReply);
+	        }
+	        finally {
+	            npdu.release();
+	        }
         }
     }
 
+    /**
+     * Sends the NPDU on the link. The NPDU's buffer is given back to a pool when this method returns, so
+     * implementations must consume or copy it before returning, and must not keep a reference to it.
+     */
 	abstract protected void sendNPDU(Address recipient, OctetString router, ByteQueue npdu, boolean broadcast,
             boolean expectsReply) throws BACnetException;
 
@@ -318,6 +634,11 @@ abstract public class Network {
                 	// Discard messages received from ourself
                 	return;
                 }
+                IncomingRateLimiter limiter = rateLimiter;
+                if(limiter != null && !limiter.allow(npdu, currentTimeMillis())) {
+                    LOG.debug("{}{} Rate limit exceeded, dropping NPDU from {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), npdu.getFrom());
+                    return;
+                }
                 LOG.debug("{}{} Received NPDU from {}: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), linkService, npdu);
                 Address to = npdu.getTo();
                 if(to == null || isThisAddress(to)) {
@@ -334,6 +655,11 @@ abstract public class Network {
                 				if((networkNumber != null) && (networkNumber > 0) && 
                 					((npdu.getFrom() == null) || (networkNumber != npdu.getFrom().getNetworkNumber().intValue()))) 
                 				{
+                					Network route = getRouteNetwork(networkNumber);
+                					if(route.isSaturated()) {
+                						route.announceBusy(this);
+                						continue;
+                					}
                 					// Rewrite from info for messages generated in local network
                 					Address from = npdu.getFrom();
                 					if((from == null)) {
@@ -344,7 +670,7 @@ abstract public class Network {
 		                			NPDU forwardNpdu = new NPDU(from, npdu.getTo(), npdu.getLinkService(), (ByteQueue)npdu.getNetworkMessageData().clone(), npdu.getExpectsReply());
 		                			forwardNpdu.setHopCount(hopcount-1);
 		                	        LOG.debug("{}{} Route NPDU: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), forwardNpdu);
-	                				getRouteNetwork(networkNumber).route(to, forwardNpdu, true);
+	                				route.route(to, forwardNpdu, true);
                 				}
 	                		}
                 			// Deliver locally
@@ -352,7 +678,10 @@ abstract public class Network {
                 		}
                 	} else {
                 		Network route = getRouteNetwork(destNet);
-                		if(route != null) {
+                		if(route != null && route.isSaturated()) {
+                			LOG.debug("{}{} Route to network {} is busy, dropping NPDU: {}", getLocalNetworkNumber(), getLocalAddress().getMacAddress(), destNet, npdu);
+                			route.announceBusy(this);
+                		} else if(route != null) {
                 			Address route_to = npdu.getTo();
                 			if(route.isThisNetwork(route_to)) {
                 				route_to = null;
@@ -465,6 +794,16 @@ abstract public class Network {
 		sendNPDU(recipient, null, data, broadcast, npdu.getExpectsReply());
 	}
 
+	/**
+	 * Parses the NPDU, recording whether it was received as a link layer broadcast.
+	 */
+	public NPDU parseNpduData(ByteQueue queue, OctetString linkService, boolean broadcast) throws MessageValidationException {
+		NPDU npdu = parseNpduData(queue, linkService);
+		if (npdu != null)
+			npdu.setBroadcast(broadcast);
+		return npdu;
+	}
+
 	public NPDU parseNpduData(ByteQueue queue, OctetString linkService) throws MessageValidationException {
         // Network layer protocol control information. See 6.2.2
         NPCI npci = new NPCI(queue);
@@ -579,14 +918,24 @@ abstract public class Network {
 						break;
 					}
 					Network route = getRouteNetwork(routedNetwork);
-					OctetString router = route.getTransport().getNetworkRouters().get(networkNumber);
+					OctetString router = route.getTransport().getNetworkRouters().get(networkNumber.intValue());
 					if(router != null) {
 						msgData.pushU2B(networkNumber.intValue());
 						break;
 					}
 				}
 			}
-			// TODO No router found. Forward query to all routes 
+			if(msgData.size() == 0 && networkNumber.intValue() != getLocalNetworkNumber()) {
+				// No router found. Forward query to all routes. The transports discard queries for networks that
+				// are already being discovered or that are known to be unreachable.
+				for (Integer routedNetwork : routerPorts) {
+					if(routedNetwork != null) {
+						Network route = getRouteNetwork(routedNetwork);
+						if(route.getTransport() != null)
+							route.getTransport().findNetworkRouter(networkNumber.intValue());
+					}
+				}
+			}
 		} else {
 			// Collect all routes
 			for(Integer routedNetwork : routerPorts) {
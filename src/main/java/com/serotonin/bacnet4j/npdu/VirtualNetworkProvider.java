@@ -32,6 +32,13 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,23 +50,30 @@ import com.serotonin.bacnet4j.type.primitive.OctetString;
 import com.serotonin.bacnet4j.type.primitive.Unsigned16;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
-import com.serotonin.bacnet4j.util.sero.ThreadUtils;
 
 /**
  * Class used as factory for VirtualNetwork objects and link implementation between this objects.
  * 
+ * Each registered network has its own inbox, and inboxes are drained in parallel on a shared thread pool. A sent
+ * NPDU is copied once into an immutable packet, which every recipient reads through its own ByteQueue view, so a
+ * broadcast to thousands of virtual devices costs no per-recipient copies. Delivery order is preserved per
+ * recipient.
+ * 
  * @author acladera
  *
  */
-public class VirtualNetworkProvider implements VirtualNetworkLink, Runnable {
+public class VirtualNetworkProvider implements VirtualNetworkLink {
+    /**
+     * Maximum packets a network handles before yielding its delivery thread to other inboxes.
+     */
+    static final int MAX_BATCH = 64;
 
 	private final MaxApduLength maxApduLength;
 	private final Unsigned16 localNetworkNumber;
 	private final OctetString broadcastMAC;
-	private final Map<OctetString, VirtualNetwork> registry = new ConcurrentHashMap<OctetString, VirtualNetwork>();
-	private final Queue<MessageData> queue = new ConcurrentLinkedQueue<MessageData>();
-    private volatile boolean running = true;
-	private Thread thread;
+	private final Map<OctetString, Inbox> registry = new ConcurrentHashMap<OctetString, Inbox>();
+	private int threadpoolSize = Runtime.getRuntime().availableProcessors();
+	private volatile ExecutorService executor;
 
 	private final Logger LOG = LoggerFactory.getLogger(this.getClass());
 	
@@ -101,16 +115,43 @@ public class VirtualNetworkProvider implements VirtualNetworkLink, Runnable {
 	}
 
 
+	/**
+	 * Sets the number of threads used for delivery. Must be called before initilize().
+	 */
+	public void setThreadpoolSize(int threadpoolSize) {
+		if(threadpoolSize < 1)
+			throw new IllegalArgumentException("threadpoolSize must be at least 1");
+		this.threadpoolSize = threadpoolSize;
+	}
+
 	public void initilize() {
-		thread = new Thread(this, "BACnet4J virtual network [" + localNetworkNumber + "]");
-		thread.start();
+		final String name = "BACnet4J virtual network [" + localNetworkNumber + "] ";
+		executor = Executors.newFixedThreadPool(threadpoolSize, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, name + count.incrementAndGet());
+			}
+		});
+		// Deliver anything that was sent before the provider was started.
+		for(Inbox inbox : registry.values()) {
+			inbox.schedule();
+		}
 	}
 	
 	public void terminate() {
-		running = false;
-		ThreadUtils.notifySync(queue);
-		if(thread != null) {
-			ThreadUtils.join(thread);
+		ExecutorService srv = executor;
+		executor = null;
+		if(srv != null) {
+			srv.shutdown();
+			try {
+				if(!srv.awaitTermination(5000, TimeUnit.MILLISECONDS)) {
+					srv.shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				srv.shutdownNow();
+			}
 		}
 	}
 	
@@ -146,7 +187,7 @@ public class VirtualNetworkProvider implements VirtualNetworkLink, Runnable {
 		if(!localNetworkNumber.equals(virtualNetwork.getLocalAddress().getNetworkNumber())) {
 			throw new BACnetException("Trying to register a VirtualNetwork with an invalid network number [" + virtualNetwork.getLocalAddress().getNetworkNumber() +"]");
 		}
-		registry.put(virtualNetwork.getLocalAddress().getMacAddress(), virtualNetwork);
+		registry.put(virtualNetwork.getLocalAddress().getMacAddress(), new Inbox(virtualNetwork));
 	}
 
 	/* (non-Javadoc)
@@ -154,9 +195,9 @@ public class VirtualNetworkProvider implements VirtualNetworkLink, Runnable {
 	 */
 	@Override
 	public void unregister(VirtualNetwork virtualNetwork) {
-		VirtualNetwork removed = registry.remove(virtualNetwork.getLocalAddress().getMacAddress());
-		if(removed != null && !removed.equals(virtualNetwork)) {
-			LOG.warn("Removed wrong virtual network object: {}", removed);
+		Inbox removed = registry.remove(virtualNetwork.getLocalAddress().getMacAddress());
+		if(removed != null && !removed.network.equals(virtualNetwork)) {
+			LOG.warn("Removed wrong virtual network object: {}", removed.network);
 		}
 	}
 
@@ -166,54 +207,79 @@ public class VirtualNetworkProvider implements VirtualNetworkLink, Runnable {
 	@Override
 	public void sendNPDU(Address recipient, Address origin, OctetString router, ByteQueue npdu, boolean broadcast,
 			boolean expectsReply) {
-		queue.add(new MessageData(recipient, origin, router, npdu, broadcast, expectsReply));
-		ThreadUtils.notifySync(queue);
+		MessageData data = new MessageData(recipient, origin, router, npdu.peekAll(), broadcast, expectsReply);
+		if(data.isBroadcast()) {
+			for(Inbox inbox : registry.values()) {
+				inbox.add(data);
+			}
+		} else {
+			Inbox inbox = registry.get(data.getDestination());
+			if(inbox != null) {
+				inbox.add(data);
+			}
+		}
 	}
 
-
-	/* (non-Javadoc)
-	 * @see java.lang.Runnable#run()
+	/**
+	 * Pending packets of a single network. At most one delivery task per inbox is scheduled at any time, which
+	 * keeps packets in order for each recipient while different recipients are served in parallel.
 	 */
-	@Override
-	public void run() {
-		while(running) {
-			MessageData data = queue.poll();
-			
-			if(data == null) {
-				ThreadUtils.waitSync(queue, 100);
-			} else {
-				if(data.isBroadcast()) {
-					for(VirtualNetwork network : registry.values()) {
-						receive(network, data);
-					}
-				} else {
-					VirtualNetwork network = registry.get(data.getDestination());
-					if(network != null) {
-						receive(network,data);
+	class Inbox implements Runnable {
+		final VirtualNetwork network;
+		private final Queue<MessageData> packets = new ConcurrentLinkedQueue<MessageData>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		Inbox(VirtualNetwork network) {
+			this.network = network;
+		}
+
+		void add(MessageData data) {
+			packets.add(data);
+			schedule();
+		}
+
+		void schedule() {
+			ExecutorService srv = executor;
+			if(srv == null || packets.isEmpty() || !scheduled.compareAndSet(false, true))
+				return;
+			try {
+				srv.execute(this);
+			} catch (RejectedExecutionException e) {
+				// Terminated.
+				scheduled.set(false);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				for(int i = 0; i < MAX_BATCH; i++) {
+					MessageData data = packets.poll();
+					if(data == null)
+						break;
+					try {
+						network.handleIncomingData(ByteQueue.wrap(data.npdu), data.getOrigin());
+					} catch (RuntimeException e) {
+						LOG.error("Error delivering packet to {}", network.getLocalAddress(), e);
 					}
 				}
+			} finally {
+				scheduled.set(false);
 			}
+			// Packets may have arrived after the last poll, or the batch limit was reached.
+			schedule();
 		}
 	}
-	
-	
-	/**
-	 * @param network
-	 * @param data
-	 */
-	private void receive(VirtualNetwork network, MessageData data) {
-		network.handleIncomingData((ByteQueue)data.npdu.clone(), data.getOrigin());
-	}
 
 	class MessageData {
 		final Address recipient;
 		final Address origin;
 		final OctetString router;
-		final ByteQueue npdu;
+		final byte[] npdu;
 		final boolean broadcast;
 		final boolean expectsReply;
 		
-		public MessageData(Address recipient, Address origin, OctetString router, ByteQueue npdu, boolean broadcast,
+		public MessageData(Address recipient, Address origin, OctetString router, byte[] npdu, boolean broadcast,
 				boolean expectsReply) {
 			super();
 			this.recipient = recipient;
@@ -0,0 +1,122 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.ip;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable broadcast distribution table. The forwarding addresses of the peer BBMDs and the entry of this BBMD
+ * are determined once when the table is written, rather than every time a broadcast is distributed.
+ */
+class BroadcastDistributionTable {
+    static final BroadcastDistributionTable EMPTY = new BroadcastDistributionTable();
+
+    static class Entry {
+        // The IP address of the other BBMD
+        final byte[] address;
+        final int port;
+
+        // If messages are to be distributed on the remote IP subnet using directed broadcasts, the broadcast 
+        // distribution mask shall be identical to the subnet mask associated with the subnet, i.e., all 1's in the 
+        // network portion of the 4-octet IP address field and all 0's in the host portion. If messages are to be 
+        // distributed on the remote IP subnet by sending the message directly to the remote BBMD, the broadcast 
+        // distribution mask shall be all 1's. The broadcast distribution masks referring to the same IP subnet shall 
+        // be identical in each BDT.
+        final byte[] distributionMask;
+
+        Entry(byte[] address, int port, byte[] distributionMask) {
+            this.address = address;
+            this.port = port;
+            this.distributionMask = distributionMask;
+        }
+
+        /**
+         * J.4.5: The B/IP address to which the Forwarded-NPDU message is sent is formed by inverting the broadcast 
+         * distribution mask in the BDT entry and logically ORing it with the BBMD address of the same entry.
+         */
+        InetSocketAddress getForwardAddress() throws UnknownHostException {
+            byte[] target = new byte[4];
+            for (int i = 0; i < 4; i++)
+                target[i] = (byte) (address[i] | ~distributionMask[i]);
+            return InetAddrCache.get(InetAddress.getByAddress(target), port);
+        }
+    }
+
+    private final List<Entry> entries;
+    private final Entry thisEntry;
+    private final InetSocketAddress[] peers;
+
+    private BroadcastDistributionTable() {
+        entries = Collections.emptyList();
+        thisEntry = null;
+        peers = new InetSocketAddress[0];
+    }
+
+    BroadcastDistributionTable(List<Entry> entries, byte[] myAddress) throws UnknownHostException {
+        this.entries = Collections.unmodifiableList(new ArrayList<Entry>(entries));
+
+        Entry mine = null;
+        List<InetSocketAddress> list = new ArrayList<InetSocketAddress>();
+        for (Entry e : entries) {
+            if (Arrays.equals(e.address, myAddress))
+                mine = e;
+            else
+                list.add(e.getForwardAddress());
+        }
+        thisEntry = mine;
+        peers = list.toArray(new InetSocketAddress[list.size()]);
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the entry of this BBMD, or null if it is not in the table.
+     */
+    Entry getThisEntry() {
+        return thisEntry;
+    }
+
+    /**
+     * @return the addresses to which broadcasts are forwarded, i.e. those of all entries except this BBMD's own.
+     */
+    InetSocketAddress[] getPeers() {
+        return peers;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.ip;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The foreign device table of a BBMD. Entries are indexed by address, and their expiry times are kept in a heap so
+ * that maintenance only needs to look at the entries that actually expired.
+ */
+class ForeignDeviceTable {
+    static final Logger LOG = LoggerFactory.getLogger(ForeignDeviceTable.class);
+
+    private final ConcurrentHashMap<InetSocketAddress, Entry> entries = new ConcurrentHashMap<InetSocketAddress, Entry>();
+
+    // Expiry times of registrations, soonest first. Re-registrations add a new expiry rather than updating the
+    // existing one, so stale expiries are ignored when they come up. Guarded by itself, which also guards the
+    // addition and expiry of entries.
+    private final PriorityQueue<Expiry> expiries = new PriorityQueue<Expiry>();
+
+    static class Entry {
+        final InetSocketAddress address;
+        volatile int timeToLive;
+        volatile long endTime;
+
+        Entry(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public String toString() {
+            return "FDTEntry [address=" + address + ", timeToLive=" + timeToLive + ", endTime=" + endTime + "]";
+        }
+    }
+
+    static class Expiry implements Comparable<Expiry> {
+        final Entry entry;
+        final long endTime;
+
+        Expiry(Entry entry, long endTime) {
+            this.entry = entry;
+            this.endTime = endTime;
+        }
+
+        @Override
+        public int compareTo(Expiry that) {
+            return endTime < that.endTime ? -1 : endTime == that.endTime ? 0 : 1;
+        }
+    }
+
+    /**
+     * Adds or renews a registration.
+     * 
+     * @return true if the foreign device was not yet registered.
+     */
+    boolean register(InetSocketAddress address, int timeToLive, long now) {
+        long endTime = now + (timeToLive + 30) * 1000L; // Adds a 30-second grace period, as per J.5.2.3
+
+        // The lookup and the renewal are done under the same lock as expire(), so that an entry cannot expire
+        // between being found and being renewed.
+        synchronized (expiries) {
+            boolean added = false;
+            Entry e = entries.get(address);
+            if (e == null) {
+                e = new Entry(address);
+                entries.put(address, e);
+                added = true;
+            }
+
+            e.timeToLive = timeToLive;
+            e.endTime = endTime;
+            expiries.add(new Expiry(e, endTime));
+            return added;
+        }
+    }
+
+    Entry get(InetSocketAddress address) {
+        return entries.get(address);
+    }
+
+    boolean remove(InetSocketAddress address) {
+        // The expiry is left in the heap, and ignored when it comes up.
+        return entries.remove(address) != null;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    /**
+     * Removes the registrations that have expired.
+     */
+    void expire(long now) {
+        synchronized (expiries) {
+            Expiry next;
+            while ((next = expiries.peek()) != null && next.endTime < now) {
+                expiries.poll();
+                Entry e = next.entry;
+                // Only remove the entry if it was not renewed since, and if it is still the registered one.
+                if (e.endTime == next.endTime && entries.remove(e.address, e))
+                    LOG.debug("Removing expired foreign device: " + e);
+            }
+        }
+    }
+}
@@ -31,11 +31,28 @@ package com.serotonin.bacnet4j.npdu.ip;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+/**
+ * Translation cache between BACnet/IP (and BACnet/IPv6) MACs and socket addresses, because instantiation of an
+ * InetSocketAddress can take up to 10 seconds on Android, and because the translation otherwise happens on every
+ * packet sent and received.
+ * 
+ * The cache is direct-mapped: each direction is a fixed size table in which an address hashes to exactly one slot,
+ * and a new address simply replaces whatever was in its slot. Memory is thereby bounded regardless of how many
+ * distinct devices come and go, lookups are lock free, and a hit does not allocate. Entries are immutable, so they
+ * are safely published to every thread that reads them.
+ */
 public class InetAddrCache {
-    private static final Map<InetAddress, Map<Integer, InetSocketAddress>> socketCache = new HashMap<InetAddress, Map<Integer, InetSocketAddress>>();
+    /**
+     * The number of slots in each direction. Must be a power of 2.
+     */
+    public static final int CAPACITY = 1024;
+
+    private static final AtomicReferenceArray<Entry> byMac = new AtomicReferenceArray<Entry>(CAPACITY);
+    private static final AtomicReferenceArray<Entry> bySocket = new AtomicReferenceArray<Entry>(CAPACITY);
 
     public static InetSocketAddress get(String host, int port) {
         try {
@@ -46,37 +63,99 @@ public class InetAddrCache {
         }
     }
 
+    public static InetSocketAddress get(InetAddress addr, int port) {
+        return lookup(addr, port).socketAddress;
+    }
+
     /**
-     * InetSocketAddress cache, because instantiation can take up to 10 seconds on Android.
-     * ??? Should there be a means of purging this?
-     * 
-     * @param addr
-     * @param port
-     * @return
+     * Returns the socket address for the given MAC, which is the IP address followed by the 2 byte port.
      */
-    public static InetSocketAddress get(InetAddress addr, int port) {
-        Map<Integer, InetSocketAddress> ports = socketCache.get(addr);
-        if (ports == null) {
-            synchronized (socketCache) {
-                ports = socketCache.get(addr);
-                if (ports == null) {
-                    ports = new HashMap<Integer, InetSocketAddress>();
-                    socketCache.put(addr, ports);
-                }
-            }
+    public static InetSocketAddress get(OctetString mac) {
+        int index = index(mac.hashCode());
+        Entry e = byMac.get(index);
+        if (e == null || !e.mac.equals(mac)) {
+            e = new Entry(mac);
+            byMac.set(index, e);
+            bySocket.set(index(hash(e.address, e.port)), e);
         }
+        return e.socketAddress;
+    }
 
-        InetSocketAddress socket = ports.get(port);
-        if (socket == null) {
-            synchronized (ports) {
-                socket = ports.get(port);
-                if (socket == null) {
-                    socket = new InetSocketAddress(addr, port);
-                    ports.put(port, socket);
-                }
-            }
+    /**
+     * Returns the MAC for the given IP address and port.
+     */
+    public static OctetString getMac(InetAddress addr, int port) {
+        return lookup(addr, port).mac;
+    }
+
+    public static OctetString getMac(InetSocketAddress addr) {
+        return lookup(addr.getAddress(), addr.getPort()).mac;
+    }
+
+    /**
+     * Purges all entries.
+     */
+    public static void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            byMac.set(i, null);
+            bySocket.set(i, null);
+        }
+    }
+
+    private static Entry lookup(InetAddress addr, int port) {
+        int index = index(hash(addr, port));
+        Entry e = bySocket.get(index);
+        if (e == null || e.port != port || !e.address.equals(addr)) {
+            e = new Entry(addr, port);
+            bySocket.set(index, e);
+            byMac.set(index(e.mac.hashCode()), e);
+        }
+        return e;
+    }
+
+    private static int hash(InetAddress addr, int port) {
+        return addr.hashCode() * 31 + port;
+    }
+
+    private static int index(int h) {
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & (CAPACITY - 1);
+    }
+
+    private static class Entry {
+        final InetAddress address;
+        final int port;
+        final InetSocketAddress socketAddress;
+        final OctetString mac;
+
+        Entry(InetAddress address, int port) {
+            this.address = address;
+            this.port = port;
+            socketAddress = new InetSocketAddress(address, port);
+
+            byte[] ip = address.getAddress();
+            byte[] b = new byte[ip.length + 2];
+            System.arraycopy(ip, 0, b, 0, ip.length);
+            b[ip.length] = (byte) (port >> 8);
+            b[ip.length + 1] = (byte) port;
+            mac = new OctetString(b);
         }
 
-        return socket;
+        Entry(OctetString mac) {
+            byte[] b = mac.getBytes();
+            byte[] ip = new byte[b.length - 2];
+            System.arraycopy(b, 0, ip, 0, ip.length);
+            try {
+                address = InetAddress.getByAddress(ip);
+            }
+            catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Not an IP mac: " + mac, e);
+            }
+            port = ((b[ip.length] & 0xff) << 8) | (b[ip.length + 1] & 0xff);
+            socketAddress = new InetSocketAddress(address, port);
+            // Copy the mac so that the cache is not affected if the caller reuses its array.
+            this.mac = new OctetString(b.clone());
+        }
     }
 }
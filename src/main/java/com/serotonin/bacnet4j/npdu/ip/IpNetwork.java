@@ -37,10 +37,8 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -78,8 +76,8 @@ public class IpNetwork extends Network implements Runnable {
     private final boolean reuseAddress;
 
     // BBMD support
-    private List<BDTEntry> broadcastDistributionTable = new ArrayList<BDTEntry>();
-    final List<FDTEntry> foreignDeviceTable = new CopyOnWriteArrayList<FDTEntry>();
+    private volatile BroadcastDistributionTable broadcastDistributionTable = BroadcastDistributionTable.EMPTY;
+    final ForeignDeviceTable foreignDeviceTable = new ForeignDeviceTable();
     private FDTMaintenance ftdMaintenance;
 
     // When acting as a foreign device...
@@ -318,38 +316,51 @@ public class IpNetwork extends Network implements Runnable {
     @Override
     protected void sendNPDU(Address recipient, OctetString router, ByteQueue npdu, boolean broadcast,
             boolean expectsReply) throws BACnetException {
-        ByteQueue queue = new ByteQueue();
-
-        // BACnet virtual link layer detail
-        queue.push(BVLC_TYPE);
+        ByteQueue queue = ByteQueue.pooled(npdu.size() + 4);
+        try {
+            // BACnet virtual link layer detail
+            queue.push(BVLC_TYPE);
 
-        InetSocketAddress addr = foreignBBMD;
-        if (addr != null && broadcast) {
-            // Distribute-Broadcast-To-Network. This device is registered as a foreign device in a BBMD, so send the
-            // message as a distribute broadcast to network.
-            queue.push(9);
-        }
-        else {
-            // Original-Unicast-NPDU, or Original-Broadcast-NPDU
-            queue.push(broadcast ? 0xb : 0xa);
+            InetSocketAddress addr = foreignBBMD;
+            if (addr != null && broadcast) {
+                // Distribute-Broadcast-To-Network. This device is registered as a foreign device in a BBMD, so send
+                // the message as a distribute broadcast to network.
+                queue.push(9);
+            }
+            else {
+                // Original-Unicast-NPDU, or Original-Broadcast-NPDU
+                queue.push(broadcast ? 0xb : 0xa);
 
-            OctetString dest = getDestination(recipient, router);
-            addr = IpNetworkUtils.getInetSocketAddress(dest);
-        }
+                OctetString dest = getDestination(recipient, router);
+                addr = IpNetworkUtils.getInetSocketAddress(dest);
+            }
 
-        queue.pushU2B(npdu.size() + 4);
+            queue.pushU2B(npdu.size() + 4);
 
-        // Combine the queues
-        queue.push(npdu);
+            // Combine the queues
+            queue.push(npdu);
 
-        sendPacket(addr, queue.popAll());
+            // Send straight from the pooled array. It was taken with room for all of the content, so it never wraps.
+            byte[] data = queue.array();
+            if (data == null)
+                sendPacket(addr, queue.popAll());
+            else
+                sendPacket(addr, data, queue.arrayOffset(), queue.size());
+        }
+        finally {
+            queue.release();
+        }
     }
 
     private void sendPacket(InetSocketAddress addr, byte[] data) throws BACnetException {
+        sendPacket(addr, data, 0, data.length);
+    }
+
+    private void sendPacket(InetSocketAddress addr, byte[] data, int offset, int length) throws BACnetException {
         try {
-            DatagramPacket packet = new DatagramPacket(data, data.length, addr);
+            DatagramPacket packet = new DatagramPacket(data, offset, length, addr);
             socket.send(packet);
-            bytesOut += data.length;
+            bytesOut += length;
         }
         catch (Exception e) {
             throw new BACnetException(e);
@@ -369,9 +380,10 @@ public class IpNetwork extends Network implements Runnable {
 
                 bytesIn += p.getLength();
                 // Create a new byte queue for the message, because the queue will probably be processed in the 
-                // transport thread.
+                // transport thread. The copy is only as large as the message, so that slices of it that are kept,
+                // such as values left encoded, do not hold on to a whole receive buffer.
                 ByteQueue queue = new ByteQueue(p.getData(), 0, p.getLength());
-                OctetString link = IpNetworkUtils.toOctetString(p.getAddress().getAddress(), p.getPort());
+                OctetString link = IpNetworkUtils.toOctetString(p.getAddress(), p.getPort());
 
                 handleIncomingData(queue, link);
 
@@ -440,7 +452,7 @@ public class IpNetwork extends Network implements Runnable {
                 byte[] address = new byte[6];
                 queue.pop(address);
                 OctetString origin = new OctetString(address);
-                npdu = parseNpduData(queue, origin);
+                npdu = parseNpduData(queue, origin, true);
             }
         }
         else if (function == 0x5)
@@ -461,16 +473,16 @@ public class IpNetwork extends Network implements Runnable {
             boolean ok = distributeBroadcastToNetwork(queue, linkService);
             if (ok)
                 // Only process locally if the foreign device is valid.
-                npdu = parseNpduData(queue, linkService);
+                npdu = parseNpduData(queue, linkService, true);
         }
         else if (function == 0xa)
             // Original-Unicast-NPDU
-            npdu = parseNpduData(queue, linkService);
+            npdu = parseNpduData(queue, linkService, false);
         else if (function == 0xb) {
             // Original-Broadcast-NPDU
             originalBroadcast(queue, linkService);
 
-            npdu = parseNpduData(queue, linkService);
+            npdu = parseNpduData(queue, linkService, true);
         }
         else
             throw new MessageValidationException(
@@ -586,26 +598,6 @@ public class IpNetwork extends Network implements Runnable {
     //
     // BBMD
     //
-    static class BDTEntry {
-        // The IP address of the other BBMD
-        byte[] address;
-        int port;
-
-        // If messages are to be distributed on the remote IP subnet using directed broadcasts, the broadcast 
-        // distribution mask shall be identical to the subnet mask associated with the subnet, i.e., all 1's in the 
-        // network portion of the 4-octet IP address field and all 0's in the host portion. If messages are to be 
-        // distributed on the remote IP subnet by sending the message directly to the remote BBMD, the broadcast 
-        // distribution mask shall be all 1's. The broadcast distribution masks referring to the same IP subnet shall 
-        // be identical in each BDT.
-        byte[] distributionMask;
-    }
-
-    static class FDTEntry {
-        InetSocketAddress address;
-        int timeToLive;
-        long endTime;
-    }
-
     private void writeBDT(ByteQueue queue, OctetString origin) throws BACnetException {
         ByteQueue response = new ByteQueue();
         response.push(BVLC_TYPE);
@@ -613,20 +605,20 @@ public class IpNetwork extends Network implements Runnable {
         response.pushU2B(6); // Length
 
         try {
-            List<BDTEntry> list = new ArrayList<BDTEntry>();
+            List<BroadcastDistributionTable.Entry> list = new ArrayList<BroadcastDistributionTable.Entry>();
 
             while (queue.size() > 0) {
-                BDTEntry e = new BDTEntry();
-                e.address = new byte[4];
-                queue.pop(e.address);
-                e.port = queue.popU2B();
-                e.distributionMask = new byte[4];
-                queue.pop(e.distributionMask);
-                list.add(e);
+                byte[] address = new byte[4];
+                queue.pop(address);
+                int port = queue.popU2B();
+                byte[] distributionMask = new byte[4];
+                queue.pop(distributionMask);
+                list.add(new BroadcastDistributionTable.Entry(address, port, distributionMask));
             }
 
             // Successfully read. Replace the current BDT.
-            broadcastDistributionTable = list;
+            broadcastDistributionTable = new BroadcastDistributionTable(list,
+                    localBindAddress.getAddress().getAddress());
 
             response.pushU2B(0); // Ok
         }
@@ -645,7 +637,7 @@ public class IpNetwork extends Network implements Runnable {
         try {
             ByteQueue list = new ByteQueue();
 
-            for (BDTEntry e : broadcastDistributionTable) {
+            for (BroadcastDistributionTable.Entry e : broadcastDistributionTable.getEntries()) {
                 list.push(e.address);
                 list.pushU2B(e.port);
                 list.push(e.distributionMask);
@@ -667,14 +659,17 @@ public class IpNetwork extends Network implements Runnable {
     }
 
     private void forwardNPDU(ByteQueue partial, OctetString origin) throws BACnetException {
+        BroadcastDistributionTable bdt = broadcastDistributionTable;
+
         // Determine whether to the message should be broadcast locally.
-        boolean doLocalBroadcast = !broadcastDistributionTable.isEmpty();
+        boolean doLocalBroadcast = !bdt.isEmpty();
 
         if (doLocalBroadcast) {
             // 1) If the origin is on the same subnet, do not broadcast locally.
             boolean fromSameSubnet = true;
+            byte[] myAddress = localBindAddress.getAddress().getAddress();
             for (int i = 0; i < 4; i++) {
-                int b1 = localBindAddress.getAddress().getAddress()[i] & subnetMask[i];
+                int b1 = myAddress[i] & subnetMask[i];
                 int b2 = origin.getBytes()[i] & subnetMask[i];
                 if (b1 != b2) {
                     fromSameSubnet = false;
@@ -688,16 +683,7 @@ public class IpNetwork extends Network implements Runnable {
 
         if (doLocalBroadcast) {
             // 2) If the mask of the BDT entry for this BBMD is not all 1s, do not broadcast locally. 
-            byte[] myAddress = localBindAddress.getAddress().getAddress();
-
-            // Find this BDT entry.
-            BDTEntry thisEntry = null;
-            for (BDTEntry e : broadcastDistributionTable) {
-                if (Arrays.equals(e.address, myAddress)) {
-                    thisEntry = e;
-                    break;
-                }
-            }
+            BroadcastDistributionTable.Entry thisEntry = bdt.getThisEntry();
 
             if (thisEntry == null) {
                 // Not found. This is a configuration problem. Don't broadcast.
@@ -717,19 +703,10 @@ public class IpNetwork extends Network implements Runnable {
             return;
 
         // The BVLC type, function and length were removed from this queue, so recreate.
-        ByteQueue fwd = new ByteQueue();
-        fwd.push(BVLC_TYPE);
-        fwd.push(4); // Forward
-        fwd.pushU2B(4 + partial.size()); // Length
-        fwd.push(partial);
-        byte[] toSend = fwd.popAll();
-
-        if (doLocalBroadcast)
-            sendPacket(InetAddrCache.get(broadcastIp, port), toSend);
+        byte[] toSend = createForwardedNPDU(null, partial);
 
         // Forward to all foreign devices.
-        for (FDTEntry fd : foreignDeviceTable)
-            sendPacket(fd.address, toSend);
+        distribute(toSend, doLocalBroadcast, false, null);
     }
 
     private void originalBroadcast(ByteQueue partial, OctetString originStr) throws BACnetException {
@@ -737,31 +714,8 @@ public class IpNetwork extends Network implements Runnable {
         if (foreignDeviceTable.isEmpty() && broadcastDistributionTable.isEmpty())
             return;
 
-        ByteQueue fwd = new ByteQueue();
-        fwd.push(BVLC_TYPE);
-        fwd.push(4); // Forward
-        fwd.pushU2B(10 + partial.size()); // Length
-        fwd.push(originStr.getBytes()); // Origin
-        fwd.push(partial);
-        byte[] toSend = fwd.popAll();
-
-        try {
-            byte[] myAddress = localBindAddress.getAddress().getAddress();
-
-            // Send to all subnets except own
-            for (BDTEntry e : broadcastDistributionTable) {
-                if (Arrays.equals(e.address, myAddress))
-                    continue;
-                sendToBDT(e, toSend);
-            }
-
-            // Forward to all foreign devices.
-            for (FDTEntry fd : foreignDeviceTable)
-                sendPacket(fd.address, toSend);
-        }
-        catch (UnknownHostException e) {
-            throw new BACnetException(e);
-        }
+        // Send to all subnets except own, and to all foreign devices.
+        distribute(createForwardedNPDU(originStr, partial), false, true, null);
     }
 
     private void registerForeignDevice(ByteQueue queue, OctetString originStr) throws BACnetException {
@@ -776,22 +730,9 @@ public class IpNetwork extends Network implements Runnable {
         if (timeToLive < 1)
             response.pushU2B(0x30); // NAK
         else {
-            // Check if the device is already in the list. If so, update its start time. Otherwise, add it.
-            FDTEntry fd = null;
-            synchronized (foreignDeviceTable) {
-                for (FDTEntry e : foreignDeviceTable) {
-                    if (e.address.equals(origin)) {
-                        fd = e;
-                        break;
-                    }
-                }
-
-                if (fd == null) {
-                    // Add the FDT entry
-                    fd = new FDTEntry();
-                    fd.address = origin;
-                    foreignDeviceTable.add(fd);
-
+            // Add the FDT entry, or renew it if the device is already registered.
+            if (foreignDeviceTable.register(origin, timeToLive, currentTimeMillis())) {
+                synchronized (foreignDeviceTable) {
                     if (ftdMaintenance == null) {
                         // Add a job to expire foreign device registrations.
                         ftdMaintenance = new FDTMaintenance();
@@ -801,9 +742,6 @@ public class IpNetwork extends Network implements Runnable {
                 }
             }
 
-            fd.timeToLive = timeToLive;
-            fd.endTime = System.currentTimeMillis() + (timeToLive + 30) * 1000; // Adds a 30-second grace period, as per J.5.2.3
-
             response.pushU2B(0); // Success
         }
 
@@ -814,11 +752,11 @@ public class IpNetwork extends Network implements Runnable {
         ByteQueue response = new ByteQueue();
         response.push(BVLC_TYPE);
 
-        long now = System.currentTimeMillis();
+        long now = currentTimeMillis();
         try {
             ByteQueue list = new ByteQueue();
 
-            for (FDTEntry e : foreignDeviceTable) {
+            for (ForeignDeviceTable.Entry e : foreignDeviceTable.entries()) {
                 pushISA(list, e.address);
                 list.pushU2B(e.timeToLive);
 
@@ -857,22 +795,10 @@ public class IpNetwork extends Network implements Runnable {
         response.push(0); // Response type
         response.pushU2B(6); // Length
 
-        synchronized (foreignDeviceTable) {
-            FDTEntry toDelete = null;
-            for (FDTEntry fd : foreignDeviceTable) {
-                if (Arrays.equals(fd.address.getAddress().getAddress(), addr) && fd.address.getPort() == port) {
-                    toDelete = fd;
-                    break;
-                }
-            }
-
-            if (toDelete != null) {
-                foreignDeviceTable.remove(toDelete);
-                response.pushU2B(0); // Success
-            }
-            else
-                response.pushU2B(0x50); // NAK
-        }
+        if (foreignDeviceTable.remove(IpNetworkUtils.getInetSocketAddress(IpNetworkUtils.toOctetString(addr, port))))
+            response.pushU2B(0); // Success
+        else
+            response.pushU2B(0x50); // NAK
 
         sendPacket(IpNetworkUtils.getInetSocketAddress(origin), response.popAll());
     }
@@ -883,93 +809,94 @@ public class IpNetwork extends Network implements Runnable {
     class FDTMaintenance extends TimerTask {
         @Override
         public void run() {
-            long now = System.currentTimeMillis();
-
-            synchronized (foreignDeviceTable) {
-                List<FDTEntry> toRemove = new ArrayList<FDTEntry>();
-
-                for (FDTEntry e : foreignDeviceTable) {
-                    if (e.endTime < now) {
-                        LOG.debug("Removing expired foreign device: " + e);
-                        toRemove.add(e);
-                    }
-                }
-
-                if (!toRemove.isEmpty())
-                    foreignDeviceTable.removeAll(toRemove);
-            }
+            foreignDeviceTable.expire(currentTimeMillis());
         }
     }
 
     private boolean distributeBroadcastToNetwork(ByteQueue queue, OctetString originStr) throws BACnetException {
         InetSocketAddress origin = IpNetworkUtils.getInetSocketAddress(originStr);
 
-        // Find the foreign device.
-        FDTEntry originFDT = null;
-        for (FDTEntry fd : foreignDeviceTable) {
-            if (fd.address.equals(origin)) {
-                originFDT = fd;
-                break;
-            }
-        }
-
         ByteQueue response = new ByteQueue();
         response.push(BVLC_TYPE);
         response.push(0); // Response type
         response.pushU2B(6); // Length
 
         // If the FDT was not found, send a NAK and return false.
-        if (originFDT == null) {
+        if (foreignDeviceTable.get(origin) == null) {
             response.pushU2B(0x60); // NAK
             sendPacket(origin, response.popAll());
             return false;
         }
 
-        // The FDT was found. Forward the message around.
-        ByteQueue fwd = new ByteQueue();
-        fwd.push(BVLC_TYPE);
-        fwd.push(4); // Forward
-        fwd.pushU2B(10 + queue.size()); // Length
-        fwd.push(originStr.getBytes()); // Origin
-        fwd.push(queue);
-        byte[] toSend = fwd.popAll();
-
-        // Send locally
-        sendPacket(InetAddrCache.get(broadcastIp, port), toSend);
-
-        try {
-            // Send to all BDTs except own
-            byte[] myAddress = localBindAddress.getAddress().getAddress();
-            for (BDTEntry e : broadcastDistributionTable) {
-                if (Arrays.equals(e.address, myAddress))
-                    continue;
-                sendToBDT(e, toSend);
-            }
-        }
-        catch (UnknownHostException e1) {
-            LOG.warn("Error forwarding to BDT", e1);
-        }
-
-        // Forward to all foreign devices except the origin.
-        for (FDTEntry fd : foreignDeviceTable) {
-            if (fd != originFDT)
-                sendPacket(fd.address, toSend);
-        }
+        // The FDT was found. Forward the message around: locally, to all BDTs except own, and to all foreign 
+        // devices except the origin.
+        distribute(createForwardedNPDU(originStr, queue), true, true, origin);
 
         response.pushU2B(0); // Success
         sendPacket(origin, response.popAll());
         return true;
     }
 
-    private void sendToBDT(BDTEntry e, byte[] toSend) throws UnknownHostException, BACnetException {
-        // J.4.5: The B/IP address to which the Forwarded-NPDU message is sent is formed by inverting the broadcast 
-        // distribution mask in the BDT entry and logically ORing it with the BBMD address of the same entry.
-        byte[] target = new byte[4];
-        for (int i = 0; i < 4; i++)
-            target[i] = (byte) (e.address[i] | ~e.distributionMask[i]);
+    /**
+     * Creates a Forwarded-NPDU message.
+     * 
+     * @param origin
+     *            the B/IP address of the originating device, or null if the given data already starts with it.
+     * @param data
+     *            the remaining message, which is left untouched.
+     */
+    private static byte[] createForwardedNPDU(OctetString origin, ByteQueue data) {
+        int headerLength = origin == null ? 4 : 10;
+        byte[] toSend = new byte[headerLength + data.size()];
+        toSend[0] = BVLC_TYPE;
+        toSend[1] = 4; // Forward
+        toSend[2] = (byte) (toSend.length >> 8); // Length
+        toSend[3] = (byte) toSend.length;
+        if (origin != null)
+            System.arraycopy(origin.getBytes(), 0, toSend, 4, 6); // Origin
+        data.peek(toSend, headerLength, data.size());
+        return toSend;
+    }
+
+    /**
+     * Sends the same encoded message to many destinations. A failure to reach one destination does not prevent the
+     * message from being sent to the others.
+     * 
+     * @param toSend
+     *            the message
+     * @param localBroadcast
+     *            whether to broadcast the message on the local subnet
+     * @param peers
+     *            whether to send the message to the other BBMDs in the BDT
+     * @param exclude
+     *            a foreign device to which the message must not be sent, or null
+     */
+    private void distribute(byte[] toSend, boolean localBroadcast, boolean peers, InetSocketAddress exclude) {
+        DatagramPacket packet = new DatagramPacket(toSend, toSend.length);
+
+        if (localBroadcast)
+            distribute(packet, InetAddrCache.get(broadcastIp, port));
+
+        if (peers) {
+            for (InetSocketAddress peer : broadcastDistributionTable.getPeers())
+                distribute(packet, peer);
+        }
+
+        for (ForeignDeviceTable.Entry fd : foreignDeviceTable.entries()) {
+            if (!fd.address.equals(exclude))
+                distribute(packet, fd.address);
+        }
+    }
 
-        InetSocketAddress to = InetAddrCache.get(InetAddress.getByAddress(target), e.port);
-        sendPacket(to, toSend);
+    private void distribute(DatagramPacket packet, InetSocketAddress addr) {
+        try {
+            packet.setSocketAddress(addr);
+            socket.send(packet);
+            bytesOut += packet.getLength();
+        }
+        catch (Exception e) {
+            LOG.warn("Error distributing broadcast to " + addr, e);
+        }
     }
 
     private void pushISA(ByteQueue queue, InetSocketAddress isa) {
@@ -28,6 +28,7 @@
  */
 package com.serotonin.bacnet4j.npdu.ip;
 
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
@@ -69,7 +70,13 @@ public class IpNetworkUtils {
     }
 
     public static OctetString toOctetString(InetSocketAddress addr) {
-        return toOctetString(addr.getAddress().getAddress(), addr.getPort());
+        return toOctetString(addr.getAddress(), addr.getPort());
+    }
+
+    public static OctetString toOctetString(InetAddress addr, int port) {
+        if (!(addr instanceof Inet4Address))
+            throw new IllegalArgumentException("Not an IPv4 address: " + addr);
+        return InetAddrCache.getMac(addr, port);
     }
 
     private static byte[] toBytes(byte[] ipAddress, int port) {
@@ -93,7 +100,9 @@ public class IpNetworkUtils {
     }
 
     public static InetSocketAddress getInetSocketAddress(OctetString mac) {
-        return InetAddrCache.get(getInetAddress(mac), getPort(mac));
+        if (mac.getLength() != 6)
+            throw new IllegalArgumentException("Not an I/P mac");
+        return InetAddrCache.get(mac);
     }
 
     public static int getPort(OctetString mac) {
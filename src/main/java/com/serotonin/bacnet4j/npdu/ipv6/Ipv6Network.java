@@ -33,11 +33,7 @@ import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,8 +60,8 @@ public class Ipv6Network extends Network implements Runnable {
 
     private static final int MESSAGE_LENGTH = 2048;
 
-    // Map of VMAC to IPv6 addresses.
-    private static final Map<OctetString, OctetString> vmacTable = new HashMap<OctetString, OctetString>();
+    // Map of VMAC to IPv6 addresses, and messages waiting for resolutions.
+    private final VmacTable vmacTable = new VmacTable();
 
     private final String multicastAddress;
     private final int port;
@@ -79,8 +75,6 @@ public class Ipv6Network extends Network implements Runnable {
     private long bytesOut;
     private long bytesIn;
 
-    private final List<PendingAddressResolution> pendingAddressResolutions = new CopyOnWriteArrayList<PendingAddressResolution>();
-
     public Ipv6Network(String multicastAddress) {
         this(multicastAddress, DEFAULT_PORT);
     }
@@ -122,6 +116,20 @@ public class Ipv6Network extends Network implements Runnable {
         return localBindAddress;
     }
 
+    /**
+     * Sets the time after which the IPv6 address of a VMAC is resolved again if nothing was heard from it.
+     */
+    public void setVmacTimeToLive(long timeToLive) {
+        vmacTable.setTimeToLive(timeToLive);
+    }
+
+    /**
+     * Sets the time after which messages waiting for an address resolution are dropped.
+     */
+    public void setAddressResolutionTimeout(long timeout) {
+        vmacTable.setResolutionTimeout(timeout);
+    }
+
     @Override
     public long getBytesOut() {
         return bytesOut;
@@ -214,24 +222,19 @@ public class Ipv6Network extends Network implements Runnable {
         if (broadcast)
             sendPacket(Ipv6NetworkUtils.getInetSocketAddress(dest), queue.popAll());
         else {
-            OctetString ipAddr = vmacTable.get(dest);
+            OctetString ipAddr = vmacTable.get(dest, currentTimeMillis());
             if (ipAddr == null) {
-                purgePendingAddressResolutions();
-
                 // The IP address for this destination is not known. Queue the message and send an address 
-                // resolution request.
-                PendingAddressResolution par = new PendingAddressResolution();
-                par.destination = dest;
-                par.data = queue.popAll();
-                pendingAddressResolutions.add(par);
-
-                ByteQueue req = new ByteQueue();
-                req.push(BVLC_TYPE);
-                req.push(0x3); // Function
-                req.pushU2B(0xa); // Length
-                req.push(thisVMAC.getBytes()); // Source
-                req.push(dest.getBytes()); // Destination
-                sendPacket(Ipv6NetworkUtils.getInetSocketAddress(broadcastMAC), req.popAll());
+                // resolution request, unless one is already outstanding.
+                if (vmacTable.await(dest, queue.popAll(), currentTimeMillis())) {
+                    ByteQueue req = new ByteQueue();
+                    req.push(BVLC_TYPE);
+                    req.push(0x3); // Function
+                    req.pushU2B(0xa); // Length
+                    req.push(thisVMAC.getBytes()); // Source
+                    req.push(dest.getBytes()); // Destination
+                    sendPacket(Ipv6NetworkUtils.getInetSocketAddress(broadcastMAC), req.popAll());
+                }
             }
             else
                 // The IP address is known. Send the message now.
@@ -264,7 +267,7 @@ public class Ipv6Network extends Network implements Runnable {
 
                 bytesIn += p.getLength();
                 ByteQueue queue = new ByteQueue(p.getData(), p.getOffset(), p.getLength());
-                OctetString link = Ipv6NetworkUtils.toOctetString(p.getAddress().getAddress(), p.getPort());
+                OctetString link = Ipv6NetworkUtils.toOctetString(p.getAddress(), p.getPort());
 
                 LOG.debug("Received datagram from {}: {}", link, queue);
 
@@ -299,8 +302,9 @@ public class Ipv6Network extends Network implements Runnable {
 
         OctetString sourceVMAC = BACnetUtils.popDeviceId(queue);
 
-        // Add the resolution to the table
-        vmacTable.put(sourceVMAC, fromIpv6);
+        // Add the resolution to the table. Forwarded-NPDUs carry the address of the originator instead.
+        if (function != 0x8)
+            learned(sourceVMAC, fromIpv6);
 
         NPDU npdu = null;
 
@@ -317,7 +321,7 @@ public class Ipv6Network extends Network implements Runnable {
             if (function == 0x1) // Unicast only
                 //destinationVMAC = BACnetUtils.popDeviceId(queue);
                 BACnetUtils.popDeviceId(queue);
-            npdu = parseNpduData(queue, sourceVMAC);
+            npdu = parseNpduData(queue, sourceVMAC, function == 0x2);
         }
         else if (function == 0x3 || function == 0x4) {
             // Address-Resolution or Forwarded-Address-Resolution
@@ -342,21 +346,9 @@ public class Ipv6Network extends Network implements Runnable {
             }
         }
         else if (function == 0x5) {
-            // Address-Resolution-Ack. Check the pending list for matching requests.
+            // Address-Resolution-Ack. The resolution has already been learned from the source above.
             //OctetString destinationVMAC = BACnetUtils.popDeviceId(queue);
             BACnetUtils.popDeviceId(queue);
-
-            List<PendingAddressResolution> matched = null;
-            for (PendingAddressResolution par : pendingAddressResolutions) {
-                if (par.destination.equals(sourceVMAC)) {
-                    if (matched == null)
-                        matched = new ArrayList<PendingAddressResolution>();
-                    matched.add(par);
-                    sendPacket(Ipv6NetworkUtils.getInetSocketAddress(fromIpv6), par.data);
-                }
-            }
-            if (matched != null)
-                pendingAddressResolutions.removeAll(matched);
         }
         else if (function == 0x6) {
             // Virtual-Address-Resolution. Reply with a Virtual-Address-Resolution-Ack
@@ -377,8 +369,8 @@ public class Ipv6Network extends Network implements Runnable {
             // Forwarded-NPDU. Use the address/port as the link service address.
             byte[] addr = new byte[18];
             queue.pop(addr);
-            vmacTable.put(sourceVMAC, new OctetString(addr));
-            npdu = parseNpduData(queue, sourceVMAC);
+            learned(sourceVMAC, new OctetString(addr));
+            npdu = parseNpduData(queue, sourceVMAC, true);
         }
         else
             throw new MessageValidationException("Unhandled BVLC function type: 0x"
@@ -424,23 +416,21 @@ public class Ipv6Network extends Network implements Runnable {
 		return new Address(getLocalNetworkNumber(), thisVMAC);
 	}
 
-	private void purgePendingAddressResolutions() {
-        long now = System.currentTimeMillis();
-        List<PendingAddressResolution> toRemove = null;
-        for (PendingAddressResolution par : pendingAddressResolutions) {
-            if (par.deadline < now) {
-                if (toRemove == null)
-                    toRemove = new ArrayList<PendingAddressResolution>();
-                toRemove.add(par);
+    /**
+     * Records the address of the VMAC, and sends the messages that were waiting for it.
+     */
+    private void learned(OctetString vmac, OctetString ipv6) {
+        List<byte[]> waiting = vmacTable.learned(vmac, ipv6, currentTimeMillis());
+        if (waiting != null) {
+            InetSocketAddress addr = Ipv6NetworkUtils.getInetSocketAddress(ipv6);
+            for (byte[] data : waiting) {
+                try {
+                    sendPacket(addr, data);
+                }
+                catch (BACnetException e) {
+                    LOG.warn("Error sending message after address resolution of {}", vmac, e);
+                }
             }
         }
-        if (toRemove != null)
-            pendingAddressResolutions.removeAll(toRemove);
-    }
-
-    class PendingAddressResolution {
-        OctetString destination;
-        byte[] data;
-        final long deadline = System.currentTimeMillis() + 1000 * 10;
     }
 }
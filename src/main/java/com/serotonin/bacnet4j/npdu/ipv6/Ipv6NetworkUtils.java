@@ -28,6 +28,7 @@
  */
 package com.serotonin.bacnet4j.npdu.ipv6;
 
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -53,8 +54,16 @@ public class Ipv6NetworkUtils {
         return new Address(networkNumber, toOctetString(addr, port));
     }
 
+    public static OctetString toOctetString(InetAddress addr, int port) {
+        if (!(addr instanceof Inet6Address))
+            throw new IllegalArgumentException("Not an IPv6 address: " + addr);
+        return InetAddrCache.getMac(addr, port);
+    }
+
     public static InetSocketAddress getInetSocketAddress(OctetString mac) {
-        return InetAddrCache.get(getInetAddress(mac), getPort(mac));
+        if (mac.getLength() != 18)
+            throw new IllegalArgumentException("Not an I/Pv6 mac");
+        return InetAddrCache.get(mac);
     }
 
     public static InetAddress getInetAddress(OctetString mac) {
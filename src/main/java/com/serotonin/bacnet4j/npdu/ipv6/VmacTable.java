@@ -0,0 +1,191 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.ipv6;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+/**
+ * Resolutions of virtual MAC addresses to IPv6 addresses, and the messages waiting for a resolution.
+ * 
+ * Resolutions expire when nothing was heard from the VMAC for their time to live. Messages to a VMAC that is not
+ * resolved are grouped per VMAC, so that there is only one outstanding address resolution request per VMAC, and
+ * the messages are dropped if no resolution arrives before its deadline. Messages beyond the limit per VMAC are
+ * refused.
+ */
+class VmacTable {
+    public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+    public static final long DEFAULT_RESOLUTION_TIMEOUT = 10 * 1000;
+    static final int MAX_PENDING_PER_VMAC = 100;
+    private static final long PURGE_INTERVAL = 1000;
+
+    private final Map<OctetString, Resolution> resolutions = new ConcurrentHashMap<OctetString, Resolution>();
+    private final ConcurrentHashMap<OctetString, Pending> pending = new ConcurrentHashMap<OctetString, Pending>();
+    private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private volatile long resolutionTimeout = DEFAULT_RESOLUTION_TIMEOUT;
+    private volatile long nextPurge;
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public void setResolutionTimeout(long resolutionTimeout) {
+        this.resolutionTimeout = resolutionTimeout;
+    }
+
+    /**
+     * @return Returns the IPv6 address of the VMAC, or null if it is not known.
+     */
+    OctetString get(OctetString vmac, long now) {
+        Resolution r = resolutions.get(vmac);
+        if (r == null)
+            return null;
+        if (r.expiry < now) {
+            resolutions.remove(vmac);
+            return null;
+        }
+        return r.address;
+    }
+
+    /**
+     * Records that the VMAC was heard from at the given IPv6 address.
+     * 
+     * @return Returns the messages that were waiting for the resolution, or null if there were none.
+     */
+    List<byte[]> learned(OctetString vmac, OctetString address, long now) {
+        Resolution r = resolutions.get(vmac);
+        if (r != null && r.address.equals(address))
+            r.expiry = now + timeToLive;
+        else
+            resolutions.put(vmac, new Resolution(address, now + timeToLive));
+
+        if (pending.isEmpty())
+            return null;
+        Pending p = pending.remove(vmac);
+        if (p == null)
+            return null;
+        synchronized (p) {
+            p.closed = true;
+            return p.messages;
+        }
+    }
+
+    /**
+     * Queues the message until the VMAC is resolved.
+     * 
+     * @return Returns true if an address resolution request needs to be sent, i.e. if there is not already one
+     *         outstanding.
+     * @throws BACnetException
+     *             if too many messages are already waiting for the VMAC
+     */
+    boolean await(OctetString vmac, byte[] message, long now) throws BACnetException {
+        if (now >= nextPurge)
+            purge(now);
+
+        while (true) {
+            Pending p = pending.get(vmac);
+            if (p == null) {
+                p = new Pending(now + resolutionTimeout);
+                p.messages.add(message);
+                if (pending.putIfAbsent(vmac, p) == null)
+                    return true;
+                continue;
+            }
+
+            synchronized (p) {
+                if (p.closed)
+                    // Resolved or purged in the meantime. Start over.
+                    continue;
+                if (p.deadline < now) {
+                    // The previous request went unanswered. Drop what was waiting and ask again.
+                    p.messages.clear();
+                    p.deadline = now + resolutionTimeout;
+                    p.messages.add(message);
+                    return true;
+                }
+                if (p.messages.size() >= MAX_PENDING_PER_VMAC)
+                    throw new BACnetException("Address of VMAC " + vmac + " is being resolved and "
+                            + MAX_PENDING_PER_VMAC + " messages are already waiting for it");
+                p.messages.add(message);
+                return false;
+            }
+        }
+    }
+
+    void purge(long now) {
+        nextPurge = now + PURGE_INTERVAL;
+
+        Iterator<Pending> pendingIter = pending.values().iterator();
+        while (pendingIter.hasNext()) {
+            Pending p = pendingIter.next();
+            synchronized (p) {
+                if (p.deadline < now) {
+                    p.closed = true;
+                    pendingIter.remove();
+                }
+            }
+        }
+
+        Iterator<Resolution> resolutionIter = resolutions.values().iterator();
+        while (resolutionIter.hasNext()) {
+            if (resolutionIter.next().expiry < now)
+                resolutionIter.remove();
+        }
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    private static class Resolution {
+        final OctetString address;
+        volatile long expiry;
+
+        Resolution(OctetString address, long expiry) {
+            this.address = address;
+            this.expiry = expiry;
+        }
+    }
+
+    private static class Pending {
+        final List<byte[]> messages = new ArrayList<byte[]>();
+        long deadline;
+        // Set once the entry has been removed from the table.
+        boolean closed;
+
+        Pending(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
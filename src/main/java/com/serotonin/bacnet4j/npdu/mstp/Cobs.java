@@ -0,0 +1,163 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+/**
+ * Consistent Overhead Byte Stuffing of the data of extended MS/TP frames (frame types 32 to 127). The client data
+ * and its CRC-32K are encoded separately, and every encoded octet is XORed with 0x55 so that encoded data does not
+ * contain preamble sequences. As in Annex T, the CRC-32K is calculated over the encoded and masked data octets, not
+ * over the client data.
+ */
+public class Cobs {
+    private static final int MASK = 0x55;
+
+    /**
+     * The length of an encoded CRC-32K.
+     */
+    private static final int ENCODED_CRC_LENGTH = 5;
+
+    /**
+     * @return the maximum encoded frame length, including the encoded CRC, of the given length of client data
+     */
+    public static int maxEncodedLength(int length) {
+        return length + length / 254 + 1 + ENCODED_CRC_LENGTH;
+    }
+
+    /**
+     * Encodes the client data of a frame and appends its encoded CRC-32K.
+     */
+    public static byte[] encodeFrame(byte[] data) {
+        int length = data == null ? 0 : data.length;
+        byte[] buf = new byte[maxEncodedLength(length) + 1];
+
+        int pos = encode(data, 0, length, buf, 0);
+
+        int crc = ExtendedDataCRC.calculate(buf, 0, pos);
+        byte[] crcBytes = { (byte) crc, (byte) (crc >> 8), (byte) (crc >> 16), (byte) (crc >> 24) };
+        pos += encode(crcBytes, 0, 4, buf, pos);
+
+        byte[] result = new byte[pos];
+        System.arraycopy(buf, 0, result, 0, pos);
+        return result;
+    }
+
+    /**
+     * Decodes the data of a received frame and verifies its CRC-32K.
+     * 
+     * @return the client data, or null if the encoding or the CRC is invalid.
+     */
+    public static byte[] decodeFrame(byte[] encoded, int offset, int length) {
+        int dataLength = length - ENCODED_CRC_LENGTH;
+        if (dataLength < 1)
+            return null;
+
+        // Check the CRC against the encoded data as received before decoding it.
+        byte[] crcBytes = new byte[ENCODED_CRC_LENGTH];
+        if (decode(encoded, offset + dataLength, ENCODED_CRC_LENGTH, crcBytes) != 4)
+            return null;
+
+        ExtendedDataCRC crc = new ExtendedDataCRC();
+        crc.accumulate(encoded, offset, dataLength);
+        crc.accumulate(crcBytes, 0, 4);
+        if (!crc.isOk())
+            return null;
+
+        byte[] buf = new byte[dataLength];
+        int decoded = decode(encoded, offset, dataLength, buf);
+        if (decoded == -1)
+            return null;
+
+        if (decoded == buf.length)
+            return buf;
+        byte[] data = new byte[decoded];
+        System.arraycopy(buf, 0, data, 0, decoded);
+        return data;
+    }
+
+    /**
+     * @return the number of octets written to the destination.
+     */
+    static int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+        int codeIndex = dstOffset;
+        int write = dstOffset + 1;
+        int code = 1;
+        int lastCode = 0;
+
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = src[i];
+            if (b != 0) {
+                // Copy non-zero octets and count them in the code octet.
+                dst[write++] = (byte) (b ^ MASK);
+                code++;
+                if (code != 255)
+                    continue;
+            }
+
+            // A zero octet, or a block of 254 non-zero octets, ends the block.
+            lastCode = code;
+            dst[codeIndex] = (byte) (code ^ MASK);
+            codeIndex = write++;
+            code = 1;
+        }
+
+        if (lastCode == 255 && code == 1)
+            // The data ended with a full block, which has no implicit zero.
+            write--;
+        else
+            dst[codeIndex] = (byte) (code ^ MASK);
+
+        return write - dstOffset;
+    }
+
+    /**
+     * @return the number of octets written to the destination, or -1 if the encoding is invalid.
+     */
+    static int decode(byte[] src, int offset, int length, byte[] dst) {
+        int read = offset;
+        int end = offset + length;
+        int write = 0;
+
+        while (read < end) {
+            int code = (src[read] ^ MASK) & 0xff;
+            int lastCode = code;
+            if (code == 0 || read + code > end)
+                return -1;
+            read++;
+
+            while (--code > 0)
+                dst[write++] = (byte) (src[read++] ^ MASK);
+
+            // Restore the implicit zero at the end of each block, except after a full block or at the end of data.
+            if (lastCode != 255 && read < end)
+                dst[write++] = 0;
+        }
+
+        return write;
+    }
+}
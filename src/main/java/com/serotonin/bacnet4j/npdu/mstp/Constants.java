@@ -45,6 +45,17 @@ public class Constants {
      */
     public static final int MAX_MASTER = 127;
 
+    /**
+     * The maximum length of the data of a frame that is not COBS encoded: 501 octets.
+     */
+    public static final int MAX_DATA_LENGTH = 501;
+
+    /**
+     * The maximum length of the client data of a COBS encoded frame: 1497 octets, which is enough for an NPDU that
+     * contains a 1476 octet APDU.
+     */
+    public static final int MAX_EXTENDED_DATA_LENGTH = 1497;
+
     /**
      * The number of tokens received or used before a Poll For Master cycle is executed: 50.
      */
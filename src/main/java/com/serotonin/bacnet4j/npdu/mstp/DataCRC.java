@@ -30,6 +30,12 @@ package com.serotonin.bacnet4j.npdu.mstp;
 
 public class DataCRC {
     public static final int CHECK_VALUE = 0xF0B8;
+    private static final int[] TABLE = new int[256];
+    static {
+        for (int i = 0; i < 256; i++)
+            TABLE[i] = calcDataCRC(i, 0);
+    }
+
     private int value = 0xffff;
 
     public void reset() {
@@ -37,7 +43,11 @@ public class DataCRC {
     }
 
     public void accumulate(int data) {
-        value = calcDataCRC(data, value);
+        value = (value >> 8) ^ TABLE[(value ^ data) & 0xff];
+    }
+
+    public void accumulate(byte[] data, int offset, int length) {
+        value = accumulate(value, data, offset, length);
     }
 
     public void accumulate(byte data) {
@@ -49,13 +59,28 @@ public class DataCRC {
     }
 
     public int getCrc(Frame frame) {
-        reset();
-        for (byte b : frame.getData())
-            accumulate(b);
-        return onesComplement(value);
+        byte[] data = frame.getData();
+        return calculate(data, 0, data.length);
+    }
+
+    /**
+     * @return Returns the CRC to send for the given data.
+     */
+    public static int calculate(byte[] data, int offset, int length) {
+        return onesComplement(accumulate(0xffff, data, offset, length));
+    }
+
+    private static int accumulate(int crc, byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++)
+            crc = (crc >> 8) ^ TABLE[(crc ^ data[i]) & 0xff];
+        return crc;
     }
 
-    private static int calcDataCRC(int dataValue, int crcValue) {
+    /**
+     * Bitwise calculation, from which the table is built.
+     */
+    static int calcDataCRC(int dataValue, int crcValue) {
         int crcLow = (crcValue & 0xff) ^ dataValue; /* XOR C7..C0 with D7..D0 */
         /* Exclusive OR the terms in the table (top down) */
         int crc = (crcValue >> 8) ^ (crcLow << 8) ^ (crcLow << 3) ^ (crcLow << 12) ^ (crcLow >> 4) ^ (crcLow & 0x0f)
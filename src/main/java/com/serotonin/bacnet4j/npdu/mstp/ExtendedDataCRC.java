@@ -0,0 +1,76 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+/**
+ * The 32-bit CRC-32K (Koopman) used to protect the data of COBS encoded frames.
+ */
+public class ExtendedDataCRC {
+    /**
+     * The value that the CRC accumulates to over valid data followed by its CRC.
+     */
+    public static final int CHECK_VALUE = 0x0843323B;
+    private static final int POLYNOMIAL = 0xEB31D82E;
+    private static final int[] TABLE = new int[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int b = 0; b < 8; b++)
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            TABLE[i] = crc;
+        }
+    }
+
+    private int value = 0xffffffff;
+
+    public void reset() {
+        value = 0xffffffff;
+    }
+
+    public void accumulate(byte[] data, int offset, int length) {
+        value = accumulate(value, data, offset, length);
+    }
+
+    public boolean isOk() {
+        return value == CHECK_VALUE;
+    }
+
+    /**
+     * @return Returns the CRC to send for the given data. It is sent least significant octet first.
+     */
+    public static int calculate(byte[] data, int offset, int length) {
+        return ~accumulate(0xffffffff, data, offset, length);
+    }
+
+    private static int accumulate(int crc, byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++)
+            crc = (crc >>> 8) ^ TABLE[(crc ^ data[i]) & 0xff];
+        return crc;
+    }
+}
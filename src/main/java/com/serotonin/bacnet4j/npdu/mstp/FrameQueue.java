@@ -0,0 +1,131 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded queue of frames that a master node sends while it holds the token. There is one lane for each network
+ * priority, and frames are taken from the most urgent lane first, so that life safety messages do not wait behind bulk
+ * traffic. Frames are added by transport threads without locking, and taken by the node thread.
+ */
+class FrameQueue {
+    static final int DEFAULT_CAPACITY = 1000;
+    private static final int LANES = 4;
+
+    private final Queue<QueuedFrame> lanes[];
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger highWater = new AtomicInteger();
+    private volatile int capacity = DEFAULT_CAPACITY;
+
+    @SuppressWarnings("unchecked")
+    FrameQueue() {
+        lanes = new Queue[LANES];
+        for (int i = 0; i < LANES; i++)
+            lanes[i] = new ConcurrentLinkedQueue<QueuedFrame>();
+    }
+
+    void setCapacity(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Cannot be less than 1");
+        this.capacity = capacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return false if the queue is full and the frame was not added.
+     */
+    boolean offer(Frame frame, long now) {
+        int s = size.incrementAndGet();
+        if (s > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+
+        lanes[priority(frame)].add(new QueuedFrame(frame, now));
+
+        int hw;
+        while (s > (hw = highWater.get()) && !highWater.compareAndSet(hw, s))
+            ;
+        return true;
+    }
+
+    /**
+     * @return the most urgent frame, or null if the queue is empty.
+     */
+    QueuedFrame poll() {
+        for (int i = LANES - 1; i >= 0; i--) {
+            QueuedFrame qf = lanes[i].poll();
+            if (qf != null) {
+                size.decrementAndGet();
+                return qf;
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the largest size of the queue since the last reset.
+     */
+    int getHighWater() {
+        return highWater.get();
+    }
+
+    void resetHighWater() {
+        highWater.set(size.get());
+    }
+
+    /**
+     * @return the network priority from the NPCI of the frame's data, or normal if the frame has no NPDU.
+     */
+    static int priority(Frame frame) {
+        byte[] data = frame.getData();
+        if (data == null || data.length < 2 || data[0] != 1)
+            return 0;
+        return data[1] & 0x3;
+    }
+
+    static class QueuedFrame {
+        final Frame frame;
+        final long queued;
+
+        QueuedFrame(Frame frame, long queued) {
+            this.frame = frame;
+            this.queued = queued;
+        }
+    }
+}
@@ -70,6 +70,8 @@ public enum FrameType {
     bacnetDataExpectingReply(5), //
     bacnetDataNotExpectingReply(6), //
     replyPostponed(7), //
+    bacnetExtendedDataExpectingReply(32), //
+    bacnetExtendedDataNotExpectingReply(33), //
     ;
 
     public final byte id;
@@ -89,4 +91,19 @@ public enum FrameType {
     public boolean oneOf(FrameType... types) {
         return ArrayUtils.contains(types, this);
     }
+
+    /**
+     * @return whether the data of frames of this type is COBS encoded
+     */
+    public boolean isExtended() {
+        return isExtended(id);
+    }
+
+    /**
+     * @return whether the data of frames of the given type is COBS encoded. This is true of frame types 32 to 127,
+     *         including those that are not known to this implementation.
+     */
+    public static boolean isExtended(byte id) {
+        return id >= 32 && id <= 127;
+    }
 }
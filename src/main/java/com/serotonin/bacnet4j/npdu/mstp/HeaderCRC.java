@@ -30,6 +30,12 @@ package com.serotonin.bacnet4j.npdu.mstp;
 
 public class HeaderCRC {
     public static final byte CHECK_VALUE = 0x55;
+    private static final int[] TABLE = new int[256];
+    static {
+        for (int i = 0; i < 256; i++)
+            TABLE[i] = calcHeaderCRC(i, 0);
+    }
+
     private int value = 0xff;
 
     public void reset() {
@@ -37,7 +43,11 @@ public class HeaderCRC {
     }
 
     public void accumulate(int data) {
-        value = calcHeaderCRC(data, value);
+        value = TABLE[(value ^ data) & 0xff];
+    }
+
+    public void accumulate(byte[] data, int offset, int length) {
+        value = accumulate(value, data, offset, length);
     }
 
     public void accumulate(byte data) {
@@ -49,15 +59,39 @@ public class HeaderCRC {
     }
 
     public int getCrc(Frame frame) {
-        reset();
-        accumulate(frame.getFrameType().id);
-        accumulate(frame.getDestinationAddress());
-        accumulate(frame.getSourceAddress());
-        accumulate((frame.getLength() >> 8) & 0xff);
-        accumulate(frame.getLength() & 0xff);
-        return onesComplement(value);
+        return getCrc(frame, frame.getLength());
+    }
+
+    /**
+     * @return Returns the CRC of the frame's header with the given value in the length field. The length field of
+     *         extended frames holds the length of the encoded data rather than that of the frame's data.
+     */
+    public int getCrc(Frame frame, int length) {
+        int crc = TABLE[(0xff ^ frame.getFrameType().id) & 0xff];
+        crc = TABLE[(crc ^ frame.getDestinationAddress()) & 0xff];
+        crc = TABLE[(crc ^ frame.getSourceAddress()) & 0xff];
+        crc = TABLE[(crc ^ (length >> 8)) & 0xff];
+        crc = TABLE[(crc ^ length) & 0xff];
+        return onesComplement(crc);
+    }
+
+    /**
+     * @return Returns the CRC to send for the given header octets.
+     */
+    public static int calculate(byte[] data, int offset, int length) {
+        return onesComplement(accumulate(0xff, data, offset, length));
+    }
+
+    private static int accumulate(int crc, byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++)
+            crc = TABLE[(crc ^ data[i]) & 0xff];
+        return crc;
     }
 
+    /**
+     * Bitwise calculation, from which the table is built.
+     */
     public static int calcHeaderCRC(int dataValue, int crcValue) {
         int crc = crcValue ^ dataValue;
         /* Exclusive OR the terms in the table (top down) */
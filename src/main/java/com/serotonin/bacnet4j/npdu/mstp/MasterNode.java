@@ -30,8 +30,6 @@ package com.serotonin.bacnet4j.npdu.mstp;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,7 +43,7 @@ public class MasterNode extends MstpNode {
         idle, useToken, waitForReply, doneWithToken, passToken, noToken, pollForMaster, answerDataRequest
     }
 
-    private final List<Frame> framesToSend = new ArrayList<Frame>();
+    private final FrameQueue framesToSend = new FrameQueue();
 
     /**
      * The MAC address of the node to which This Station passes the token. If the Next
@@ -78,11 +76,56 @@ public class MasterNode extends MstpNode {
 
     private int maxInfoFrames = Constants.MAX_INFO_FRAMES;
 
+    /**
+     * The highest address that this node polls for other masters.
+     */
+    private int maxMaster = Constants.MAX_MASTER;
+
+    /**
+     * The number of information frames that this node may send during the current token hold.
+     */
+    private int frameLimit = Constants.MAX_INFO_FRAMES;
+
+    // Adaptive mode. The node learns which masters are active from the headers of the tokens and polls that it hears,
+    // and only polls the addresses up to the highest active master, except for a full sweep up to maxMaster once
+    // every fullSweepInterval. The number of frames sent per token hold follows the depth of the queue, from
+    // maxInfoFrames up to maxAdaptiveInfoFrames.
+    private static final long ACTIVE_MASTER_TIMEOUT = 60000;
+    private boolean adaptive;
+    private int maxAdaptiveInfoFrames = 8;
+    private long fullSweepInterval = 300000;
+    private final long[] masterLastSeen = new long[Constants.MAX_MASTER + 1];
+    private boolean fullSweep = true;
+    private long lastFullSweep;
+
     private MasterNodeState state;
 
     private long replyDeadline;
     private Frame replyFrame;
 
+    // Statistics
+    private long tokensReceived;
+    private long lastTokenReceived;
+    private long lastTokenRotationTime;
+    private long maxTokenRotationTime;
+    private long totalTokenRotationTime;
+    private long tokenRotations;
+    private int framesThisHold;
+    private int maxFramesPerToken;
+    private long dataFramesSent;
+    private long totalQueueWaitTime;
+    private long maxQueueWaitTime;
+    private long pollForMasterSent;
+    private long pollForMasterTime;
+    private MasterNodeState lastState;
+    private long stateEntered;
+    private long tokenRetries;
+    private long successorsLost;
+    private long tokensGenerated;
+    private long replyTimeouts;
+    private long postponesReceived;
+    private long postponesSent;
+
     //    private long lastTokenPossession;
 
     public MasterNode(SerialPortWrapper wrapper, byte thisStation, int retryCount) throws IllegalArgumentException {
@@ -115,34 +158,277 @@ public class MasterNode extends MstpNode {
      *            the maxInfoFrames to set
      */
     public void setMaxInfoFrames(int maxInfoFrames) {
-        if (this.maxInfoFrames < 1)
+        if (maxInfoFrames < 1)
             throw new IllegalArgumentException("Cannot be less than 1");
         this.maxInfoFrames = maxInfoFrames;
     }
 
-    public void queueFrame(FrameType type, byte destination, byte[] data) {
+    /**
+     * @param maxMaster
+     *            the highest address that this node polls for other masters. Cannot be less than this station or
+     *            greater than 127.
+     */
+    public void setMaxMaster(int maxMaster) {
+        if (maxMaster < (thisStation & 0xff) || maxMaster > Constants.MAX_MASTER)
+            throw new IllegalArgumentException("maxMaster must be between thisStation and " + Constants.MAX_MASTER);
+        this.maxMaster = maxMaster;
+    }
+
+    public int getMaxMaster() {
+        return maxMaster;
+    }
+
+    /**
+     * In adaptive mode the node narrows its Poll For Master sweeps to the highest master that it has recently heard
+     * on the line, and sends up to maxAdaptiveInfoFrames frames per token hold when frames are queued. The configured
+     * maxMaster is still swept in full once every full sweep interval, so that new masters are found.
+     * 
+     * @param adaptive
+     *            whether to use adaptive mode
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @param maxAdaptiveInfoFrames
+     *            the most frames that the node sends per token hold in adaptive mode
+     */
+    public void setMaxAdaptiveInfoFrames(int maxAdaptiveInfoFrames) {
+        if (maxAdaptiveInfoFrames < 1)
+            throw new IllegalArgumentException("Cannot be less than 1");
+        this.maxAdaptiveInfoFrames = maxAdaptiveInfoFrames;
+    }
+
+    /**
+     * @param fullSweepInterval
+     *            the time in ms between Poll For Master sweeps of the full address range in adaptive mode
+     */
+    public void setFullSweepInterval(long fullSweepInterval) {
+        if (fullSweepInterval < 1)
+            throw new IllegalArgumentException("Cannot be less than 1");
+        this.fullSweepInterval = fullSweepInterval;
+    }
+
+    /**
+     * @return the highest master address, including this station, that has been heard recently on the line
+     */
+    public int getHighestActiveMaster() {
+        long now = timeSource.currentTimeMillis();
+        int ts = thisStation & 0xff;
+        for (int i = maxMaster; i > ts; i--) {
+            if (masterLastSeen[i] != 0 && now - masterLastSeen[i] < ACTIVE_MASTER_TIMEOUT)
+                return i;
+        }
+        return ts;
+    }
+
+    /**
+     * Queues a frame to be sent when this node holds the token. Frames are sent in order of the network priority
+     * of their NPDU.
+     * 
+     * @return false if the queue is full and the frame was dropped
+     */
+    public boolean queueFrame(FrameType type, byte destination, byte[] data) {
         if (!type.oneOf(FrameType.bacnetDataExpectingReply, FrameType.bacnetDataNotExpectingReply,
+                FrameType.bacnetExtendedDataExpectingReply, FrameType.bacnetExtendedDataNotExpectingReply,
                 FrameType.testRequest))
             throw new RuntimeException("Cannot send frame of type: " + type);
 
         Frame frame = new Frame(type, destination, thisStation, data);
-        synchronized (framesToSend) {
-            framesToSend.add(frame);
-        }
+        return framesToSend.offer(frame, timeSource.currentTimeMillis());
+    }
+
+    /**
+     * @return the number of frames waiting for the token to be sent
+     */
+    public int getFrameQueueSize() {
+        return framesToSend.size();
+    }
+
+    /**
+     * @param capacity
+     *            the most frames that can wait for the token. Defaults to 1000.
+     */
+    public void setFrameQueueCapacity(int capacity) {
+        framesToSend.setCapacity(capacity);
+    }
+
+    public int getFrameQueueCapacity() {
+        return framesToSend.getCapacity();
     }
 
     @Override
-    public void setReplyFrame(FrameType type, byte destination, byte[] data) {
+    public boolean setReplyFrame(FrameType type, byte destination, byte[] data) {
         synchronized (this) {
-            if (state == MasterNodeState.answerDataRequest)
+            if (state == MasterNodeState.answerDataRequest) {
                 // If there is still time to reply immediately...
                 replyFrame = new Frame(type, destination, thisStation, data);
-            else
-                // The response has already exceeded the timeout, so just queue it.
-                queueFrame(type, destination, data);
+                wakeUp();
+                return true;
+            }
+            // The response has already exceeded the timeout, so it is queued unless the queue is full.
+            return queueFrame(type, destination, data);
         }
     }
 
+    //
+    //
+    // Statistics
+    //
+    /**
+     * @return the number of times that this node has received the token
+     */
+    public long getTokensReceived() {
+        return tokensReceived;
+    }
+
+    /**
+     * @return the time in ms between the two most recent receptions of the token
+     */
+    public long getLastTokenRotationTime() {
+        return lastTokenRotationTime;
+    }
+
+    /**
+     * @return the longest time in ms between two consecutive receptions of the token
+     */
+    public long getMaxTokenRotationTime() {
+        return maxTokenRotationTime;
+    }
+
+    /**
+     * @return the average time in ms between two consecutive receptions of the token
+     */
+    public long getAverageTokenRotationTime() {
+        return tokenRotations == 0 ? 0 : totalTokenRotationTime / tokenRotations;
+    }
+
+    /**
+     * @return the number of data and test frames that this node has sent from its queue
+     */
+    public long getDataFramesSent() {
+        return dataFramesSent;
+    }
+
+    /**
+     * @return the largest number of queued frames that this node has sent during a single token hold
+     */
+    public int getMaxFramesPerToken() {
+        return maxFramesPerToken;
+    }
+
+    /**
+     * @return the average number of queued frames that this node has sent per token hold
+     */
+    public double getAverageFramesPerToken() {
+        return tokensReceived == 0 ? 0 : (double) dataFramesSent / tokensReceived;
+    }
+
+    /**
+     * @return the largest number of frames that have waited for the token at the same time
+     */
+    public int getMaxFrameQueueSize() {
+        return framesToSend.getHighWater();
+    }
+
+    /**
+     * @return the longest time in ms that a frame has waited in the queue for the token
+     */
+    public long getMaxQueueWaitTime() {
+        return maxQueueWaitTime;
+    }
+
+    /**
+     * @return the average time in ms that frames have waited in the queue for the token
+     */
+    public long getAverageQueueWaitTime() {
+        return dataFramesSent == 0 ? 0 : totalQueueWaitTime / dataFramesSent;
+    }
+
+    /**
+     * @return the number of Poll For Master frames that this node has sent
+     */
+    public long getPollForMasterSent() {
+        return pollForMasterSent;
+    }
+
+    /**
+     * @return the total time in ms that this node has spent waiting for replies to Poll For Master frames
+     */
+    public long getPollForMasterTime() {
+        return pollForMasterTime;
+    }
+
+    /**
+     * @return the number of times that the token had to be sent again because the successor did not use it
+     */
+    public long getTokenRetries() {
+        return tokenRetries;
+    }
+
+    /**
+     * @return the number of times that the successor stopped responding and a new one had to be searched for
+     */
+    public long getSuccessorsLost() {
+        return successorsLost;
+    }
+
+    /**
+     * @return the number of times that this node has generated a new token after the token was lost
+     */
+    public long getTokensGenerated() {
+        return tokensGenerated;
+    }
+
+    /**
+     * @return the number of requests sent by this node that received no reply within the reply timeout
+     */
+    public long getReplyTimeouts() {
+        return replyTimeouts;
+    }
+
+    /**
+     * @return the number of requests sent by this node to which the peer answered with Reply Postponed
+     */
+    public long getPostponesReceived() {
+        return postponesReceived;
+    }
+
+    /**
+     * @return the number of requests received by this node that it answered with Reply Postponed
+     */
+    public long getPostponesSent() {
+        return postponesSent;
+    }
+
+    @Override
+    public void resetStatistics() {
+        super.resetStatistics();
+        tokensReceived = 0;
+        lastTokenRotationTime = 0;
+        maxTokenRotationTime = 0;
+        totalTokenRotationTime = 0;
+        tokenRotations = 0;
+        maxFramesPerToken = 0;
+        dataFramesSent = 0;
+        framesToSend.resetHighWater();
+        totalQueueWaitTime = 0;
+        maxQueueWaitTime = 0;
+        pollForMasterSent = 0;
+        pollForMasterTime = 0;
+        tokenRetries = 0;
+        successorsLost = 0;
+        tokensGenerated = 0;
+        replyTimeouts = 0;
+        postponesReceived = 0;
+        postponesSent = 0;
+    }
+
     @Override
     protected void doCycle() {
         readFrame();
@@ -170,6 +456,29 @@ public class MasterNode extends MstpNode {
 
         if (state == MasterNodeState.answerDataRequest)
             answerDataRequest();
+
+        if (state != lastState) {
+            long now = timeSource.currentTimeMillis();
+            if (lastState == MasterNodeState.pollForMaster)
+                pollForMasterTime += now - stateEntered;
+            lastState = state;
+            stateEntered = now;
+        }
+    }
+
+    @Override
+    protected void sendFrame(Frame frame) {
+        if (frame.getFrameType() == FrameType.pollForMaster)
+            pollForMasterSent++;
+        super.sendFrame(frame);
+    }
+
+    @Override
+    protected long getIdleTimeout() {
+        if (state == MasterNodeState.idle)
+            // Nothing happens until a frame arrives or the token is lost.
+            return Math.max(inactivityDelay, Constants.NO_TOKEN - silence());
+        return super.getIdleTimeout();
     }
 
     private void idle() {
@@ -208,7 +517,8 @@ public class MasterNode extends MstpNode {
                 LOG.debug(thisStation + " idle:Unknown frame type");
         }
         else if (frame.broadcast()
-                && type.oneOf(FrameType.token, FrameType.bacnetDataExpectingReply, FrameType.testRequest)) {
+                && type.oneOf(FrameType.token, FrameType.bacnetDataExpectingReply,
+                        FrameType.bacnetExtendedDataExpectingReply, FrameType.testRequest)) {
             // ReceivedUnwantedFrame
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " Frame type should not be broadcast: " + type);
@@ -219,8 +529,21 @@ public class MasterNode extends MstpNode {
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " idle:ReceivedToken");
             frameCount = 0;
+            frameLimit = infoFrameLimit();
             soleMaster = false;
             state = MasterNodeState.useToken;
+
+            long now = timeSource.currentTimeMillis();
+            if (tokensReceived > 0) {
+                lastTokenRotationTime = now - lastTokenReceived;
+                if (lastTokenRotationTime > maxTokenRotationTime)
+                    maxTokenRotationTime = lastTokenRotationTime;
+                totalTokenRotationTime += lastTokenRotationTime;
+                tokenRotations++;
+            }
+            lastTokenReceived = now;
+            tokensReceived++;
+            framesThisHold = 0;
             //
             //            long now = timeSource.currentTimeMillis();
             //            if (lastTokenPossession > 0)
@@ -237,7 +560,8 @@ public class MasterNode extends MstpNode {
             sendFrame(FrameType.replyToPollForMaster, frame.getSourceAddress());
         }
         else if (frame.forStationOrBroadcast(thisStation)
-                && type.oneOf(FrameType.bacnetDataNotExpectingReply, FrameType.testResponse)) {
+                && type.oneOf(FrameType.bacnetDataNotExpectingReply,
+                        FrameType.bacnetExtendedDataNotExpectingReply, FrameType.testResponse)) {
             // ReceivedDataNoReply
             //            debug("idle:ReceivedDataNoReply");
             if (LOG.isDebugEnabled())
@@ -245,14 +569,19 @@ public class MasterNode extends MstpNode {
             receivedDataNoReply(frame);
         }
         else if (frame.forStation(thisStation)
-                && type.oneOf(FrameType.bacnetDataExpectingReply, FrameType.testRequest)) {
+                && type.oneOf(FrameType.bacnetDataExpectingReply,
+                        FrameType.bacnetExtendedDataExpectingReply, FrameType.testRequest)) {
             // ReceivedDataNeedingReply
             //            debug("idle:ReceivedDataNeedingReply");
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " idle:ReceivedDataNeedingReply");
+            // Enter the state before handing the frame on, so that a reply that is ready at once is sent as such.
+            synchronized (this) {
+                state = MasterNodeState.answerDataRequest;
+                replyDeadline = lastNonSilence + Constants.REPLY_DELAY;
+                replyFrame = null;
+            }
             receivedDataNeedingReply(frame);
-            state = MasterNodeState.answerDataRequest;
-            replyDeadline = lastNonSilence + Constants.REPLY_DELAY;
         }
         else {
             if (LOG.isDebugEnabled())
@@ -261,10 +590,19 @@ public class MasterNode extends MstpNode {
     }
 
     private void useToken() {
-        Frame frameToSend = null;
-        synchronized (framesToSend) {
-            if (!framesToSend.isEmpty())
-                frameToSend = framesToSend.remove(0);
+        FrameQueue.QueuedFrame queued = framesToSend.poll();
+        Frame frameToSend = queued == null ? null : queued.frame;
+        if (frameToSend != null) {
+            frameDequeued();
+
+            long wait = timeSource.currentTimeMillis() - queued.queued;
+            totalQueueWaitTime += wait;
+            if (wait > maxQueueWaitTime)
+                maxQueueWaitTime = wait;
+            dataFramesSent++;
+            framesThisHold++;
+            if (framesThisHold > maxFramesPerToken)
+                maxFramesPerToken = framesThisHold;
         }
 
         if (frameToSend == null) {
@@ -272,19 +610,21 @@ public class MasterNode extends MstpNode {
             //            debug("useToken:NothingToSend");
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " useToken:NothingToSend");
-            frameCount = maxInfoFrames;
+            frameCount = frameLimit;
             state = MasterNodeState.doneWithToken;
         }
         else {
             activity = true;
-            if (frameToSend.getFrameType().oneOf(FrameType.testResponse, FrameType.bacnetDataNotExpectingReply)) {
+            if (frameToSend.getFrameType().oneOf(FrameType.testResponse, FrameType.bacnetDataNotExpectingReply,
+                    FrameType.bacnetExtendedDataNotExpectingReply)) {
                 // SendNoWait
                 //                debug("useToken:SendNoWait to " + frameToSend.frame.getDestinationAddress());
                 if (LOG.isDebugEnabled())
                     LOG.debug(thisStation + " useToken:SendNoWait");
                 state = MasterNodeState.doneWithToken;
             }
-            else if (frameToSend.getFrameType().oneOf(FrameType.testRequest, FrameType.bacnetDataExpectingReply)) {
+            else if (frameToSend.getFrameType().oneOf(FrameType.testRequest, FrameType.bacnetDataExpectingReply,
+                    FrameType.bacnetExtendedDataExpectingReply)) {
                 // SendAndWait
                 //                debug("useToken:SendAndWait to " + frameToSend.frame.getDestinationAddress());
                 if (LOG.isDebugEnabled())
@@ -305,7 +645,8 @@ public class MasterNode extends MstpNode {
             //            debug("waitForReply:ReplyTimeout");
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " waitForReply:ReplyTimeout");
-            frameCount = maxInfoFrames;
+            replyTimeouts++;
+            frameCount = frameLimit;
             state = MasterNodeState.doneWithToken;
         }
         else if (receivedInvalidFrame != null) {
@@ -322,7 +663,8 @@ public class MasterNode extends MstpNode {
             FrameType type = frame.getFrameType();
 
             if (frame.forStation(thisStation)) {
-                if (type.oneOf(FrameType.testResponse, FrameType.bacnetDataNotExpectingReply)) {
+                if (type.oneOf(FrameType.testResponse, FrameType.bacnetDataNotExpectingReply,
+                        FrameType.bacnetExtendedDataNotExpectingReply)) {
                     // ReceivedReply
                     //debug("waitForReply:ReceivedReply from " + frame.getSourceAddress());
                     if (LOG.isDebugEnabled())
@@ -334,12 +676,14 @@ public class MasterNode extends MstpNode {
                     //debug("waitForReply:ReceivedPostpone from " + frame.getSourceAddress());
                     if (LOG.isDebugEnabled())
                         LOG.debug(thisStation + " waitForReply:ReceivedPostpone");
+                    postponesReceived++;
                     ; // the reply to the message has been postponed until a later time.
                 }
 
                 state = MasterNodeState.doneWithToken;
             }
-            else if (!type.oneOf(FrameType.testResponse, FrameType.bacnetDataNotExpectingReply)) {
+            else if (!type.oneOf(FrameType.testResponse, FrameType.bacnetDataNotExpectingReply,
+                    FrameType.bacnetExtendedDataNotExpectingReply)) {
                 // ReceivedUnexpectedFrame
                 //debug("waitForReply:ReceivedUnexpectedFrame: " + frame);
                 if (LOG.isDebugEnabled())
@@ -359,7 +703,8 @@ public class MasterNode extends MstpNode {
      */
     private void doneWithToken() {
         activity = true;
-        if (frameCount < maxInfoFrames) {
+        fullSweepDue();
+        if (frameCount < frameLimit) {
             // SendAnotherFrame
             //debug("doneWithToken:SendAnotherFrame");
             if (LOG.isDebugEnabled())
@@ -372,6 +717,7 @@ public class MasterNode extends MstpNode {
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " doneWithToken:SoleMaster");
             frameCount = 0;
+            frameLimit = infoFrameLimit();
             tokenCount++;
             state = MasterNodeState.useToken;
         }
@@ -401,6 +747,7 @@ public class MasterNode extends MstpNode {
             //debug("doneWithToken:ResetMaintenancePFM: next=" + nextStation);
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " doneWithToken:ResetMaintenancePFM");
+            maintenanceCycleDone();
             pollStation = thisStation;
             sendFrame(FrameType.token, nextStation);
             retryCount = 0;
@@ -414,6 +761,7 @@ public class MasterNode extends MstpNode {
             //debug("doneWithToken:SoleMasterRestartMaintenancePFM: poll=" + pollStation);
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " doneWithToken:SoleMasterRestartMaintenancePFM");
+            maintenanceCycleDone();
             pollStation = adjacentStation(nextStation);
             sendFrame(FrameType.pollForMaster, pollStation);
             nextStation = thisStation;
@@ -441,6 +789,7 @@ public class MasterNode extends MstpNode {
             //            debug("passToken:RetrySendToken to " + nextStation);
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " passToken:RetrySendToken");
+            tokenRetries++;
             retryCount++;
             sendFrame(FrameType.token, nextStation);
             eventCount = 0;
@@ -450,6 +799,7 @@ public class MasterNode extends MstpNode {
             //            debug("passToken:FindNewSuccessor: trying " + adjacentStation(nextStation));
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " passToken:FindNewSuccessor");
+            successorsLost++;
             pollStation = adjacentStation(nextStation);
             sendFrame(FrameType.pollForMaster, pollStation);
             nextStation = thisStation;
@@ -478,11 +828,12 @@ public class MasterNode extends MstpNode {
         }
         else if ((silence >= delay && silence < delay + Constants.SLOT) // Silence is in this master's slot.
                 // Silence is beyond all slots.
-                || (silence > Constants.NO_TOKEN + Constants.SLOT * (Constants.MAX_MASTER + 1))) {
+                || (silence > Constants.NO_TOKEN + Constants.SLOT * (maxMaster + 1))) {
             // GenerateToken
             //            debug("noToken:GenerateToken: poll=" + adjacentStation(thisStation));
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " noToken:GenerateToken");
+            tokensGenerated++;
             pollStation = adjacentStation(thisStation);
             sendFrame(FrameType.pollForMaster, pollStation);
             nextStation = thisStation;
@@ -531,6 +882,7 @@ public class MasterNode extends MstpNode {
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " pollForMaster:SoleMaster");
             frameCount = 0;
+            frameLimit = infoFrameLimit();
             receivedInvalidFrame = null;
             state = MasterNodeState.useToken;
             activity = true;
@@ -568,6 +920,7 @@ public class MasterNode extends MstpNode {
                         LOG.debug(thisStation + " pollForMaster:DeclareSoleMaster");
                     soleMaster = true;
                     frameCount = 0;
+                    frameLimit = infoFrameLimit();
                     receivedInvalidFrame = null;
                     state = MasterNodeState.useToken;
                     activity = true;
@@ -600,6 +953,7 @@ public class MasterNode extends MstpNode {
                     if (LOG.isDebugEnabled())
                         LOG.debug(thisStation + " answerDataRequest:DeferredReply");
                     sendFrame(FrameType.replyPostponed, frame.getSourceAddress());
+                    postponesSent++;
                     state = MasterNodeState.idle;
                     activity = true;
                 }
@@ -618,7 +972,60 @@ public class MasterNode extends MstpNode {
 
     private byte adjacentStation(byte station) {
         int i = station & 0xff;
-        i = (i + 1) % Constants.MAX_MASTER;
+        i = i >= pollLimit() ? 0 : i + 1;
         return (byte) i;
     }
+
+    /**
+     * @return the highest address to poll for masters
+     */
+    private int pollLimit() {
+        if (!adaptive || fullSweep)
+            return maxMaster;
+        return getHighestActiveMaster();
+    }
+
+    /**
+     * Widens the poll limit to maxMaster once a full sweep is due in adaptive mode. This is checked on every token
+     * hold rather than only at the end of a maintenance cycle, since a node whose successor is the next address up to
+     * the highest active master has no gap to poll, and so never completes a maintenance cycle until the limit widens.
+     */
+    private void fullSweepDue() {
+        if (adaptive && !fullSweep && timeSource.currentTimeMillis() - lastFullSweep >= fullSweepInterval)
+            fullSweep = true;
+    }
+
+    /**
+     * Called when a maintenance Poll For Master cycle has covered the gap up to the next station. Ends a full sweep
+     * in adaptive mode.
+     */
+    private void maintenanceCycleDone() {
+        if (fullSweep) {
+            lastFullSweep = timeSource.currentTimeMillis();
+            fullSweep = false;
+        }
+    }
+
+    private int infoFrameLimit() {
+        if (!adaptive)
+            return maxInfoFrames;
+        return Math.max(maxInfoFrames, Math.min(getFrameQueueSize(), maxAdaptiveInfoFrames));
+    }
+
+    @Override
+    protected void receivedHeader(Frame frame) {
+        FrameType type = frame.getFrameType();
+        if (type == FrameType.token) {
+            masterSeen(frame.getSourceAddress());
+            masterSeen(frame.getDestinationAddress());
+        }
+        else if (type == FrameType.pollForMaster || type == FrameType.replyToPollForMaster)
+            masterSeen(frame.getSourceAddress());
+    }
+
+    private void masterSeen(byte station) {
+        int i = station & 0xff;
+        if (i <= Constants.MAX_MASTER)
+            masterLastSeen[i] = timeSource.currentTimeMillis();
+    }
 }
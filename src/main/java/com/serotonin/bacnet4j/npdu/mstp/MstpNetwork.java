@@ -41,6 +41,9 @@ import com.serotonin.bacnet4j.util.sero.ByteQueue;
 
 public class MstpNetwork extends Network {
     private final MstpNode node;
+    private boolean extendedFrames;
+    // Whether the frame being handled is a broadcast. Only accessed by the node thread.
+    private boolean receivingBroadcast;
 
     public MstpNetwork(MstpNode node) {
         this(node, 0);
@@ -52,8 +55,28 @@ public class MstpNetwork extends Network {
         node.setNetwork(this);
     }
 
+    /**
+     * Enables COBS encoded extended data frames, which carry APDUs of up to 1476 octets. Since the maximum APDU length
+     * of the local device is taken from the network, this must be set before the local device is created. Peers learn
+     * the larger limit from this device's Max_APDU_Length_Accepted, and APDUs sent to a peer are sized according to
+     * the limit that it has advertised, so extended frames are only sent to peers that can accept them. Data that
+     * fits in a standard frame is always sent in one.
+     * 
+     * @param extendedFrames
+     *            whether to use extended frames
+     */
+    public void setExtendedFrames(boolean extendedFrames) {
+        this.extendedFrames = extendedFrames;
+    }
+
+    public boolean isExtendedFrames() {
+        return extendedFrames;
+    }
+
     @Override
     public MaxApduLength getMaxApduLength() {
+        if (extendedFrames)
+            return MaxApduLength.UP_TO_1476;
         return MaxApduLength.UP_TO_480;
     }
 
@@ -107,20 +130,59 @@ public class MstpNetwork extends Network {
         OctetString dest = getDestination(recipient, router);
         byte mstpAddress = MstpNetworkUtils.getMstpAddress(dest);
 
+        boolean extended = data.length > Constants.MAX_DATA_LENGTH;
+        if (extended && (!extendedFrames || data.length > Constants.MAX_EXTENDED_DATA_LENGTH))
+            throw new BACnetException("NPDU of " + data.length + " octets is too long for an MS/TP frame");
+
         if (expectsReply) {
             if (node instanceof SlaveNode)
                 throw new RuntimeException("Cannot originate a request from a slave node");
 
-            ((MasterNode) node).queueFrame(FrameType.bacnetDataExpectingReply, mstpAddress, data);
+            if (!((MasterNode) node).queueFrame(extended ? FrameType.bacnetExtendedDataExpectingReply
+                    : FrameType.bacnetDataExpectingReply, mstpAddress, data))
+                throw new BACnetException("MS/TP frame queue is full");
+        }
+        else if (!node.setReplyFrame(extended ? FrameType.bacnetExtendedDataNotExpectingReply
+                : FrameType.bacnetDataNotExpectingReply, mstpAddress, data)) {
+            if (node instanceof SlaveNode)
+                throw new BACnetException("Slave node cannot send the frame outside of its reply window");
+            throw new BACnetException("MS/TP frame queue is full");
+        }
+    }
+
+    @Override
+    public boolean hasReplyWindow() {
+        // Replies must be ready before the node's reply deadline, or they are postponed.
+        return true;
+    }
+
+    @Override
+    protected int getSendQueueSize() {
+        if (node instanceof MasterNode)
+            return ((MasterNode) node).getFrameQueueSize();
+        return 0;
+    }
+
+    @Override
+    public boolean isSaturated() {
+        // A full frame queue refuses frames whatever the route queue capacity.
+        if (node instanceof MasterNode) {
+            MasterNode master = (MasterNode) node;
+            if (master.getFrameQueueSize() >= master.getFrameQueueCapacity())
+                return true;
         }
-        else
-            node.setReplyFrame(FrameType.bacnetDataNotExpectingReply, mstpAddress, data);
+        return super.isSaturated();
+    }
+
+    void frameDequeued() {
+        sendQueueChanged();
     }
 
-    public void sendTestRequest(byte destination) {
+    public void sendTestRequest(byte destination) throws BACnetException {
         if (!(node instanceof MasterNode))
             throw new RuntimeException("Only master nodes can send test requests");
-        ((MasterNode) node).queueFrame(FrameType.testRequest, destination, null);
+        if (!((MasterNode) node).queueFrame(FrameType.testRequest, destination, null))
+            throw new BACnetException("MS/TP frame queue is full");
     }
 
     //
@@ -129,13 +191,14 @@ public class MstpNetwork extends Network {
     // Incoming frames
     //
     void receivedFrame(Frame frame) {
-        handleIncomingData(new ByteQueue(frame.getData()), MstpNetworkUtils.toOctetString(frame.getSourceAddress()));
+        receivingBroadcast = frame.broadcast();
+        handleIncomingData(ByteQueue.wrap(frame.getData()), MstpNetworkUtils.toOctetString(frame.getSourceAddress()));
     }
 
     @Override
     protected NPDU handleIncomingDataImpl(ByteQueue queue, OctetString linkService)
             throws MessageValidationException {
-        return parseNpduData(queue, linkService);
+        return parseNpduData(queue, linkService, receivingBroadcast);
     }
 
     //
@@ -47,7 +47,10 @@ abstract public class MstpNode implements Runnable {
 
     private static final byte PREAMBLE1 = 0x55;
     private static final byte PREAMBLE2 = (byte) 0xFF;
-    private static final int MAX_FRAME_LENGTH = 501;
+    private static final int MAX_FRAME_LENGTH = Constants.MAX_DATA_LENGTH;
+    // The length field of an extended frame is two less than the length of its encoded data.
+    private static final int MAX_EXTENDED_FRAME_LENGTH = Cobs.maxEncodedLength(Constants.MAX_EXTENDED_DATA_LENGTH) - 2;
+    private static final int MIN_EXTENDED_FRAME_LENGTH = 4;
 
     private boolean trace = false;
 
@@ -59,6 +62,11 @@ abstract public class MstpNode implements Runnable {
     // Configuration
     protected int inactivityDelay = 1;
 
+    /**
+     * The longest time that the node waits for input when its state machines have nothing to time.
+     */
+    protected static final int MAX_IDLE_WAIT = 1000;
+
     /**
      * The MAC address of this node. TS is generally read from a hardware DIP switch, or from nonvolatile memory. Valid
      * values for TS are 0 to 254. The value 255 is used to denote broadcast when used as a destination address but is
@@ -86,12 +94,26 @@ abstract public class MstpNode implements Runnable {
 
     private volatile boolean running;
 
+    // Event driven input. The reader thread blocks on the input stream and hands what it reads to the node thread
+    // in this queue, which is also the monitor on which the node thread waits for input.
+    private Thread readerThread;
+    private final ByteQueue received = new ByteQueue();
+    private IOException readException;
+    private boolean wakeUp;
+
     private ReadFrameState state;
 
     private String lastWriteError;
     private long bytesOut;
     private long bytesIn;
 
+    // Statistics
+    private long framesOut;
+    private long framesIn;
+    private long headerCrcErrors;
+    private long dataCrcErrors;
+    private long frameTimeouts;
+
     public MstpNode(SerialPortWrapper wrapper, byte thisStation) {
         this.wrapper = wrapper;
         this.thisStation = thisStation;
@@ -129,6 +151,52 @@ abstract public class MstpNode implements Runnable {
         return bytesIn;
     }
 
+    /**
+     * @return the number of frames that have been written
+     */
+    public long getFramesOut() {
+        return framesOut;
+    }
+
+    /**
+     * @return the number of valid frames that have been received for this station or broadcast
+     */
+    public long getFramesIn() {
+        return framesIn;
+    }
+
+    /**
+     * @return the number of received frames that were discarded because of a bad header CRC
+     */
+    public long getHeaderCrcErrors() {
+        return headerCrcErrors;
+    }
+
+    /**
+     * @return the number of received frames that were discarded because of a bad data CRC
+     */
+    public long getDataCrcErrors() {
+        return dataCrcErrors;
+    }
+
+    /**
+     * @return the number of received frames that were abandoned because the line went silent part way through
+     */
+    public long getFrameTimeouts() {
+        return frameTimeouts;
+    }
+
+    /**
+     * Resets the frame and error counters. The byte counters are not affected.
+     */
+    public void resetStatistics() {
+        framesOut = 0;
+        framesIn = 0;
+        headerCrcErrors = 0;
+        dataCrcErrors = 0;
+        frameTimeouts = 0;
+    }
+
     public void initialize(boolean runInThread) throws Exception {
         if (!running) {
             if (wrapper != null) {
@@ -141,6 +209,10 @@ abstract public class MstpNode implements Runnable {
             lastNonSilence = timeSource.currentTimeMillis();
             state = ReadFrameState.idle;
             if (runInThread) {
+                readerThread = new Thread(new Reader(), "BACnet4J MS/TP reader");
+                readerThread.setDaemon(true);
+                readerThread.start();
+
                 thread = new Thread(this, "BACnet4J MS/TP node");
                 thread.start();
             }
@@ -149,6 +221,7 @@ abstract public class MstpNode implements Runnable {
 
     public void terminate() {
         running = false;
+        wakeUp();
     }
 
     public void setNetwork(MstpNetwork network) {
@@ -195,6 +268,12 @@ abstract public class MstpNode implements Runnable {
      */
     private int index;
 
+    /**
+     * Whether the frame being read is COBS encoded, and its encoded data.
+     */
+    private boolean cobsFrame;
+    private byte[] encodedData;
+
     /**
      * Used to count the number of received octets or errors. This is used in the detection of link activity.
      */
@@ -248,7 +327,64 @@ abstract public class MstpNode implements Runnable {
 
             doCycle();
 
-            if (!activity && inactivityDelay > 0) {
+            if (!activity)
+                waitForInput();
+        }
+
+        if (wrapper != null) {
+            try {
+                wrapper.close();
+            }
+            catch (Exception e) {
+                LOG.warn("", e);
+            }
+        }
+    }
+
+    abstract protected void doCycle();
+
+    /**
+     * Runs one cycle of the node's state machines, for nodes that are driven externally rather than in their own
+     * thread.
+     * 
+     * @return whether anything happened
+     */
+    boolean step() {
+        activity = false;
+        doCycle();
+        return activity;
+    }
+
+    /**
+     * @return the time in ms that the node can wait for input after a cycle in which nothing happened.
+     */
+    long getWaitTime() {
+        // Time the receipt of a partial frame at the resolution of the inactivity delay.
+        return state == ReadFrameState.idle ? getIdleTimeout() : inactivityDelay;
+    }
+
+    /**
+     * Returns the time that the node can wait for input before its state machine needs to run again. Subclasses
+     * override this to tell when their next timeout occurs, so that an idle node does not need to poll.
+     */
+    protected long getIdleTimeout() {
+        return inactivityDelay;
+    }
+
+    /**
+     * Wakes the node up if it is waiting for input, e.g. because a reply became available.
+     */
+    protected void wakeUp() {
+        synchronized (received) {
+            wakeUp = true;
+            received.notify();
+        }
+    }
+
+    private void waitForInput() {
+        if (readerThread == null) {
+            // Polling
+            if (inactivityDelay > 0) {
                 try {
                     Thread.sleep(inactivityDelay);
                 }
@@ -256,19 +392,30 @@ abstract public class MstpNode implements Runnable {
                     // no op
                 }
             }
+            return;
         }
 
-        try {
-            wrapper.close();
-        }
-        catch (Exception e) {
-            LOG.warn("", e);
+        long timeout = getWaitTime();
+        synchronized (received) {
+            if (received.size() == 0 && readException == null && !wakeUp && timeout > 0) {
+                try {
+                    received.wait(timeout);
+                }
+                catch (InterruptedException e) {
+                    // no op
+                }
+            }
+            wakeUp = false;
         }
     }
 
-    abstract protected void doCycle();
-
-    abstract public void setReplyFrame(FrameType type, byte destination, byte[] data);
+    /**
+     * Sends a frame that does not expect a reply, either as the reply to the request being answered or, where the
+     * node can, when it next may send.
+     * 
+     * @return false if the frame could not be sent or queued, and was dropped
+     */
+    abstract public boolean setReplyFrame(FrameType type, byte destination, byte[] data);
 
     protected void readFrame() {
         readInputStream();
@@ -308,7 +455,27 @@ abstract public class MstpNode implements Runnable {
 
     private void readInputStream() {
         try {
-            if (in.available() > 0) {
+            if (readerThread != null) {
+                synchronized (received) {
+                    if (readException != null) {
+                        IOException e = readException;
+                        readException = null;
+                        throw e;
+                    }
+                    readCount = received.size();
+                    if (readCount > 0) {
+                        inputBuffer.push(received);
+                        received.clear();
+                    }
+                }
+                if (readCount > 0) {
+                    bytesIn += readCount;
+                    if (trace)
+                        trace("in: " + inputBuffer);
+                    eventCount += readCount;
+                }
+            }
+            else if (in.available() > 0) {
                 readCount = in.read(readArray);
                 bytesIn += readCount;
                 if (trace)
@@ -327,6 +494,60 @@ abstract public class MstpNode implements Runnable {
         }
     }
 
+    /**
+     * Blocks on the input stream, so that the node does not have to poll it. Streams that return from a read without
+     * data, e.g. serial ports with a read timeout, are read with a back off of up to the frame abort time. The end of
+     * the stream ends the reader.
+     */
+    private class Reader implements Runnable {
+        @Override
+        public void run() {
+            byte[] buffer = new byte[512];
+            long backOff = 0;
+            while (running) {
+                try {
+                    int count = in.read(buffer);
+                    if (count > 0) {
+                        backOff = 0;
+                        synchronized (received) {
+                            received.push(buffer, 0, count);
+                            received.notify();
+                        }
+                    }
+                    else if (count == 0) {
+                        backOff = Math.min(Math.max(backOff * 2, 1), Constants.FRAME_ABORT);
+                        Thread.sleep(backOff);
+                    }
+                    else {
+                        if (running)
+                            LOG.warn(thisStation + " End of the MS/TP input stream, no more frames will be received");
+                        break;
+                    }
+                }
+                catch (InterruptedException e) {
+                    // no op
+                }
+                catch (IOException e) {
+                    if (!running)
+                        break;
+                    synchronized (received) {
+                        readException = e;
+                        received.notify();
+                    }
+                    if (StringUtils.equals(e.getMessage(), "Stream closed."))
+                        break;
+                    // Don't spin on a port that keeps failing.
+                    try {
+                        Thread.sleep(Constants.SLOT);
+                    }
+                    catch (InterruptedException e1) {
+                        // no op
+                    }
+                }
+            }
+        }
+    }
+
     private void idle() {
         byte b;
         while (inputBuffer.size() > 0) {
@@ -385,6 +606,7 @@ abstract public class MstpNode implements Runnable {
         if (silence() > Constants.FRAME_ABORT) {
             // Timeout
             receivedInvalidFrame = "Timeout reading header";
+            frameTimeouts++;
             if (LOG.isDebugEnabled())
                 LOG.debug(thisStation + " Timeout reading header: index=" + index + ", frame=" + frame);
             state = ReadFrameState.idle;
@@ -400,6 +622,7 @@ abstract public class MstpNode implements Runnable {
                     // FrameType
                     headerCRC.accumulate(b);
                     frame.setFrameType(FrameType.forId(b));
+                    cobsFrame = FrameType.isExtended(b);
                     if (trace && frame.getFrameType() == null)
                         trace("Unknown frame type for value: " + b);
                     index = 1;
@@ -444,20 +667,35 @@ abstract public class MstpNode implements Runnable {
         if (!headerCRC.isOk()) {
             // BadCRC
             receivedInvalidFrame = "Bad header CRC. Frame: " + frame;
+            headerCrcErrors++;
             state = ReadFrameState.idle;
         }
         else {
+            receivedHeader(frame);
+
             if (!frame.forStationOrBroadcast(thisStation))
                 // NotForUs
                 state = ReadFrameState.idle;
-            else if (frame.getLength() > MAX_FRAME_LENGTH) {
+            else if (frame.getLength() > (cobsFrame ? MAX_EXTENDED_FRAME_LENGTH : MAX_FRAME_LENGTH)) {
                 // FrameTooLong
                 receivedInvalidFrame = "Frame too long";
                 state = ReadFrameState.idle;
             }
+            else if (cobsFrame && frame.getLength() < MIN_EXTENDED_FRAME_LENGTH) {
+                // An encoded frame always has at least its encoded CRC.
+                receivedInvalidFrame = "Extended frame too short";
+                state = ReadFrameState.idle;
+            }
+            else if (cobsFrame) {
+                // Data. The encoded data includes the octets in the place of the data CRC.
+                index = 0;
+                encodedData = new byte[frame.getLength() + 2];
+                state = ReadFrameState.data;
+            }
             else if (frame.getLength() == 0) {
                 // NoData
                 receivedValidFrame = true;
+                framesIn++;
                 if (frame.getFrameType() == null && LOG.isDebugEnabled())
                     LOG.debug(thisStation + " Received valid frame with no type (1): " + frame);
                 state = ReadFrameState.idle;
@@ -476,9 +714,18 @@ abstract public class MstpNode implements Runnable {
         if (silence() > Constants.FRAME_ABORT) {
             // Timeout
             receivedInvalidFrame = "Timeout reading data";
+            frameTimeouts++;
             state = ReadFrameState.idle;
             activity = true;
         }
+        else if (cobsFrame) {
+            if (inputBuffer.size() > 0) {
+                activity = true;
+                index += inputBuffer.pop(encodedData, index, encodedData.length - index);
+                if (index == encodedData.length)
+                    state = ReadFrameState.dataCrc;
+            }
+        }
         else {
             while (inputBuffer.size() > 0) {
                 activity = true;
@@ -508,12 +755,30 @@ abstract public class MstpNode implements Runnable {
     private void dataCrc() {
         activity = true;
 
-        if (!dataCRC.isOk())
+        if (cobsFrame) {
+            byte[] data = Cobs.decodeFrame(encodedData, 0, encodedData.length);
+            encodedData = null;
+            if (data == null) {
+                // BadCRC
+                receivedInvalidFrame = "Bad extended data CRC";
+                dataCrcErrors++;
+            }
+            else {
+                // GoodCRC
+                frame.setData(data);
+                receivedValidFrame = true;
+                framesIn++;
+            }
+        }
+        else if (!dataCRC.isOk()) {
             // BadCRC
             receivedInvalidFrame = "Bad data CRC";
+            dataCrcErrors++;
+        }
         else {
             // GoodCRC
             receivedValidFrame = true;
+            framesIn++;
             if (frame.getFrameType() == null && LOG.isDebugEnabled())
                 LOG.debug(thisStation + " Received valid frame with no type (2): " + frame);
         }
@@ -521,6 +786,16 @@ abstract public class MstpNode implements Runnable {
         state = ReadFrameState.idle;
     }
 
+    /**
+     * Called for every frame header with a good CRC, including headers of frames that are not for this station.
+     * 
+     * @param frame
+     *            the frame, of which only the header fields are set
+     */
+    protected void receivedHeader(Frame frame) {
+        // no op
+    }
+
     protected void sendFrame(FrameType type, byte destinationAddress) {
         sendFrame(type, destinationAddress, null);
     }
@@ -558,6 +833,15 @@ abstract public class MstpNode implements Runnable {
                 trace("out: " + frame);
             //LOG.fine("writing frame: " + frame);
 
+            // Extended frames carry their data COBS encoded, and their length field holds the length of the encoded
+            // data minus two.
+            byte[] encoded = null;
+            int length = frame.getLength();
+            if (frame.getFrameType().isExtended()) {
+                encoded = Cobs.encodeFrame(frame.getData());
+                length = encoded.length - 2;
+            }
+
             // Preamble
             out.write(0x55);
             out.write(0xFF);
@@ -566,12 +850,18 @@ abstract public class MstpNode implements Runnable {
             out.write(frame.getFrameType().id & 0xff);
             out.write(frame.getDestinationAddress() & 0xff);
             out.write(frame.getSourceAddress() & 0xff);
-            out.write((frame.getLength() >> 8) & 0xff);
-            out.write(frame.getLength() & 0xff);
-            out.write(sendHeaderCRC.getCrc(frame));
+            out.write((length >> 8) & 0xff);
+            out.write(length & 0xff);
+            out.write(sendHeaderCRC.getCrc(frame, length));
             bytesOut += 8;
+            framesOut++;
 
-            if (frame.getLength() > 0) {
+            if (encoded != null) {
+                // Encoded data, including its CRC
+                out.write(encoded);
+                bytesOut += encoded.length;
+            }
+            else if (frame.getLength() > 0) {
                 // Data
                 out.write(frame.getData());
                 int crc = sendDataCRC.getCrc(frame);
@@ -609,6 +899,14 @@ abstract public class MstpNode implements Runnable {
         System.out.println(thisStation + "/" + (timeSource.currentTimeMillis() % 10000000) + ": " + msg);
     }
 
+    /**
+     * Called by subclasses when a frame has left the send queue.
+     */
+    protected void frameDequeued() {
+        if (network != null)
+            network.frameDequeued();
+    }
+
     //
     //
     // Incoming message handling
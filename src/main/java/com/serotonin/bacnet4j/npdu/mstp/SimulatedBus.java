@@ -0,0 +1,278 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.serotonin.bacnet4j.util.TimeSource;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+import com.serotonin.bacnet4j.util.sero.SerialPortWrapper;
+
+/**
+ * A simulated RS-485 multi-drop bus for exercising MS/TP nodes without hardware. The bus keeps virtual time, which it
+ * also provides to the nodes as their time source, and drives the nodes' state machines itself from a single thread.
+ * A simulation is therefore deterministic for a given seed, and runs as fast as the nodes can cycle.
+ * <p>
+ * Octets take the time of 10 bits at the configured baud rate to cross the bus, and are received by every port other
+ * than the sender. Octets sent by more than one port at the same time collide, and are received as noise. Bit errors
+ * can be injected at a configurable rate.
+ * 
+ * <pre>
+ * SimulatedBus bus = new SimulatedBus(38400);
+ * MasterNode node = new MasterNode(bus.createPort(), (byte) 1, 2);
+ * bus.addNode(node);
+ * ...
+ * bus.run(60000);
+ * </pre>
+ */
+public class SimulatedBus implements TimeSource {
+    private static final int MAX_ROUNDS = 8;
+
+    private final long octetTime;
+    private final List<Port> ports = new ArrayList<Port>();
+    private final List<MstpNode> nodes = new ArrayList<MstpNode>();
+    private Random random = new Random(0);
+    private double bitErrorRate;
+
+    // Virtual time in microseconds.
+    private long now;
+
+    // Statistics
+    private long octetsSent;
+    private long collisions;
+    private long bitErrors;
+
+    /**
+     * @param baudRate
+     *            the baud rate, which determines how long octets take to cross the bus
+     */
+    public SimulatedBus(int baudRate) {
+        octetTime = 10 * 1000000L / baudRate;
+    }
+
+    /**
+     * @param bitErrorRate
+     *            the probability that any bit on the bus is inverted
+     */
+    public void setBitErrorRate(double bitErrorRate) {
+        this.bitErrorRate = bitErrorRate;
+    }
+
+    /**
+     * @param seed
+     *            the seed for the collision noise and bit errors
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * @return a new port on the bus, with which to construct a node
+     */
+    public SerialPortWrapper createPort() {
+        Port port = new Port();
+        ports.add(port);
+        return port;
+    }
+
+    /**
+     * Sets the node's time source to the bus and initializes the node to be driven by the bus. The node must have
+     * been constructed with a port of this bus.
+     */
+    public void addNode(MstpNode node) throws Exception {
+        node.setTimeSource(this);
+        node.initialize(false);
+        nodes.add(node);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now / 1000;
+    }
+
+    /**
+     * Runs the simulation for the given virtual time.
+     */
+    public void run(long millis) {
+        long end = now + millis * 1000;
+        while (now < end) {
+            // Let the nodes react to what they have received. Some states report activity on every cycle while they
+            // wait for time to pass, so the number of rounds is limited.
+            boolean active = true;
+            for (int i = 0; active && i < MAX_ROUNDS; i++) {
+                active = false;
+                for (MstpNode node : nodes)
+                    active |= node.step();
+            }
+
+            if (transmitting()) {
+                transmitOctet();
+                now += octetTime;
+            }
+            else {
+                // Nothing is on the bus, so skip ahead to the next time that a node needs to run.
+                long wait = Long.MAX_VALUE;
+                for (MstpNode node : nodes)
+                    wait = Math.min(wait, node.getWaitTime());
+                // Advance to the next millisecond boundary at least, since that is the resolution of the nodes' timers.
+                long next = (now / 1000 + Math.max(wait, 1)) * 1000;
+                now = Math.min(next, end);
+            }
+        }
+    }
+
+    private boolean transmitting() {
+        for (Port port : ports) {
+            if (port.out.size() > 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Puts one octet from every port that has something to send on the bus.
+     */
+    private void transmitOctet() {
+        Port sender = null;
+        int octet = 0;
+        int senders = 0;
+        for (Port port : ports) {
+            if (port.out.size() > 0) {
+                sender = port;
+                octet = port.out.pop() & 0xff;
+                senders++;
+            }
+        }
+        octetsSent += senders;
+
+        if (senders > 1) {
+            collisions++;
+            sender = null;
+            octet = random.nextInt(256);
+        }
+
+        if (bitErrorRate > 0) {
+            for (int i = 0; i < 8; i++) {
+                if (random.nextDouble() < bitErrorRate) {
+                    octet ^= 1 << i;
+                    bitErrors++;
+                }
+            }
+        }
+
+        for (Port port : ports) {
+            // A transmitter does not hear itself, except as part of a collision.
+            if (port != sender && port.open)
+                port.in.push((byte) octet);
+        }
+    }
+
+    public long getOctetsSent() {
+        return octetsSent;
+    }
+
+    /**
+     * @return the number of octet times in which more than one port was transmitting
+     */
+    public long getCollisions() {
+        return collisions;
+    }
+
+    public long getBitErrors() {
+        return bitErrors;
+    }
+
+    private static class Port extends SerialPortWrapper {
+        final ByteQueue in = new ByteQueue();
+        final ByteQueue out = new ByteQueue();
+        boolean open;
+
+        private final InputStream inputStream = new InputStream() {
+            @Override
+            public int available() {
+                return in.size();
+            }
+
+            @Override
+            public int read() {
+                if (in.size() == 0)
+                    return -1;
+                return in.pop() & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (in.size() == 0)
+                    return -1;
+                return in.pop(b, off, len);
+            }
+        };
+
+        private final OutputStream outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.push((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.push(b, off, len);
+            }
+        };
+
+        @Override
+        public void open() {
+            open = true;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public String getCommPortId() {
+            return "simulated";
+        }
+    }
+}
@@ -67,14 +67,27 @@ public class SlaveNode extends MstpNode {
     }
 
     @Override
-    public void setReplyFrame(FrameType type, byte destination, byte[] data) {
+    public boolean setReplyFrame(FrameType type, byte destination, byte[] data) {
         synchronized (this) {
-            if (state == SlaveNodeState.answerDataRequest)
+            if (state == SlaveNodeState.answerDataRequest) {
                 // If there is still time to reply immediately...
                 replyFrame = new Frame(type, frame.getSourceAddress(), thisStation, data);
+                wakeUp();
+                return true;
+            }
+            // A slave can only send replies, and it is too late for this one.
+            return false;
         }
     }
 
+    @Override
+    protected long getIdleTimeout() {
+        if (state == SlaveNodeState.idle)
+            // Nothing happens until a frame arrives.
+            return MAX_IDLE_WAIT;
+        return super.getIdleTimeout();
+    }
+
     @Override
     protected void doCycle() {
         readFrame();
@@ -107,7 +120,8 @@ public class SlaveNode extends MstpNode {
                     LOG.debug("Unknown frame type");
             }
             else if (frame.broadcast()
-                    && type.oneOf(FrameType.token, FrameType.bacnetDataExpectingReply, FrameType.testRequest)) {
+                    && type.oneOf(FrameType.token, FrameType.bacnetDataExpectingReply,
+                            FrameType.bacnetExtendedDataExpectingReply, FrameType.testRequest)) {
                 // ReceivedUnwantedFrame
                 if (LOG.isDebugEnabled())
                     LOG.debug("Frame type should not be broadcast: " + type);
@@ -122,13 +136,15 @@ public class SlaveNode extends MstpNode {
                     LOG.debug("Received unwanted frame type: " + type);
             }
             else if (frame.forStationOrBroadcast(thisStation)
-                    && type.oneOf(FrameType.bacnetDataNotExpectingReply, FrameType.testResponse)) {
+                    && type.oneOf(FrameType.bacnetDataNotExpectingReply,
+                            FrameType.bacnetExtendedDataNotExpectingReply, FrameType.testResponse)) {
                 // ReceivedDataNoReply
                 //                debug("idle:ReceivedDataNoReply");
                 receivedDataNoReply(frame);
             }
             else if (frame.forStation(thisStation)
-                    && type.oneOf(FrameType.bacnetDataExpectingReply, FrameType.testRequest)) {
+                    && type.oneOf(FrameType.bacnetDataExpectingReply,
+                            FrameType.bacnetExtendedDataExpectingReply, FrameType.testRequest)) {
                 // ReceivedDataNeedingReply
                 //                debug("idle:ReceivedDataNeedingReply");
                 state = SlaveNodeState.answerDataRequest;
@@ -156,7 +172,7 @@ public class SlaveNode extends MstpNode {
                 state = SlaveNodeState.idle;
                 activity = true;
             }
-            else if (replyDeadline >= timeSource.currentTimeMillis()) {
+            else if (replyDeadline < timeSource.currentTimeMillis()) {
                 // CannotReply
                 //                debug("answerDataRequest:CannotReply");
                 if (LOG.isDebugEnabled())
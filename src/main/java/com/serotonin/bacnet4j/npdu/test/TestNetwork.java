@@ -135,13 +135,19 @@ public class TestNetwork extends Network implements Runnable {
     protected void sendNPDU(Address recipient, OctetString router, ByteQueue npdu, boolean broadcast,
             boolean expectsReply) throws BACnetException {
         SendData d = new SendData();
-        d.recipient = recipient;
+        // Messages for remote networks are delivered to the router.
+        d.recipient = router == null ? recipient : new Address(getLocalNetworkNumber(), router);
         d.data = npdu.popAll();
 
         queue.add(d);
         ThreadUtils.notifySync(queue);
     }
 
+    @Override
+    protected int getSendQueueSize() {
+        return queue.size();
+    }
+
     @Override
     public void run() {
         while (running) {
@@ -150,6 +156,8 @@ public class TestNetwork extends Network implements Runnable {
             if (d == null)
                 ThreadUtils.waitSync(queue, 20);
             else {
+                sendQueueChanged();
+
                 // Pause before handing off the message.
                 ThreadUtils.sleep(sendDelay);
 
@@ -169,7 +177,7 @@ public class TestNetwork extends Network implements Runnable {
     }
 
     private void receive(TestNetwork network, byte[] data) {
-        network.handleIncomingData(new ByteQueue(data), address.getMacAddress());
+        network.handleIncomingData(ByteQueue.wrap(data), address.getMacAddress());
     }
 
     @Override
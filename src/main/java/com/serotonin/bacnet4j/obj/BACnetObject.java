@@ -30,6 +30,7 @@ package com.serotonin.bacnet4j.obj;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -148,6 +149,13 @@ public class BACnetObject implements Serializable {
         return localDevice;
     }
 
+    private GregorianCalendar localCalendar() {
+        GregorianCalendar gc = new GregorianCalendar();
+        if (localDevice != null)
+            gc.setTimeInMillis(localDevice.getTimeSource().currentTimeMillis());
+        return gc;
+    }
+
     //
     //
     // Object notifications
@@ -289,9 +297,9 @@ public class BACnetObject implements Serializable {
 
         // Do some property-specific checking here.
         if (PropertyIdentifier.localTime.equals(pid))
-            return (T) new Time();
+            return (T) new Time(localCalendar());
         if (PropertyIdentifier.localDate.equals(pid))
-            return (T) new Date();
+            return (T) new Date(localCalendar());
 
         // Give the mixins notice that the property is being read.
         for (AbstractMixin mixin : mixins)
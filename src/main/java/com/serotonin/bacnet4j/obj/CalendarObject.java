@@ -51,7 +51,10 @@ public class CalendarObject extends BACnetObject {
 
     private int timeTolerance = 0;
 
-    private TimeSource timeSource = new ClockTimeSource();
+    private static final TimeSource CLOCK = new ClockTimeSource();
+
+    // Overrides the clock of the local device if set.
+    private TimeSource timeSource;
 
     // This timer task keeps the present value up to date in case other objects have registered
     // for COV on it.
@@ -73,6 +76,14 @@ public class CalendarObject extends BACnetObject {
         this.timeSource = timeSource;
     }
 
+    private TimeSource getTimeSource() {
+        if (timeSource != null)
+            return timeSource;
+        if (getLocalDevice() != null)
+            return getLocalDevice().getTimeSource();
+        return CLOCK;
+    }
+
     public int getTimeTolerance() {
         return timeTolerance;
     }
@@ -94,7 +105,7 @@ public class CalendarObject extends BACnetObject {
 
         // Calculate the amount of time until the next hour.
         GregorianCalendar gc = new GregorianCalendar();
-        gc.setTimeInMillis(timeSource.currentTimeMillis());
+        gc.setTimeInMillis(getTimeSource().currentTimeMillis());
         long elapsed = gc.get(Calendar.MILLISECOND) //
                 + gc.get(Calendar.SECOND) * 1000 //
                 + gc.get(Calendar.MINUTE) * 60 * 1000;
@@ -150,7 +161,7 @@ public class CalendarObject extends BACnetObject {
 
     synchronized void updatePresentValue() {
         GregorianCalendar gc = new GregorianCalendar();
-        gc.setTimeInMillis(timeSource.currentTimeMillis());
+        gc.setTimeInMillis(getTimeSource().currentTimeMillis());
 
         if (timeTolerance > 0) {
             // And on the compensatory time.
@@ -33,7 +33,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.math.BigInteger;
 
 import com.serotonin.bacnet4j.exception.BACnetRuntimeException;
 import com.serotonin.bacnet4j.type.constructed.DateTime;
@@ -70,7 +69,7 @@ public class FileObject extends BACnetObject {
 
     public void updateProperties() {
         // NOTE: This is only a snapshot. Property read methods need to be overridden to report real time values.
-        writePropertyImpl(PropertyIdentifier.fileSize, new UnsignedInteger(new BigInteger(Long.toString(length()))));
+        writePropertyImpl(PropertyIdentifier.fileSize, new UnsignedInteger(length()));
         writePropertyImpl(PropertyIdentifier.modificationDate, new DateTime(file.lastModified()));
         writePropertyImpl(PropertyIdentifier.readOnly, new Boolean(!file.canWrite()));
     }
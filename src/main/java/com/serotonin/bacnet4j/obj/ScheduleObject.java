@@ -79,7 +79,10 @@ public class ScheduleObject<T extends Primitive> extends BACnetObject {
     private static final long serialVersionUID = 1660874501874089852L;
     static final Logger LOG = LoggerFactory.getLogger(ScheduleObject.class);
 
-    private TimeSource timeSource = new ClockTimeSource();
+    private static final TimeSource CLOCK = new ClockTimeSource();
+
+    // Overrides the clock of the local device if set.
+    private TimeSource timeSource;
     private Refresher presentValueRefersher;
 
     /**
@@ -173,6 +176,14 @@ public class ScheduleObject<T extends Primitive> extends BACnetObject {
         this.timeSource = timeSource;
     }
 
+    private TimeSource getTimeSource() {
+        if (timeSource != null)
+            return timeSource;
+        if (getLocalDevice() != null)
+            return getLocalDevice().getTimeSource();
+        return CLOCK;
+    }
+
     @Override
     public void addedToDevice() {
         T oldValue = get(PropertyIdentifier.presentValue);
@@ -252,7 +263,7 @@ public class ScheduleObject<T extends Primitive> extends BACnetObject {
 
     synchronized void updatePresentValue() {
         GregorianCalendar gc = new GregorianCalendar();
-        gc.setTimeInMillis(timeSource.currentTimeMillis());
+        gc.setTimeInMillis(getTimeSource().currentTimeMillis());
         updatePresentValue(new DateTime(gc));
     }
 
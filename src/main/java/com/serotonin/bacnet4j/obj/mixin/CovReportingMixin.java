@@ -84,7 +84,7 @@ public class CovReportingMixin extends AbstractMixin {
     @Override
     protected void afterWriteProperty(PropertyIdentifier pid, Encodable oldValue, Encodable newValue) {
         if (pid.isOneOf(criteria.monitoredProperties)) {
-            long now = System.currentTimeMillis();
+            long now = getLocalDevice().getTimeSource().currentTimeMillis();
             synchronized (covSubscriptions) {
                 List<ObjectCovSubscription> expired = null;
                 for (ObjectCovSubscription subscription : covSubscriptions) {
@@ -138,7 +138,7 @@ public class CovReportingMixin extends AbstractMixin {
             }
 
             sub.setIssueConfirmedNotifications(issueConfirmedNotifications.booleanValue());
-            sub.setExpiryTime(lifetime.intValue());
+            sub.setExpiryTime(lifetime.intValue(), getLocalDevice().getTimeSource().currentTimeMillis());
             sub.setCovIncrement(covIncrement);
 
             // Remove from device list.
@@ -160,7 +160,7 @@ public class CovReportingMixin extends AbstractMixin {
             getLocalDevice().getTimer().schedule(new TimerTask() {
                 @Override
                 public void run() {
-                    long now = System.currentTimeMillis();
+                    long now = getLocalDevice().getTimeSource().currentTimeMillis();
                     if (subscription.getMonitoredProperty() != null)
                         sendPropertyNotification(subscription, now, subscription.getMonitoredProperty());
                     else
@@ -84,10 +84,14 @@ public class ObjectCovSubscription {
     }
 
     public void setExpiryTime(int seconds) {
+        setExpiryTime(seconds, System.currentTimeMillis());
+    }
+
+    public void setExpiryTime(int seconds, long now) {
         if (seconds == 0)
             expiryTime = -1;
         else
-            expiryTime = System.currentTimeMillis() + seconds * 1000;
+            expiryTime = now + seconds * 1000L;
     }
 
     public boolean hasExpired(long now) {
@@ -253,7 +253,7 @@ public class IntrinsicReportingMixin extends AbstractMixin {
         BACnetArray<TimeStamp> ets = get(PropertyIdentifier.eventTimeStamps);
         // Make a copy in which to make the change so that the write property method works properly.
         ets = new BACnetArray<TimeStamp>(ets);
-        ets.set(toState.getTransitionIndex(), new TimeStamp(new DateTime()));
+        ets.set(toState.getTransitionIndex(), new TimeStamp(new DateTime(getLocalDevice().getTimeSource().currentTimeMillis())));
         writePropertyImpl(PropertyIdentifier.eventTimeStamps, ets);
 
         // Not implemented
@@ -293,7 +293,7 @@ public class IntrinsicReportingMixin extends AbstractMixin {
             SequenceOf<Destination> recipientList = nc.get(PropertyIdentifier.recipientList);
             NotifyType notifyType = get(PropertyIdentifier.notifyType);
             BACnetArray<UnsignedInteger> priority = nc.get(PropertyIdentifier.priority);
-            TimeStamp now = new TimeStamp(new DateTime());
+            TimeStamp now = new TimeStamp(new DateTime(getLocalDevice().getTimeSource().currentTimeMillis()));
 
             EventType eventType;
             NotificationParameters eventValues;
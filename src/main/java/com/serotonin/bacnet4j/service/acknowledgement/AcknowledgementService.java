@@ -37,6 +37,11 @@ abstract public class AcknowledgementService extends Service {
 
     public static AcknowledgementService createAcknowledgementService(byte type, ByteQueue queue)
             throws BACnetException {
+        return createAcknowledgementService(type, queue, false);
+    }
+
+    public static AcknowledgementService createAcknowledgementService(byte type, ByteQueue queue,
+            boolean lazyPropertyValues) throws BACnetException {
 
         if (type == GetAlarmSummaryAck.TYPE_ID) // 3
             return new GetAlarmSummaryAck(queue);
@@ -49,11 +54,11 @@ abstract public class AcknowledgementService extends Service {
         if (type == CreateObjectAck.TYPE_ID) // 10
             return new CreateObjectAck(queue);
         if (type == ReadPropertyAck.TYPE_ID) // 12
-            return new ReadPropertyAck(queue);
+            return new ReadPropertyAck(queue, lazyPropertyValues);
         if (type == ReadPropertyConditionalAck.TYPE_ID) // 13
             return new ReadPropertyConditionalAck(queue);
         if (type == ReadPropertyMultipleAck.TYPE_ID) // 14
-            return new ReadPropertyMultipleAck(queue);
+            return new ReadPropertyMultipleAck(queue, lazyPropertyValues);
         if (type == ConfirmedPrivateTransferAck.TYPE_ID) // 18
             return new ConfirmedPrivateTransferAck(queue);
         if (type == VtOpenAck.TYPE_ID) // 21
@@ -28,8 +28,14 @@
  */
 package com.serotonin.bacnet4j.service.acknowledgement;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
 import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.exception.BACnetRuntimeException;
 import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf.ElementHandler;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
@@ -43,7 +49,11 @@ public class ReadPropertyAck extends AcknowledgementService {
     private final ObjectIdentifier eventObjectIdentifier;
     private final PropertyIdentifier propertyIdentifier;
     private final UnsignedInteger propertyArrayIndex;
-    private final Encodable value;
+    private Encodable value;
+
+    // Set when the value was left encoded. Includes the context tags, and is kept after decoding so that the ack can
+    // be written out again as received.
+    private transient ByteQueue encodedValue;
 
     public ReadPropertyAck(ObjectIdentifier eventObjectIdentifier, PropertyIdentifier propertyIdentifier,
             UnsignedInteger propertyArrayIndex, Encodable value) {
@@ -59,7 +69,10 @@ public class ReadPropertyAck extends AcknowledgementService {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
+        // A value that was left encoded stays that way.
+        if (value == null && encodedValue != null)
+            return "ReadPropertyAck(" + encodedValue.size() + " encoded bytes)";
         return "ReadPropertyAck(" + value + ")";
     }
 
@@ -75,24 +88,84 @@ public class ReadPropertyAck extends AcknowledgementService {
         return propertyIdentifier;
     }
 
+    /**
+     * Returns the value, decoding it first if it was left encoded.
+     * 
+     * @throws BACnetRuntimeException
+     *             if the encoded value is malformed
+     */
     @SuppressWarnings("unchecked")
-    public <T extends Encodable> T getValue() {
+    public synchronized <T extends Encodable> T getValue() {
+        if (value == null && encodedValue != null) {
+            try {
+                value = readEncodable(encodedValue.slice(0, encodedValue.size()),
+                        eventObjectIdentifier.getObjectType(), propertyIdentifier, propertyArrayIndex, 3);
+            }
+            catch (BACnetException e) {
+                throw new BACnetRuntimeException("Failed to decode the value of " + propertyIdentifier, e);
+            }
+        }
         return (T) value;
     }
 
+    /**
+     * Hands the elements of a sequence or array value to the handler one at a time. If the value was left encoded
+     * (see Transport.setLazyPropertyValues) the elements are decoded as they are handed over, and the value as a
+     * whole is never held in memory.
+     * 
+     * @return the number of elements
+     */
+    public <E extends Encodable> int decodeElements(Class<E> clazz, ElementHandler<? super E> handler)
+            throws BACnetException {
+        Encodable value;
+        synchronized (this) {
+            value = this.value;
+        }
+
+        if (value == null) {
+            ByteQueue queue = encodedValue.slice(0, encodedValue.size());
+            popStart(queue, 3);
+            return SequenceOf.decode(queue, clazz, 3, handler);
+        }
+
+        if (!(value instanceof SequenceOf))
+            throw new BACnetException("Value of " + propertyIdentifier + " is not a sequence: " + value);
+        int count = 0;
+        for (Encodable e : (SequenceOf<?>) value)
+            handler.element(++count, clazz.cast(e));
+        return count;
+    }
+
     @Override
     public void write(ByteQueue queue) {
         write(queue, eventObjectIdentifier, 0);
         write(queue, propertyIdentifier, 1);
         writeOptional(queue, propertyArrayIndex, 2);
-        writeEncodable(queue, value, 3);
+        if (encodedValue != null)
+            queue.push(encodedValue);
+        else
+            writeEncodable(queue, value, 3);
     }
 
     public ReadPropertyAck(ByteQueue queue) throws BACnetException {
+        this(queue, false);
+    }
+
+    ReadPropertyAck(ByteQueue queue, boolean lazyPropertyValues) throws BACnetException {
         eventObjectIdentifier = read(queue, ObjectIdentifier.class, 0);
         propertyIdentifier = read(queue, PropertyIdentifier.class, 1);
         propertyArrayIndex = readOptional(queue, UnsignedInteger.class, 2);
-        value = readEncodable(queue, eventObjectIdentifier.getObjectType(), propertyIdentifier, propertyArrayIndex, 3);
+        if (lazyPropertyValues)
+            encodedValue = popTagged(queue, 3);
+        else
+            value = readEncodable(queue, eventObjectIdentifier.getObjectType(), propertyIdentifier,
+                    propertyArrayIndex, 3);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // The encoded value is not serializable.
+        getValue();
+        out.defaultWriteObject();
     }
 
     @Override
@@ -102,7 +175,7 @@ public class ReadPropertyAck extends AcknowledgementService {
         result = PRIME * result + ((eventObjectIdentifier == null) ? 0 : eventObjectIdentifier.hashCode());
         result = PRIME * result + ((propertyArrayIndex == null) ? 0 : propertyArrayIndex.hashCode());
         result = PRIME * result + ((propertyIdentifier == null) ? 0 : propertyIdentifier.hashCode());
-        result = PRIME * result + ((value == null) ? 0 : value.hashCode());
+        result = PRIME * result + ((getValue() == null) ? 0 : getValue().hashCode());
         return result;
     }
 
@@ -133,11 +206,12 @@ public class ReadPropertyAck extends AcknowledgementService {
         }
         else if (!propertyIdentifier.equals(other.propertyIdentifier))
             return false;
+        Encodable value = getValue();
         if (value == null) {
-            if (other.value != null)
+            if (other.getValue() != null)
                 return false;
         }
-        else if (!value.equals(other.value))
+        else if (!value.equals(other.getValue()))
             return false;
         return true;
     }
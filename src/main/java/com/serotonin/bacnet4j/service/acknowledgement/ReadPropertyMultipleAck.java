@@ -28,6 +28,9 @@
  */
 package com.serotonin.bacnet4j.service.acknowledgement;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.serotonin.bacnet4j.exception.BACnetException;
 import com.serotonin.bacnet4j.type.constructed.ReadAccessResult;
 import com.serotonin.bacnet4j.type.constructed.SequenceOf;
@@ -54,8 +57,15 @@ public class ReadPropertyMultipleAck extends AcknowledgementService {
         write(queue, listOfReadAccessResults);
     }
 
-    ReadPropertyMultipleAck(ByteQueue queue) throws BACnetException {
-        listOfReadAccessResults = readSequenceOf(queue, ReadAccessResult.class);
+    ReadPropertyMultipleAck(ByteQueue queue, boolean lazyPropertyValues) throws BACnetException {
+        if (lazyPropertyValues) {
+            List<ReadAccessResult> results = new ArrayList<ReadAccessResult>();
+            while (queue.size() > 0)
+                results.add(new ReadAccessResult(queue, true));
+            listOfReadAccessResults = new SequenceOf<ReadAccessResult>(results);
+        }
+        else
+            listOfReadAccessResults = readSequenceOf(queue, ReadAccessResult.class);
     }
 
     @Override
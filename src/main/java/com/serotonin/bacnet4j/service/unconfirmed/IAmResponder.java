@@ -0,0 +1,182 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.service.unconfirmed;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.npdu.NPDU.Reception;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.util.scheduler.TimerTask;
+
+/**
+ * Answers Who-Is requests on behalf of the local device, bounding its contribution to broadcast storms:
+ * <ul>
+ * <li>The I-Am is addressed the way the Who-Is was: a unicast request is answered to the requester, a local
+ * broadcast with a local broadcast, and only a global broadcast (or a request of unknown addressing) with a global
+ * broadcast.</li>
+ * <li>A request is not answered if an I-Am that also reaches the requester was sent within the suppression window,
+ * so that repeated requests from several workstations cause a single answer.</li>
+ * <li>Answers are delayed by a random jitter, so that the devices answering the same request don't all transmit at
+ * once. This also takes the answer off of the transport thread.</li>
+ * </ul>
+ */
+public class IAmResponder {
+    static final Logger LOG = LoggerFactory.getLogger(IAmResponder.class);
+
+    public static final long DEFAULT_SUPPRESSION_WINDOW = 1000;
+    public static final long DEFAULT_MAX_JITTER = 200;
+    private static final int MAX_UNICAST_TARGETS = 1000;
+
+    private static final Address LOCAL = new Address(Address.LOCAL_NETWORK, new byte[0]);
+
+    private final LocalDevice localDevice;
+    private final Random random = new Random();
+    private volatile long suppressionWindow = DEFAULT_SUPPRESSION_WINDOW;
+    private volatile long maxJitter = DEFAULT_MAX_JITTER;
+
+    // The times at which answers were last sent, by target. Global and local broadcasts are keyed by Address.GLOBAL
+    // and LOCAL respectively.
+    private final Map<Address, Long> lastSent = new HashMap<Address, Long>();
+    private long suppressed;
+
+    public IAmResponder(LocalDevice localDevice) {
+        this.localDevice = localDevice;
+    }
+
+    /**
+     * Sets the time within which a repeated Who-Is is not answered again. 0 disables suppression.
+     */
+    public void setSuppressionWindow(long suppressionWindow) {
+        this.suppressionWindow = suppressionWindow;
+    }
+
+    public long getSuppressionWindow() {
+        return suppressionWindow;
+    }
+
+    /**
+     * Sets the maximum random delay before an answer is sent. 0 answers immediately.
+     */
+    public void setMaxJitter(long maxJitter) {
+        this.maxJitter = maxJitter;
+    }
+
+    public long getMaxJitter() {
+        return maxJitter;
+    }
+
+    /**
+     * @return Returns the number of answers that were suppressed.
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressed;
+    }
+
+    public void whoIsReceived(Address from, Reception reception) {
+        final Address target = getTarget(from, reception);
+        if (!shouldAnswer(target, localDevice.getTimeSource().currentTimeMillis())) {
+            LOG.debug("Suppressed I-Am to {} in answer to Who-Is from {}", target, from);
+            return;
+        }
+
+        long delay = maxJitter > 0 ? (long) (random.nextDouble() * maxJitter) : 0;
+        if (delay == 0)
+            send(target);
+        else {
+            try {
+                localDevice.getTimer().schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        send(target);
+                    }
+                }, delay);
+            }
+            catch (RejectedExecutionException e) {
+                // The local device is shutting down.
+            }
+        }
+    }
+
+    private static Address getTarget(Address from, Reception reception) {
+        if (reception == Reception.UNICAST)
+            return from;
+        if (reception == Reception.LOCAL_BROADCAST && from.getNetworkNumber().intValue() == Address.LOCAL_NETWORK)
+            return LOCAL;
+        return Address.GLOBAL;
+    }
+
+    synchronized boolean shouldAnswer(Address target, long now) {
+        if (suppressionWindow > 0) {
+            long since = now - suppressionWindow;
+            // A global broadcast reaches everyone, and a local broadcast reaches everyone on the local network.
+            if (sentSince(Address.GLOBAL, since) || sentSince(target, since)
+                    || (target != Address.GLOBAL && isLocal(target) && sentSince(LOCAL, since))) {
+                suppressed++;
+                return false;
+            }
+
+            if (lastSent.size() >= MAX_UNICAST_TARGETS) {
+                Iterator<Long> iter = lastSent.values().iterator();
+                while (iter.hasNext()) {
+                    if (iter.next() < since)
+                        iter.remove();
+                }
+            }
+        }
+
+        lastSent.put(target, now);
+        return true;
+    }
+
+    private boolean sentSince(Address target, long since) {
+        Long time = lastSent.get(target);
+        return time != null && time >= since;
+    }
+
+    private static boolean isLocal(Address address) {
+        return address.getNetworkNumber().intValue() == Address.LOCAL_NETWORK;
+    }
+
+    private void send(Address target) {
+        IAmRequest iam = localDevice.getIAm();
+        if (target == Address.GLOBAL)
+            localDevice.sendGlobalBroadcast(iam);
+        else if (target == LOCAL)
+            localDevice.sendLocalBroadcast(iam);
+        else
+            localDevice.send(target, iam);
+    }
+}
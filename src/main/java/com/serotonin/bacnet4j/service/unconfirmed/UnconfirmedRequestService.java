@@ -31,6 +31,7 @@ package com.serotonin.bacnet4j.service.unconfirmed;
 import com.serotonin.bacnet4j.LocalDevice;
 import com.serotonin.bacnet4j.exception.BACnetErrorException;
 import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.npdu.NPDU.Reception;
 import com.serotonin.bacnet4j.service.Service;
 import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.constructed.ServicesSupported;
@@ -97,4 +98,15 @@ abstract public class UnconfirmedRequestService extends Service {
     }
 
     abstract public void handle(LocalDevice localDevice, Address from) throws BACnetException;
+
+    /**
+     * Handles the request with knowledge of how it was addressed. Services whose response depends on that override
+     * this method; by default it is ignored.
+     * 
+     * @param reception
+     *            how the request was addressed, or null if unknown
+     */
+    public void handle(LocalDevice localDevice, Address from, Reception reception) throws BACnetException {
+        handle(localDevice, from);
+    }
 }
@@ -30,6 +30,7 @@ package com.serotonin.bacnet4j.service.unconfirmed;
 
 import com.serotonin.bacnet4j.LocalDevice;
 import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.npdu.NPDU.Reception;
 import com.serotonin.bacnet4j.obj.BACnetObject;
 import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
@@ -59,6 +60,11 @@ public class WhoIsRequest extends UnconfirmedRequestService {
 
     @Override
     public void handle(LocalDevice localDevice, Address from) throws BACnetException {
+        handle(localDevice, from, null);
+    }
+
+    @Override
+    public void handle(LocalDevice localDevice, Address from, Reception reception) throws BACnetException {
         BACnetObject local = localDevice.getConfiguration();
 
         // Check if we're in the device id range.
@@ -69,8 +75,7 @@ public class WhoIsRequest extends UnconfirmedRequestService {
             return;
 
         // Return the result in a i am message.
-        IAmRequest iam = localDevice.getIAm();
-        localDevice.sendGlobalBroadcast(iam);
+        localDevice.getIAmResponder().whoIsReceived(from, reception);
     }
 
     @Override
@@ -28,9 +28,9 @@
 
 package com.serotonin.bacnet4j.transport;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +70,9 @@ import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
 import com.serotonin.bacnet4j.type.enumerated.Segmentation;
 import com.serotonin.bacnet4j.type.error.BaseError;
 import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.ClockTimeSource;
+import com.serotonin.bacnet4j.util.TimeSource;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
 
 /**
@@ -81,8 +84,10 @@ import com.serotonin.bacnet4j.util.sero.ByteQueue;
 public abstract class AbstractTransport implements Transport {
     static final Logger LOG = LoggerFactory.getLogger(AbstractTransport.class);
     static final MaxSegments MAX_SEGMENTS = MaxSegments.MORE_THAN_64;
+    static final TimeSource CLOCK = new ClockTimeSource();
 
-    final Map<Integer, OctetString> networkRouters = Collections.synchronizedMap(new HashMap<Integer, OctetString>());
+    final NetworkRouterCache routerCache = new NetworkRouterCache();
+    private final BroadcastFilter broadcastFilter = new BroadcastFilter();
 
     // Configuration
     private LocalDevice localDevice;
@@ -91,6 +96,7 @@ public abstract class AbstractTransport implements Transport {
     int retries = DEFAULT_RETRIES;
     int segTimeout = DEFAULT_SEG_TIMEOUT;
     int segWindow = DEFAULT_SEG_WINDOW;
+    boolean lazyPropertyValues;
     ServicesSupported servicesSupported;
 
     // Processing
@@ -149,6 +155,16 @@ public abstract class AbstractTransport implements Transport {
         return segWindow;
     }
 
+    @Override
+    public void setLazyPropertyValues(boolean lazyPropertyValues) {
+        this.lazyPropertyValues = lazyPropertyValues;
+    }
+
+    @Override
+    public boolean isLazyPropertyValues() {
+        return lazyPropertyValues;
+    }
+
     @Override
     public Network getNetwork() {
         return network;
@@ -164,6 +180,15 @@ public abstract class AbstractTransport implements Transport {
         this.localDevice = localDevice;
     }
 
+    /**
+     * @return the clock of the local device, or the system clock if the transport is not attached to a device yet
+     */
+    public TimeSource getTimeSource() {
+        if (localDevice == null)
+            return CLOCK;
+        return localDevice.getTimeSource();
+    }
+
     @Override
     public void initialize() throws Exception {
         try {
@@ -205,12 +230,32 @@ public abstract class AbstractTransport implements Transport {
 
     @Override
     public void addNetworkRouter(int networkNumber, OctetString mac) {
-        networkRouters.put(networkNumber, mac);
+        routerCache.add(networkNumber, mac);
     }
 
     @Override
     public Map<Integer, OctetString> getNetworkRouters() {
-        return networkRouters;
+        return routerCache.getRouters();
+    }
+
+    public NetworkRouterCache getNetworkRouterCache() {
+        return routerCache;
+    }
+
+    public BroadcastFilter getBroadcastFilter() {
+        return broadcastFilter;
+    }
+
+    @Override
+    public void findNetworkRouter(int networkNumber) {
+        long now = getTimeSource().currentTimeMillis();
+        if (routerCache.get(networkNumber, now) == null && !routerCache.isUnreachable(networkNumber, now)
+                && routerCache.await(networkNumber, null, now))
+            sendWhoIsRouter(networkNumber);
+    }
+
+    void sendWhoIsRouter(int networkNumber) {
+        network.sendWhoIsRouterToNetwork(getLocalBroadcastAddress(), new UnsignedInteger(networkNumber), true);
     }
 
     //
@@ -259,16 +304,25 @@ public abstract class AbstractTransport implements Transport {
                 if (targetNetworkNumber != Address.LOCAL_NETWORK && targetNetworkNumber != Address.ALL_NETWORKS
                         && targetNetworkNumber != network.getLocalNetworkNumber()) {
                     // Going to a specific remote network. Check if we know the router for it.
-                    linkService = networkRouters.get(targetNetworkNumber);
+                    long now = getTimeSource().currentTimeMillis();
+                    linkService = routerCache.get(targetNetworkNumber, now);
                     if(linkService == null) {
                     	// Try for a local route
                     	if(getNetwork().getRouteNetwork(targetNetworkNumber) != null) {
                     		linkService = getNetwork().getLocalAddress().getMacAddress();
                     	}
+                    	else if (routerCache.isUnreachable(targetNetworkNumber, now)) {
+                            throw new BACnetTimeoutException("Unable to find router to network " + targetNetworkNumber);
+                    	}
+                    	else {
+                            // Wait for the router to be discovered. This is sent again once it is.
+                            if (routerCache.await(targetNetworkNumber, this, now))
+                                sendWhoIsRouter(targetNetworkNumber);
+                            return;
+                    	}
                     }
-//                    if (linkService == null)
-//                        handleException(new BACnetTimeoutException(
-//                                "Unable to find router to network " + address.getNetworkNumber().intValue()));
+                    else if (routerCache.refresh(targetNetworkNumber, now))
+                        sendWhoIsRouter(targetNetworkNumber);
                 }
                 sendImpl();
             }
@@ -302,7 +356,7 @@ public abstract class AbstractTransport implements Transport {
             ByteQueue serviceData = new ByteQueue();
             service.write(serviceData);
 
-            UnackedMessageContext ctx = new UnackedMessageContext(timeout, retries, consumer);
+            UnackedMessageContext ctx = new UnackedMessageContext(getTimeSource(), timeout, retries, consumer);
             UnackedMessageKey key = unackedMessages.addClient(address, linkService, ctx);
 
             APDU apdu;
@@ -388,8 +442,27 @@ public abstract class AbstractTransport implements Transport {
             case Network.I_AM_ROUTER_TO_NETWORK: // I-Am-Router-To-Network
             case Network.I_COULD_BE_ROUTER_TO_NETWORK: // I-Could-Be-Router-To-Network
                 ByteQueue data = in.getNetworkMessageData();
+                long now = getTimeSource().currentTimeMillis();
+                while (data.size() > 1) {
+                    // Send anything that was waiting for this router.
+                    for (Outgoing out : routerCache.learned(data.popU2B(), in.getFrom().getMacAddress(), now))
+                        sendImpl(out);
+                }
+                break;
+            case Network.ROUTER_BUSY_TO_NETWORK: // Router-Busy-To-Network
+            case Network.ROUTER_AVAILABLE_TO_NETWORK: // Router-Available-To-Network
+                boolean busy = in.getNetworkMessageType() == Network.ROUTER_BUSY_TO_NETWORK;
+                data = in.getNetworkMessageData();
+                if (data.size() < 2) {
+                    // An empty list refers to all networks served by the router.
+                    OctetString router = in.getFrom().getMacAddress();
+                    for (Map.Entry<Integer, OctetString> e : routerCache.getRouters().entrySet()) {
+                        if (e.getValue().equals(router))
+                            routerFlowControl(e.getKey(), busy);
+                    }
+                }
                 while (data.size() > 1)
-                    networkRouters.put(data.popU2B(), in.getFrom().getMacAddress());
+                    routerFlowControl(data.popU2B(), busy);
                 break;
             case Network.REJECT_MESSAGE_TO_NETWORK: // Reject-Message-To-Network
                 String reason;
@@ -423,11 +496,22 @@ public abstract class AbstractTransport implements Transport {
             receiveAPDU(in);
     }
 
+    private void routerFlowControl(int networkNumber, boolean busy) {
+        if (busy)
+            network.routerBusy(networkNumber);
+        else
+            network.routerAvailable(networkNumber);
+    }
+
     private void receiveAPDU(NPDU npdu) {
         Address from = npdu.getFrom();
         OctetString linkService = npdu.getLinkService();
         APDU apdu;
 
+        if (!broadcastFilter.accept(localDevice, npdu.getNetworkMessageData()))
+            // Not for us. Drop it without decoding.
+            return;
+
         try {
             apdu = npdu.getAPDU(servicesSupported);
         }
@@ -462,7 +546,7 @@ public abstract class AbstractTransport implements Transport {
                 UnackedMessageContext ctx;
                 if (confAPDU.getSequenceNumber() == 0)
                     // This is the first segment
-                    ctx = new UnackedMessageContext(timeout, retries, null);
+                    ctx = new UnackedMessageContext(getTimeSource(), timeout, retries, null);
                 else {
                     ctx = unackedMessages.remove(key);
                     if (ctx == null)
@@ -496,7 +580,7 @@ public abstract class AbstractTransport implements Transport {
 
             try {
                 ur.parseServiceData();
-                ur.getService().handle(localDevice, from);
+                ur.getService().handle(localDevice, from, npdu.getReception());
             }
             catch (BACnetRejectException e) {
                 // Ignore
@@ -599,7 +683,7 @@ public abstract class AbstractTransport implements Transport {
 
     private void completeComplexAckResponse(ComplexACK cack, ResponseConsumer consumer) {
         try {
-            cack.parseServiceData();
+            cack.parseServiceData(lazyPropertyValues);
             consumer.success(cack.getService());
         }
         catch (BACnetException e) {
@@ -724,7 +808,7 @@ public abstract class AbstractTransport implements Transport {
                     throw new ServiceTooBigException("Response too big to send to device; too many segments required");
 
                 // Prepare the segmenting session.
-                UnackedMessageContext ctx = new UnackedMessageContext(timeout, retries, null);
+                UnackedMessageContext ctx = new UnackedMessageContext(getTimeSource(), timeout, retries, null);
                 UnackedMessageKey key = unackedMessages.addServer(address, linkService, request.getInvokeId(), ctx);
 
                 ctx.setSegmentTemplate(
@@ -748,7 +832,7 @@ public abstract class AbstractTransport implements Transport {
     protected boolean expire() {
         boolean didSomething = false;
 
-        long now = System.currentTimeMillis();
+        long now = getTimeSource().currentTimeMillis();
         Map<UnackedMessageKey, UnackedMessageContext> um = unackedMessages.getRequests();
         Iterator<Map.Entry<UnackedMessageKey, UnackedMessageContext>> umIter = um.entrySet().iterator();
 
@@ -787,6 +871,19 @@ public abstract class AbstractTransport implements Transport {
 	        }
         }
 
+        // Check for expired routes and router discoveries
+        List<Outgoing> timedOut = new ArrayList<Outgoing>();
+        if (routerCache.expire(now, timedOut))
+            didSomething = true;
+        for (Outgoing out : timedOut) {
+            int networkNumber = out.address.getNetworkNumber().intValue();
+            if (routerCache.get(networkNumber, now) != null)
+                // The router was found in the meantime.
+                sendImpl(out);
+            else
+                out.handleException(new BACnetTimeoutException("Unable to find router to network " + networkNumber));
+        }
+
         return !didSomething;
     }
 
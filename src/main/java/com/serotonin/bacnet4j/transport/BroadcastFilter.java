@@ -0,0 +1,210 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.transport;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.apdu.UnconfirmedRequest;
+import com.serotonin.bacnet4j.obj.BACnetObject;
+import com.serotonin.bacnet4j.service.unconfirmed.IAmRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.WhoHasRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.WhoIsRequest;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Decides from the raw APDU whether an unconfirmed request concerns the local device, so that irrelevant
+ * broadcasts can be dropped before anything is decoded. Only the PDU type, the service choice and the first few
+ * tags are peeked at; the queue is not consumed. Whenever the encoding is not the simple form expected here the
+ * request is accepted, so that the full decoding can deal with it.
+ * 
+ * The following are dropped:
+ * <ul>
+ * <li>Who-Is with a device instance range that excludes the local device</li>
+ * <li>Who-Has with such a range, or for an object identifier or (ASCII) object name that the local device does not
+ * have</li>
+ * <li>I-Am from devices outside the range of device instances of interest, if one has been set</li>
+ * </ul>
+ */
+public class BroadcastFilter {
+    private static final int MAX_INSTANCE = 0x3FFFFF;
+
+    private volatile int iAmLowLimit = 0;
+    private volatile int iAmHighLimit = MAX_INSTANCE;
+
+    /**
+     * Sets the range of device instances whose I-Ams are of interest. I-Ams from other devices are dropped, and so
+     * those devices will not be discovered.
+     */
+    public void setIAmDeviceRange(int lowLimit, int highLimit) {
+        iAmLowLimit = lowLimit;
+        iAmHighLimit = highLimit;
+    }
+
+    /**
+     * @return Returns false if the APDU in the queue is an unconfirmed request that does not concern the local
+     *         device.
+     */
+    public boolean accept(LocalDevice localDevice, ByteQueue queue) {
+        int size = queue.size();
+        if (size < 2 || (queue.peek(0) & 0xf0) != UnconfirmedRequest.TYPE_ID << 4)
+            return true;
+
+        byte choice = queue.peek(1);
+        if (choice == WhoIsRequest.TYPE_ID)
+            return inRange(localDevice, queue, 2);
+        if (choice == WhoHasRequest.TYPE_ID)
+            return acceptWhoHas(localDevice, queue);
+        if (choice == IAmRequest.TYPE_ID)
+            return acceptIAm(queue);
+        return true;
+    }
+
+    /**
+     * Checks the optional device instance range of Who-Is and Who-Has, starting at the given position.
+     */
+    private static boolean inRange(LocalDevice localDevice, ByteQueue queue, int pos) {
+        if (queue.size() <= pos || !isContextTag(queue.peek(pos), 0))
+            return true;
+        long low = readUnsigned(queue, pos);
+        pos += 1 + (queue.peek(pos) & 7);
+        if (low < 0 || queue.size() <= pos || !isContextTag(queue.peek(pos), 1))
+            return true;
+        long high = readUnsigned(queue, pos);
+        if (high < 0)
+            return true;
+
+        int id = localDevice.getConfiguration().getInstanceId();
+        return id >= low && id <= high;
+    }
+
+    private static boolean acceptWhoHas(LocalDevice localDevice, ByteQueue queue) {
+        if (!inRange(localDevice, queue, 2))
+            return false;
+
+        // Skip the range, if any.
+        int pos = 2;
+        for (int i = 0; i < 2; i++) {
+            if (queue.size() > pos && isContextTag(queue.peek(pos), i))
+                pos += 1 + (queue.peek(pos) & 7);
+        }
+        if (queue.size() <= pos)
+            return true;
+
+        int tag = queue.peek(pos) & 0xff;
+        if (tag == 0x2C && queue.size() >= pos + 5) {
+            // Object identifier
+            long oid = readUnsigned(queue, pos);
+            int type = (int) (oid >>> 22);
+            int instance = (int) (oid & MAX_INSTANCE);
+            if (type == ObjectType.device.intValue()
+                    && (instance == MAX_INSTANCE || instance == localDevice.getConfiguration().getInstanceId()))
+                return true;
+            for (BACnetObject obj : localDevice.getLocalObjects()) {
+                if (obj.getInstanceId() == instance && obj.getId().getObjectType().intValue() == type)
+                    return true;
+            }
+            return false;
+        }
+
+        if ((tag & 0xF8) == 0x38) {
+            // Object name
+            int length = tag & 7;
+            pos++;
+            if (length == 5) {
+                if (queue.size() <= pos)
+                    return true;
+                length = queue.peek(pos++) & 0xff;
+                if (length >= 254)
+                    // Too long to bother with.
+                    return true;
+            }
+            if (length < 1 || queue.size() < pos + length || queue.peek(pos) != 0)
+                // Not ANSI X3.4/UTF-8.
+                return true;
+            pos++;
+            length--;
+            for (int i = 0; i < length; i++) {
+                if (queue.peek(pos + i) < 0)
+                    // Not ASCII.
+                    return true;
+            }
+
+            if (nameEquals(localDevice.getConfiguration().getObjectName(), queue, pos, length))
+                return true;
+            for (BACnetObject obj : localDevice.getLocalObjects()) {
+                if (nameEquals(obj.getObjectName(), queue, pos, length))
+                    return true;
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean acceptIAm(ByteQueue queue) {
+        int low = iAmLowLimit;
+        int high = iAmHighLimit;
+        if (low <= 0 && high >= MAX_INSTANCE)
+            return true;
+
+        // The device identifier is an application tagged object identifier.
+        if (queue.size() < 7 || (queue.peek(2) & 0xff) != 0xC4)
+            return true;
+        int instance = (int) (readUnsigned(queue, 2) & MAX_INSTANCE);
+        return instance >= low && instance <= high;
+    }
+
+    private static boolean nameEquals(String name, ByteQueue queue, int pos, int length) {
+        if (name == null || name.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != queue.peek(pos + i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isContextTag(byte tag, int number) {
+        return (tag & 0xF8) == ((number << 4) | 0x08);
+    }
+
+    /**
+     * Reads the value of a tag with a length of 1 to 4 that starts at the given position.
+     * 
+     * @return Returns the value, or -1 if the length is not in that range or the data is incomplete.
+     */
+    private static long readUnsigned(ByteQueue queue, int pos) {
+        int length = queue.peek(pos) & 7;
+        if (length < 1 || length > 4 || queue.size() < pos + 1 + length)
+            return -1;
+        long value = 0;
+        for (int i = 1; i <= length; i++)
+            value = (value << 8) | (queue.peek(pos + i) & 0xff);
+        return value;
+    }
+}
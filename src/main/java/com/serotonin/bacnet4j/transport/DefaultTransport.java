@@ -47,6 +47,8 @@ public class DefaultTransport extends AbstractTransport implements Runnable {
     // Message queues
     private final Queue<Outgoing> outgoing = new ConcurrentLinkedQueue<Outgoing>();
     private final Queue<NPDU> incoming = new ConcurrentLinkedQueue<NPDU>();
+    // Requests that must be answered within the data link's reply window.
+    private final Queue<NPDU> incomingRequests = new ConcurrentLinkedQueue<NPDU>();
 
     // Processing
     private Thread thread;
@@ -93,7 +95,10 @@ public class DefaultTransport extends AbstractTransport implements Runnable {
     
     @Override
     public void incoming(NPDU npdu) {
-        incoming.add(npdu);
+        if (npdu.getExpectsReply() && network.hasReplyWindow())
+            incomingRequests.add(npdu);
+        else
+            incoming.add(npdu);
         ThreadUtils.notifySync(pauseLock);
     }
 
@@ -111,6 +116,18 @@ public class DefaultTransport extends AbstractTransport implements Runnable {
         while (running) {
             pause = true;
 
+            // Answer pending requests first, so that the reply is ready before the data link has to postpone it.
+            in = incomingRequests.poll();
+            if (in != null) {
+                try {
+                    receiveImpl(in);
+                }
+                catch (Exception e) {
+                    LOG.error("Error during receive: {}", in, e);
+                }
+                pause = false;
+            }
+
             // Send an outgoing message.
             out = outgoing.poll();
             if (out != null) {
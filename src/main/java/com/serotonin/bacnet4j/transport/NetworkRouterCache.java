@@ -0,0 +1,324 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.transport;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.serotonin.bacnet4j.transport.AbstractTransport.Outgoing;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+/**
+ * Cache of the routers to remote networks, as learned from I-Am-Router-To-Network messages.
+ * 
+ * Learned routes expire after a time to live, and are refreshed when used shortly before they expire. Networks for
+ * which no router answered a discovery are cached as unreachable for a while, so that sends to them fail fast instead
+ * of broadcasting a new Who-Is-Router-To-Network each time. While a discovery is pending, any further sends to the
+ * same network wait for its outcome rather than starting their own.
+ * 
+ * Routes added explicitly with {@link #add(int, OctetString)} never expire.
+ */
+public class NetworkRouterCache {
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000; // 1 hour
+    public static final long DEFAULT_UNREACHABLE_TIME_TO_LIVE = 60 * 1000; // 1 minute
+    public static final long DEFAULT_DISCOVERY_TIMEOUT = 3000;
+
+    private long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private long unreachableTimeToLive = DEFAULT_UNREACHABLE_TIME_TO_LIVE;
+    private long discoveryTimeout = DEFAULT_DISCOVERY_TIMEOUT;
+
+    private final Map<Integer, OctetString> routers = new ConcurrentHashMap<Integer, OctetString>();
+    // Expiry times of the learned routes
+    private final Map<Integer, Long> expiries = new ConcurrentHashMap<Integer, Long>();
+    // Expiry times of the unreachable networks
+    private final Map<Integer, Long> unreachable = new ConcurrentHashMap<Integer, Long>();
+    // Pending discoveries. Guarded by itself.
+    private final Map<Integer, Discovery> discoveries = new HashMap<Integer, Discovery>();
+    private final Map<Integer, OctetString> routersView = new RoutersView();
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getUnreachableTimeToLive() {
+        return unreachableTimeToLive;
+    }
+
+    public void setUnreachableTimeToLive(long unreachableTimeToLive) {
+        this.unreachableTimeToLive = unreachableTimeToLive;
+    }
+
+    public long getDiscoveryTimeout() {
+        return discoveryTimeout;
+    }
+
+    public void setDiscoveryTimeout(long discoveryTimeout) {
+        this.discoveryTimeout = discoveryTimeout;
+    }
+
+    /**
+     * @return a live view of the known routers, indexed by network number. Putting into the view adds a static
+     *         route as {@link #add} does, and removing from it removes the route as {@link #remove} does.
+     */
+    public Map<Integer, OctetString> getRouters() {
+        return routersView;
+    }
+
+    /**
+     * Adds a static route that does not expire.
+     */
+    public void add(int networkNumber, OctetString router) {
+        routers.put(networkNumber, router);
+        expiries.put(networkNumber, Long.MAX_VALUE);
+        unreachable.remove(networkNumber);
+    }
+
+    /**
+     * Adds a route learned from the network.
+     * 
+     * @return the sends that were waiting for a router to the network, if any.
+     */
+    List<Outgoing> learned(int networkNumber, OctetString router, long now) {
+        routers.put(networkNumber, router);
+        Long expiry = expiries.get(networkNumber);
+        if (expiry == null || expiry != Long.MAX_VALUE)
+            expiries.put(networkNumber, now + timeToLive);
+        unreachable.remove(networkNumber);
+
+        Discovery discovery;
+        synchronized (discoveries) {
+            discovery = discoveries.remove(networkNumber);
+        }
+        if (discovery == null)
+            return Collections.emptyList();
+        return discovery.waiting;
+    }
+
+    /**
+     * @return the router to the network, or null if none is known or the route has expired.
+     */
+    public OctetString get(int networkNumber, long now) {
+        OctetString router = routers.get(networkNumber);
+        if (router != null) {
+            Long expiry = expiries.get(networkNumber);
+            if (expiry != null && expiry < now) {
+                remove(networkNumber);
+                return null;
+            }
+        }
+        return router;
+    }
+
+    public void remove(int networkNumber) {
+        routers.remove(networkNumber);
+        expiries.remove(networkNumber);
+    }
+
+    /**
+     * @return true if a discovery for the network recently failed.
+     */
+    public boolean isUnreachable(int networkNumber, long now) {
+        Long expiry = unreachable.get(networkNumber);
+        if (expiry == null)
+            return false;
+        if (expiry < now) {
+            unreachable.remove(networkNumber);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Registers a send that needs a router to the given network.
+     * 
+     * @param out
+     *            the waiting send, or null if nothing needs to wait.
+     * @return true if a new discovery was started, i.e. the caller must send a Who-Is-Router-To-Network.
+     */
+    boolean await(int networkNumber, Outgoing out, long now) {
+        synchronized (discoveries) {
+            Discovery discovery = discoveries.get(networkNumber);
+            boolean started = discovery == null;
+            if (started) {
+                discovery = new Discovery(now + discoveryTimeout);
+                discoveries.put(networkNumber, discovery);
+            }
+            if (out != null)
+                discovery.waiting.add(out);
+            return started;
+        }
+    }
+
+    /**
+     * Checks if the route to the network is close to expiring, and if so starts a refresh.
+     * 
+     * @return true if a refresh was started, i.e. the caller must send a Who-Is-Router-To-Network.
+     */
+    boolean refresh(int networkNumber, long now) {
+        Long expiry = expiries.get(networkNumber);
+        if (expiry == null || expiry == Long.MAX_VALUE || expiry - now > timeToLive / 4)
+            return false;
+        return await(networkNumber, null, now);
+    }
+
+    /**
+     * Purges the expired entries and times out the pending discoveries.
+     * 
+     * @param timedOut
+     *            receives the sends that were waiting for discoveries that timed out.
+     * @return true if anything changed.
+     */
+    boolean expire(long now, List<Outgoing> timedOut) {
+        boolean changed = false;
+
+        synchronized (discoveries) {
+            Iterator<Map.Entry<Integer, Discovery>> it = discoveries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Discovery> e = it.next();
+                if (e.getValue().deadline < now) {
+                    it.remove();
+                    if (!routers.containsKey(e.getKey()))
+                        unreachable.put(e.getKey(), now + unreachableTimeToLive);
+                    timedOut.addAll(e.getValue().waiting);
+                    changed = true;
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, Long> e : expiries.entrySet()) {
+            if (e.getValue() < now) {
+                remove(e.getKey());
+                changed = true;
+            }
+        }
+
+        for (Map.Entry<Integer, Long> e : unreachable.entrySet()) {
+            if (e.getValue() < now)
+                unreachable.remove(e.getKey());
+        }
+
+        return changed;
+    }
+
+    static class Discovery {
+        final long deadline;
+        final List<Outgoing> waiting = new ArrayList<Outgoing>();
+
+        Discovery(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Map view of the routers that writes through to the cache, so that the expiries stay consistent with the
+     * routes.
+     */
+    private class RoutersView extends AbstractMap<Integer, OctetString> {
+        @Override
+        public OctetString get(Object key) {
+            return routers.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return routers.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return routers.size();
+        }
+
+        @Override
+        public OctetString put(Integer networkNumber, OctetString router) {
+            OctetString old = routers.get(networkNumber);
+            add(networkNumber, router);
+            return old;
+        }
+
+        @Override
+        public OctetString remove(Object key) {
+            if (!(key instanceof Integer))
+                return null;
+            OctetString old = routers.get(key);
+            NetworkRouterCache.this.remove((Integer) key);
+            return old;
+        }
+
+        @Override
+        public Set<Entry<Integer, OctetString>> entrySet() {
+            return new AbstractSet<Entry<Integer, OctetString>>() {
+                @Override
+                public int size() {
+                    return routers.size();
+                }
+
+                @Override
+                public Iterator<Entry<Integer, OctetString>> iterator() {
+                    final Iterator<Entry<Integer, OctetString>> it = routers.entrySet().iterator();
+                    return new Iterator<Entry<Integer, OctetString>>() {
+                        private Integer last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Integer, OctetString> next() {
+                            Entry<Integer, OctetString> e = it.next();
+                            last = e.getKey();
+                            return new SimpleImmutableEntry<Integer, OctetString>(e);
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null)
+                                throw new IllegalStateException();
+                            NetworkRouterCache.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -29,9 +29,10 @@
 package com.serotonin.bacnet4j.transport;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,7 +91,7 @@ public class SharedQueueTransport extends AbstractTransport {
         		if(instanceCounter != 0) {
         			LOG.error("Bad value for 'instanceCounter'. Must be 0, actual value = {}", instanceCounter);
         		}
-        		executor = Executors.newFixedThreadPool(threadpoolSize);
+        		executor = createExecutor(threadpoolSize);
         	}
         	if(!initialized) {
         		instanceCounter++;
@@ -131,6 +132,15 @@ public class SharedQueueTransport extends AbstractTransport {
 		}
 	}
 
+	/**
+	 * Creates the shared pool. Its tasks are ordered by priority, so that requests from data links with a reply
+	 * window are handled ahead of the rest of the shared queue.
+	 */
+	static ExecutorService createExecutor(int poolSize) {
+		return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<Runnable>());
+	}
+
 	private void terminateExecutor(ExecutorService srv) {
 		srv.shutdown();
 		try {
@@ -149,7 +159,7 @@ public class SharedQueueTransport extends AbstractTransport {
 	protected void sendImpl(Outgoing out) {
 		if(initialized) {
 			final Outgoing outMsg = out;
-			executor.execute(new Runnable() {
+			executor.execute(new Task(NORMAL_PRIORITY) {
 				
 				@Override
 				public void run() {
@@ -170,7 +180,7 @@ public class SharedQueueTransport extends AbstractTransport {
 	public void incoming(NPDU npdu) {
 		if(initialized) {
 			final NPDU msg = npdu;
-			executor.execute(new Runnable() {
+			executor.execute(new Task(getPriority(npdu)) {
 				
 				@Override
 				public void run() {
@@ -184,6 +194,10 @@ public class SharedQueueTransport extends AbstractTransport {
 		}
 	}
 
+	int getPriority(NPDU npdu) {
+		return npdu.getExpectsReply() && network.hasReplyWindow() ? REQUEST_PRIORITY : NORMAL_PRIORITY;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.serotonin.bacnet4j.transport.AbstractTransport#testCanCreateFuture()
 	 */
@@ -191,4 +205,29 @@ public class SharedQueueTransport extends AbstractTransport {
 	protected void testCanCreateFuture() {
 		// Nothing to be done here. Always can create future
 	}
+
+	static final int REQUEST_PRIORITY = 0;
+	static final int NORMAL_PRIORITY = 1;
+
+	/**
+	 * A task of the shared queue. Tasks with a lower priority value run first, and tasks of the same priority run
+	 * in the order in which they were queued.
+	 */
+	static abstract class Task implements Runnable, Comparable<Task> {
+		private static final AtomicLong nextSequence = new AtomicLong();
+
+		private final int priority;
+		private final long sequence = nextSequence.getAndIncrement();
+
+		Task(int priority) {
+			this.priority = priority;
+		}
+
+		@Override
+		public int compareTo(Task that) {
+			if (priority != that.priority)
+				return priority < that.priority ? -1 : 1;
+			return sequence < that.sequence ? -1 : (sequence == that.sequence ? 0 : 1);
+		}
+	}
 }
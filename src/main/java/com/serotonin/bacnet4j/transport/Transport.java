@@ -77,6 +77,14 @@ public interface Transport {
 
     public int getSegWindow();
 
+    /**
+     * When set, the property values in ReadProperty and ReadPropertyMultiple acknowledgements are kept in their encoded
+     * form and only decoded when first requested. See ReadPropertyAck and ReadAccessResult.Result.
+     */
+    public void setLazyPropertyValues(boolean lazyPropertyValues);
+
+    public boolean isLazyPropertyValues();
+
     void initialize() throws Exception;
 
     void terminate();
@@ -89,8 +97,18 @@ public interface Transport {
 
     void addNetworkRouter(int networkNumber, OctetString mac);
 
+    /**
+     * @return a live view of the known routers, indexed by network number. Putting into the map adds a static route
+     *         as {@link #addNetworkRouter} does.
+     */
     Map<Integer, OctetString> getNetworkRouters();
 
+    /**
+     * Starts the discovery of the router to the given network, unless it is already known, known to be unreachable,
+     * or being discovered.
+     */
+    void findNetworkRouter(int networkNumber);
+
     void send(Address address, UnconfirmedRequestService service, boolean broadcast);
 
     ServiceFuture send(Address address, int maxAPDULengthAccepted, Segmentation segmentationSupported,
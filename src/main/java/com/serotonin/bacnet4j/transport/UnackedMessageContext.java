@@ -31,12 +31,17 @@ package com.serotonin.bacnet4j.transport;
 import com.serotonin.bacnet4j.ResponseConsumer;
 import com.serotonin.bacnet4j.apdu.APDU;
 import com.serotonin.bacnet4j.apdu.Segmentable;
+import com.serotonin.bacnet4j.util.ClockTimeSource;
+import com.serotonin.bacnet4j.util.TimeSource;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
 
 public class UnackedMessageContext {
     private long deadline;
     private int attemptsLeft;
 
+    // The clock against which the deadline is set.
+    private final TimeSource timeSource;
+
     // The response consumer, for confirmed requests
     private final ResponseConsumer consumer;
 
@@ -54,17 +59,22 @@ public class UnackedMessageContext {
     private int lastIdSent;
 
     public UnackedMessageContext(int timeout, int retries, ResponseConsumer consumer) {
+        this(new ClockTimeSource(), timeout, retries, consumer);
+    }
+
+    public UnackedMessageContext(TimeSource timeSource, int timeout, int retries, ResponseConsumer consumer) {
+        this.timeSource = timeSource;
         reset(timeout, retries);
         this.consumer = consumer;
     }
 
     public void retry(int timeout) {
-        this.deadline = System.currentTimeMillis() + timeout;
+        this.deadline = timeSource.currentTimeMillis() + timeout;
         attemptsLeft--;
     }
 
     public void reset(int timeout, int retries) {
-        this.deadline = System.currentTimeMillis() + timeout;
+        this.deadline = timeSource.currentTimeMillis() + timeout;
         this.attemptsLeft = retries;
     }
 
@@ -129,8 +139,7 @@ public class UnackedMessageContext {
     }
 
     public ByteQueue getNextSegment() {
-        int count = serviceData.pop(segBuf);
-        return new ByteQueue(segBuf, 0, count);
+        return serviceData.popSlice(Math.min(segBuf.length, serviceData.size()));
     }
 
     public int getLastIdSent() {
@@ -0,0 +1,1266 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+
+package com.serotonin.bacnet4j.type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.exception.ReflectionException;
+import com.serotonin.bacnet4j.type.constructed.AccessRule;
+import com.serotonin.bacnet4j.type.constructed.AccumulatorRecord;
+import com.serotonin.bacnet4j.type.constructed.ActionCommand;
+import com.serotonin.bacnet4j.type.constructed.ActionList;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.constructed.AddressBinding;
+import com.serotonin.bacnet4j.type.constructed.AssignedAccessRights;
+import com.serotonin.bacnet4j.type.constructed.AuthenticationFactor;
+import com.serotonin.bacnet4j.type.constructed.AuthenticationFactorFormat;
+import com.serotonin.bacnet4j.type.constructed.BACnetError;
+import com.serotonin.bacnet4j.type.constructed.CalendarEntry;
+import com.serotonin.bacnet4j.type.constructed.ClientCov;
+import com.serotonin.bacnet4j.type.constructed.CovSubscription;
+import com.serotonin.bacnet4j.type.constructed.DailySchedule;
+import com.serotonin.bacnet4j.type.constructed.DateRange;
+import com.serotonin.bacnet4j.type.constructed.DateTime;
+import com.serotonin.bacnet4j.type.constructed.DaysOfWeek;
+import com.serotonin.bacnet4j.type.constructed.Destination;
+import com.serotonin.bacnet4j.type.constructed.DeviceObjectPropertyReference;
+import com.serotonin.bacnet4j.type.constructed.DeviceObjectPropertyValue;
+import com.serotonin.bacnet4j.type.constructed.DeviceObjectReference;
+import com.serotonin.bacnet4j.type.constructed.EventLogRecord;
+import com.serotonin.bacnet4j.type.constructed.EventTransitionBits;
+import com.serotonin.bacnet4j.type.constructed.GroupChannelValue;
+import com.serotonin.bacnet4j.type.constructed.LightingCommand;
+import com.serotonin.bacnet4j.type.constructed.LimitEnable;
+import com.serotonin.bacnet4j.type.constructed.LogData;
+import com.serotonin.bacnet4j.type.constructed.LogMultipleRecord;
+import com.serotonin.bacnet4j.type.constructed.LogRecord;
+import com.serotonin.bacnet4j.type.constructed.LogStatus;
+import com.serotonin.bacnet4j.type.constructed.ObjectPropertyReference;
+import com.serotonin.bacnet4j.type.constructed.ObjectPropertyValue;
+import com.serotonin.bacnet4j.type.constructed.ObjectTypesSupported;
+import com.serotonin.bacnet4j.type.constructed.Prescale;
+import com.serotonin.bacnet4j.type.constructed.PriorityArray;
+import com.serotonin.bacnet4j.type.constructed.PriorityValue;
+import com.serotonin.bacnet4j.type.constructed.PropertyReference;
+import com.serotonin.bacnet4j.type.constructed.PropertyStates;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessSpecification;
+import com.serotonin.bacnet4j.type.constructed.Recipient;
+import com.serotonin.bacnet4j.type.constructed.RecipientProcess;
+import com.serotonin.bacnet4j.type.constructed.ResultFlags;
+import com.serotonin.bacnet4j.type.constructed.Scale;
+import com.serotonin.bacnet4j.type.constructed.ServicesSupported;
+import com.serotonin.bacnet4j.type.constructed.SessionKey;
+import com.serotonin.bacnet4j.type.constructed.SetpointReference;
+import com.serotonin.bacnet4j.type.constructed.ShedLevel;
+import com.serotonin.bacnet4j.type.constructed.SpecialEvent;
+import com.serotonin.bacnet4j.type.constructed.StatusFlags;
+import com.serotonin.bacnet4j.type.constructed.TimeStamp;
+import com.serotonin.bacnet4j.type.constructed.TimeValue;
+import com.serotonin.bacnet4j.type.constructed.VtSession;
+import com.serotonin.bacnet4j.type.constructed.WeekNDay;
+import com.serotonin.bacnet4j.type.constructed.WriteAccessSpecification;
+import com.serotonin.bacnet4j.type.enumerated.AbortReason;
+import com.serotonin.bacnet4j.type.enumerated.AccessAuthenticationFactorDisable;
+import com.serotonin.bacnet4j.type.enumerated.AccessCredentialDisable;
+import com.serotonin.bacnet4j.type.enumerated.AccessCredentialDisableReason;
+import com.serotonin.bacnet4j.type.enumerated.AccessEvent;
+import com.serotonin.bacnet4j.type.enumerated.AccessPassbackMode;
+import com.serotonin.bacnet4j.type.enumerated.AccessUserType;
+import com.serotonin.bacnet4j.type.enumerated.AccessZoneOccupancyState;
+import com.serotonin.bacnet4j.type.enumerated.Action;
+import com.serotonin.bacnet4j.type.enumerated.AuthenticationFactorType;
+import com.serotonin.bacnet4j.type.enumerated.AuthenticationStatus;
+import com.serotonin.bacnet4j.type.enumerated.BackupState;
+import com.serotonin.bacnet4j.type.enumerated.BinaryPV;
+import com.serotonin.bacnet4j.type.enumerated.DeviceStatus;
+import com.serotonin.bacnet4j.type.enumerated.DoorAlarmState;
+import com.serotonin.bacnet4j.type.enumerated.DoorSecuredStatus;
+import com.serotonin.bacnet4j.type.enumerated.DoorStatus;
+import com.serotonin.bacnet4j.type.enumerated.DoorValue;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
+import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
+import com.serotonin.bacnet4j.type.enumerated.EventState;
+import com.serotonin.bacnet4j.type.enumerated.EventType;
+import com.serotonin.bacnet4j.type.enumerated.FileAccessMethod;
+import com.serotonin.bacnet4j.type.enumerated.LifeSafetyMode;
+import com.serotonin.bacnet4j.type.enumerated.LifeSafetyOperation;
+import com.serotonin.bacnet4j.type.enumerated.LifeSafetyState;
+import com.serotonin.bacnet4j.type.enumerated.LightingInProgress;
+import com.serotonin.bacnet4j.type.enumerated.LightingOperation;
+import com.serotonin.bacnet4j.type.enumerated.LightingTransition;
+import com.serotonin.bacnet4j.type.enumerated.LockStatus;
+import com.serotonin.bacnet4j.type.enumerated.LoggingType;
+import com.serotonin.bacnet4j.type.enumerated.Maintenance;
+import com.serotonin.bacnet4j.type.enumerated.MessagePriority;
+import com.serotonin.bacnet4j.type.enumerated.NodeType;
+import com.serotonin.bacnet4j.type.enumerated.NotifyType;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.Polarity;
+import com.serotonin.bacnet4j.type.enumerated.ProgramError;
+import com.serotonin.bacnet4j.type.enumerated.ProgramRequest;
+import com.serotonin.bacnet4j.type.enumerated.ProgramState;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.enumerated.RejectReason;
+import com.serotonin.bacnet4j.type.enumerated.Reliability;
+import com.serotonin.bacnet4j.type.enumerated.RestartReason;
+import com.serotonin.bacnet4j.type.enumerated.SecurityLevel;
+import com.serotonin.bacnet4j.type.enumerated.Segmentation;
+import com.serotonin.bacnet4j.type.enumerated.ShedState;
+import com.serotonin.bacnet4j.type.enumerated.SilencedState;
+import com.serotonin.bacnet4j.type.enumerated.VtClass;
+import com.serotonin.bacnet4j.type.enumerated.WriteStatus;
+import com.serotonin.bacnet4j.type.eventParameter.EventParameter;
+import com.serotonin.bacnet4j.type.notificationParameters.NotificationParameters;
+import com.serotonin.bacnet4j.type.primitive.BitString;
+import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.Date;
+import com.serotonin.bacnet4j.type.primitive.Double;
+import com.serotonin.bacnet4j.type.primitive.Enumerated;
+import com.serotonin.bacnet4j.type.primitive.Null;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.type.primitive.Primitive;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.SignedInteger;
+import com.serotonin.bacnet4j.type.primitive.Time;
+import com.serotonin.bacnet4j.type.primitive.Unsigned16;
+import com.serotonin.bacnet4j.type.primitive.Unsigned32;
+import com.serotonin.bacnet4j.type.primitive.Unsigned8;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Maps Encodable types to the code that decodes them, so that decoding does not need to look up and invoke
+ * constructors by reflection. All primitive, enumerated and constructed types, event parameters and notification
+ * parameters that have a ByteQueue constructor are registered up front with direct constructor calls. Other types,
+ * including vendor extensions that are not registered, fall back to their ByteQueue constructor, which is looked up
+ * only once per type.
+ */
+public class DecoderRegistry {
+    public interface Decoder<T extends Encodable> {
+        T decode(ByteQueue queue) throws BACnetException;
+    }
+
+    /**
+     * Decodes types that need their context id, i.e. that have a (ByteQueue, int) constructor.
+     */
+    public interface ContextDecoder<T extends Encodable> {
+        T decode(ByteQueue queue, int contextId) throws BACnetException;
+    }
+
+    private static final ConcurrentMap<Class<?>, Decoder<?>> decoders = //
+            new ConcurrentHashMap<Class<?>, Decoder<?>>();
+    private static final ConcurrentMap<Class<?>, ContextDecoder<?>> contextDecoders = //
+            new ConcurrentHashMap<Class<?>, ContextDecoder<?>>();
+
+    /**
+     * Registers the decoder of the given type, replacing any existing one.
+     */
+    public static <T extends Encodable> void register(Class<T> clazz, Decoder<T> decoder) {
+        decoders.put(clazz, decoder);
+    }
+
+    /**
+     * Registers the context decoder of the given type, replacing any existing one.
+     */
+    public static <T extends Encodable> void register(Class<T> clazz, ContextDecoder<T> decoder) {
+        contextDecoders.put(clazz, decoder);
+    }
+
+    /**
+     * Removes the decoder and context decoder of the given type, so that it falls back to its constructors again.
+     */
+    public static void unregister(Class<? extends Encodable> clazz) {
+        decoders.remove(clazz);
+        contextDecoders.remove(clazz);
+    }
+
+    /**
+     * Returns whether the type has a registered decoder, as opposed to none or a reflective fallback.
+     */
+    static boolean isRegistered(Class<?> clazz) {
+        Decoder<?> decoder = decoders.get(clazz);
+        return decoder != null && !(decoder instanceof ReflectiveDecoder);
+    }
+
+    /**
+     * Returns whether the type has a registered context decoder, as opposed to none or a reflective fallback.
+     */
+    static boolean isContextRegistered(Class<?> clazz) {
+        ContextDecoder<?> decoder = contextDecoders.get(clazz);
+        return decoder != null && !(decoder instanceof ReflectiveDecoder);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Encodable> Decoder<T> getDecoder(Class<T> clazz) {
+        Decoder<T> decoder = (Decoder<T>) decoders.get(clazz);
+        if (decoder == null) {
+            decoder = new ReflectiveDecoder<T>(clazz);
+            Decoder<T> existing = (Decoder<T>) decoders.putIfAbsent(clazz, decoder);
+            if (existing != null)
+                decoder = existing;
+        }
+        return decoder;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Encodable> ContextDecoder<T> getContextDecoder(Class<T> clazz) {
+        ContextDecoder<T> decoder = (ContextDecoder<T>) contextDecoders.get(clazz);
+        if (decoder == null) {
+            decoder = new ReflectiveDecoder<T>(clazz);
+            ContextDecoder<T> existing = (ContextDecoder<T>) contextDecoders.putIfAbsent(clazz, decoder);
+            if (existing != null)
+                decoder = existing;
+        }
+        return decoder;
+    }
+
+    /**
+     * Calls the ByteQueue or (ByteQueue, int) constructor of a type that has no registered decoder. The
+     * constructors are resolved once.
+     */
+    static class ReflectiveDecoder<T extends Encodable> implements Decoder<T>, ContextDecoder<T> {
+        private final Constructor<T> constructor;
+        private final Constructor<T> contextConstructor;
+        private final NoSuchMethodException missing;
+        private final NoSuchMethodException contextMissing;
+
+        ReflectiveDecoder(Class<T> clazz) {
+            Constructor<T> c = null;
+            NoSuchMethodException m = null;
+            try {
+                c = clazz.getConstructor(ByteQueue.class);
+            }
+            catch (NoSuchMethodException e) {
+                m = e;
+            }
+            constructor = c;
+            missing = m;
+
+            c = null;
+            m = null;
+            try {
+                c = clazz.getConstructor(ByteQueue.class, Integer.TYPE);
+            }
+            catch (NoSuchMethodException e) {
+                m = e;
+            }
+            contextConstructor = c;
+            contextMissing = m;
+        }
+
+        @Override
+        public T decode(ByteQueue queue) throws BACnetException {
+            if (constructor == null)
+                throw new BACnetException(missing);
+            return newInstance(constructor, queue);
+        }
+
+        @Override
+        public T decode(ByteQueue queue, int contextId) throws BACnetException {
+            if (contextConstructor == null)
+                throw new BACnetException(contextMissing);
+            return newInstance(contextConstructor, queue, contextId);
+        }
+
+        private static <T> T newInstance(Constructor<T> constructor, Object... args) throws BACnetException {
+            try {
+                return constructor.newInstance(args);
+            }
+            catch (InvocationTargetException e) {
+                // Check if there is a wrapped BACnet exception
+                if (e.getCause() instanceof BACnetException)
+                    throw (BACnetException) e.getCause();
+                throw new ReflectionException(e);
+            }
+            catch (Exception e) {
+                throw new BACnetException(e);
+            }
+        }
+    }
+
+    /**
+     * Decodes an enumeration to a shared instance of its value, so that decoding a value that has been seen before
+     * costs no allocation. The constants of the type are shared from the start. Other values, e.g. proprietary ones,
+     * are shared once decoded, up to a limit.
+     */
+    static class InterningDecoder<T extends Enumerated> implements Decoder<T> {
+        // Values below this are looked up by index. Others are kept in a small sorted table.
+        private static final int DIRECT_LIMIT = 1024;
+        private static final int MAX_OTHERS = 256;
+
+        private final Decoder<T> decoder;
+        private final AtomicReferenceArray<T> direct = new AtomicReferenceArray<T>(DIRECT_LIMIT);
+        private volatile Others others = new Others(new int[0], new Object[0]);
+
+        InterningDecoder(Decoder<T> decoder, T[] constants) {
+            this.decoder = decoder;
+            for (T constant : constants)
+                intern(constant);
+        }
+
+        @Override
+        public T decode(ByteQueue queue) throws BACnetException {
+            // Peek at the tag and value, so that a known value can be returned without decoding it.
+            int b = queue.peek(0) & 0xff;
+            int tagLength = (b & 0xf0) == 0xf0 ? 2 : 1;
+            int length = b & 7;
+            if (length <= 4 && queue.size() >= tagLength + length) {
+                int value = 0;
+                for (int i = 0; i < length; i++)
+                    value = (value << 8) | (queue.peek(tagLength + i) & 0xff);
+                T known = value >= 0 ? lookup(value) : null;
+                if (known != null) {
+                    queue.pop(tagLength + length);
+                    return known;
+                }
+            }
+
+            return intern(decoder.decode(queue));
+        }
+
+        @SuppressWarnings("unchecked")
+        private T lookup(int value) {
+            if (value < DIRECT_LIMIT)
+                return direct.get(value);
+            Others others = this.others;
+            int index = Arrays.binarySearch(others.keys, value);
+            if (index < 0)
+                return null;
+            return (T) others.values[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        private T intern(T t) {
+            long value = t.longValue();
+            if (value < 0 || value > Integer.MAX_VALUE)
+                return t;
+
+            if (value < DIRECT_LIMIT) {
+                direct.compareAndSet((int) value, null, t);
+                return direct.get((int) value);
+            }
+
+            synchronized (this) {
+                int[] oldKeys = others.keys;
+                Object[] oldValues = others.values;
+                int index = Arrays.binarySearch(oldKeys, (int) value);
+                if (index >= 0)
+                    return (T) oldValues[index];
+                if (oldKeys.length >= MAX_OTHERS)
+                    return t;
+
+                index = -index - 1;
+                int[] keys = new int[oldKeys.length + 1];
+                Object[] values = new Object[keys.length];
+                System.arraycopy(oldKeys, 0, keys, 0, index);
+                System.arraycopy(oldValues, 0, values, 0, index);
+                keys[index] = (int) value;
+                values[index] = t;
+                System.arraycopy(oldKeys, index, keys, index + 1, oldKeys.length - index);
+                System.arraycopy(oldValues, index, values, index + 1, oldValues.length - index);
+                others = new Others(keys, values);
+                return t;
+            }
+        }
+
+        /**
+         * Values at or above DIRECT_LIMIT. Replaced as a whole when a value is added. The keys are sorted, and each
+         * value is at the same index as its key.
+         */
+        private static class Others {
+            final int[] keys;
+            final Object[] values;
+
+            Others(int[] keys, Object[] values) {
+                this.keys = keys;
+                this.values = values;
+            }
+        }
+    }
+
+    /**
+     * Wraps the decoders of enumerations that declare their constants in an ALL array so that they return shared
+     * instances.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void internEnumerations() {
+        for (Map.Entry<Class<?>, Decoder<?>> e : decoders.entrySet()) {
+            Class<?> clazz = e.getKey();
+            if (!Enumerated.class.isAssignableFrom(clazz))
+                continue;
+
+            Object constants;
+            try {
+                Field field = clazz.getField("ALL");
+                if (!Modifier.isStatic(field.getModifiers()) || field.getType().getComponentType() != clazz)
+                    continue;
+                constants = field.get(null);
+            }
+            catch (NoSuchFieldException ex) {
+                continue;
+            }
+            catch (IllegalAccessException ex) {
+                continue;
+            }
+            e.setValue(new InterningDecoder((Decoder) e.getValue(), (Enumerated[]) constants));
+        }
+    }
+
+    static {
+        // Types without a ByteQueue constructor of their own, and types that also decode with a context id.
+        register(Primitive.class, new Decoder<Primitive>() {
+            @Override
+            public Primitive decode(ByteQueue queue) throws BACnetException {
+                return Primitive.createPrimitive(queue);
+            }
+        });
+        register(EventParameter.class, new Decoder<EventParameter>() {
+            @Override
+            public EventParameter decode(ByteQueue queue) throws BACnetException {
+                return EventParameter.createEventParameter(queue);
+            }
+        });
+        register(PriorityArray.class, new ContextDecoder<PriorityArray>() {
+            @Override
+            public PriorityArray decode(ByteQueue queue, int contextId) throws BACnetException {
+                return new PriorityArray(queue, contextId);
+            }
+        });
+        register(AmbiguousValue.class, new ContextDecoder<AmbiguousValue>() {
+            @Override
+            public AmbiguousValue decode(ByteQueue queue, int contextId) throws BACnetException {
+                return new AmbiguousValue(queue, contextId);
+            }
+        });
+        register(AmbiguousValue.class, new Decoder<AmbiguousValue>() {
+            @Override
+            public AmbiguousValue decode(ByteQueue queue) throws BACnetException {
+                return new AmbiguousValue(queue);
+            }
+        });
+
+        // Primitives
+        register(BitString.class, new Decoder<BitString>() {
+            @Override
+            public BitString decode(ByteQueue queue) throws BACnetException {
+                return new BitString(queue);
+            }
+        });
+        register(Boolean.class, new Decoder<Boolean>() {
+            @Override
+            public Boolean decode(ByteQueue queue) throws BACnetException {
+                return new Boolean(queue);
+            }
+        });
+        register(CharacterString.class, new Decoder<CharacterString>() {
+            @Override
+            public CharacterString decode(ByteQueue queue) throws BACnetException {
+                return new CharacterString(queue);
+            }
+        });
+        register(Date.class, new Decoder<Date>() {
+            @Override
+            public Date decode(ByteQueue queue) throws BACnetException {
+                return new Date(queue);
+            }
+        });
+        register(Double.class, new Decoder<Double>() {
+            @Override
+            public Double decode(ByteQueue queue) throws BACnetException {
+                return new Double(queue);
+            }
+        });
+        register(Enumerated.class, new Decoder<Enumerated>() {
+            @Override
+            public Enumerated decode(ByteQueue queue) throws BACnetException {
+                return new Enumerated(queue);
+            }
+        });
+        register(Null.class, new Decoder<Null>() {
+            @Override
+            public Null decode(ByteQueue queue) throws BACnetException {
+                return new Null(queue);
+            }
+        });
+        register(ObjectIdentifier.class, new Decoder<ObjectIdentifier>() {
+            @Override
+            public ObjectIdentifier decode(ByteQueue queue) throws BACnetException {
+                return new ObjectIdentifier(queue);
+            }
+        });
+        register(OctetString.class, new Decoder<OctetString>() {
+            @Override
+            public OctetString decode(ByteQueue queue) throws BACnetException {
+                return new OctetString(queue);
+            }
+        });
+        register(Real.class, new Decoder<Real>() {
+            @Override
+            public Real decode(ByteQueue queue) throws BACnetException {
+                return new Real(queue);
+            }
+        });
+        register(SignedInteger.class, new Decoder<SignedInteger>() {
+            @Override
+            public SignedInteger decode(ByteQueue queue) throws BACnetException {
+                return new SignedInteger(queue);
+            }
+        });
+        register(Time.class, new Decoder<Time>() {
+            @Override
+            public Time decode(ByteQueue queue) throws BACnetException {
+                return new Time(queue);
+            }
+        });
+        register(Unsigned16.class, new Decoder<Unsigned16>() {
+            @Override
+            public Unsigned16 decode(ByteQueue queue) throws BACnetException {
+                return new Unsigned16(queue);
+            }
+        });
+        register(Unsigned32.class, new Decoder<Unsigned32>() {
+            @Override
+            public Unsigned32 decode(ByteQueue queue) throws BACnetException {
+                return new Unsigned32(queue);
+            }
+        });
+        register(Unsigned8.class, new Decoder<Unsigned8>() {
+            @Override
+            public Unsigned8 decode(ByteQueue queue) throws BACnetException {
+                return new Unsigned8(queue);
+            }
+        });
+        register(UnsignedInteger.class, new Decoder<UnsignedInteger>() {
+            @Override
+            public UnsignedInteger decode(ByteQueue queue) throws BACnetException {
+                return new UnsignedInteger(queue);
+            }
+        });
+
+        // Enumerations
+        register(AbortReason.class, new Decoder<AbortReason>() {
+            @Override
+            public AbortReason decode(ByteQueue queue) throws BACnetException {
+                return new AbortReason(queue);
+            }
+        });
+        register(AccessAuthenticationFactorDisable.class, new Decoder<AccessAuthenticationFactorDisable>() {
+            @Override
+            public AccessAuthenticationFactorDisable decode(ByteQueue queue) throws BACnetException {
+                return new AccessAuthenticationFactorDisable(queue);
+            }
+        });
+        register(AccessCredentialDisable.class, new Decoder<AccessCredentialDisable>() {
+            @Override
+            public AccessCredentialDisable decode(ByteQueue queue) throws BACnetException {
+                return new AccessCredentialDisable(queue);
+            }
+        });
+        register(AccessCredentialDisableReason.class, new Decoder<AccessCredentialDisableReason>() {
+            @Override
+            public AccessCredentialDisableReason decode(ByteQueue queue) throws BACnetException {
+                return new AccessCredentialDisableReason(queue);
+            }
+        });
+        register(AccessEvent.class, new Decoder<AccessEvent>() {
+            @Override
+            public AccessEvent decode(ByteQueue queue) throws BACnetException {
+                return new AccessEvent(queue);
+            }
+        });
+        register(AccessPassbackMode.class, new Decoder<AccessPassbackMode>() {
+            @Override
+            public AccessPassbackMode decode(ByteQueue queue) throws BACnetException {
+                return new AccessPassbackMode(queue);
+            }
+        });
+        register(AccessUserType.class, new Decoder<AccessUserType>() {
+            @Override
+            public AccessUserType decode(ByteQueue queue) throws BACnetException {
+                return new AccessUserType(queue);
+            }
+        });
+        register(AccessZoneOccupancyState.class, new Decoder<AccessZoneOccupancyState>() {
+            @Override
+            public AccessZoneOccupancyState decode(ByteQueue queue) throws BACnetException {
+                return new AccessZoneOccupancyState(queue);
+            }
+        });
+        register(Action.class, new Decoder<Action>() {
+            @Override
+            public Action decode(ByteQueue queue) throws BACnetException {
+                return new Action(queue);
+            }
+        });
+        register(AuthenticationFactorType.class, new Decoder<AuthenticationFactorType>() {
+            @Override
+            public AuthenticationFactorType decode(ByteQueue queue) throws BACnetException {
+                return new AuthenticationFactorType(queue);
+            }
+        });
+        register(AuthenticationStatus.class, new Decoder<AuthenticationStatus>() {
+            @Override
+            public AuthenticationStatus decode(ByteQueue queue) throws BACnetException {
+                return new AuthenticationStatus(queue);
+            }
+        });
+        register(BackupState.class, new Decoder<BackupState>() {
+            @Override
+            public BackupState decode(ByteQueue queue) throws BACnetException {
+                return new BackupState(queue);
+            }
+        });
+        register(BinaryPV.class, new Decoder<BinaryPV>() {
+            @Override
+            public BinaryPV decode(ByteQueue queue) throws BACnetException {
+                return new BinaryPV(queue);
+            }
+        });
+        register(DeviceStatus.class, new Decoder<DeviceStatus>() {
+            @Override
+            public DeviceStatus decode(ByteQueue queue) throws BACnetException {
+                return new DeviceStatus(queue);
+            }
+        });
+        register(DoorAlarmState.class, new Decoder<DoorAlarmState>() {
+            @Override
+            public DoorAlarmState decode(ByteQueue queue) throws BACnetException {
+                return new DoorAlarmState(queue);
+            }
+        });
+        register(DoorSecuredStatus.class, new Decoder<DoorSecuredStatus>() {
+            @Override
+            public DoorSecuredStatus decode(ByteQueue queue) throws BACnetException {
+                return new DoorSecuredStatus(queue);
+            }
+        });
+        register(DoorStatus.class, new Decoder<DoorStatus>() {
+            @Override
+            public DoorStatus decode(ByteQueue queue) throws BACnetException {
+                return new DoorStatus(queue);
+            }
+        });
+        register(DoorValue.class, new Decoder<DoorValue>() {
+            @Override
+            public DoorValue decode(ByteQueue queue) throws BACnetException {
+                return new DoorValue(queue);
+            }
+        });
+        register(EngineeringUnits.class, new Decoder<EngineeringUnits>() {
+            @Override
+            public EngineeringUnits decode(ByteQueue queue) throws BACnetException {
+                return new EngineeringUnits(queue);
+            }
+        });
+        register(ErrorClass.class, new Decoder<ErrorClass>() {
+            @Override
+            public ErrorClass decode(ByteQueue queue) throws BACnetException {
+                return new ErrorClass(queue);
+            }
+        });
+        register(ErrorCode.class, new Decoder<ErrorCode>() {
+            @Override
+            public ErrorCode decode(ByteQueue queue) throws BACnetException {
+                return new ErrorCode(queue);
+            }
+        });
+        register(EventState.class, new Decoder<EventState>() {
+            @Override
+            public EventState decode(ByteQueue queue) throws BACnetException {
+                return new EventState(queue);
+            }
+        });
+        register(EventType.class, new Decoder<EventType>() {
+            @Override
+            public EventType decode(ByteQueue queue) throws BACnetException {
+                return new EventType(queue);
+            }
+        });
+        register(FileAccessMethod.class, new Decoder<FileAccessMethod>() {
+            @Override
+            public FileAccessMethod decode(ByteQueue queue) throws BACnetException {
+                return new FileAccessMethod(queue);
+            }
+        });
+        register(LifeSafetyMode.class, new Decoder<LifeSafetyMode>() {
+            @Override
+            public LifeSafetyMode decode(ByteQueue queue) throws BACnetException {
+                return new LifeSafetyMode(queue);
+            }
+        });
+        register(LifeSafetyOperation.class, new Decoder<LifeSafetyOperation>() {
+            @Override
+            public LifeSafetyOperation decode(ByteQueue queue) throws BACnetException {
+                return new LifeSafetyOperation(queue);
+            }
+        });
+        register(LifeSafetyState.class, new Decoder<LifeSafetyState>() {
+            @Override
+            public LifeSafetyState decode(ByteQueue queue) throws BACnetException {
+                return new LifeSafetyState(queue);
+            }
+        });
+        register(LightingInProgress.class, new Decoder<LightingInProgress>() {
+            @Override
+            public LightingInProgress decode(ByteQueue queue) throws BACnetException {
+                return new LightingInProgress(queue);
+            }
+        });
+        register(LightingOperation.class, new Decoder<LightingOperation>() {
+            @Override
+            public LightingOperation decode(ByteQueue queue) throws BACnetException {
+                return new LightingOperation(queue);
+            }
+        });
+        register(LightingTransition.class, new Decoder<LightingTransition>() {
+            @Override
+            public LightingTransition decode(ByteQueue queue) throws BACnetException {
+                return new LightingTransition(queue);
+            }
+        });
+        register(LockStatus.class, new Decoder<LockStatus>() {
+            @Override
+            public LockStatus decode(ByteQueue queue) throws BACnetException {
+                return new LockStatus(queue);
+            }
+        });
+        register(LoggingType.class, new Decoder<LoggingType>() {
+            @Override
+            public LoggingType decode(ByteQueue queue) throws BACnetException {
+                return new LoggingType(queue);
+            }
+        });
+        register(Maintenance.class, new Decoder<Maintenance>() {
+            @Override
+            public Maintenance decode(ByteQueue queue) throws BACnetException {
+                return new Maintenance(queue);
+            }
+        });
+        register(MessagePriority.class, new Decoder<MessagePriority>() {
+            @Override
+            public MessagePriority decode(ByteQueue queue) throws BACnetException {
+                return new MessagePriority(queue);
+            }
+        });
+        register(NodeType.class, new Decoder<NodeType>() {
+            @Override
+            public NodeType decode(ByteQueue queue) throws BACnetException {
+                return new NodeType(queue);
+            }
+        });
+        register(NotifyType.class, new Decoder<NotifyType>() {
+            @Override
+            public NotifyType decode(ByteQueue queue) throws BACnetException {
+                return new NotifyType(queue);
+            }
+        });
+        register(ObjectType.class, new Decoder<ObjectType>() {
+            @Override
+            public ObjectType decode(ByteQueue queue) throws BACnetException {
+                return new ObjectType(queue);
+            }
+        });
+        register(Polarity.class, new Decoder<Polarity>() {
+            @Override
+            public Polarity decode(ByteQueue queue) throws BACnetException {
+                return new Polarity(queue);
+            }
+        });
+        register(ProgramError.class, new Decoder<ProgramError>() {
+            @Override
+            public ProgramError decode(ByteQueue queue) throws BACnetException {
+                return new ProgramError(queue);
+            }
+        });
+        register(ProgramRequest.class, new Decoder<ProgramRequest>() {
+            @Override
+            public ProgramRequest decode(ByteQueue queue) throws BACnetException {
+                return new ProgramRequest(queue);
+            }
+        });
+        register(ProgramState.class, new Decoder<ProgramState>() {
+            @Override
+            public ProgramState decode(ByteQueue queue) throws BACnetException {
+                return new ProgramState(queue);
+            }
+        });
+        register(PropertyIdentifier.class, new Decoder<PropertyIdentifier>() {
+            @Override
+            public PropertyIdentifier decode(ByteQueue queue) throws BACnetException {
+                return new PropertyIdentifier(queue);
+            }
+        });
+        register(RejectReason.class, new Decoder<RejectReason>() {
+            @Override
+            public RejectReason decode(ByteQueue queue) throws BACnetException {
+                return new RejectReason(queue);
+            }
+        });
+        register(Reliability.class, new Decoder<Reliability>() {
+            @Override
+            public Reliability decode(ByteQueue queue) throws BACnetException {
+                return new Reliability(queue);
+            }
+        });
+        register(RestartReason.class, new Decoder<RestartReason>() {
+            @Override
+            public RestartReason decode(ByteQueue queue) throws BACnetException {
+                return new RestartReason(queue);
+            }
+        });
+        register(SecurityLevel.class, new Decoder<SecurityLevel>() {
+            @Override
+            public SecurityLevel decode(ByteQueue queue) throws BACnetException {
+                return new SecurityLevel(queue);
+            }
+        });
+        register(Segmentation.class, new Decoder<Segmentation>() {
+            @Override
+            public Segmentation decode(ByteQueue queue) throws BACnetException {
+                return new Segmentation(queue);
+            }
+        });
+        register(ShedState.class, new Decoder<ShedState>() {
+            @Override
+            public ShedState decode(ByteQueue queue) throws BACnetException {
+                return new ShedState(queue);
+            }
+        });
+        register(SilencedState.class, new Decoder<SilencedState>() {
+            @Override
+            public SilencedState decode(ByteQueue queue) throws BACnetException {
+                return new SilencedState(queue);
+            }
+        });
+        register(VtClass.class, new Decoder<VtClass>() {
+            @Override
+            public VtClass decode(ByteQueue queue) throws BACnetException {
+                return new VtClass(queue);
+            }
+        });
+        register(WriteStatus.class, new Decoder<WriteStatus>() {
+            @Override
+            public WriteStatus decode(ByteQueue queue) throws BACnetException {
+                return new WriteStatus(queue);
+            }
+        });
+
+        // Constructed types
+        register(AccessRule.class, new Decoder<AccessRule>() {
+            @Override
+            public AccessRule decode(ByteQueue queue) throws BACnetException {
+                return new AccessRule(queue);
+            }
+        });
+        register(AccumulatorRecord.class, new Decoder<AccumulatorRecord>() {
+            @Override
+            public AccumulatorRecord decode(ByteQueue queue) throws BACnetException {
+                return new AccumulatorRecord(queue);
+            }
+        });
+        register(ActionCommand.class, new Decoder<ActionCommand>() {
+            @Override
+            public ActionCommand decode(ByteQueue queue) throws BACnetException {
+                return new ActionCommand(queue);
+            }
+        });
+        register(ActionList.class, new Decoder<ActionList>() {
+            @Override
+            public ActionList decode(ByteQueue queue) throws BACnetException {
+                return new ActionList(queue);
+            }
+        });
+        register(Address.class, new Decoder<Address>() {
+            @Override
+            public Address decode(ByteQueue queue) throws BACnetException {
+                return new Address(queue);
+            }
+        });
+        register(AddressBinding.class, new Decoder<AddressBinding>() {
+            @Override
+            public AddressBinding decode(ByteQueue queue) throws BACnetException {
+                return new AddressBinding(queue);
+            }
+        });
+        register(AssignedAccessRights.class, new Decoder<AssignedAccessRights>() {
+            @Override
+            public AssignedAccessRights decode(ByteQueue queue) throws BACnetException {
+                return new AssignedAccessRights(queue);
+            }
+        });
+        register(AuthenticationFactor.class, new Decoder<AuthenticationFactor>() {
+            @Override
+            public AuthenticationFactor decode(ByteQueue queue) throws BACnetException {
+                return new AuthenticationFactor(queue);
+            }
+        });
+        register(AuthenticationFactorFormat.class, new Decoder<AuthenticationFactorFormat>() {
+            @Override
+            public AuthenticationFactorFormat decode(ByteQueue queue) throws BACnetException {
+                return new AuthenticationFactorFormat(queue);
+            }
+        });
+        register(BACnetError.class, new Decoder<BACnetError>() {
+            @Override
+            public BACnetError decode(ByteQueue queue) throws BACnetException {
+                return new BACnetError(queue);
+            }
+        });
+        register(CalendarEntry.class, new Decoder<CalendarEntry>() {
+            @Override
+            public CalendarEntry decode(ByteQueue queue) throws BACnetException {
+                return new CalendarEntry(queue);
+            }
+        });
+        register(ClientCov.class, new Decoder<ClientCov>() {
+            @Override
+            public ClientCov decode(ByteQueue queue) throws BACnetException {
+                return new ClientCov(queue);
+            }
+        });
+        register(CovSubscription.class, new Decoder<CovSubscription>() {
+            @Override
+            public CovSubscription decode(ByteQueue queue) throws BACnetException {
+                return new CovSubscription(queue);
+            }
+        });
+        register(DailySchedule.class, new Decoder<DailySchedule>() {
+            @Override
+            public DailySchedule decode(ByteQueue queue) throws BACnetException {
+                return new DailySchedule(queue);
+            }
+        });
+        register(DateRange.class, new Decoder<DateRange>() {
+            @Override
+            public DateRange decode(ByteQueue queue) throws BACnetException {
+                return new DateRange(queue);
+            }
+        });
+        register(DateTime.class, new Decoder<DateTime>() {
+            @Override
+            public DateTime decode(ByteQueue queue) throws BACnetException {
+                return new DateTime(queue);
+            }
+        });
+        register(DaysOfWeek.class, new Decoder<DaysOfWeek>() {
+            @Override
+            public DaysOfWeek decode(ByteQueue queue) throws BACnetException {
+                return new DaysOfWeek(queue);
+            }
+        });
+        register(Destination.class, new Decoder<Destination>() {
+            @Override
+            public Destination decode(ByteQueue queue) throws BACnetException {
+                return new Destination(queue);
+            }
+        });
+        register(DeviceObjectPropertyReference.class, new Decoder<DeviceObjectPropertyReference>() {
+            @Override
+            public DeviceObjectPropertyReference decode(ByteQueue queue) throws BACnetException {
+                return new DeviceObjectPropertyReference(queue);
+            }
+        });
+        register(DeviceObjectPropertyValue.class, new Decoder<DeviceObjectPropertyValue>() {
+            @Override
+            public DeviceObjectPropertyValue decode(ByteQueue queue) throws BACnetException {
+                return new DeviceObjectPropertyValue(queue);
+            }
+        });
+        register(DeviceObjectReference.class, new Decoder<DeviceObjectReference>() {
+            @Override
+            public DeviceObjectReference decode(ByteQueue queue) throws BACnetException {
+                return new DeviceObjectReference(queue);
+            }
+        });
+        register(EventLogRecord.class, new Decoder<EventLogRecord>() {
+            @Override
+            public EventLogRecord decode(ByteQueue queue) throws BACnetException {
+                return new EventLogRecord(queue);
+            }
+        });
+        register(EventTransitionBits.class, new Decoder<EventTransitionBits>() {
+            @Override
+            public EventTransitionBits decode(ByteQueue queue) throws BACnetException {
+                return new EventTransitionBits(queue);
+            }
+        });
+        register(GroupChannelValue.class, new Decoder<GroupChannelValue>() {
+            @Override
+            public GroupChannelValue decode(ByteQueue queue) throws BACnetException {
+                return new GroupChannelValue(queue);
+            }
+        });
+        register(LightingCommand.class, new Decoder<LightingCommand>() {
+            @Override
+            public LightingCommand decode(ByteQueue queue) throws BACnetException {
+                return new LightingCommand(queue);
+            }
+        });
+        register(LimitEnable.class, new Decoder<LimitEnable>() {
+            @Override
+            public LimitEnable decode(ByteQueue queue) throws BACnetException {
+                return new LimitEnable(queue);
+            }
+        });
+        register(LogData.class, new Decoder<LogData>() {
+            @Override
+            public LogData decode(ByteQueue queue) throws BACnetException {
+                return new LogData(queue);
+            }
+        });
+        register(LogMultipleRecord.class, new Decoder<LogMultipleRecord>() {
+            @Override
+            public LogMultipleRecord decode(ByteQueue queue) throws BACnetException {
+                return new LogMultipleRecord(queue);
+            }
+        });
+        register(LogRecord.class, new Decoder<LogRecord>() {
+            @Override
+            public LogRecord decode(ByteQueue queue) throws BACnetException {
+                return new LogRecord(queue);
+            }
+        });
+        register(LogStatus.class, new Decoder<LogStatus>() {
+            @Override
+            public LogStatus decode(ByteQueue queue) throws BACnetException {
+                return new LogStatus(queue);
+            }
+        });
+        register(ObjectPropertyReference.class, new Decoder<ObjectPropertyReference>() {
+            @Override
+            public ObjectPropertyReference decode(ByteQueue queue) throws BACnetException {
+                return new ObjectPropertyReference(queue);
+            }
+        });
+        register(ObjectPropertyValue.class, new Decoder<ObjectPropertyValue>() {
+            @Override
+            public ObjectPropertyValue decode(ByteQueue queue) throws BACnetException {
+                return new ObjectPropertyValue(queue);
+            }
+        });
+        register(ObjectTypesSupported.class, new Decoder<ObjectTypesSupported>() {
+            @Override
+            public ObjectTypesSupported decode(ByteQueue queue) throws BACnetException {
+                return new ObjectTypesSupported(queue);
+            }
+        });
+        register(Prescale.class, new Decoder<Prescale>() {
+            @Override
+            public Prescale decode(ByteQueue queue) throws BACnetException {
+                return new Prescale(queue);
+            }
+        });
+        register(PriorityValue.class, new Decoder<PriorityValue>() {
+            @Override
+            public PriorityValue decode(ByteQueue queue) throws BACnetException {
+                return new PriorityValue(queue);
+            }
+        });
+        register(PropertyReference.class, new Decoder<PropertyReference>() {
+            @Override
+            public PropertyReference decode(ByteQueue queue) throws BACnetException {
+                return new PropertyReference(queue);
+            }
+        });
+        register(PropertyStates.class, new Decoder<PropertyStates>() {
+            @Override
+            public PropertyStates decode(ByteQueue queue) throws BACnetException {
+                return new PropertyStates(queue);
+            }
+        });
+        register(PropertyValue.class, new Decoder<PropertyValue>() {
+            @Override
+            public PropertyValue decode(ByteQueue queue) throws BACnetException {
+                return new PropertyValue(queue);
+            }
+        });
+        register(ReadAccessResult.class, new Decoder<ReadAccessResult>() {
+            @Override
+            public ReadAccessResult decode(ByteQueue queue) throws BACnetException {
+                return new ReadAccessResult(queue);
+            }
+        });
+        register(ReadAccessSpecification.class, new Decoder<ReadAccessSpecification>() {
+            @Override
+            public ReadAccessSpecification decode(ByteQueue queue) throws BACnetException {
+                return new ReadAccessSpecification(queue);
+            }
+        });
+        register(Recipient.class, new Decoder<Recipient>() {
+            @Override
+            public Recipient decode(ByteQueue queue) throws BACnetException {
+                return new Recipient(queue);
+            }
+        });
+        register(RecipientProcess.class, new Decoder<RecipientProcess>() {
+            @Override
+            public RecipientProcess decode(ByteQueue queue) throws BACnetException {
+                return new RecipientProcess(queue);
+            }
+        });
+        register(ResultFlags.class, new Decoder<ResultFlags>() {
+            @Override
+            public ResultFlags decode(ByteQueue queue) throws BACnetException {
+                return new ResultFlags(queue);
+            }
+        });
+        register(Scale.class, new Decoder<Scale>() {
+            @Override
+            public Scale decode(ByteQueue queue) throws BACnetException {
+                return new Scale(queue);
+            }
+        });
+        register(ServicesSupported.class, new Decoder<ServicesSupported>() {
+            @Override
+            public ServicesSupported decode(ByteQueue queue) throws BACnetException {
+                return new ServicesSupported(queue);
+            }
+        });
+        register(SessionKey.class, new Decoder<SessionKey>() {
+            @Override
+            public SessionKey decode(ByteQueue queue) throws BACnetException {
+                return new SessionKey(queue);
+            }
+        });
+        register(SetpointReference.class, new Decoder<SetpointReference>() {
+            @Override
+            public SetpointReference decode(ByteQueue queue) throws BACnetException {
+                return new SetpointReference(queue);
+            }
+        });
+        register(ShedLevel.class, new Decoder<ShedLevel>() {
+            @Override
+            public ShedLevel decode(ByteQueue queue) throws BACnetException {
+                return new ShedLevel(queue);
+            }
+        });
+        register(SpecialEvent.class, new Decoder<SpecialEvent>() {
+            @Override
+            public SpecialEvent decode(ByteQueue queue) throws BACnetException {
+                return new SpecialEvent(queue);
+            }
+        });
+        register(StatusFlags.class, new Decoder<StatusFlags>() {
+            @Override
+            public StatusFlags decode(ByteQueue queue) throws BACnetException {
+                return new StatusFlags(queue);
+            }
+        });
+        register(TimeStamp.class, new Decoder<TimeStamp>() {
+            @Override
+            public TimeStamp decode(ByteQueue queue) throws BACnetException {
+                return new TimeStamp(queue);
+            }
+        });
+        register(TimeValue.class, new Decoder<TimeValue>() {
+            @Override
+            public TimeValue decode(ByteQueue queue) throws BACnetException {
+                return new TimeValue(queue);
+            }
+        });
+        register(VtSession.class, new Decoder<VtSession>() {
+            @Override
+            public VtSession decode(ByteQueue queue) throws BACnetException {
+                return new VtSession(queue);
+            }
+        });
+        register(WeekNDay.class, new Decoder<WeekNDay>() {
+            @Override
+            public WeekNDay decode(ByteQueue queue) throws BACnetException {
+                return new WeekNDay(queue);
+            }
+        });
+        register(WriteAccessSpecification.class, new Decoder<WriteAccessSpecification>() {
+            @Override
+            public WriteAccessSpecification decode(ByteQueue queue) throws BACnetException {
+                return new WriteAccessSpecification(queue);
+            }
+        });
+
+        // Nested constructed types
+        register(AccessRule.TimeRangeSpecifier.class, new Decoder<AccessRule.TimeRangeSpecifier>() {
+            @Override
+            public AccessRule.TimeRangeSpecifier decode(ByteQueue queue) throws BACnetException {
+                return new AccessRule.TimeRangeSpecifier(queue);
+            }
+        });
+        register(AccessRule.LocationSpecifier.class, new Decoder<AccessRule.LocationSpecifier>() {
+            @Override
+            public AccessRule.LocationSpecifier decode(ByteQueue queue) throws BACnetException {
+                return new AccessRule.LocationSpecifier(queue);
+            }
+        });
+        register(AccumulatorRecord.AccumulatorStatus.class, new Decoder<AccumulatorRecord.AccumulatorStatus>() {
+            @Override
+            public AccumulatorRecord.AccumulatorStatus decode(ByteQueue queue) throws BACnetException {
+                return new AccumulatorRecord.AccumulatorStatus(queue);
+            }
+        });
+        register(GroupChannelValue.ChannelValue.class, new Decoder<GroupChannelValue.ChannelValue>() {
+            @Override
+            public GroupChannelValue.ChannelValue decode(ByteQueue queue) throws BACnetException {
+                return new GroupChannelValue.ChannelValue(queue);
+            }
+        });
+        register(ReadAccessResult.Result.class, new Decoder<ReadAccessResult.Result>() {
+            @Override
+            public ReadAccessResult.Result decode(ByteQueue queue) throws BACnetException {
+                return new ReadAccessResult.Result(queue);
+            }
+        });
+        register(WeekNDay.WeekOfMonth.class, new Decoder<WeekNDay.WeekOfMonth>() {
+            @Override
+            public WeekNDay.WeekOfMonth decode(ByteQueue queue) throws BACnetException {
+                return new WeekNDay.WeekOfMonth(queue);
+            }
+        });
+
+        // Event parameter and notification parameter choices. Both packages use the same type names, so each
+        // registers its own.
+        EventParameter.registerDecoders();
+        NotificationParameters.registerDecoders();
+
+        internEnumerations();
+    }
+}
@@ -29,7 +29,6 @@
 package com.serotonin.bacnet4j.type;
 
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.Map;
 
@@ -50,7 +49,6 @@ import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
 import com.serotonin.bacnet4j.type.enumerated.ObjectType;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 import com.serotonin.bacnet4j.type.enumerated.RejectReason;
-import com.serotonin.bacnet4j.type.eventParameter.EventParameter;
 import com.serotonin.bacnet4j.type.primitive.Null;
 import com.serotonin.bacnet4j.type.primitive.Primitive;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
@@ -171,6 +169,47 @@ abstract public class Encodable implements Serializable {
             queue.pop();
     }
 
+    /**
+     * Removes everything from the given opening tag up to and including its matching closing tag from the queue, and
+     * returns it as a slice without decoding it.
+     */
+    protected static ByteQueue popTagged(ByteQueue queue, int contextId) throws BACnetException {
+        if (readStart(queue) != contextId)
+            throw new BACnetErrorException(ErrorClass.property, ErrorCode.missingRequiredParameter);
+
+        ByteQueue scan = queue.slice(0, queue.size());
+        TagData tagData = new TagData();
+        int depth = 0;
+        try {
+            do {
+                peekTagData(scan, tagData);
+                if (tagData.contextSpecific && tagData.length == 6) {
+                    depth++;
+                    scan.pop(tagData.tagLength);
+                }
+                else if (tagData.contextSpecific && tagData.length == 7) {
+                    depth--;
+                    if (depth == 0 && tagData.tagNumber != contextId)
+                        throw new BACnetErrorException(ErrorClass.property, ErrorCode.missingRequiredParameter);
+                    scan.pop(tagData.tagLength);
+                }
+                else if (!tagData.contextSpecific
+                        && tagData.tagNumber == com.serotonin.bacnet4j.type.primitive.Boolean.TYPE_ID)
+                    // The length field of an application boolean is its value.
+                    scan.pop(tagData.tagLength);
+                else
+                    scan.pop(tagData.getTotalLength());
+            }
+            while (depth > 0);
+        }
+        catch (RuntimeException e) {
+            // Malformed content, e.g. a buffer underflow.
+            throw new ReflectionException(e);
+        }
+
+        return queue.popSlice(queue.size() - scan.size());
+    }
+
     private static boolean matchContextId(ByteQueue queue, int contextId) {
         return peekTagNumber(queue) == contextId;
     }
@@ -193,29 +232,14 @@ abstract public class Encodable implements Serializable {
         type.write(queue);
     }
 
-    @SuppressWarnings("unchecked")
     protected static <T extends Encodable> T read(ByteQueue queue, Class<T> clazz) throws BACnetException {
-        if (clazz == Primitive.class)
-            return (T) Primitive.createPrimitive(queue);
-
         try {
-            return clazz.getConstructor(new Class[] { ByteQueue.class }).newInstance(new Object[] { queue });
+            return DecoderRegistry.getDecoder(clazz).decode(queue);
         }
-        catch (NoSuchMethodException e) {
-            // Check if this is an EventParameter
-            if (clazz == EventParameter.class)
-                return (T) EventParameter.createEventParameter(queue);
-            throw new BACnetException(e);
-        }
-        catch (InvocationTargetException e) {
-            // Check if there is a wrapped BACnet exception
-            if (e.getCause() instanceof BACnetException)
-                throw (BACnetException) e.getCause();
+        catch (RuntimeException e) {
+            // Malformed content, e.g. a buffer underflow.
             throw new ReflectionException(e);
         }
-        catch (Exception e) {
-            throw new BACnetException(e);
-        }
     }
 
     //
@@ -280,10 +304,9 @@ abstract public class Encodable implements Serializable {
         popStart(queue, contextId);
         T result;
         try {
-            result = clazz.getConstructor(new Class[] { ByteQueue.class, Integer.TYPE }).newInstance(
-                    new Object[] { queue, contextId });
+            result = DecoderRegistry.getContextDecoder(clazz).decode(queue, contextId);
         }
-        catch (Exception e) {
+        catch (RuntimeException e) {
             throw new BACnetException(e);
         }
         popEnd(queue, contextId);
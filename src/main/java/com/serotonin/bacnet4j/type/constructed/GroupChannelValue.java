@@ -197,7 +197,7 @@ public class GroupChannelValue extends BaseType {
                 else if (tag == Real.TYPE_ID)
                     realValue = new Real(queue);
                 else if (tag == Enumerated.TYPE_ID)
-                    binaryValue = new BinaryPV(queue);
+                    binaryValue = read(queue, BinaryPV.class);
                 else if (tag == UnsignedInteger.TYPE_ID)
                     integerValue = new UnsignedInteger(queue);
                 else
@@ -28,9 +28,16 @@
  */
 package com.serotonin.bacnet4j.type.constructed;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.exception.BACnetRuntimeException;
 import com.serotonin.bacnet4j.type.Encodable;
 import com.serotonin.bacnet4j.type.ThreadLocalObjectTypeStack;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
@@ -66,22 +73,52 @@ public class ReadAccessResult extends BaseType {
     }
 
     public ReadAccessResult(ByteQueue queue) throws BACnetException {
+        this(queue, false);
+    }
+
+    /**
+     * @param lazyPropertyValues
+     *            whether to leave the property values encoded until they are first requested
+     */
+    public ReadAccessResult(ByteQueue queue, boolean lazyPropertyValues) throws BACnetException {
         objectIdentifier = read(queue, ObjectIdentifier.class, 0);
-        try {
-            ThreadLocalObjectTypeStack.set(objectIdentifier.getObjectType());
-            listOfResults = readOptionalSequenceOf(queue, Result.class, 1);
-        }
-        finally {
-            ThreadLocalObjectTypeStack.remove();
+        if (lazyPropertyValues)
+            listOfResults = readLazyResults(queue, objectIdentifier.getObjectType());
+        else {
+            try {
+                ThreadLocalObjectTypeStack.set(objectIdentifier.getObjectType());
+                listOfResults = readOptionalSequenceOf(queue, Result.class, 1);
+            }
+            finally {
+                ThreadLocalObjectTypeStack.remove();
+            }
         }
     }
 
+    private static SequenceOf<Result> readLazyResults(ByteQueue queue, ObjectType objectType)
+            throws BACnetException {
+        if (readStart(queue) != 1)
+            return null;
+
+        popStart(queue, 1);
+        List<Result> results = new ArrayList<Result>();
+        while (readEnd(queue) != 1)
+            results.add(new Result(queue, objectType));
+        popEnd(queue, 1);
+        return new SequenceOf<Result>(results);
+    }
+
     public static class Result extends BaseType {
         private static final long serialVersionUID = -2539614773155916196L;
         private final PropertyIdentifier propertyIdentifier;
         private final UnsignedInteger propertyArrayIndex;
         private Choice readResult;
 
+        // Set when the value was left encoded. The encoded value includes its context tags, and is kept after decoding
+        // so that the result can be written out again as received.
+        private ObjectType objectType;
+        private transient ByteQueue encodedValue;
+
         public Result(PropertyIdentifier propertyIdentifier, UnsignedInteger propertyArrayIndex, Encodable readResult) {
             this.propertyIdentifier = propertyIdentifier;
             this.propertyArrayIndex = propertyArrayIndex;
@@ -102,25 +139,57 @@ public class ReadAccessResult extends BaseType {
             return propertyIdentifier;
         }
 
-        public boolean isError() {
-            return readResult.getContextId() == 5;
+        public synchronized boolean isError() {
+            // Errors are never left encoded.
+            return readResult != null && readResult.getContextId() == 5;
         }
 
-        public Choice getReadResult() {
+        /**
+         * Returns the result, decoding the property value first if it was left encoded.
+         * 
+         * @throws BACnetRuntimeException
+         *             if the encoded property value is malformed
+         */
+        public synchronized Choice getReadResult() {
+            if (readResult == null) {
+                ByteQueue queue = encodedValue.slice(0, encodedValue.size());
+                try {
+                    ThreadLocalObjectTypeStack.set(objectType);
+                    readResult = new Choice(4,
+                            readEncodable(queue, objectType, propertyIdentifier, propertyArrayIndex, 4));
+                }
+                catch (BACnetException e) {
+                    throw new BACnetRuntimeException("Failed to decode the value of " + propertyIdentifier, e);
+                }
+                finally {
+                    ThreadLocalObjectTypeStack.remove();
+                }
+            }
             return readResult;
         }
 
+        /**
+         * @return whether the property value is available without decoding
+         */
+        public synchronized boolean isDecoded() {
+            return readResult != null;
+        }
+
         @Override
-        public String toString() {
+        public synchronized String toString() {
+            // A value that was left encoded stays that way.
+            Object value = readResult == null ? encodedValue.size() + " encoded bytes" : readResult;
             return "Result(pid=" + propertyIdentifier
-                    + (propertyArrayIndex == null ? "" : ", pin=" + propertyArrayIndex) + ", value=" + readResult + ")";
+                    + (propertyArrayIndex == null ? "" : ", pin=" + propertyArrayIndex) + ", value=" + value + ")";
         }
 
         @Override
         public void write(ByteQueue queue) {
             write(queue, propertyIdentifier, 2);
             writeOptional(queue, propertyArrayIndex, 3);
-            if (readResult.getContextId() == 4)
+            if (encodedValue != null)
+                queue.push(encodedValue);
+            else if (readResult.getContextId() == 4)
                 writeEncodable(queue, readResult.getDatum(), 4);
             else
                 write(queue, readResult.getDatum(), 5);
@@ -137,13 +206,30 @@ public class ReadAccessResult extends BaseType {
                 readResult = new Choice(5, read(queue, BACnetError.class, 5));
         }
 
+        Result(ByteQueue queue, ObjectType objectType) throws BACnetException {
+            propertyIdentifier = read(queue, PropertyIdentifier.class, 2);
+            propertyArrayIndex = readOptional(queue, UnsignedInteger.class, 3);
+            if (peekTagNumber(queue) == 4) {
+                this.objectType = objectType;
+                encodedValue = popTagged(queue, 4);
+            }
+            else
+                readResult = new Choice(5, read(queue, BACnetError.class, 5));
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            // The encoded value is not serializable.
+            getReadResult();
+            out.defaultWriteObject();
+        }
+
         @Override
         public int hashCode() {
             final int PRIME = 31;
             int result = 1;
             result = PRIME * result + ((propertyArrayIndex == null) ? 0 : propertyArrayIndex.hashCode());
             result = PRIME * result + ((propertyIdentifier == null) ? 0 : propertyIdentifier.hashCode());
-            result = PRIME * result + ((readResult == null) ? 0 : readResult.hashCode());
+            result = PRIME * result + getReadResult().hashCode();
             return result;
         }
 
@@ -168,11 +254,7 @@ public class ReadAccessResult extends BaseType {
             }
             else if (!propertyIdentifier.equals(other.propertyIdentifier))
                 return false;
-            if (readResult == null) {
-                if (other.readResult != null)
-                    return false;
-            }
-            else if (!readResult.equals(other.readResult))
+            if (!getReadResult().equals(other.getReadResult()))
                 return false;
             return true;
         }
@@ -80,6 +80,40 @@ public class SequenceOf<E extends Encodable> extends BaseType implements Iterabl
             values.add(read(queue, clazz));
     }
 
+    /**
+     * Receives the elements of a sequence one at a time as they are decoded, so that the sequence never needs to be
+     * held in memory as a whole.
+     */
+    public interface ElementHandler<E extends Encodable> {
+        void element(int indexBase1, E value) throws BACnetException;
+    }
+
+    /**
+     * Decodes a sequence that runs to the end of the queue, handing each element to the handler as soon as it is
+     * decoded. Arrays are encoded the same way, so this works for them too.
+     * 
+     * @return the number of elements
+     */
+    public static <E extends Encodable> int decode(ByteQueue queue, Class<E> clazz, ElementHandler<? super E> handler)
+            throws BACnetException {
+        int count = 0;
+        while (peekTagNumber(queue) != -1)
+            handler.element(++count, read(queue, clazz));
+        return count;
+    }
+
+    /**
+     * Like decode(ByteQueue, Class, ElementHandler), but for a sequence that ends at the given closing tag. The
+     * closing tag is left in the queue.
+     */
+    public static <E extends Encodable> int decode(ByteQueue queue, Class<E> clazz, int contextId,
+            ElementHandler<? super E> handler) throws BACnetException {
+        int count = 0;
+        while (readEnd(queue) != contextId)
+            handler.element(++count, read(queue, clazz));
+        return count;
+    }
+
     public E get(int indexBase1) {
         return values.get(indexBase1 - 1);
     }
@@ -30,6 +30,8 @@ package com.serotonin.bacnet4j.type.eventParameter;
 
 import com.serotonin.bacnet4j.exception.BACnetErrorException;
 import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.DecoderRegistry;
+import com.serotonin.bacnet4j.type.DecoderRegistry.Decoder;
 import com.serotonin.bacnet4j.type.constructed.BaseType;
 import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
 import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
@@ -97,4 +99,112 @@ abstract public class EventParameter extends BaseType {
     abstract protected int getTypeId();
 
     abstract protected void writeImpl(ByteQueue queue);
+
+    /**
+     * Registers the decoders of the event parameter choices. Called by DecoderRegistry when it is initialized.
+     */
+    public static void registerDecoders() {
+        DecoderRegistry.register(AccessEvent.class, new Decoder<AccessEvent>() {
+            @Override
+            public AccessEvent decode(ByteQueue queue) throws BACnetException {
+                return new AccessEvent(queue);
+            }
+        });
+        DecoderRegistry.register(BufferReady.class, new Decoder<BufferReady>() {
+            @Override
+            public BufferReady decode(ByteQueue queue) throws BACnetException {
+                return new BufferReady(queue);
+            }
+        });
+        DecoderRegistry.register(ChangeOfBitString.class, new Decoder<ChangeOfBitString>() {
+            @Override
+            public ChangeOfBitString decode(ByteQueue queue) throws BACnetException {
+                return new ChangeOfBitString(queue);
+            }
+        });
+        DecoderRegistry.register(ChangeOfCharacterString.class, new Decoder<ChangeOfCharacterString>() {
+            @Override
+            public ChangeOfCharacterString decode(ByteQueue queue) throws BACnetException {
+                return new ChangeOfCharacterString(queue);
+            }
+        });
+        DecoderRegistry.register(ChangeOfLifeSafety.class, new Decoder<ChangeOfLifeSafety>() {
+            @Override
+            public ChangeOfLifeSafety decode(ByteQueue queue) throws BACnetException {
+                return new ChangeOfLifeSafety(queue);
+            }
+        });
+        DecoderRegistry.register(ChangeOfState.class, new Decoder<ChangeOfState>() {
+            @Override
+            public ChangeOfState decode(ByteQueue queue) throws BACnetException {
+                return new ChangeOfState(queue);
+            }
+        });
+        DecoderRegistry.register(ChangeOfStatusFlags.class, new Decoder<ChangeOfStatusFlags>() {
+            @Override
+            public ChangeOfStatusFlags decode(ByteQueue queue) throws BACnetException {
+                return new ChangeOfStatusFlags(queue);
+            }
+        });
+        DecoderRegistry.register(ChangeOfValue.class, new Decoder<ChangeOfValue>() {
+            @Override
+            public ChangeOfValue decode(ByteQueue queue) throws BACnetException {
+                return new ChangeOfValue(queue);
+            }
+        });
+        DecoderRegistry.register(CommandFailure.class, new Decoder<CommandFailure>() {
+            @Override
+            public CommandFailure decode(ByteQueue queue) throws BACnetException {
+                return new CommandFailure(queue);
+            }
+        });
+        DecoderRegistry.register(DoubleOutOfRange.class, new Decoder<DoubleOutOfRange>() {
+            @Override
+            public DoubleOutOfRange decode(ByteQueue queue) throws BACnetException {
+                return new DoubleOutOfRange(queue);
+            }
+        });
+        DecoderRegistry.register(Extended.class, new Decoder<Extended>() {
+            @Override
+            public Extended decode(ByteQueue queue) throws BACnetException {
+                return new Extended(queue);
+            }
+        });
+        DecoderRegistry.register(Extended.Parameter.class, new Decoder<Extended.Parameter>() {
+            @Override
+            public Extended.Parameter decode(ByteQueue queue) throws BACnetException {
+                return new Extended.Parameter(queue);
+            }
+        });
+        DecoderRegistry.register(FloatingLimit.class, new Decoder<FloatingLimit>() {
+            @Override
+            public FloatingLimit decode(ByteQueue queue) throws BACnetException {
+                return new FloatingLimit(queue);
+            }
+        });
+        DecoderRegistry.register(OutOfRange.class, new Decoder<OutOfRange>() {
+            @Override
+            public OutOfRange decode(ByteQueue queue) throws BACnetException {
+                return new OutOfRange(queue);
+            }
+        });
+        DecoderRegistry.register(SignedOutOfRange.class, new Decoder<SignedOutOfRange>() {
+            @Override
+            public SignedOutOfRange decode(ByteQueue queue) throws BACnetException {
+                return new SignedOutOfRange(queue);
+            }
+        });
+        DecoderRegistry.register(UnsignedOutOfRange.class, new Decoder<UnsignedOutOfRange>() {
+            @Override
+            public UnsignedOutOfRange decode(ByteQueue queue) throws BACnetException {
+                return new UnsignedOutOfRange(queue);
+            }
+        });
+        DecoderRegistry.register(UnsignedRange.class, new Decoder<UnsignedRange>() {
+            @Override
+            public UnsignedRange decode(ByteQueue queue) throws BACnetException {
+                return new UnsignedRange(queue);
+            }
+        });
+    }
 }
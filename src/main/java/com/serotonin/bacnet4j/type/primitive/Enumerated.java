@@ -49,6 +49,9 @@ public class Enumerated extends UnsignedInteger {
     }
 
     public boolean equals(Enumerated that) {
+        // Decoded values are usually the shared constants, so try the cheap check first.
+        if (this == that)
+            return true;
         if (that == null)
             return false;
         return intValue() == that.intValue();
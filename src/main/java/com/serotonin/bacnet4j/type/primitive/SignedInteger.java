@@ -37,6 +37,8 @@ public class SignedInteger extends Primitive {
 
     public static final byte TYPE_ID = 3;
 
+    // Values that fit in an int are held in smallValue, and bigValue is null. Larger values are held in bigValue only,
+    // so each value has a single representation.
     private int smallValue;
     private BigInteger bigValue;
 
@@ -45,11 +47,17 @@ public class SignedInteger extends Primitive {
     }
 
     public SignedInteger(long value) {
-        bigValue = BigInteger.valueOf(value);
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+            smallValue = (int) value;
+        else
+            bigValue = BigInteger.valueOf(value);
     }
 
     public SignedInteger(BigInteger value) {
-        bigValue = value;
+        if (value.bitLength() <= 31)
+            smallValue = value.intValue();
+        else
+            bigValue = value;
     }
 
     public int intValue() {
@@ -77,14 +85,24 @@ public class SignedInteger extends Primitive {
         // Read the data length value.
         int length = (int) readTag(queue);
 
-        byte[] bytes = new byte[length];
-        queue.pop(bytes);
-        BigInteger bi = new BigInteger(bytes);
-
-        if (length < 5)
-            smallValue = bi.intValue();
-        else
-            bigValue = bi;
+        if (length <= 4) {
+            if (length > 0) {
+                // Sign extend from the first octet.
+                smallValue = queue.pop();
+                while (--length > 0)
+                    smallValue = (smallValue << 8) | (queue.pop() & 0xff);
+            }
+        }
+        else {
+            byte[] bytes = new byte[length];
+            queue.pop(bytes);
+            bigValue = new BigInteger(bytes);
+            if (bigValue.bitLength() <= 31) {
+                // A value with needless leading octets.
+                smallValue = bigValue.intValue();
+                bigValue = null;
+            }
+        }
     }
 
     @Override
@@ -102,11 +120,11 @@ public class SignedInteger extends Primitive {
     protected long getLength() {
         if (bigValue == null) {
             int length;
-            if (smallValue < Byte.MAX_VALUE && smallValue > Byte.MIN_VALUE)
+            if (smallValue <= Byte.MAX_VALUE && smallValue >= Byte.MIN_VALUE)
                 length = 1;
-            else if (smallValue < Short.MAX_VALUE && smallValue > Short.MAX_VALUE)
+            else if (smallValue <= Short.MAX_VALUE && smallValue >= Short.MIN_VALUE)
                 length = 2;
-            else if (smallValue < 8388607 && smallValue > -8388608)
+            else if (smallValue <= 8388607 && smallValue >= -8388608)
                 length = 3;
             else
                 length = 4;
@@ -138,6 +156,8 @@ public class SignedInteger extends Primitive {
         if (getClass() != obj.getClass())
             return false;
         final SignedInteger other = (SignedInteger) obj;
+        if (bigValue == null && other.bigValue == null)
+            return smallValue == other.smallValue;
         return bigIntegerValue().equals(other.bigIntegerValue());
     }
 
@@ -40,6 +40,12 @@ public class Unsigned32 extends UnsignedInteger {
         super(value);
     }
 
+    public Unsigned32(long value) {
+        super(value);
+        if (value > MAX)
+            throw new IllegalArgumentException("Value cannot be greater than " + MAX);
+    }
+
     public Unsigned32(BigInteger value) {
         super(value);
         if (value.longValue() > MAX)
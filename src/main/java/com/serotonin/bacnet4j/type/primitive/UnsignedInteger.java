@@ -37,6 +37,10 @@ public class UnsignedInteger extends Primitive {
 
     public static final byte TYPE_ID = 2;
 
+    private static final long MAX_SMALL = 0xffffffffL;
+
+    // Values that fit in 32 bits are held in smallValue as unsigned, and bigValue is null. Larger values are held in
+    // bigValue only, so each value has a single representation.
     private int smallValue;
     private BigInteger bigValue;
 
@@ -47,13 +51,19 @@ public class UnsignedInteger extends Primitive {
     }
 
     public UnsignedInteger(long value) {
-        bigValue = BigInteger.valueOf(value);
+        if (value >= 0 && value <= MAX_SMALL)
+            smallValue = (int) value;
+        else
+            bigValue = BigInteger.valueOf(value);
     }
 
     public UnsignedInteger(BigInteger value) {
         if (value.signum() == -1)
             throw new IllegalArgumentException("Value cannot be less than zero");
-        bigValue = value;
+        if (value.bitLength() <= 32)
+            smallValue = (int) value.longValue();
+        else
+            bigValue = value;
     }
 
     public int intValue() {
@@ -64,13 +74,13 @@ public class UnsignedInteger extends Primitive {
 
     public long longValue() {
         if (bigValue == null)
-            return smallValue;
+            return smallValue & MAX_SMALL;
         return bigValue.longValue();
     }
 
     public BigInteger bigIntegerValue() {
         if (bigValue == null)
-            return BigInteger.valueOf(smallValue);
+            return BigInteger.valueOf(longValue());
         return bigValue;
     }
 
@@ -79,7 +89,7 @@ public class UnsignedInteger extends Primitive {
     //
     public UnsignedInteger(ByteQueue queue) {
         int length = (int) readTag(queue);
-        if (length < 4) {
+        if (length <= 4) {
             while (length > 0)
                 smallValue |= (queue.pop() & 0xff) << (--length * 8);
         }
@@ -87,6 +97,11 @@ public class UnsignedInteger extends Primitive {
             byte[] bytes = new byte[length + 1];
             queue.pop(bytes, 1, length);
             bigValue = new BigInteger(bytes);
+            if (bigValue.bitLength() <= 32) {
+                // A value with needless leading zeros.
+                smallValue = bigValue.intValue();
+                bigValue = null;
+            }
         }
     }
 
@@ -112,12 +127,13 @@ public class UnsignedInteger extends Primitive {
     @Override
     protected long getLength() {
         if (bigValue == null) {
+            long value = longValue();
             int length;
-            if (smallValue < 0x100)
+            if (value < 0x100)
                 length = 1;
-            else if (smallValue < 0x10000)
+            else if (value < 0x10000)
                 length = 2;
-            else if (smallValue < 0x1000000)
+            else if (value < 0x1000000)
                 length = 3;
             else
                 length = 4;
@@ -125,7 +141,7 @@ public class UnsignedInteger extends Primitive {
             return length;
         }
 
-        if (bigValue.intValue() == 0)
+        if (bigValue.signum() == 0)
             return 1;
         return (bigValue.bitLength() + 7) / 8;
     }
@@ -153,13 +169,15 @@ public class UnsignedInteger extends Primitive {
         if (!(obj instanceof UnsignedInteger))
             return false;
         final UnsignedInteger other = (UnsignedInteger) obj;
+        if (bigValue == null && other.bigValue == null)
+            return smallValue == other.smallValue;
         return bigIntegerValue().equals(other.bigIntegerValue());
     }
 
     @Override
     public String toString() {
         if (bigValue == null)
-            return Integer.toString(smallValue);
+            return Long.toString(longValue());
         return bigValue.toString();
     }
 }
@@ -65,6 +65,7 @@ import com.serotonin.bacnet4j.type.constructed.ReadAccessResult;
 import com.serotonin.bacnet4j.type.constructed.ReadAccessResult.Result;
 import com.serotonin.bacnet4j.type.constructed.ReadAccessSpecification;
 import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf.ElementHandler;
 import com.serotonin.bacnet4j.type.constructed.WriteAccessSpecification;
 import com.serotonin.bacnet4j.type.enumerated.AbortReason;
 import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
@@ -150,6 +151,51 @@ public class RequestUtils {
                 PropertyIdentifier.objectList, null, callback);
     }
 
+    // The number of object list entries requested at a time when the list is too long to be read in one piece.
+    private static final int OBJECT_LIST_CHUNK = 100;
+
+    /**
+     * Reads the object list of the given device, handing each object identifier to the handler as it is decoded. If
+     * lazy property values are enabled on the transport (see Transport.setLazyPropertyValues), the list is never held
+     * in memory as a whole. If the list is too long to be sent in one piece it is read by index in chunks instead.
+     * 
+     * @return the number of objects
+     */
+    public static int readObjectList(LocalDevice localDevice, RemoteDevice d,
+            ElementHandler<? super ObjectIdentifier> handler) throws BACnetException {
+        ObjectIdentifier oid = d.getObjectIdentifier();
+        try {
+            ReadPropertyAck ack = (ReadPropertyAck) localDevice.send(d,
+                    new ReadPropertyRequest(oid, PropertyIdentifier.objectList)).get();
+            return ack.decodeElements(ObjectIdentifier.class, handler);
+        }
+        catch (AbortAPDUException e) {
+            if (e.getApdu().getAbortReason() != AbortReason.bufferOverflow.intValue()
+                    && e.getApdu().getAbortReason() != AbortReason.segmentationNotSupported.intValue())
+                throw e;
+        }
+
+        LOG.info("Received abort exception on object list request. Reading the list in chunks instead");
+        int len = ((UnsignedInteger) sendReadPropertyAllowNull(localDevice, d, oid, PropertyIdentifier.objectList,
+                new UnsignedInteger(0), null)).intValue();
+        for (int start = 1; start <= len; start += OBJECT_LIST_CHUNK) {
+            int end = Math.min(start + OBJECT_LIST_CHUNK - 1, len);
+            PropertyReferences refs = new PropertyReferences();
+            for (int i = start; i <= end; i++)
+                refs.add(oid, new PropertyReference(PropertyIdentifier.objectList, new UnsignedInteger(i)));
+
+            PropertyValues pvs = readProperties(localDevice, d, refs, null);
+            for (int i = start; i <= end; i++) {
+                Encodable value = pvs.getNoErrorCheck(new ObjectPropertyReference(oid, PropertyIdentifier.objectList,
+                        new UnsignedInteger(i)));
+                if (!(value instanceof ObjectIdentifier))
+                    throw new BACnetException("Failed to read object list entry " + i + ": " + value);
+                handler.element(i, (ObjectIdentifier) value);
+            }
+        }
+        return len;
+    }
+
     /**
      * Sends a ReadProperty-Request and ignores Error responses where the class is Property and the code is
      * unknownProperty. Returns null in this case.
@@ -0,0 +1,173 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.load;
+
+import com.serotonin.bacnet4j.apdu.Abort;
+import com.serotonin.bacnet4j.apdu.ComplexACK;
+import com.serotonin.bacnet4j.apdu.ConfirmedRequest;
+import com.serotonin.bacnet4j.apdu.Error;
+import com.serotonin.bacnet4j.apdu.Reject;
+import com.serotonin.bacnet4j.apdu.SimpleACK;
+import com.serotonin.bacnet4j.apdu.UnconfirmedRequest;
+import com.serotonin.bacnet4j.enums.MaxSegments;
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.npdu.NPCI;
+import com.serotonin.bacnet4j.npdu.NPDU;
+import com.serotonin.bacnet4j.npdu.VirtualNetwork;
+import com.serotonin.bacnet4j.npdu.VirtualNetworkLink;
+import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.util.load.RequestMix.Entry;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * A simulated client. It has an address on the virtual network but no transport or threads: requests are encoded
+ * directly into NPDUs, and replies are matched to requests by invoke id from their headers alone.
+ */
+class ClientDevice extends VirtualNetwork {
+    private final DeviceFarm farm;
+    private final Address server;
+
+    // Per invoke id, the mix entry of the outstanding request or null if the id is free, and the time in nanos
+    // at which the request was due.
+    private final Entry[] entries = new Entry[256];
+    private final long[] started = new long[256];
+    // Per invoke id whose request timed out, the time in nanos until which the id is kept out of use, so that a late
+    // reply to the request is not credited to the next one that uses the id.
+    private final boolean[] quarantined = new boolean[256];
+    private final long[] quarantinedUntil = new long[256];
+    private int nextInvokeId;
+
+    ClientDevice(DeviceFarm farm, VirtualNetworkLink link, Address address, Address server) {
+        super(link, address);
+        this.farm = farm;
+        this.server = server;
+    }
+
+    void start() throws BACnetException {
+        link.register(this);
+    }
+
+    @Override
+    public void terminate() {
+        link.unregister(this);
+    }
+
+    /**
+     * @return false if all invoke ids are in use
+     */
+    boolean send(Entry entry, ConfirmedRequestService service, long due) throws BACnetException {
+        byte invokeId;
+        synchronized (this) {
+            int id = -1;
+            for (int i = 0; i < 256; i++) {
+                int candidate = (nextInvokeId + i) & 0xff;
+                if (entries[candidate] == null && (!quarantined[candidate] || quarantinedUntil[candidate] - due <= 0)) {
+                    id = candidate;
+                    break;
+                }
+            }
+            if (id == -1)
+                return false;
+
+            quarantined[id] = false;
+
+            started[id] = due;
+            entries[id] = entry;
+            nextInvokeId = id + 1;
+            invokeId = (byte) id;
+        }
+
+        ByteQueue npdu = new ByteQueue(64);
+        new NPCI(null, null, true).write(npdu);
+        new ConfirmedRequest(false, false, false, MaxSegments.UNSPECIFIED, getMaxApduLength(), invokeId, 0, 0,
+                service).write(npdu);
+        sendNPDU(server, null, npdu, false, true);
+        return true;
+    }
+
+    @Override
+    protected void handleIncomingData(ByteQueue queue, OctetString linkService) {
+        NPCI npci = new NPCI(queue);
+        if (npci.isNetworkMessage() || queue.size() < 2)
+            return;
+
+        int type = (queue.peek(0) & 0xff) >> 4;
+        if (type == UnconfirmedRequest.TYPE_ID) {
+            farm.notificationReceived();
+            return;
+        }
+
+        if (type != SimpleACK.TYPE_ID && type != ComplexACK.TYPE_ID && type != Error.TYPE_ID
+                && type != Reject.TYPE_ID && type != Abort.TYPE_ID)
+            return;
+
+        int id = queue.peek(1) & 0xff;
+        long due;
+        Entry entry;
+        synchronized (this) {
+            due = started[id];
+            entry = entries[id];
+            started[id] = 0;
+            entries[id] = null;
+            // A late reply to a request that timed out. Nothing more will come for it, so the id can be reused.
+            if (entry == null)
+                quarantined[id] = false;
+        }
+        if (entry != null)
+            farm.replyReceived(entry, due, type == SimpleACK.TYPE_ID || type == ComplexACK.TYPE_ID);
+    }
+
+    @Override
+    protected NPDU handleIncomingDataImpl(ByteQueue queue, OctetString linkService) {
+        // Not used; handleIncomingData does all the work.
+        return null;
+    }
+
+    /**
+     * Times out the requests that were due before the given time. Their invoke ids are not reused for requests due
+     * before reuseAfter, unless a late reply arrives in the meantime.
+     * 
+     * @return the number of requests that timed out
+     */
+    synchronized int expire(long dueBefore, long reuseAfter) {
+        int count = 0;
+        for (int i = 0; i < 256; i++) {
+            if (entries[i] != null && started[i] - dueBefore < 0) {
+                started[i] = 0;
+                entries[i] = null;
+                quarantined[i] = true;
+                quarantinedUntil[i] = reuseAfter;
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.npdu.VirtualNetworkProvider;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.util.load.RequestMix.Entry;
+
+/**
+ * Generates load against a server device by simulating many lightweight clients on a VirtualNetworkProvider. The
+ * server is a regular LocalDevice on a network of the same provider.
+ * 
+ * Arrivals are open loop: requests are issued at exponentially distributed intervals for the given mean rate,
+ * regardless of how quickly the server answers. Latency is measured from the time a request was due rather than
+ * the time it was sent, so that a generator that falls behind does not hide the server's queueing delay.
+ * 
+ * <pre>
+ * DeviceFarm farm = new DeviceFarm(provider, server.getNetwork().getLocalAddress(), 1000, 10000);
+ * farm.getRequestMix().add("rpm", 8, RequestMix.readPropertyMultiple(oids, PropertyIdentifier.presentValue));
+ * farm.getRequestMix().add("rp", 2, RequestMix.readProperty(PropertyIdentifier.presentValue, oids));
+ * farm.start();
+ * LoadReport report = farm.run(5000, 60000);
+ * </pre>
+ */
+public class DeviceFarm {
+    static final Logger LOG = LoggerFactory.getLogger(DeviceFarm.class);
+
+    private static final long EXPIRE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final List<ClientDevice> clients;
+    private RequestMix requestMix = new RequestMix();
+    private long timeout = 5000;
+    private long seed = System.nanoTime();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param provider
+     *            the virtual network that the server is on
+     * @param server
+     *            the address of the server
+     * @param clientCount
+     *            the number of clients to simulate
+     * @param firstMac
+     *            the MAC of the first client as a number. The clients use consecutive MACs from here, which must
+     *            not be in use by other networks of the provider.
+     */
+    public DeviceFarm(VirtualNetworkProvider provider, Address server, int clientCount, int firstMac) {
+        clients = new ArrayList<ClientDevice>(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            OctetString mac = provider.getVirtualNetwork(Integer.toString(firstMac + i)).getLocalAddress()
+                    .getMacAddress();
+            clients.add(new ClientDevice(this, provider, new Address(provider.getLocalNetwork().intValue(), mac),
+                    server));
+        }
+    }
+
+    public RequestMix getRequestMix() {
+        return requestMix;
+    }
+
+    public void setRequestMix(RequestMix requestMix) {
+        this.requestMix = requestMix;
+    }
+
+    /**
+     * Sets the time in milliseconds after which an unanswered request is counted as timed out. Defaults to 5000.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sets the seed of the arrivals and the requests, so that runs can be repeated.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Registers the clients with the network.
+     */
+    public void start() throws BACnetException {
+        for (ClientDevice client : clients)
+            client.start();
+    }
+
+    public void terminate() {
+        for (ClientDevice client : clients)
+            client.terminate();
+    }
+
+    /**
+     * Issues requests at the given mean rate for the given time, then waits for the outstanding requests to be
+     * answered or time out. Blocks the calling thread, which generates all of the requests.
+     */
+    public LoadReport run(double requestsPerSecond, long durationMillis) {
+        if (requestsPerSecond <= 0)
+            throw new IllegalArgumentException("requestsPerSecond must be positive");
+
+        reset();
+        Random random = new Random(seed);
+        double meanInterval = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long nextArrival = start;
+        long nextExpire = start + EXPIRE_INTERVAL;
+        long now = start;
+
+        while (now - end < 0) {
+            // Issue everything that is due, catching up if the generator was delayed.
+            while (nextArrival - now <= 0 && nextArrival - end < 0) {
+                issue(random, nextArrival);
+                nextArrival += (long) (-Math.log(1 - random.nextDouble()) * meanInterval);
+            }
+
+            if (now - nextExpire >= 0) {
+                expire(now - timeoutNanos, now + timeoutNanos);
+                nextExpire = now + EXPIRE_INTERVAL;
+            }
+
+            long wait = Math.min(nextArrival, nextExpire) - now;
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            now = System.nanoTime();
+        }
+
+        // Drain.
+        long drainEnd = end + timeoutNanos;
+        while (outstanding.get() > 0 && now - drainEnd < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            now = System.nanoTime();
+            expire(now - timeoutNanos, now + timeoutNanos);
+        }
+        expire(now + 1, now + timeoutNanos);
+
+        return new LoadReport(this, requestsPerSecond, TimeUnit.NANOSECONDS.toMillis(end - start));
+    }
+
+    private void issue(Random random, long due) {
+        Entry entry = requestMix.choose(random);
+        ClientDevice client = clients.get(random.nextInt(clients.size()));
+        try {
+            if (client.send(entry, entry.factory.create(random), due)) {
+                sent.incrementAndGet();
+                outstanding.incrementAndGet();
+            }
+            else
+                dropped.incrementAndGet();
+        }
+        catch (BACnetException e) {
+            LOG.warn("Error sending request", e);
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Times out the requests that were due before the given time. Their invoke ids are kept out of use for another
+     * timeout, so that late replies are not taken for replies to new requests.
+     */
+    private void expire(long dueBefore, long reuseAfter) {
+        for (ClientDevice client : clients) {
+            int count = client.expire(dueBefore, reuseAfter);
+            if (count > 0) {
+                timeouts.addAndGet(count);
+                outstanding.addAndGet(-count);
+            }
+        }
+    }
+
+    private void reset() {
+        sent.set(0);
+        completed.set(0);
+        failed.set(0);
+        timeouts.set(0);
+        dropped.set(0);
+        notifications.set(0);
+        outstanding.set(0);
+        latency = new LatencyHistogram();
+        for (Entry entry : requestMix.getEntries())
+            entry.latency = new LatencyHistogram();
+    }
+
+    void replyReceived(Entry entry, long due, boolean success) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+        entry.latency.record(micros);
+        latency.record(micros);
+        if (success)
+            completed.incrementAndGet();
+        else
+            failed.incrementAndGet();
+        outstanding.decrementAndGet();
+    }
+
+    void notificationReceived() {
+        notifications.incrementAndGet();
+    }
+
+    long getSent() {
+        return sent.get();
+    }
+
+    long getCompleted() {
+        return completed.get();
+    }
+
+    long getFailed() {
+        return failed.get();
+    }
+
+    long getTimeouts() {
+        return timeouts.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    long getNotifications() {
+        return notifications.get();
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.load;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.serotonin.bacnet4j.util.load.RequestMix.Entry;
+
+/**
+ * The results of a DeviceFarm run. Latencies are in microseconds.
+ */
+public class LoadReport {
+    private final double offeredRate;
+    private final long durationMillis;
+    private final long sent;
+    private final long completed;
+    private final long failed;
+    private final long timeouts;
+    private final long dropped;
+    private final long notifications;
+    private final LatencyHistogram latency;
+    private final Map<String, LatencyHistogram> entryLatency = new LinkedHashMap<String, LatencyHistogram>();
+
+    LoadReport(DeviceFarm farm, double offeredRate, long durationMillis) {
+        this.offeredRate = offeredRate;
+        this.durationMillis = durationMillis;
+        sent = farm.getSent();
+        completed = farm.getCompleted();
+        failed = farm.getFailed();
+        timeouts = farm.getTimeouts();
+        dropped = farm.getDropped();
+        notifications = farm.getNotifications();
+        latency = farm.getLatency();
+        for (Entry entry : farm.getRequestMix().getEntries())
+            entryLatency.put(entry.name, entry.latency);
+    }
+
+    /**
+     * @return the requested arrival rate in requests per second
+     */
+    public double getOfferedRate() {
+        return offeredRate;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return the number of requests that were acknowledged
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return the number of requests that were answered with an error, reject or abort
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return the number of requests that were not sent because the chosen client had 256 requests outstanding
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of unconfirmed requests, typically COV notifications, that the clients received
+     */
+    public long getNotifications() {
+        return notifications;
+    }
+
+    /**
+     * @return the number of acknowledged requests per second
+     */
+    public double getThroughput() {
+        return durationMillis == 0 ? 0 : completed * 1000D / durationMillis;
+    }
+
+    /**
+     * @return the latencies of all answered requests
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the latencies of the answered requests by the name of their request mix entry
+     */
+    public Map<String, LatencyHistogram> getEntryLatency() {
+        return Collections.unmodifiableMap(entryLatency);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("offered %.1f/s, throughput %.1f/s over %d ms: sent %d, completed %d, failed %d, "
+                + "timeouts %d, dropped %d, notifications %d%n", offeredRate, getThroughput(), durationMillis, sent,
+                completed, failed, timeouts, dropped, notifications));
+        appendLatency(sb, "all", latency);
+        for (Map.Entry<String, LatencyHistogram> e : entryLatency.entrySet())
+            appendLatency(sb, e.getKey(), e.getValue());
+        return sb.toString();
+    }
+
+    private static void appendLatency(StringBuilder sb, String name, LatencyHistogram h) {
+        sb.append(String.format("  %-12s n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                name, h.getCount(), h.getMean() / 1000, h.getPercentile(50) / 1000D, h.getPercentile(90) / 1000D,
+                h.getPercentile(99) / 1000D, h.getPercentile(99.9) / 1000D, h.getMax() / 1000D));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyMultipleRequest;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
+import com.serotonin.bacnet4j.service.confirmed.SubscribeCOVRequest;
+import com.serotonin.bacnet4j.service.confirmed.WritePropertyRequest;
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyReference;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessSpecification;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+
+/**
+ * A weighted set of requests that the clients of a DeviceFarm choose from. Each entry is reported separately.
+ */
+public class RequestMix {
+    /**
+     * Creates the requests of a mix entry. Called concurrently from the load generator, so implementations must be
+     * thread safe.
+     */
+    public interface RequestFactory {
+        ConfirmedRequestService create(Random random);
+    }
+
+    static class Entry {
+        final String name;
+        final int weight;
+        final RequestFactory factory;
+        volatile LatencyHistogram latency = new LatencyHistogram();
+
+        Entry(String name, int weight, RequestFactory factory) {
+            this.name = name;
+            this.weight = weight;
+            this.factory = factory;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private int totalWeight;
+
+    /**
+     * Adds an entry that is chosen with a probability of weight divided by the sum of all weights.
+     */
+    public RequestMix add(String name, int weight, RequestFactory factory) {
+        if (weight <= 0)
+            throw new IllegalArgumentException("weight must be positive");
+        entries.add(new Entry(name, weight, factory));
+        totalWeight += weight;
+        return this;
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    Entry choose(Random random) {
+        if (entries.isEmpty())
+            throw new IllegalStateException("The request mix is empty");
+        int r = random.nextInt(totalWeight);
+        for (Entry e : entries) {
+            r -= e.weight;
+            if (r < 0)
+                return e;
+        }
+        return entries.get(entries.size() - 1);
+    }
+
+    //
+    // Common requests. Each picks one of the given objects at random.
+    //
+    public static RequestFactory readProperty(final PropertyIdentifier pid, final ObjectIdentifier... oids) {
+        return new RequestFactory() {
+            @Override
+            public ConfirmedRequestService create(Random random) {
+                return new ReadPropertyRequest(pick(random, oids), pid);
+            }
+        };
+    }
+
+    public static RequestFactory readPropertyMultiple(final ObjectIdentifier[] oids, final PropertyIdentifier... pids) {
+        return new RequestFactory() {
+            @Override
+            public ConfirmedRequestService create(Random random) {
+                List<PropertyReference> refs = new ArrayList<PropertyReference>(pids.length);
+                for (PropertyIdentifier pid : pids)
+                    refs.add(new PropertyReference(pid));
+                List<ReadAccessSpecification> specs = new ArrayList<ReadAccessSpecification>(1);
+                specs.add(new ReadAccessSpecification(pick(random, oids), new SequenceOf<PropertyReference>(refs)));
+                return new ReadPropertyMultipleRequest(new SequenceOf<ReadAccessSpecification>(specs));
+            }
+        };
+    }
+
+    public static RequestFactory writeProperty(final PropertyIdentifier pid, final Encodable value,
+            final ObjectIdentifier... oids) {
+        return new RequestFactory() {
+            @Override
+            public ConfirmedRequestService create(Random random) {
+                return new WritePropertyRequest(pick(random, oids), pid, null, value, null);
+            }
+        };
+    }
+
+    /**
+     * Subscribes for unconfirmed notifications. The process identifier is random so that repeated subscriptions
+     * from the same client accumulate instead of renewing each other.
+     */
+    public static RequestFactory subscribeCov(final int lifetimeSeconds, final ObjectIdentifier... oids) {
+        return new RequestFactory() {
+            @Override
+            public ConfirmedRequestService create(Random random) {
+                return new SubscribeCOVRequest(new UnsignedInteger(random.nextInt(1 << 16)), pick(random, oids),
+                        new Boolean(false), new UnsignedInteger(lifetimeSeconds));
+            }
+        };
+    }
+
+    static ObjectIdentifier pick(Random random, ObjectIdentifier[] oids) {
+        return oids[oids.length == 1 ? 0 : random.nextInt(oids.length)];
+    }
+}
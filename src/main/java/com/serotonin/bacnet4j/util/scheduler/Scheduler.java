@@ -34,34 +34,42 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import com.serotonin.bacnet4j.util.TimeSource;
+
 /**
  * Class for creating several Timer like objects implemented through a 
  * shared threadpool.
+ * 
+ * The scheduler is also the clock of the devices that use it. Subclasses can replace both, as
+ * SimulatedScheduler does to run in virtual time.
  *  
  * @author andreu
  *
  */
-public class Scheduler {
+public class Scheduler implements TimeSource {
 
 	public class Timer {
 		public void schedule(TimerTask timerTask, long delay) {
-			ScheduledFuture<?> scheduled = scheduler.schedule(timerTask, delay, TimeUnit.MILLISECONDS);
-			timerTask.setScheduled(scheduled);
+			timerTask.setScheduled(Scheduler.this.schedule(timerTask, delay, 0, false));
 		}
 		
 		public void schedule(TimerTask timerTask, Date date) {
-			Date now = new Date();
-			schedule(timerTask, date.getTime()-now.getTime());
+			schedule(timerTask, date.getTime() - currentTimeMillis());
 		}
 		
 		public void schedule(TimerTask timerTask, long delay, long period) {
-			ScheduledFuture<?> scheduled = scheduler.scheduleWithFixedDelay(timerTask, delay, period, TimeUnit.MILLISECONDS);
-			timerTask.setScheduled(scheduled);
+			timerTask.setScheduled(Scheduler.this.schedule(timerTask, delay, period, false));
 		}
 		
 		public void scheduleAtFixedRate(TimerTask timerTask, long delay, long period) {
-			ScheduledFuture<?> scheduled = scheduler.scheduleAtFixedRate(timerTask, delay, period, TimeUnit.MILLISECONDS);
-			timerTask.setScheduled(scheduled);
+			timerTask.setScheduled(Scheduler.this.schedule(timerTask, delay, period, true));
+		}
+
+		/**
+		 * @return the current time of the scheduler that runs this timer's tasks
+		 */
+		public long currentTimeMillis() {
+			return Scheduler.this.currentTimeMillis();
 		}
 	}
 
@@ -77,9 +85,14 @@ public class Scheduler {
 		this.poolSize = poolSize;
 	}
 	
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
 	synchronized public Timer getTimer() {
-		if(scheduler == null) {
-			scheduler = Executors.newScheduledThreadPool(poolSize);
+		if(counter == 0) {
+			start();
 		}
 		counter++;
 		return new Timer();
@@ -92,7 +105,32 @@ public class Scheduler {
 		}
 	}
 
-	private void shutdown() {
+	/**
+	 * Runs the task after the given delay, and then every period milliseconds if the period is positive.
+	 */
+	protected ScheduledFuture<?> schedule(Runnable task, long delay, long period, boolean fixedRate) {
+		if(period <= 0) {
+			return scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+		}
+		if(fixedRate) {
+			return scheduler.scheduleAtFixedRate(task, delay, period, TimeUnit.MILLISECONDS);
+		}
+		return scheduler.scheduleWithFixedDelay(task, delay, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Called when the first timer is handed out.
+	 */
+	protected void start() {
+		if(scheduler == null) {
+			scheduler = Executors.newScheduledThreadPool(poolSize);
+		}
+	}
+
+	/**
+	 * Called when the last timer is released.
+	 */
+	protected void shutdown() {
 		if(scheduler != null) {
 			scheduler.shutdown();
 			try {
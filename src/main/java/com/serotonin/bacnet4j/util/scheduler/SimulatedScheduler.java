@@ -0,0 +1,265 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.scheduler;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A scheduler that runs in virtual time. The clock only moves when advance() or advanceTo() is called, and
+ * tasks that fall due are run on the calling thread in time order. Devices created with this scheduler see
+ * the virtual time in all of their timeouts, subscription lifetimes and time delays, so that scenarios spanning
+ * days can be run in seconds.
+ * 
+ * Messages are still handled on the transport threads. Callers that advance the clock in large steps should give
+ * those threads the chance to catch up between steps.
+ */
+public class SimulatedScheduler extends Scheduler {
+    static final Logger LOG = LoggerFactory.getLogger(SimulatedScheduler.class);
+
+    private final PriorityQueue<SimulatedTask> tasks = new PriorityQueue<SimulatedTask>();
+    private volatile long now;
+    private long sequence;
+
+    /**
+     * Starts the virtual clock at the current wall clock time.
+     */
+    public SimulatedScheduler() {
+        this(System.currentTimeMillis());
+    }
+
+    public SimulatedScheduler(long start) {
+        super(0);
+        now = start;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * Moves the clock forward by the given number of milliseconds, running all tasks that fall due.
+     */
+    public void advance(long millis) {
+        advanceTo(now + millis);
+    }
+
+    /**
+     * Moves the clock forward to the given time, running all tasks that fall due. Tasks scheduled by the tasks
+     * that run are also run if they fall due before the given time.
+     */
+    public void advanceTo(long time) {
+        while (true) {
+            SimulatedTask task;
+            synchronized (this) {
+                task = tasks.peek();
+                if (task == null || task.time > time)
+                    break;
+                tasks.poll();
+                if (task.time > now)
+                    now = task.time;
+            }
+            task.runTask();
+        }
+
+        synchronized (this) {
+            if (time > now)
+                now = time;
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting to run
+     */
+    public synchronized int getPendingTaskCount() {
+        return tasks.size();
+    }
+
+    /**
+     * @return the time of the next task, or -1 if there is none
+     */
+    public synchronized long getNextTaskTime() {
+        SimulatedTask task = tasks.peek();
+        return task == null ? -1 : task.time;
+    }
+
+    @Override
+    protected synchronized ScheduledFuture<?> schedule(Runnable task, long delay, long period, boolean fixedRate) {
+        SimulatedTask t = new SimulatedTask(task, now + Math.max(delay, 0), period, fixedRate);
+        add(t);
+        return t;
+    }
+
+    @Override
+    protected void start() {
+        // No threads to start.
+    }
+
+    @Override
+    protected synchronized void shutdown() {
+        tasks.clear();
+    }
+
+    synchronized void add(SimulatedTask task) {
+        task.sequence = sequence++;
+        tasks.add(task);
+    }
+
+    synchronized void remove(SimulatedTask task) {
+        tasks.remove(task);
+    }
+
+    /**
+     * The future of a task. As with a ScheduledExecutorService, get() blocks until the task has run once (or, for a
+     * periodic task, until it has been cancelled or has failed). Since tasks only run when the clock is advanced, get()
+     * must not be called before the task is due by the thread that advances the clock: it would wait forever. The
+     * timeout of get(long, TimeUnit) is in wall clock time.
+     */
+    class SimulatedTask implements ScheduledFuture<Object> {
+        final Runnable command;
+        final long period;
+        final boolean fixedRate;
+        long time;
+        long sequence;
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile RuntimeException failure;
+
+        SimulatedTask(Runnable command, long time, long period, boolean fixedRate) {
+            this.command = command;
+            this.time = time;
+            this.period = period;
+            this.fixedRate = fixedRate;
+        }
+
+        void runTask() {
+            if (cancelled)
+                return;
+
+            try {
+                command.run();
+            }
+            catch (RuntimeException e) {
+                // As with a ScheduledExecutorService, a failed task is not run again.
+                LOG.error("Scheduled task failed", e);
+                failure = e;
+                finish();
+                return;
+            }
+
+            if (period > 0 && !cancelled) {
+                time = fixedRate ? time + period : now + period;
+                add(this);
+            }
+            else
+                finish();
+        }
+
+        private synchronized void finish() {
+            done = true;
+            notifyAll();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - now, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o instanceof SimulatedTask) {
+                SimulatedTask that = (SimulatedTask) o;
+                if (time != that.time)
+                    return time < that.time ? -1 : 1;
+                return sequence < that.sequence ? -1 : sequence == that.sequence ? 0 : 1;
+            }
+            long diff = getDelay(TimeUnit.MILLISECONDS) - o.getDelay(TimeUnit.MILLISECONDS);
+            return diff < 0 ? -1 : diff == 0 ? 0 : 1;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (done || cancelled)
+                    return false;
+                cancelled = true;
+                notifyAll();
+            }
+            remove(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public synchronized Object get() throws InterruptedException, ExecutionException {
+            while (!isDone())
+                wait();
+            return result();
+        }
+
+        @Override
+        public synchronized Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isDone()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    throw new TimeoutException();
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return result();
+        }
+
+        private Object result() throws ExecutionException {
+            if (cancelled)
+                throw new CancellationException();
+            if (failure != null)
+                throw new ExecutionException(failure);
+            return null;
+        }
+    }
+}
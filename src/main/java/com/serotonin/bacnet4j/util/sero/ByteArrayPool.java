@@ -0,0 +1,108 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.sero;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte arrays in power of two sizes from 64 bytes to 64 KB. Arrays of other sizes are neither handed out
+ * nor kept. Each size keeps at most a fixed number of free arrays, so that a burst of traffic does not pin memory
+ * forever.
+ */
+public class ByteArrayPool {
+    public static final ByteArrayPool DEFAULT = new ByteArrayPool(64);
+
+    private static final int MIN_SHIFT = 6;
+    private static final int MAX_SHIFT = 16;
+
+    private final int maxFreePerSize;
+    private final Queue<byte[]>[] free;
+    private final AtomicInteger[] freeCounts;
+
+    @SuppressWarnings("unchecked")
+    public ByteArrayPool(int maxFreePerSize) {
+        this.maxFreePerSize = maxFreePerSize;
+        int sizes = MAX_SHIFT - MIN_SHIFT + 1;
+        free = new Queue[sizes];
+        freeCounts = new AtomicInteger[sizes];
+        for (int i = 0; i < sizes; i++) {
+            free[i] = new ConcurrentLinkedQueue<byte[]>();
+            freeCounts[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * @return an array of at least the given length. Its content is undefined.
+     */
+    public byte[] take(int minLength) {
+        int index = index(minLength);
+        if (index == -1)
+            return new byte[minLength];
+
+        byte[] b = free[index].poll();
+        if (b == null)
+            return new byte[1 << (index + MIN_SHIFT)];
+        freeCounts[index].decrementAndGet();
+        return b;
+    }
+
+    /**
+     * Returns an array to the pool. The caller must not use it afterwards.
+     */
+    public void give(byte[] b) {
+        int length = b.length;
+        if (length < 1 << MIN_SHIFT || length > 1 << MAX_SHIFT || Integer.bitCount(length) != 1)
+            return;
+
+        int index = Integer.numberOfTrailingZeros(length) - MIN_SHIFT;
+        if (freeCounts[index].incrementAndGet() > maxFreePerSize)
+            freeCounts[index].decrementAndGet();
+        else
+            free[index].add(b);
+    }
+
+    /**
+     * @return the number of free arrays held by the pool
+     */
+    public int getFreeCount() {
+        int count = 0;
+        for (AtomicInteger c : freeCounts)
+            count += c.get();
+        return count;
+    }
+
+    private static int index(int length) {
+        if (length > 1 << MAX_SHIFT)
+            return -1;
+        int shift = length <= 1 << MIN_SHIFT ? MIN_SHIFT : 32 - Integer.numberOfLeadingZeros(length - 1);
+        return shift - MIN_SHIFT;
+    }
+}
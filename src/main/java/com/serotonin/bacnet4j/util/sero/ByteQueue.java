@@ -43,6 +43,12 @@ public class ByteQueue implements Cloneable {
     private int markHead;
     private int markTail;
     private int markSize;
+    private boolean marked;
+
+    // True while the backing array belongs to someone else. See wrap(byte[]).
+    private boolean shared;
+    // The pool the backing array came from, if any. Only set while this queue is the array's sole owner.
+    private ByteArrayPool pool;
 
     public ByteQueue() {
         this(1024);
@@ -67,6 +73,68 @@ public class ByteQueue implements Cloneable {
         push(hex);
     }
 
+    /**
+     * Creates a queue that reads directly from the given array rather than a copy of it. Many queues may wrap the
+     * same array; a queue takes its own copy only on the first write, so pops and peeks never copy. The caller
+     * must not modify the array afterwards.
+     */
+    public static ByteQueue wrap(byte[] b) {
+        return wrap(b, 0, b.length);
+    }
+
+    /**
+     * Like wrap(byte[]), but only the given range of the array is in the queue.
+     */
+    public static ByteQueue wrap(byte[] b, int pos, int length) {
+        if (pos < 0 || length < 0 || pos + length > b.length)
+            throw new IndexOutOfBoundsException("pos=" + pos + ", length=" + length + ", array length=" + b.length);
+        if (length == 0)
+            return new ByteQueue(0);
+        ByteQueue q = new ByteQueue(0);
+        q.queue = b;
+        q.head = pos;
+        q.tail = (pos + length) % b.length;
+        q.size = length;
+        q.shared = true;
+        return q;
+    }
+
+    /**
+     * Wraps the remaining content of the buffer if it is backed by an accessible array, or copies it otherwise. The
+     * buffer's position is not changed.
+     */
+    public static ByteQueue wrap(ByteBuffer b) {
+        if (b.hasArray())
+            return wrap(b.array(), b.arrayOffset() + b.position(), b.remaining());
+        ByteQueue q = new ByteQueue(b.remaining());
+        q.push(b.duplicate());
+        return q;
+    }
+
+    /**
+     * Creates an empty queue whose backing array is taken from the default pool. Call release() once the queue is
+     * no longer used to give the array back. A queue that is never released is simply garbage collected.
+     */
+    public static ByteQueue pooled(int initialLength) {
+        ByteQueue q = new ByteQueue(0);
+        q.pool = ByteArrayPool.DEFAULT;
+        q.queue = q.pool.take(initialLength);
+        return q;
+    }
+
+    /**
+     * Empties the queue and gives its backing array back to the pool it came from. Does nothing to the array if it
+     * did not come from a pool, or if it has been shared with a slice or clone since. The queue remains usable.
+     */
+    public void release() {
+        if (pool != null && !shared)
+            pool.give(queue);
+        pool = null;
+        shared = false;
+        queue = new byte[0];
+        clear();
+    }
+
     public void push(String hex) {
         if (hex.length() % 2 != 0)
             throw new IllegalArgumentException("Hex string must have an even number of characters");
@@ -77,6 +145,7 @@ public class ByteQueue implements Cloneable {
     }
 
     public void push(byte b) {
+        unshare();
         if (room() == 0)
             expand();
 
@@ -169,6 +238,7 @@ public class ByteQueue implements Cloneable {
     public void read(InputStream in, int length) throws IOException {
         if (length == 0)
             return;
+        unshare();
 
         while (room() < length)
             expand();
@@ -204,6 +274,7 @@ public class ByteQueue implements Cloneable {
     public void push(byte[] b, int pos, int length) {
         if (length == 0)
             return;
+        unshare();
 
         while (room() < length)
             expand();
@@ -249,6 +320,7 @@ public class ByteQueue implements Cloneable {
         int length = source.remaining();
         if (length == 0)
             return;
+        unshare();
 
         while (room() < length)
             expand();
@@ -268,10 +340,15 @@ public class ByteQueue implements Cloneable {
         size += length;
     }
 
+    /**
+     * Remembers the current content so that reset() can return to it. The mark survives pops and writes, but not
+     * the queue being emptied or cleared.
+     */
     public void mark() {
         markHead = head;
         markTail = tail;
         markSize = size;
+        marked = true;
     }
 
     public void reset() {
@@ -372,6 +449,55 @@ public class ByteQueue implements Cloneable {
         return data;
     }
 
+    /**
+     * Returns the backing array if the content lies in one piece in it, starting at arrayOffset(), or null if it
+     * wraps around the end of the array. This lets the content be handed to an API that takes an array, offset and
+     * length without copying it. The array must not be modified, and must not be used once the queue has been
+     * written to or released.
+     */
+    public byte[] array() {
+        if (head == -1 || head + size <= queue.length)
+            return queue;
+        return null;
+    }
+
+    /**
+     * The index in array() of the first byte of the content.
+     */
+    public int arrayOffset() {
+        return head == -1 ? 0 : head;
+    }
+
+    /**
+     * Returns a queue of the given range of this queue's content without copying it. This queue is unchanged. The two
+     * queues share the backing array until either is written to.
+     */
+    public ByteQueue slice(int index, int length) {
+        if (index < 0 || length < 0 || index + length > size)
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + length + ", size=" + size);
+        if (length == 0)
+            return new ByteQueue(0);
+
+        ByteQueue slice = new ByteQueue(0);
+        slice.queue = queue;
+        slice.head = (head + index) % queue.length;
+        slice.tail = (slice.head + length) % queue.length;
+        slice.size = length;
+        slice.shared = true;
+        shared = true;
+        pool = null;
+        return slice;
+    }
+
+    /**
+     * Removes the given number of bytes from the head of the queue and returns them as a slice.
+     */
+    public ByteQueue popSlice(int length) {
+        ByteQueue slice = slice(0, length);
+        pop(length);
+        return slice;
+    }
+
     public void write(OutputStream out) throws IOException {
         write(out, size);
     }
@@ -518,29 +644,96 @@ public class ByteQueue implements Cloneable {
         size = 0;
         head = -1;
         tail = 0;
+        marked = false;
+    }
+
+    private void unshare() {
+        if (shared) {
+            // Copy only the content, since the shared array may be much larger than this queue. What has been
+            // popped since the mark is copied as well, so that reset() still works.
+            int offset = markOffset();
+            byte[] b;
+            if (offset == -1) {
+                b = new byte[size];
+                peek(b, 0, size);
+                head = size == 0 ? -1 : 0;
+                tail = 0;
+            }
+            else {
+                int length = Math.max(offset + size, markSize);
+                b = new byte[length];
+                copy(markHead, b, length);
+                head = offset;
+                tail = (offset + size) % length;
+                markHead = 0;
+                markTail = markSize % length;
+            }
+            queue = b;
+            shared = false;
+        }
+    }
+
+    /**
+     * @return the number of bytes popped since the mark was set, or -1 if there is no mark or it no longer refers to
+     *         content that is still in the array ahead of the current content.
+     */
+    private int markOffset() {
+        if (!marked || head == -1 || markHead == -1)
+            return -1;
+        int offset = (head - markHead + queue.length) % queue.length;
+        if (offset + size > queue.length)
+            return -1;
+        return offset;
+    }
+
+    /**
+     * Copies length bytes of the array, starting at the given index and wrapping around its end.
+     */
+    private void copy(int start, byte[] dst, int length) {
+        int firstLength = Math.min(length, queue.length - start);
+        System.arraycopy(queue, start, dst, 0, firstLength);
+        if (firstLength < length)
+            System.arraycopy(queue, 0, dst, firstLength, length - firstLength);
     }
 
     private int room() {
-        return queue.length - size;
+        // What has been popped since the mark is not free, since reset() brings it back.
+        int offset = markOffset();
+        return queue.length - size - (offset == -1 ? 0 : offset);
     }
 
     private void expand() {
-        byte[] newb = new byte[queue.length * 2];
+        int newLength = Math.max(queue.length * 2, 16);
+        byte[] newb = pool == null ? new byte[newLength] : pool.take(newLength);
+
+        // Keep what has been popped since the mark along with the content, so that reset() still works.
+        int offset = markOffset();
+        int start = offset == -1 ? head : markHead;
+        int length = offset == -1 ? size : Math.max(offset + size, markSize);
 
         if (head == -1) {
-            queue = newb;
-            return;
+            // Nothing to copy.
         }
-
-        if (tail > head) {
-            System.arraycopy(queue, head, newb, head, tail - head);
-            queue = newb;
-            return;
+        else if (start + length < queue.length)
+            System.arraycopy(queue, start, newb, start, length);
+        else {
+            // The content wraps around or ends at the end of the array, so move the part after the start to the
+            // end of the new array. The pool may hand out an array larger than asked for.
+            int startLength = queue.length - start;
+            int shift = newb.length - queue.length;
+            System.arraycopy(queue, start, newb, start + shift, startLength);
+            System.arraycopy(queue, 0, newb, 0, length - startLength);
+            if (head >= start)
+                head += shift;
+            if (offset != -1) {
+                markHead += shift;
+                if (markTail >= start)
+                    markTail += shift;
+            }
         }
 
-        System.arraycopy(queue, head, newb, head + queue.length, queue.length - head);
-        System.arraycopy(queue, 0, newb, 0, tail);
-        head += queue.length;
+        if (pool != null)
+            pool.give(queue);
         queue = newb;
     }
 
@@ -548,8 +741,9 @@ public class ByteQueue implements Cloneable {
     public Object clone() {
         try {
             ByteQueue clone = (ByteQueue) super.clone();
-            // Array is mutable, so make a copy of it too.
-            clone.queue = queue.clone();
+            // The array is copied by whichever queue writes to it first.
+            clone.shared = shared = true;
+            clone.pool = pool = null;
             return clone;
         }
         catch (CloneNotSupportedException e) { /* Will never happen because we're Cloneable */
@@ -11,13 +11,21 @@ import org.slf4j.LoggerFactory;
 import com.serotonin.bacnet4j.LocalDevice;
 import com.serotonin.bacnet4j.RemoteDevice;
 import com.serotonin.bacnet4j.apdu.APDU;
+import com.serotonin.bacnet4j.apdu.ConfirmedRequest;
 import com.serotonin.bacnet4j.apdu.UnconfirmedRequest;
+import com.serotonin.bacnet4j.enums.MaxApduLength;
+import com.serotonin.bacnet4j.enums.MaxSegments;
 import com.serotonin.bacnet4j.event.DeviceEventAdapter;
+import com.serotonin.bacnet4j.exception.BACnetException;
 import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
 import com.serotonin.bacnet4j.service.unconfirmed.WhoIsRequest;
 import com.serotonin.bacnet4j.transport.DefaultTransport;
 import com.serotonin.bacnet4j.transport.Transport;
 import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
 import com.serotonin.bacnet4j.util.sero.ThreadUtils;
@@ -146,6 +154,110 @@ public class GatewayTest {
 		assertEquals(d1.getNetwork().getLocalAddress().getMacAddress(),d3.getNetwork().getTransport().getNetworkRouters().get(11));
 	}
 	
+	@Test
+	public void flowControlTest() throws Exception {
+		SaturableNetworkTest n12 = new SaturableNetworkTest(12, "1");
+		LocalDevice d4 = new LocalDevice(4, new DefaultTransport(n12));
+		d1.getNetwork().addRoute(n12);
+		d4.initialize();
+		
+		try {
+			Network n10 = d3.getNetwork();
+			n12.setSendQueueSize(1000);
+			
+			// A message from d3 to network 12 through d1 cannot be routed.
+			APDU apdu = new UnconfirmedRequest(new WhoIsRequest());
+			ByteQueue npdu = new ByteQueue();
+			new NPCI(new Address(12, NetworkUtils.toOctetString("1")), null, false).write(npdu);
+			apdu.write(npdu);
+			d1.getNetwork().handleIncomingData(npdu, n10.getLocalAddress().getMacAddress());
+			
+			Thread.sleep(100);
+			assertNull(n12.getLastRouted());
+			assertTrue(n10.isRouterBusy(12));
+			assertFalse(n10.isRouterBusy(11));
+			
+			// Meanwhile, APDUs from d3 to network 12 are held back.
+			Address recipient = new Address(12, NetworkUtils.toOctetString("1"));
+			n10.sendAPDU(recipient, d1.getNetwork().getLocalAddress().getMacAddress(), apdu, false);
+			
+			Thread.sleep(100);
+			assertNull(n12.getLastRouted());
+			
+			// The route stays busy until the queue has drained to half its capacity.
+			n12.setSendQueueSize(Network.DEFAULT_ROUTE_QUEUE_CAPACITY / 2 + 1);
+			n12.sendQueueChanged();
+			
+			Thread.sleep(100);
+			assertTrue(n10.isRouterBusy(12));
+			
+			n12.setSendQueueSize(Network.DEFAULT_ROUTE_QUEUE_CAPACITY / 2);
+			n12.sendQueueChanged();
+			
+			// Router-Available-To-Network releases the withheld APDU.
+			Thread.sleep(100);
+			assertFalse(n10.isRouterBusy(12));
+			assertNotNull(n12.getLastRouted());
+			assertEquals(n10.getLocalAddress(), n12.getLastRouted().getFrom());
+		} finally {
+			d4.terminate();
+		}
+	}
+	
+	@Test
+	public void confirmedRequestWhileBusy() throws Exception {
+		SaturableNetworkTest n12 = new SaturableNetworkTest(12, "1");
+		LocalDevice d4 = new LocalDevice(4, new DefaultTransport(n12));
+		d1.getNetwork().addRoute(n12);
+		d4.initialize();
+		
+		try {
+			Network n10 = d3.getNetwork();
+			n12.setSendQueueSize(1000);
+			
+			// Make network 12 busy.
+			ByteQueue npdu = new ByteQueue();
+			new NPCI(new Address(12, NetworkUtils.toOctetString("1")), null, false).write(npdu);
+			new UnconfirmedRequest(new WhoIsRequest()).write(npdu);
+			d1.getNetwork().handleIncomingData(npdu, n10.getLocalAddress().getMacAddress());
+			Thread.sleep(100);
+			assertTrue(n10.isRouterBusy(12));
+			
+			// A confirmed request, and each retry of it, fails at once rather than being held back.
+			Address recipient = new Address(12, NetworkUtils.toOctetString("1"));
+			APDU request = new ConfirmedRequest(false, false, true, MaxSegments.UNSPECIFIED, MaxApduLength.UP_TO_1476,
+					(byte) 5, 0, 0, new ReadPropertyRequest(new ObjectIdentifier(ObjectType.device, 4),
+							PropertyIdentifier.objectName));
+			for (int i = 0; i < 3; i++) {
+				try {
+					n10.sendAPDU(recipient, d1.getNetwork().getLocalAddress().getMacAddress(), request, false);
+					fail("BACnetException expected");
+				} catch (BACnetException e) {
+					// Expected
+				}
+			}
+			
+			// Through the transport, the caller gets the failure without waiting for the request to time out.
+			long start = System.currentTimeMillis();
+			try {
+				d3.send(recipient, new ReadPropertyRequest(new ObjectIdentifier(ObjectType.device, 4),
+						PropertyIdentifier.objectName)).get();
+				fail("BACnetException expected");
+			} catch (BACnetException e) {
+				assertTrue(System.currentTimeMillis() - start < d3.getNetwork().getTransport().getTimeout());
+			}
+			
+			// Nothing was withheld, so nothing is released when the router becomes available.
+			n12.setSendQueueSize(0);
+			n12.sendQueueChanged();
+			Thread.sleep(100);
+			assertFalse(n10.isRouterBusy(12));
+			assertNull(n12.getLastRouted());
+		} finally {
+			d4.terminate();
+		}
+	}
+	
 	private void routeLocal(Network network, Network remoteNetwork, APDU apdu, Address from) {
 		ByteQueue npdu = new ByteQueue();
 		
@@ -198,4 +310,22 @@ class NetworkTest extends TestNetwork {
 		
 		super.routeImpl(recipient, npdu, broadcast);
 	}
-}
\ No newline at end of file
+}
+
+class SaturableNetworkTest extends NetworkTest {
+	
+	private int sendQueueSize;
+	
+	public SaturableNetworkTest(int networkNumber, String macAddress) {
+		super(networkNumber, macAddress);
+	}
+	
+	public void setSendQueueSize(int sendQueueSize) {
+		this.sendQueueSize = sendQueueSize;
+	}
+	
+	@Override
+	protected int getSendQueueSize() {
+		return sendQueueSize;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.service.unconfirmed.IAmRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.WhoIsRequest;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class IncomingRateLimiterTest {
+    private static final Address A = new Address(new OctetString(new byte[] { 1 }));
+    private static final Address B = new Address(new OctetString(new byte[] { 2 }));
+
+    @Test
+    public void perSourceAndService() {
+        IncomingRateLimiter limiter = new IncomingRateLimiter();
+        limiter.setUnconfirmedLimit(WhoIsRequest.TYPE_ID, 10, 2);
+
+        // The burst is allowed, then the source is cut off until a token has been refilled.
+        assertTrue(limiter.allow(whoIs(A), 0));
+        assertTrue(limiter.allow(whoIs(A), 0));
+        assertFalse(limiter.allow(whoIs(A), 50));
+        assertTrue(limiter.allow(whoIs(A), 100));
+        assertFalse(limiter.allow(whoIs(A), 100));
+
+        // Other sources and other services are not affected.
+        assertTrue(limiter.allow(whoIs(B), 100));
+        assertTrue(limiter.allow(iAm(A), 100));
+
+        assertEquals(2, limiter.getDroppedCount());
+        assertEquals(2, limiter.getDroppedCount(A));
+        assertEquals(0, limiter.getDroppedCount(B));
+    }
+
+    @Test
+    public void defaultLimit() {
+        IncomingRateLimiter limiter = new IncomingRateLimiter();
+        limiter.setDefaultLimit(1, 1);
+        assertTrue(limiter.allow(iAm(A), 0));
+        assertFalse(limiter.allow(iAm(A), 0));
+        assertTrue(limiter.allow(whoIs(A), 0));
+        assertTrue(limiter.allow(iAm(A), 1000));
+    }
+
+    @Test
+    public void changeDefaultLimit() {
+        IncomingRateLimiter limiter = new IncomingRateLimiter();
+        limiter.setDefaultLimit(1, 1);
+        assertTrue(limiter.allow(iAm(A), 0));
+        assertFalse(limiter.allow(iAm(A), 0));
+
+        // A source that is already being tracked gets the new default at once.
+        limiter.setDefaultLimit(1, 3);
+        assertTrue(limiter.allow(iAm(A), 0));
+        assertTrue(limiter.allow(iAm(A), 0));
+        assertTrue(limiter.allow(iAm(A), 0));
+        assertFalse(limiter.allow(iAm(A), 0));
+    }
+
+    @Test
+    public void boundedBuckets() {
+        IncomingRateLimiter limiter = new IncomingRateLimiter();
+        limiter.setUnconfirmedLimit(WhoIsRequest.TYPE_ID, 1, 1);
+        assertTrue(limiter.allow(whoIs(A), 0));
+
+        // A flood of new sources does not grow the table beyond its bound, and a source that keeps sending is
+        // remembered while the idle ones are discarded.
+        for (int i = 0; i < IncomingRateLimiter.MAX_BUCKETS * 2; i++) {
+            Address source = new Address(new OctetString(new byte[] { 3, (byte) (i >> 16), (byte) (i >> 8),
+                    (byte) i }));
+            assertTrue(limiter.allow(whoIs(source), 0));
+            if (i % 1000 == 0)
+                assertFalse(limiter.allow(whoIs(A), 0));
+        }
+        assertEquals(IncomingRateLimiter.MAX_BUCKETS, limiter.getBucketCount());
+        assertFalse(limiter.allow(whoIs(A), 0));
+    }
+
+    private static NPDU whoIs(Address from) {
+        return new NPDU(from, null, null, new ByteQueue(new byte[] { 0x10, WhoIsRequest.TYPE_ID }), false);
+    }
+
+    private static NPDU iAm(Address from) {
+        return new NPDU(from, null, null, new ByteQueue(new byte[] { 0x10, IAmRequest.TYPE_ID, 0x00 }), false);
+    }
+}
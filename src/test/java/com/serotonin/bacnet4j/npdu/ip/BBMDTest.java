@@ -1,6 +1,7 @@
 package com.serotonin.bacnet4j.npdu.ip;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
@@ -8,6 +9,7 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -106,7 +108,7 @@ public class BBMDTest {
         assertEquals(2, ld33.iamCount()); // WhoIs
     }
 
-    //    @Test
+    @Test
     public void bdt() throws Exception {
         // Write a BDT
         configurer.send(packet(1, "7F000101BAC0FFFFFFFF" + "7F000201BAC0FFFFFFFF", ld11));
@@ -393,6 +395,105 @@ public class BBMDTest {
         reset();
     }
 
+    @Test
+    public void distributeBroadcastToNetwork() throws Exception {
+        // 127.0.1.1 is a BBMD with a peer on 127.0.2.1
+        configurer.send(packet(1, "7F000101BAC0FFFFFFFF" + "7F000201BAC0FFFFFFFF", ld11));
+        DatagramPacket response = new DatagramPacket(new byte[1024], 1024);
+        configurer.receive(response);
+        assertPacketEquals("810000060000", response);
+
+        DatagramSocket fdA = new DatagramSocket(port, InetAddress.getByName("127.0.160.1"));
+        DatagramSocket fdB = new DatagramSocket(port, InetAddress.getByName("127.0.161.1"));
+        try {
+            fdA.setSoTimeout(1000);
+            fdB.setSoTimeout(1000);
+            registerForeignDevice(fdA, ld11);
+            registerForeignDevice(fdB, ld11);
+
+            // An I-Am from fdA
+            fdA.send(packet(9, "01001000C4020003E72205C491032100", ld11));
+
+            // fdA gets the result, but not the broadcast
+            fdA.receive(response);
+            assertPacketEquals("810000060000", response);
+            assertNothingReceived(fdA);
+
+            // fdB gets the broadcast, forwarded with the address of fdA
+            fdB.receive(response);
+            assertPacketEquals("8104001A7F00A001BAC001001000C4020003E72205C491032100", response);
+            assertNothingReceived(fdB);
+
+            // It is also distributed locally and to the peer.
+            Thread.sleep(100);
+            assertEquals(1, ld12.iamCount());
+            assertEquals(1, ld21.iamCount());
+        }
+        finally {
+            fdA.close();
+            fdB.close();
+        }
+    }
+
+    @Test
+    public void forwardedNPDU() throws Exception {
+        // 127.0.1.1 is a BBMD with a peer on 127.0.2.1
+        configurer.send(packet(1, "7F000101BAC0FFFFFFFF" + "7F000201BAC0FFFFFFFF", ld11));
+        DatagramPacket response = new DatagramPacket(new byte[1024], 1024);
+        configurer.receive(response);
+        assertPacketEquals("810000060000", response);
+
+        DatagramSocket peer = new DatagramSocket(port, InetAddress.getByName("127.0.2.254"));
+        DatagramSocket fdA = new DatagramSocket(port, InetAddress.getByName("127.0.160.1"));
+        DatagramSocket fdB = new DatagramSocket(port, InetAddress.getByName("127.0.161.1"));
+        try {
+            fdA.setSoTimeout(1000);
+            fdB.setSoTimeout(1000);
+            registerForeignDevice(fdA, ld11);
+            registerForeignDevice(fdB, ld11);
+
+            // An I-Am from 127.0.2.2, forwarded by its BBMD
+            peer.send(packet(4, "7F000202BAC0" + "01001000C4020003E72205C491032100", ld11));
+
+            // All foreign devices get it unchanged, once.
+            fdA.receive(response);
+            assertPacketEquals("8104001A7F000202BAC001001000C4020003E72205C491032100", response);
+            assertNothingReceived(fdA);
+            fdB.receive(response);
+            assertPacketEquals("8104001A7F000202BAC001001000C4020003E72205C491032100", response);
+            assertNothingReceived(fdB);
+
+            // The BBMD's own entry has an all 1s mask, so it is also broadcast locally.
+            Thread.sleep(100);
+            assertEquals(1, ld12.iamCount());
+            assertEquals(0, ld21.iamCount());
+        }
+        finally {
+            peer.close();
+            fdA.close();
+            fdB.close();
+        }
+    }
+
+    private void registerForeignDevice(DatagramSocket fd, LDInfo bbmd) throws IOException {
+        fd.send(packet(5, "003C", bbmd));
+        DatagramPacket response = new DatagramPacket(new byte[1024], 1024);
+        fd.receive(response);
+        assertPacketEquals("810000060000", response);
+    }
+
+    private static void assertNothingReceived(DatagramSocket socket) throws IOException {
+        socket.setSoTimeout(200);
+        try {
+            DatagramPacket p = new DatagramPacket(new byte[1024], 1024);
+            socket.receive(p);
+            fail("Unexpected packet from " + p.getSocketAddress());
+        }
+        catch (SocketTimeoutException e) {
+            // Expected
+        }
+    }
+
     void reset() {
         // Reset all of the LDs
         ld11.reset();
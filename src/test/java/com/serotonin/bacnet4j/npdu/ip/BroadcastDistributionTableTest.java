@@ -0,0 +1,97 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.ip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BroadcastDistributionTableTest {
+    private static final byte[] ALL_ONES = { -1, -1, -1, -1 };
+    private static final byte[] SUBNET = { -1, -1, -1, 0 };
+
+    @Test
+    public void peers() throws Exception {
+        BroadcastDistributionTable.Entry self = entry(127, 0, 1, 1, ALL_ONES);
+        List<BroadcastDistributionTable.Entry> entries = new ArrayList<BroadcastDistributionTable.Entry>();
+        entries.add(self);
+        entries.add(entry(127, 0, 2, 1, ALL_ONES));
+        entries.add(entry(127, 0, 3, 1, SUBNET));
+
+        BroadcastDistributionTable bdt = new BroadcastDistributionTable(entries, new byte[] { 127, 0, 1, 1 });
+        assertEquals(3, bdt.getEntries().size());
+        assertSame(self, bdt.getThisEntry());
+
+        // Forwarded directly to a BBMD with an all 1s mask, and to the directed broadcast address otherwise.
+        InetSocketAddress[] peers = bdt.getPeers();
+        assertEquals(2, peers.length);
+        assertEquals(new InetSocketAddress("127.0.2.1", 0xBAC0), peers[0]);
+        assertEquals(new InetSocketAddress("127.0.3.255", 0xBAC0), peers[1]);
+    }
+
+    @Test
+    public void notInTable() throws Exception {
+        List<BroadcastDistributionTable.Entry> entries = new ArrayList<BroadcastDistributionTable.Entry>();
+        entries.add(entry(127, 0, 2, 1, ALL_ONES));
+
+        BroadcastDistributionTable bdt = new BroadcastDistributionTable(entries, new byte[] { 127, 0, 1, 1 });
+        assertNull(bdt.getThisEntry());
+        assertEquals(1, bdt.getPeers().length);
+    }
+
+    @Test
+    public void empty() {
+        assertTrue(BroadcastDistributionTable.EMPTY.isEmpty());
+        assertNull(BroadcastDistributionTable.EMPTY.getThisEntry());
+        assertEquals(0, BroadcastDistributionTable.EMPTY.getPeers().length);
+    }
+
+    @Test
+    public void entriesAreCopied() throws Exception {
+        List<BroadcastDistributionTable.Entry> entries = new ArrayList<BroadcastDistributionTable.Entry>();
+        entries.add(entry(127, 0, 2, 1, ALL_ONES));
+        BroadcastDistributionTable bdt = new BroadcastDistributionTable(entries, new byte[] { 127, 0, 1, 1 });
+
+        entries.clear();
+        assertEquals(1, bdt.getEntries().size());
+        assertArrayEquals(new byte[] { 127, 0, 2, 1 }, bdt.getEntries().get(0).address);
+    }
+
+    private static BroadcastDistributionTable.Entry entry(int a, int b, int c, int d, byte[] mask) {
+        return new BroadcastDistributionTable.Entry(new byte[] { (byte) a, (byte) b, (byte) c, (byte) d }, 0xBAC0,
+                mask);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.ip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+
+public class ForeignDeviceTableTest {
+    private final InetSocketAddress fd1 = new InetSocketAddress("127.0.151.1", 0xBAC0);
+    private final InetSocketAddress fd2 = new InetSocketAddress("127.0.152.1", 0xBAC0);
+
+    @Test
+    public void register() {
+        ForeignDeviceTable fdt = new ForeignDeviceTable();
+        assertTrue(fdt.isEmpty());
+
+        assertTrue(fdt.register(fd1, 60, 1000));
+        assertTrue(fdt.register(fd2, 120, 1000));
+        assertEquals(2, fdt.size());
+
+        ForeignDeviceTable.Entry e = fdt.get(fd1);
+        assertEquals(fd1, e.address);
+        assertEquals(60, e.timeToLive);
+        // The time to live plus a 30 second grace period.
+        assertEquals(1000 + 90000, e.endTime);
+    }
+
+    @Test
+    public void renew() {
+        ForeignDeviceTable fdt = new ForeignDeviceTable();
+        fdt.register(fd1, 60, 1000);
+        ForeignDeviceTable.Entry e = fdt.get(fd1);
+
+        // Renewing updates the existing entry.
+        assertFalse(fdt.register(fd1, 100, 50000));
+        assertSame(e, fdt.get(fd1));
+        assertEquals(100, e.timeToLive);
+        assertEquals(50000 + 130000, e.endTime);
+        assertEquals(1, fdt.size());
+
+        // The first registration would have expired by now, but the renewal has not.
+        fdt.expire(1000 + 90000 + 1);
+        assertSame(e, fdt.get(fd1));
+
+        fdt.expire(50000 + 130000 + 1);
+        assertNull(fdt.get(fd1));
+    }
+
+    @Test
+    public void expire() {
+        ForeignDeviceTable fdt = new ForeignDeviceTable();
+        fdt.register(fd1, 10, 0);
+        fdt.register(fd2, 100, 0);
+
+        // Not yet expired at the end time itself.
+        fdt.expire(40000);
+        assertEquals(2, fdt.size());
+
+        fdt.expire(40001);
+        assertNull(fdt.get(fd1));
+        assertNotNull(fdt.get(fd2));
+
+        fdt.expire(130001);
+        assertTrue(fdt.isEmpty());
+    }
+
+    @Test
+    public void delete() {
+        ForeignDeviceTable fdt = new ForeignDeviceTable();
+        fdt.register(fd1, 10, 0);
+
+        assertTrue(fdt.remove(fd1));
+        assertFalse(fdt.remove(fd1));
+        assertTrue(fdt.isEmpty());
+
+        // The expiry of the deleted registration does not affect a new one.
+        assertTrue(fdt.register(fd1, 100, 20000));
+        fdt.expire(40001);
+        assertNotNull(fdt.get(fd1));
+    }
+}
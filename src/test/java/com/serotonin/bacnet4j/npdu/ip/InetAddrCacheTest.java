@@ -0,0 +1,111 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.ip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+public class InetAddrCacheTest {
+    private InetAddress addr;
+
+    @Before
+    public void before() throws Exception {
+        InetAddrCache.clear();
+        addr = InetAddress.getByAddress(new byte[] { (byte) 192, (byte) 168, 1, 10 });
+    }
+
+    @Test
+    public void bothDirections() throws Exception {
+        OctetString mac = InetAddrCache.getMac(addr, 0xBAC0);
+        assertEquals(new OctetString(new byte[] { (byte) 192, (byte) 168, 1, 10, (byte) 0xBA, (byte) 0xC0 }), mac);
+        assertEquals(new InetSocketAddress(addr, 0xBAC0), InetAddrCache.get(mac));
+
+        InetSocketAddress sa = InetAddrCache.get(
+                new OctetString(new byte[] { (byte) 192, (byte) 168, 1, 11, (byte) 0xBA, (byte) 0xC1 }));
+        assertEquals(new InetSocketAddress("192.168.1.11", 0xBAC1), sa);
+        assertEquals(new OctetString(new byte[] { (byte) 192, (byte) 168, 1, 11, (byte) 0xBA, (byte) 0xC1 }),
+                InetAddrCache.getMac(sa));
+    }
+
+    @Test
+    public void hitReturnsCachedInstance() throws Exception {
+        InetSocketAddress sa = InetAddrCache.get(addr, 0xBAC0);
+        assertSame(sa, InetAddrCache.get(addr, 0xBAC0));
+        assertSame(sa, InetAddrCache.get("192.168.1.10", 0xBAC0));
+
+        OctetString mac = InetAddrCache.getMac(addr, 0xBAC0);
+        assertSame(mac, InetAddrCache.getMac(sa));
+
+        // The entry is shared by both directions.
+        assertSame(sa, InetAddrCache.get(mac));
+        assertSame(sa, InetAddrCache.get(new OctetString(mac.getBytes().clone())));
+    }
+
+    @Test
+    public void macIsCopied() throws Exception {
+        byte[] b = { (byte) 192, (byte) 168, 1, 12, (byte) 0xBA, (byte) 0xC0 };
+        InetSocketAddress sa = InetAddrCache.get(new OctetString(b));
+        b[3] = 13;
+        assertEquals(new OctetString(new byte[] { (byte) 192, (byte) 168, 1, 12, (byte) 0xBA, (byte) 0xC0 }),
+                InetAddrCache.getMac(sa));
+    }
+
+    @Test
+    public void collisionOverwrites() throws Exception {
+        InetSocketAddress first = InetAddrCache.get(addr, 1);
+
+        // Look up other ports until one takes the slot of the first.
+        int port = 2;
+        InetSocketAddress other = null;
+        while (port < 0x10000) {
+            other = InetAddrCache.get(addr, port);
+            if (InetAddrCache.get(addr, 1) != first)
+                break;
+            port++;
+        }
+        assertTrue("No collision found", port < 0x10000);
+
+        // The first entry was replaced, and is recreated equal but not the same. That in turn replaced the other.
+        InetSocketAddress again = InetAddrCache.get(addr, 1);
+        assertEquals(first, again);
+        assertNotSame(first, again);
+        InetSocketAddress otherAgain = InetAddrCache.get(addr, port);
+        assertEquals(other, otherAgain);
+        assertNotSame(other, otherAgain);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.ipv6;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+public class VmacTableTest {
+    private static final OctetString VMAC = new OctetString(new byte[] { 0, 0, 1 });
+    private static final OctetString IP = new OctetString(new byte[18]);
+
+    @Test
+    public void pendingGroupedPerVmac() throws BACnetException {
+        VmacTable table = new VmacTable();
+        table.setTimeToLive(1000);
+        table.setResolutionTimeout(100);
+
+        // Only the first message causes a resolution request.
+        assertTrue(table.await(VMAC, new byte[] { 1 }, 0));
+        assertFalse(table.await(VMAC, new byte[] { 2 }, 10));
+
+        List<byte[]> waiting = table.learned(VMAC, IP, 20);
+        assertEquals(2, waiting.size());
+        assertEquals(0, table.getPendingCount());
+        assertEquals(IP, table.get(VMAC, 500));
+
+        // The resolution expires.
+        assertNull(table.get(VMAC, 1021));
+    }
+
+    @Test
+    public void deadline() throws BACnetException {
+        VmacTable table = new VmacTable();
+        table.setResolutionTimeout(100);
+
+        assertTrue(table.await(VMAC, new byte[] { 1 }, 0));
+        // Unanswered, so a new request is sent and the old message is dropped.
+        assertTrue(table.await(VMAC, new byte[] { 2 }, 200));
+        assertEquals(1, table.learned(VMAC, IP, 210).size());
+
+        table.await(new OctetString(new byte[] { 0, 0, 2 }), new byte[] { 1 }, 300);
+        table.purge(401);
+        assertEquals(0, table.getPendingCount());
+    }
+
+    @Test
+    public void pendingLimit() throws BACnetException {
+        VmacTable table = new VmacTable();
+        assertTrue(table.await(VMAC, new byte[] { 0 }, 0));
+        for (int i = 1; i < VmacTable.MAX_PENDING_PER_VMAC; i++)
+            assertFalse(table.await(VMAC, new byte[] { 1 }, 0));
+
+        // The sender is told that the message could not be queued.
+        try {
+            table.await(VMAC, new byte[] { 2 }, 0);
+            fail("BACnetException expected");
+        }
+        catch (BACnetException e) {
+            // Expected
+        }
+
+        // Other VMACs are not affected.
+        assertTrue(table.await(new OctetString(new byte[] { 0, 0, 2 }), new byte[] { 1 }, 0));
+        assertEquals(VmacTable.MAX_PENDING_PER_VMAC, table.learned(VMAC, IP, 10).size());
+    }
+}
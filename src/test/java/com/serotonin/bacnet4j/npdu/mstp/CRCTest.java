@@ -0,0 +1,93 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Verifies the table driven CRCs against the bitwise calculations.
+ */
+public class CRCTest {
+    @Test
+    public void header() {
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            byte[] header = new byte[5];
+            random.nextBytes(header);
+
+            int reference = 0xff;
+            for (byte b : header)
+                reference = HeaderCRC.calcHeaderCRC(b & 0xff, reference);
+            reference = ~reference & 0xff;
+
+            assertEquals(reference, HeaderCRC.calculate(header, 0, 5));
+
+            // Accumulating the header and the CRC results in the check value.
+            HeaderCRC check = new HeaderCRC();
+            for (byte b : header)
+                check.accumulate(b);
+            check.accumulate(reference);
+            assertTrue(check.isOk());
+        }
+
+        Frame frame = new Frame(FrameType.bacnetDataNotExpectingReply, (byte) 0xff, (byte) 8, new byte[300]);
+        assertEquals(HeaderCRC.calculate(new byte[] { frame.getFrameType().id, (byte) 0xff, 8, 1, 44 }, 0, 5),
+                new HeaderCRC().getCrc(frame));
+    }
+
+    @Test
+    public void data() {
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            byte[] data = new byte[random.nextInt(502)];
+            random.nextBytes(data);
+
+            int reference = 0xffff;
+            for (byte b : data)
+                reference = DataCRC.calcDataCRC(b & 0xff, reference);
+            reference = ~reference & 0xffff;
+
+            assertEquals(reference, DataCRC.calculate(data, 0, data.length));
+            if (data.length > 0)
+                assertEquals(reference,
+                        new DataCRC().getCrc(new Frame(FrameType.bacnetDataNotExpectingReply, (byte) 1, (byte) 2, data)));
+
+            // Accumulating the data and the CRC results in the check value, whether bytewise or in bulk.
+            DataCRC bulk = new DataCRC();
+            bulk.accumulate(data, 0, data.length);
+            bulk.accumulate(reference & 0xff);
+            bulk.accumulate(reference >> 8);
+            assertTrue(bulk.isOk());
+        }
+    }
+}
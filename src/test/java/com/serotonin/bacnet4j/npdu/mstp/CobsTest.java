@@ -0,0 +1,129 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CobsTest {
+    @Test
+    public void roundTrip() {
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            byte[] data = new byte[random.nextInt(Constants.MAX_EXTENDED_DATA_LENGTH + 1)];
+            random.nextBytes(data);
+            // Add some runs of zeros.
+            for (int j = 0; j < data.length / 50; j++)
+                data[random.nextInt(data.length)] = 0;
+            check(data);
+        }
+
+        // Blocks of exactly and around 254 non-zero octets.
+        for (int len : new int[] { 253, 254, 255, 508, 509 }) {
+            byte[] data = new byte[len];
+            Arrays.fill(data, (byte) 7);
+            check(data);
+            data[len - 1] = 0;
+            check(data);
+        }
+        check(new byte[1]);
+        check(new byte[300]);
+    }
+
+    private static void check(byte[] data) {
+        byte[] encoded = Cobs.encodeFrame(data);
+        assertTrue(encoded.length <= Cobs.maxEncodedLength(data.length));
+        // The encoding leaves no zeros, which the mask turns into 0x55, so encoded data cannot contain a preamble.
+        for (byte b : encoded)
+            assertNotEquals(0x55, b);
+        assertArrayEquals(data, Cobs.decodeFrame(encoded, 0, encoded.length));
+    }
+
+    @Test
+    public void corruption() {
+        Random random = new Random(1);
+        byte[] data = new byte[600];
+        random.nextBytes(data);
+        byte[] encoded = Cobs.encodeFrame(data);
+        for (int i = 0; i < encoded.length; i++) {
+            byte[] copy = encoded.clone();
+            copy[i] ^= 1 << random.nextInt(8);
+            assertNull(Cobs.decodeFrame(copy, 0, copy.length));
+        }
+        assertNull(Cobs.decodeFrame(encoded, 0, 5));
+    }
+
+    @Test
+    public void crcResidue() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            byte[] data = new byte[random.nextInt(1500)];
+            random.nextBytes(data);
+            int crc = ExtendedDataCRC.calculate(data, 0, data.length);
+
+            ExtendedDataCRC check = new ExtendedDataCRC();
+            check.accumulate(data, 0, data.length);
+            check.accumulate(new byte[] { (byte) crc, (byte) (crc >> 8), (byte) (crc >> 16), (byte) (crc >> 24) }, 0,
+                    4);
+            assertTrue(check.isOk());
+        }
+    }
+
+    @Test
+    public void knownAnswer() {
+        // Check value of the CRC-32K over "123456789".
+        byte[] check = { '1', '2', '3', '4', '5', '6', '7', '8', '9' };
+        assertEquals(0x2D3DD0AE, ExtendedDataCRC.calculate(check, 0, check.length));
+
+        // Frame data as produced by cobs_frame_encode of the bacnet-stack, in which the CRC-32K covers the encoded
+        // and masked data octets rather than the client data.
+        byte[] data = { 0x01, 0x0C, 0x00, 0x00, 0x00, 0x02, 0x05, 0x10, 0x55, (byte) 0xFF };
+        byte[] expected = { (byte) 0x56, (byte) 0x54, (byte) 0x59, (byte) 0x54, (byte) 0x54, (byte) 0x53, (byte) 0x57,
+                (byte) 0x50, (byte) 0x45, (byte) 0x00, (byte) 0xAA, //
+                (byte) 0x50, (byte) 0xCD, (byte) 0x98, (byte) 0xD0, (byte) 0x28 };
+        assertArrayEquals(expected, Cobs.encodeFrame(data));
+        assertArrayEquals(data, Cobs.decodeFrame(expected, 0, expected.length));
+    }
+
+    @Test
+    public void header() {
+        // The length field of an extended frame holds the encoded length less two.
+        Frame frame = new Frame(FrameType.bacnetExtendedDataNotExpectingReply, (byte) 0xff, (byte) 8, new byte[1000]);
+        int length = Cobs.encodeFrame(frame.getData()).length - 2;
+        assertEquals(HeaderCRC.calculate(new byte[] { 33, (byte) 0xff, 8, (byte) (length >> 8), (byte) length }, 0, 5),
+                new HeaderCRC().getCrc(frame, length));
+    }
+}
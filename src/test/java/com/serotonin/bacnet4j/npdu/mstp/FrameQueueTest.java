@@ -0,0 +1,83 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrameQueueTest {
+    @Test
+    public void priorityOrder() {
+        FrameQueue queue = new FrameQueue();
+        Frame normal1 = frame(0);
+        Frame urgent = frame(1);
+        Frame normal2 = frame(0);
+        Frame lifeSafety = frame(3);
+        Frame test = new Frame(FrameType.testRequest, (byte) 1, (byte) 0, null);
+
+        queue.offer(normal1, 0);
+        queue.offer(urgent, 0);
+        queue.offer(test, 0);
+        queue.offer(normal2, 0);
+        queue.offer(lifeSafety, 0);
+        assertEquals(5, queue.size());
+
+        // The most urgent lane first, and FIFO within a lane.
+        assertEquals(lifeSafety, queue.poll().frame);
+        assertEquals(urgent, queue.poll().frame);
+        assertEquals(normal1, queue.poll().frame);
+        assertEquals(test, queue.poll().frame);
+        assertEquals(normal2, queue.poll().frame);
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+        assertEquals(5, queue.getHighWater());
+    }
+
+    @Test
+    public void bounded() {
+        FrameQueue queue = new FrameQueue();
+        queue.setCapacity(2);
+        assertTrue(queue.offer(frame(0), 0));
+        assertTrue(queue.offer(frame(0), 0));
+        assertFalse(queue.offer(frame(3), 0));
+        assertEquals(2, queue.size());
+
+        queue.poll();
+        assertTrue(queue.offer(frame(3), 0));
+    }
+
+    private static Frame frame(int priority) {
+        // NPCI version 1, with the priority in the control octet.
+        return new Frame(FrameType.bacnetDataNotExpectingReply, (byte) 1, (byte) 0,
+                new byte[] { 1, (byte) priority, 0x10, 0x08 });
+    }
+}
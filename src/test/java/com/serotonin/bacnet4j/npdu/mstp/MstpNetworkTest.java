@@ -0,0 +1,93 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class MstpNetworkTest {
+    @Test
+    public void fullFrameQueueIsReported() throws Exception {
+        MasterNode node = new MasterNode(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+                (byte) 1, 2);
+        node.setFrameQueueCapacity(2);
+        MstpNetwork network = new MstpNetwork(node);
+        Address recipient = new Address(new byte[] { 5 });
+
+        // The node does not hold the token, so frames that do not expect a reply are queued too.
+        network.sendNPDU(recipient, null, new ByteQueue(new byte[] { 1, 0 }), false, false);
+        assertFalse(network.isSaturated());
+        network.sendNPDU(recipient, null, new ByteQueue(new byte[] { 1, 0 }), false, true);
+        assertTrue(network.isSaturated());
+
+        try {
+            network.sendNPDU(recipient, null, new ByteQueue(new byte[] { 1, 0 }), false, false);
+            fail("Exception expected");
+        }
+        catch (BACnetException e) {
+            // Expected
+        }
+        try {
+            network.sendNPDU(recipient, null, new ByteQueue(new byte[] { 1, 0 }), false, true);
+            fail("Exception expected");
+        }
+        catch (BACnetException e) {
+            // Expected
+        }
+        try {
+            network.sendTestRequest((byte) 5);
+            fail("Exception expected");
+        }
+        catch (BACnetException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void slaveCannotSendOutsideReply() throws Exception {
+        SlaveNode node = new SlaveNode(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), (byte) 1);
+        MstpNetwork network = new MstpNetwork(node);
+        try {
+            network.sendNPDU(new Address(new byte[] { 5 }), null, new ByteQueue(new byte[] { 1, 0 }), false, false);
+            fail("Exception expected");
+        }
+        catch (BACnetException e) {
+            // Expected
+        }
+    }
+}
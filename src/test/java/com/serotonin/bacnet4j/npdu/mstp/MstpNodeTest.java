@@ -0,0 +1,156 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class MstpNodeTest {
+    @Test
+    public void readsFromPipedStream() throws Exception {
+        PipedOutputStream pipe = new PipedOutputStream();
+        CountingInputStream in = new CountingInputStream(new PipedInputStream(pipe, 4096));
+        TestNode node = new TestNode(in);
+        node.initialize(true);
+        try {
+            SlaveNode sender = new SlaveNode(null, pipe, (byte) 2);
+            for (int i = 0; i < 3; i++)
+                sender.testSendFrame(new Frame(FrameType.bacnetDataNotExpectingReply, (byte) 1, (byte) 2,
+                        new byte[] { 1, 2, (byte) i }));
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (node.frames.size() < 3 && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(3, node.frames.size());
+            assertEquals(2, node.frames.get(2).getData()[2]);
+
+            // With nothing on the bus, neither the reader nor the node spins.
+            int reads = in.reads.get();
+            int cycles = node.cycles.get();
+            Thread.sleep(500);
+            assertTrue(in.reads.get() - reads <= 1);
+            assertTrue(node.cycles.get() - cycles < 10);
+        }
+        finally {
+            node.terminate();
+            pipe.close();
+        }
+    }
+
+    @Test
+    public void emptyReadsBackOff() throws Exception {
+        CountingInputStream in = new CountingInputStream(false);
+        TestNode node = new TestNode(in);
+        node.initialize(true);
+        try {
+            Thread.sleep(500);
+            // Backing off to the frame abort time allows at most a dozen or so reads.
+            assertTrue(in.reads.get() < 30);
+        }
+        finally {
+            node.terminate();
+        }
+    }
+
+    @Test
+    public void endOfStreamStopsReader() throws Exception {
+        CountingInputStream in = new CountingInputStream(true);
+        TestNode node = new TestNode(in);
+        node.initialize(true);
+        try {
+            Thread.sleep(300);
+            assertEquals(1, in.reads.get());
+        }
+        finally {
+            node.terminate();
+        }
+    }
+
+    static class TestNode extends SlaveNode {
+        final List<Frame> frames = new CopyOnWriteArrayList<Frame>();
+        final AtomicInteger cycles = new AtomicInteger();
+
+        TestNode(InputStream in) {
+            super(in, new ByteArrayOutputStream(), (byte) 1);
+        }
+
+        @Override
+        protected void doCycle() {
+            cycles.incrementAndGet();
+            super.doCycle();
+        }
+
+        @Override
+        protected void receivedDataNoReply(Frame frame) {
+            frames.add(frame.copy());
+        }
+    }
+
+    static class CountingInputStream extends InputStream {
+        final AtomicInteger reads = new AtomicInteger();
+        private final InputStream delegate;
+        private final boolean endOfStream;
+
+        CountingInputStream(InputStream delegate) {
+            this.delegate = delegate;
+            endOfStream = false;
+        }
+
+        /**
+         * A stream without data, that either returns nothing from every read or is at its end.
+         */
+        CountingInputStream(boolean endOfStream) {
+            delegate = null;
+            this.endOfStream = endOfStream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            reads.incrementAndGet();
+            if (delegate != null)
+                return delegate.read(b, off, len);
+            return endOfStream ? -1 : 0;
+        }
+    }
+}
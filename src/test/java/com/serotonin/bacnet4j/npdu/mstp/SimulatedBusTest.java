@@ -0,0 +1,276 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.npdu.mstp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class SimulatedBusTest {
+    @Test
+    public void denseTrunk() throws Exception {
+        SimulatedBus bus = new SimulatedBus(38400);
+        List<MasterNode> masters = createMasters(bus, 32);
+
+        // Let the token ring form, then measure.
+        bus.run(30000);
+        for (MasterNode node : masters)
+            node.resetStatistics();
+
+        for (int i = 0; i < 10; i++)
+            masters.get(0).queueFrame(FrameType.bacnetDataNotExpectingReply, (byte) 40, new byte[] { 1, 0, 2, 3 });
+        bus.run(60000);
+
+        for (MasterNode node : masters) {
+            assertTrue(node.getTokensReceived() > 0);
+            assertEquals(0, node.getTokensGenerated());
+            assertEquals(0, node.getHeaderCrcErrors());
+        }
+        assertEquals(10, masters.get(0).getDataFramesSent());
+        assertEquals(1, masters.get(0).getMaxFramesPerToken());
+        assertEquals(10, masters.get(20).getFramesIn() - masters.get(20).getTokensReceived());
+        assertEquals(0, bus.getCollisions());
+
+        // 32 tokens of 8 octets at 38400 baud take at least 67ms to go around.
+        long rotation = masters.get(0).getAverageTokenRotationTime();
+        assertTrue("Rotation was " + rotation, rotation >= 67 && rotation < 150);
+    }
+
+    @Test
+    public void bitErrors() throws Exception {
+        SimulatedBus bus = new SimulatedBus(9600);
+        bus.setSeed(1);
+        bus.setBitErrorRate(0.0005);
+        List<MasterNode> masters = createMasters(bus, 8);
+
+        bus.run(60000);
+
+        assertTrue(bus.getBitErrors() > 0);
+        long crcErrors = 0;
+        for (MasterNode node : masters) {
+            assertTrue(node.getTokensReceived() > 0);
+            crcErrors += node.getHeaderCrcErrors() + node.getTokenRetries();
+        }
+        assertTrue(crcErrors > 0);
+    }
+
+    @Test
+    public void adaptiveSparseSweep() throws Exception {
+        long[] polls = new long[2];
+        for (int i = 0; i < 2; i++) {
+            SimulatedBus bus = new SimulatedBus(38400);
+            List<MasterNode> masters = createMasters(bus, 4, Constants.MAX_MASTER, i == 1);
+            bus.run(30000);
+            for (MasterNode node : masters)
+                node.resetStatistics();
+            bus.run(120000);
+            for (MasterNode node : masters)
+                polls[i] += node.getPollForMasterSent();
+            assertEquals(6, masters.get(0).getHighestActiveMaster());
+        }
+
+        // Only the addresses up to the highest master are polled, apart from the occasional full sweep.
+        assertTrue("Polls were " + polls[0] + " and " + polls[1], polls[1] * 5 < polls[0]);
+    }
+
+    @Test
+    public void adaptiveFindsNewMaster() throws Exception {
+        SimulatedBus bus = new SimulatedBus(38400);
+        List<MasterNode> masters = createMasters(bus, 4, Constants.MAX_MASTER, true);
+        for (MasterNode node : masters)
+            node.setFullSweepInterval(60000);
+        bus.run(30000);
+
+        MasterNode newcomer = new MasterNode(bus.createPort(), (byte) 100, 2);
+        bus.addNode(newcomer);
+
+        // The newcomer is found by the next full sweep, which starts within the interval and takes a few seconds
+        // to reach it.
+        long elapsed = 0;
+        while (newcomer.getTokensReceived() == 0 && elapsed < 70000) {
+            bus.run(1000);
+            elapsed += 1000;
+        }
+        assertTrue("Not found after " + elapsed, newcomer.getTokensReceived() > 0);
+        assertEquals(100, masters.get(0).getHighestActiveMaster());
+    }
+
+    @Test
+    public void adaptiveInfoFrameLimit() throws Exception {
+        SimulatedBus bus = new SimulatedBus(38400);
+        List<MasterNode> masters = createMasters(bus, 4, 8, true);
+        MasterNode sender = masters.get(0);
+        sender.setMaxAdaptiveInfoFrames(3);
+        bus.run(10000);
+        sender.resetStatistics();
+
+        for (int i = 0; i < 20; i++)
+            sender.queueFrame(FrameType.bacnetDataNotExpectingReply, (byte) 2, new byte[] { 1, 0, 2, 3 });
+        bus.run(10000);
+
+        assertEquals(20, sender.getDataFramesSent());
+        assertEquals(3, sender.getMaxFramesPerToken());
+    }
+
+    @Test
+    public void replyWithinWindow() throws Exception {
+        SimulatedBus bus = new SimulatedBus(38400);
+        RecordingMaster requester = new RecordingMaster(bus, 0);
+        RecordingMaster responder = new RecordingMaster(bus, 2);
+        // The responder's network answers as soon as the request arrives, as the transports do for networks with a
+        // reply window.
+        final MstpNetwork network = new MstpNetwork(responder);
+        responder.handler = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    network.sendNPDU(new Address(new byte[] { 0 }), null, new ByteQueue(new byte[] { 1, 0, 9 }), false,
+                            false);
+                }
+                catch (BACnetException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        bus.run(5000);
+
+        requester.queueFrame(FrameType.bacnetDataExpectingReply, (byte) 2, new byte[] { 1, 4, 8 });
+        bus.run(5000);
+
+        assertEquals(1, requester.received.size());
+        assertEquals(9, requester.received.get(0).getData()[2]);
+        assertEquals(0, responder.getPostponesSent());
+        assertEquals(0, requester.getPostponesReceived());
+        assertEquals(0, requester.getReplyTimeouts());
+
+        // A request that is not answered in time is postponed.
+        responder.handler = null;
+        requester.queueFrame(FrameType.bacnetDataExpectingReply, (byte) 2, new byte[] { 1, 4, 8 });
+        bus.run(5000);
+
+        assertEquals(1, requester.received.size());
+        assertEquals(1, responder.getPostponesSent());
+        assertEquals(1, requester.getPostponesReceived());
+    }
+
+    @Test
+    public void statistics() throws Exception {
+        SimulatedBus bus = new SimulatedBus(38400);
+        RecordingMaster sender = new RecordingMaster(bus, 0);
+        RecordingMaster receiver = new RecordingMaster(bus, 2);
+        bus.run(10000);
+
+        sender.resetStatistics();
+        receiver.resetStatistics();
+        assertEquals(0, sender.getTokensReceived());
+        assertEquals(0, sender.getFramesOut());
+        assertEquals(0, sender.getPollForMasterSent());
+
+        for (int i = 0; i < 5; i++)
+            sender.queueFrame(FrameType.bacnetDataNotExpectingReply, (byte) 2, new byte[] { 1, 0, 2, 3 });
+        // The receiver does not answer, so the request is postponed.
+        sender.queueFrame(FrameType.bacnetDataExpectingReply, (byte) 2, new byte[] { 1, 4, 8 });
+        assertEquals(6, sender.getMaxFrameQueueSize());
+        bus.run(10000);
+
+        // Every token hold is followed by a token pass, and each node polls the vacant addresses 1, 3 and 4.
+        assertTrue(sender.getTokensReceived() > 100);
+        assertTrue(Math.abs(sender.getTokensReceived() - receiver.getTokensReceived()) <= 1);
+        assertTrue(sender.getPollForMasterSent() > 0);
+        assertTrue(receiver.getPollForMasterSent() > 0);
+        assertTrue(sender.getAverageTokenRotationTime() > 0);
+        assertEquals(0, sender.getTokensGenerated());
+        assertEquals(0, sender.getTokenRetries());
+
+        assertEquals(6, sender.getDataFramesSent());
+        assertEquals(1, sender.getMaxFramesPerToken());
+        assertEquals(5, receiver.received.size());
+        assertEquals(1, receiver.getPostponesSent());
+        assertEquals(1, sender.getPostponesReceived());
+
+        // Frames written are heard by the other node, and nothing is lost on a clean bus.
+        assertTrue(sender.getFramesOut() > sender.getTokensReceived());
+        assertEquals(0, receiver.getHeaderCrcErrors());
+        assertEquals(0, receiver.getDataCrcErrors());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fullSweepIntervalMustBePositive() throws Exception {
+        new MasterNode(new SimulatedBus(38400).createPort(), (byte) 0, 2).setFullSweepInterval(0);
+    }
+
+    /**
+     * Records the data frames it receives, and runs a handler when it receives a request.
+     */
+    static class RecordingMaster extends MasterNode {
+        final List<Frame> received = new ArrayList<Frame>();
+        Runnable handler;
+
+        RecordingMaster(SimulatedBus bus, int station) throws Exception {
+            super(bus.createPort(), (byte) station, 2);
+            setMaxMaster(4);
+            bus.addNode(this);
+        }
+
+        @Override
+        protected void receivedDataNoReply(Frame frame) {
+            received.add(frame.copy());
+        }
+
+        @Override
+        protected void receivedDataNeedingReply(Frame frame) {
+            if (handler != null)
+                handler.run();
+        }
+    }
+
+    private static List<MasterNode> createMasters(SimulatedBus bus, int count) throws Exception {
+        return createMasters(bus, count, count * 2, false);
+    }
+
+    private static List<MasterNode> createMasters(SimulatedBus bus, int count, int maxMaster, boolean adaptive)
+            throws Exception {
+        List<MasterNode> masters = new ArrayList<MasterNode>();
+        for (int i = 0; i < count; i++) {
+            MasterNode node = new MasterNode(bus.createPort(), (byte) (i * 2), 2);
+            node.setMaxMaster(maxMaster);
+            node.setAdaptive(adaptive);
+            bus.addNode(node);
+            masters.add(node);
+        }
+        return masters;
+    }
+}
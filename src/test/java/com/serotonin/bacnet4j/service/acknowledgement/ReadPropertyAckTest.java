@@ -0,0 +1,94 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.service.acknowledgement;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf.ElementHandler;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class ReadPropertyAckTest {
+    @Test
+    public void streamObjectList() throws BACnetException {
+        List<ObjectIdentifier> oids = new ArrayList<ObjectIdentifier>();
+        for (int i = 0; i < 1000; i++)
+            oids.add(new ObjectIdentifier(ObjectType.analogValue, i));
+        ReadPropertyAck original = new ReadPropertyAck(new ObjectIdentifier(ObjectType.device, 5),
+                PropertyIdentifier.objectList, null, new SequenceOf<ObjectIdentifier>(oids));
+        ByteQueue queue = new ByteQueue();
+        original.write(queue);
+        byte[] encoded = queue.popAll();
+
+        ReadPropertyAck lazy = (ReadPropertyAck) AcknowledgementService
+                .createAcknowledgementService(ReadPropertyAck.TYPE_ID, new ByteQueue(encoded), true);
+        // Printed without decoding.
+        assertEquals("ReadPropertyAck(" + (encoded.length - 7) + " encoded bytes)", lazy.toString());
+
+        Collector collector = new Collector();
+        assertEquals(1000, lazy.decodeElements(ObjectIdentifier.class, collector));
+        assertEquals(oids, collector.values);
+
+        // Written out again as received.
+        lazy.write(queue);
+        assertArrayEquals(encoded, queue.popAll());
+
+        // Decoding the whole value still works, and so does streaming from a decoded value.
+        assertEquals(original, lazy);
+        collector = new Collector();
+        assertEquals(1000, lazy.decodeElements(ObjectIdentifier.class, collector));
+        assertEquals(oids, collector.values);
+
+        ReadPropertyAck eager = (ReadPropertyAck) AcknowledgementService
+                .createAcknowledgementService(ReadPropertyAck.TYPE_ID, new ByteQueue(encoded));
+        collector = new Collector();
+        assertEquals(1000, eager.decodeElements(ObjectIdentifier.class, collector));
+        assertEquals(oids, collector.values);
+    }
+
+    static class Collector implements ElementHandler<ObjectIdentifier> {
+        final List<ObjectIdentifier> values = new ArrayList<ObjectIdentifier>();
+
+        @Override
+        public void element(int indexBase1, ObjectIdentifier value) {
+            assertEquals(values.size() + 1, indexBase1);
+            values.add(value);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.service.unconfirmed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.npdu.NPDU.Reception;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.util.scheduler.SimulatedScheduler;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+import com.serotonin.bacnet4j.util.sero.ThreadUtils;
+
+public class IAmResponderTest {
+    @Test
+    public void suppression() {
+        IAmResponder responder = new IAmResponder(null);
+        responder.setSuppressionWindow(1000);
+        Address a = new Address(new byte[] { 1 });
+        Address b = new Address(new byte[] { 2 });
+
+        assertTrue(responder.shouldAnswer(a, 0));
+        assertFalse(responder.shouldAnswer(a, 500));
+        assertTrue(responder.shouldAnswer(b, 500));
+
+        // A global broadcast covers every requester until the window has passed.
+        assertTrue(responder.shouldAnswer(Address.GLOBAL, 2000));
+        assertFalse(responder.shouldAnswer(a, 2500));
+        assertFalse(responder.shouldAnswer(Address.GLOBAL, 2500));
+        assertTrue(responder.shouldAnswer(a, 3001));
+
+        assertEquals(3, responder.getSuppressedCount());
+    }
+
+    @Test
+    public void addressing() throws Exception {
+        RecordingNetwork network = new RecordingNetwork();
+        LocalDevice d = new LocalDevice(1, new DefaultTransport(network));
+        d.getIAmResponder().setMaxJitter(0);
+        d.getIAmResponder().setSuppressionWindow(0);
+        d.initialize();
+        try {
+            Address requester = new Address(new byte[] { 5 });
+
+            // A unicast Who-Is is answered to the requester.
+            assertEquals(requester, answer(d, network, requester, Reception.UNICAST));
+
+            // A local broadcast is answered with a local broadcast.
+            assertEquals(network.getLocalBroadcastAddress(), answer(d, network, requester, Reception.LOCAL_BROADCAST));
+
+            // A global broadcast, a local broadcast from a remote network, and a request of unknown addressing are
+            // answered with a global broadcast.
+            assertEquals(Address.GLOBAL, answer(d, network, requester, Reception.GLOBAL_BROADCAST));
+            Address remote = new Address(5, new byte[] { 5 });
+            assertEquals(Address.GLOBAL, answer(d, network, remote, Reception.LOCAL_BROADCAST));
+            assertEquals(Address.GLOBAL, answer(d, network, requester, null));
+        }
+        finally {
+            d.terminate();
+        }
+    }
+
+    @Test
+    public void jitter() throws Exception {
+        SimulatedScheduler scheduler = new SimulatedScheduler(0);
+        RecordingNetwork network = new RecordingNetwork();
+        LocalDevice d = new LocalDevice(1, new DefaultTransport(network), scheduler);
+        // Large enough that the answer is practically never sent at once.
+        d.getIAmResponder().setMaxJitter(1000000);
+        d.initialize();
+        try {
+            ThreadUtils.sleep(100);
+            network.clear();
+
+            Address requester = new Address(new byte[] { 5 });
+            d.getIAmResponder().whoIsReceived(requester, Reception.UNICAST);
+            ThreadUtils.sleep(100);
+            assertEquals(0, network.getRecipients().size());
+
+            // The answer is sent on the device timer once the delay has passed.
+            scheduler.advance(1000000);
+            assertEquals(requester, network.awaitRecipient());
+        }
+        finally {
+            d.terminate();
+        }
+    }
+
+    private static Address answer(LocalDevice d, RecordingNetwork network, Address from, Reception reception) {
+        ThreadUtils.sleep(50);
+        network.clear();
+        d.getIAmResponder().whoIsReceived(from, reception);
+        return network.awaitRecipient();
+    }
+
+    static class RecordingNetwork extends TestNetwork {
+        private final List<Address> recipients = new ArrayList<Address>();
+
+        RecordingNetwork() {
+            super(1, 0);
+        }
+
+        @Override
+        protected void sendNPDU(Address recipient, OctetString router, ByteQueue npdu, boolean broadcast,
+                boolean expectsReply) throws BACnetException {
+            synchronized (recipients) {
+                recipients.add(recipient);
+                recipients.notifyAll();
+            }
+        }
+
+        void clear() {
+            synchronized (recipients) {
+                recipients.clear();
+            }
+        }
+
+        List<Address> getRecipients() {
+            synchronized (recipients) {
+                return new ArrayList<Address>(recipients);
+            }
+        }
+
+        Address awaitRecipient() {
+            synchronized (recipients) {
+                long deadline = System.currentTimeMillis() + 1000;
+                while (recipients.isEmpty() && System.currentTimeMillis() < deadline)
+                    ThreadUtils.wait(recipients, 50);
+                assertEquals(1, recipients.size());
+                return recipients.get(0);
+            }
+        }
+    }
+}
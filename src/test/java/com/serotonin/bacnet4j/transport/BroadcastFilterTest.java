@@ -0,0 +1,86 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.transport;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.apdu.UnconfirmedRequest;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.obj.AnalogValueObject;
+import com.serotonin.bacnet4j.service.unconfirmed.IAmRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedRequestService;
+import com.serotonin.bacnet4j.service.unconfirmed.WhoHasRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.WhoHasRequest.Limits;
+import com.serotonin.bacnet4j.service.unconfirmed.WhoIsRequest;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.Segmentation;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Unsigned16;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class BroadcastFilterTest {
+    @Test
+    public void filter() throws Exception {
+        LocalDevice d = new LocalDevice(1000, new DefaultTransport(new TestNetwork(1, 0)));
+        d.addObject(new AnalogValueObject(3, "av3", 0, EngineeringUnits.amperes, false));
+        BroadcastFilter filter = new BroadcastFilter();
+
+        assertTrue(filter.accept(d, encode(new WhoIsRequest())));
+        assertTrue(filter.accept(d, encode(new WhoIsRequest(new UnsignedInteger(1000), new UnsignedInteger(1000)))));
+        assertTrue(filter.accept(d, encode(new WhoIsRequest(new UnsignedInteger(0), new UnsignedInteger(70000)))));
+        assertFalse(filter.accept(d, encode(new WhoIsRequest(new UnsignedInteger(1), new UnsignedInteger(999)))));
+        assertFalse(filter.accept(d, encode(new WhoIsRequest(new UnsignedInteger(1001), new UnsignedInteger(5000)))));
+
+        assertTrue(filter.accept(d, encode(new WhoHasRequest(null, new ObjectIdentifier(ObjectType.analogValue, 3)))));
+        assertFalse(filter.accept(d, encode(new WhoHasRequest(null, new ObjectIdentifier(ObjectType.analogValue, 4)))));
+        assertFalse(filter.accept(d, encode(new WhoHasRequest(new Limits(new UnsignedInteger(1), new UnsignedInteger(
+                2)), new ObjectIdentifier(ObjectType.analogValue, 3)))));
+        assertTrue(filter.accept(d, encode(new WhoHasRequest(null, new CharacterString("av3")))));
+        assertTrue(filter.accept(d, encode(new WhoHasRequest(null, new CharacterString(d.getConfiguration().getObjectName())))));
+        assertFalse(filter.accept(d, encode(new WhoHasRequest(null, new CharacterString("av4")))));
+
+        IAmRequest iam = new IAmRequest(new ObjectIdentifier(ObjectType.device, 5), new UnsignedInteger(1476),
+                Segmentation.noSegmentation, new Unsigned16(0));
+        assertTrue(filter.accept(d, encode(iam)));
+        filter.setIAmDeviceRange(10, 20);
+        assertFalse(filter.accept(d, encode(iam)));
+    }
+
+    private static ByteQueue encode(UnconfirmedRequestService service) {
+        ByteQueue queue = new ByteQueue();
+        new UnconfirmedRequest(service).write(queue);
+        return queue;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.transport;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.transport.AbstractTransport.Outgoing;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+public class NetworkRouterCacheTest {
+    private static final OctetString ROUTER = new OctetString(new byte[] { 1 });
+
+    @Test
+    public void timeToLive() {
+        NetworkRouterCache cache = new NetworkRouterCache();
+        cache.setTimeToLive(1000);
+
+        cache.learned(5, ROUTER, 0);
+        assertEquals(ROUTER, cache.get(5, 500));
+        assertFalse(cache.refresh(5, 500));
+        // Used in the last quarter of its life, so it gets refreshed, but only once.
+        assertTrue(cache.refresh(5, 800));
+        assertFalse(cache.refresh(5, 850));
+        assertNull(cache.get(5, 1001));
+
+        // Static routes never expire.
+        cache.add(6, ROUTER);
+        assertEquals(ROUTER, cache.get(6, Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void discovery() {
+        NetworkRouterCache cache = new NetworkRouterCache();
+        cache.setDiscoveryTimeout(100);
+        cache.setUnreachableTimeToLive(1000);
+
+        // Only the first send starts a discovery.
+        assertTrue(cache.await(5, null, 0));
+        assertFalse(cache.await(5, null, 10));
+        assertFalse(cache.isUnreachable(5, 10));
+
+        List<Outgoing> timedOut = new ArrayList<Outgoing>();
+        assertFalse(cache.expire(50, timedOut));
+        assertTrue(cache.expire(101, timedOut));
+
+        // The network is now cached as unreachable.
+        assertTrue(cache.isUnreachable(5, 200));
+        assertFalse(cache.isUnreachable(5, 1200));
+        assertTrue(cache.await(5, null, 1200));
+
+        // An answer completes the discovery.
+        assertTrue(cache.learned(5, ROUTER, 1250).isEmpty());
+        assertEquals(ROUTER, cache.get(5, 1250));
+        assertTrue(cache.await(6, null, 1250));
+    }
+
+    @Test
+    public void routersWriteThrough() {
+        NetworkRouterCache cache = new NetworkRouterCache();
+        cache.setTimeToLive(1000);
+        Map<Integer, OctetString> routers = cache.getRouters();
+
+        // Putting into the view adds a static route.
+        assertNull(routers.put(5, ROUTER));
+        assertEquals(ROUTER, cache.get(5, Long.MAX_VALUE - 1));
+
+        // A learned route becomes static when put again.
+        cache.learned(6, ROUTER, 0);
+        assertEquals(ROUTER, routers.put(6, ROUTER));
+        assertEquals(ROUTER, cache.get(6, 2000));
+
+        assertEquals(ROUTER, routers.remove(5));
+        assertNull(cache.get(5, 0));
+
+        Iterator<Map.Entry<Integer, OctetString>> it = routers.entrySet().iterator();
+        assertEquals(Integer.valueOf(6), it.next().getKey());
+        it.remove();
+        assertFalse(it.hasNext());
+        assertTrue(routers.isEmpty());
+        assertNull(cache.get(6, 0));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+package com.serotonin.bacnet4j.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.npdu.NPDU;
+import com.serotonin.bacnet4j.npdu.mstp.MasterNode;
+import com.serotonin.bacnet4j.npdu.mstp.MstpNetwork;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class SharedQueueTransportPriorityTest {
+    @Test
+    public void requestsGoFirst() throws Exception {
+        ExecutorService executor = SharedQueueTransport.createExecutor(1);
+        try {
+            final CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(new SharedQueueTransport.Task(SharedQueueTransport.NORMAL_PRIORITY) {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await();
+                    }
+                    catch (InterruptedException e) {
+                        // no op
+                    }
+                }
+            });
+
+            // While the pool is busy, queue ordinary work and then a request with a reply window.
+            List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            executor.execute(record(order, "normal1", SharedQueueTransport.NORMAL_PRIORITY));
+            executor.execute(record(order, "normal2", SharedQueueTransport.NORMAL_PRIORITY));
+            executor.execute(record(order, "request", SharedQueueTransport.REQUEST_PRIORITY));
+            executor.execute(record(order, "normal3", SharedQueueTransport.NORMAL_PRIORITY));
+            blocked.countDown();
+
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList("request", "normal1", "normal2", "normal3"), order);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void priorityFollowsReplyWindow() throws Exception {
+        NPDU request = new NPDU(new Address(new byte[] { 1 }), null, null, new ByteQueue(), true);
+        NPDU other = new NPDU(new Address(new byte[] { 1 }), null, null, new ByteQueue(), false);
+
+        MstpNetwork mstp = new MstpNetwork(new MasterNode(new ByteArrayInputStream(new byte[0]),
+                new ByteArrayOutputStream(), (byte) 1, 2));
+        SharedQueueTransport transport = new SharedQueueTransport(mstp);
+        assertEquals(SharedQueueTransport.REQUEST_PRIORITY, transport.getPriority(request));
+        assertEquals(SharedQueueTransport.NORMAL_PRIORITY, transport.getPriority(other));
+
+        transport = new SharedQueueTransport(new TestNetwork(1, 0));
+        assertEquals(SharedQueueTransport.NORMAL_PRIORITY, transport.getPriority(request));
+    }
+
+    private static Runnable record(final List<String> order, final String name, int priority) {
+        return new SharedQueueTransport.Task(priority) {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.type;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.DecoderRegistry.Decoder;
+import com.serotonin.bacnet4j.type.DecoderRegistry.ReflectiveDecoder;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class DecoderRegistryTest {
+    @After
+    public void after() {
+        DecoderRegistry.unregister(VendorValue.class);
+    }
+
+    @Test
+    public void builtIn() throws BACnetException {
+        assertTrue(!(DecoderRegistry.getDecoder(Real.class) instanceof ReflectiveDecoder));
+
+        ByteQueue queue = new ByteQueue();
+        new Real(2.5F).write(queue);
+        new UnsignedInteger(300).write(queue);
+        assertEquals(new Real(2.5F), Encodable.read(queue, Real.class));
+        assertEquals(new UnsignedInteger(300), Encodable.read(queue, UnsignedInteger.class));
+    }
+
+    /**
+     * Every built-in type that can be decoded from a queue must be registered, so that none of them is left to the
+     * reflective fallback.
+     */
+    @Test
+    public void allBuiltInTypesRegistered() throws Exception {
+        File root = new File(Encodable.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        findTypes(new File(root, "com/serotonin/bacnet4j/type"), "com.serotonin.bacnet4j.type", types);
+        assertTrue(types.size() > 100);
+
+        List<String> missing = new ArrayList<String>();
+        for (Class<?> type : types) {
+            if (hasConstructor(type, ByteQueue.class) && !DecoderRegistry.isRegistered(type))
+                missing.add(type.getName());
+            if (hasConstructor(type, ByteQueue.class, Integer.TYPE) && !DecoderRegistry.isContextRegistered(type))
+                missing.add(type.getName() + " (context)");
+        }
+        assertEquals("Not registered: " + missing, 0, missing.size());
+    }
+
+    private static void findTypes(File dir, String pkg, List<Class<?>> types) throws ClassNotFoundException {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory())
+                findTypes(file, pkg + "." + name, types);
+            else if (name.endsWith(".class")) {
+                Class<?> clazz = Class.forName(pkg + "." + name.substring(0, name.length() - 6), false,
+                        Encodable.class.getClassLoader());
+                if (Encodable.class.isAssignableFrom(clazz) && !clazz.isAnonymousClass()
+                        && !Modifier.isAbstract(clazz.getModifiers()) && Modifier.isPublic(clazz.getModifiers()))
+                    types.add(clazz);
+            }
+        }
+    }
+
+    private static boolean hasConstructor(Class<?> clazz, Class<?>... parameterTypes) {
+        try {
+            clazz.getConstructor(parameterTypes);
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void vendorType() throws BACnetException {
+        assertTrue(DecoderRegistry.getDecoder(VendorValue.class) instanceof ReflectiveDecoder);
+
+        ByteQueue queue = new ByteQueue();
+        new UnsignedInteger(7).write(queue);
+        assertEquals(7, Encodable.read(queue, VendorValue.class).value.intValue());
+
+        DecoderRegistry.register(VendorValue.class, new Decoder<VendorValue>() {
+            @Override
+            public VendorValue decode(ByteQueue queue) throws BACnetException {
+                return new VendorValue(new UnsignedInteger(queue));
+            }
+        });
+        new UnsignedInteger(8).write(queue);
+        assertEquals(8, Encodable.read(queue, VendorValue.class).value.intValue());
+    }
+
+    @Test
+    public void internedEnumerations() throws BACnetException {
+        ByteQueue queue = new ByteQueue();
+        PropertyIdentifier.presentValue.write(queue);
+        PropertyIdentifier.presentValue.write(queue, 3);
+        EngineeringUnits.degreesCelsius.write(queue);
+        assertSame(PropertyIdentifier.presentValue, Encodable.read(queue, PropertyIdentifier.class));
+        assertSame(PropertyIdentifier.presentValue, Encodable.read(queue, PropertyIdentifier.class, 3));
+        assertSame(EngineeringUnits.degreesCelsius, Encodable.read(queue, EngineeringUnits.class));
+
+        // Proprietary values are shared once they have been decoded.
+        new ObjectType(600).write(queue);
+        new ObjectType(600).write(queue);
+        new PropertyIdentifier(100000).write(queue);
+        new PropertyIdentifier(100000).write(queue);
+        ObjectType type = Encodable.read(queue, ObjectType.class);
+        assertEquals(600, type.intValue());
+        assertSame(type, Encodable.read(queue, ObjectType.class));
+        PropertyIdentifier pid = Encodable.read(queue, PropertyIdentifier.class);
+        assertEquals(100000, pid.intValue());
+        assertSame(pid, Encodable.read(queue, PropertyIdentifier.class));
+
+        // Values that do not fit in an int are decoded but not shared.
+        queue.push(new byte[] { (byte) 0x94, -1, -1, -1, -1, (byte) 0x94, -1, -1, -1, -1 });
+        PropertyIdentifier big = Encodable.read(queue, PropertyIdentifier.class);
+        assertEquals(0xFFFFFFFFL, big.longValue());
+        assertNotSame(big, Encodable.read(queue, PropertyIdentifier.class));
+        assertEquals(0, queue.size());
+    }
+
+    @Test(expected = BACnetException.class)
+    public void malformed() throws BACnetException {
+        // A real with only two of its four octets.
+        Encodable.read(new ByteQueue(new byte[] { 0x44, 0x40 }), Real.class);
+    }
+
+    public static class VendorValue extends Encodable {
+        private static final long serialVersionUID = 1L;
+
+        final UnsignedInteger value;
+
+        public VendorValue(UnsignedInteger value) {
+            this.value = value;
+        }
+
+        public VendorValue(ByteQueue queue) {
+            value = new UnsignedInteger(queue);
+        }
+
+        @Override
+        public void write(ByteQueue queue) {
+            value.write(queue);
+        }
+
+        @Override
+        public void write(ByteQueue queue, int contextId) {
+            value.write(queue, contextId);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.type.constructed;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.exception.BACnetRuntimeException;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult.Result;
+import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
+import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class ReadAccessResultTest {
+    @Test
+    public void lazyValues() throws BACnetException {
+        PriorityArray priorityArray = new PriorityArray();
+        priorityArray.set(8, new PriorityValue(new Real(21.5F)));
+
+        ReadAccessResult original = new ReadAccessResult(new ObjectIdentifier(ObjectType.analogOutput, 3),
+                new SequenceOf<Result>( //
+                        new Result(PropertyIdentifier.presentValue, null, new Real(20)), //
+                        new Result(PropertyIdentifier.priorityArray, null, priorityArray), //
+                        new Result(PropertyIdentifier.outOfService, null, Boolean.TRUE), //
+                        new Result(PropertyIdentifier.objectName, null, new CharacterString("AO 3")), //
+                        new Result(PropertyIdentifier.statusFlags, null, new StatusFlags(false, true, false, false)), //
+                        new Result(PropertyIdentifier.priorityArray, new UnsignedInteger(0), new UnsignedInteger(16)), //
+                        new Result(PropertyIdentifier.description, null,
+                                new BACnetError(ErrorClass.property, ErrorCode.unknownProperty))));
+        ByteQueue encoded = new ByteQueue();
+        original.write(encoded);
+        byte[] bytes = encoded.peekAll();
+
+        ReadAccessResult eager = new ReadAccessResult(new ByteQueue(bytes));
+        ByteQueue queue = new ByteQueue(bytes);
+        ReadAccessResult lazy = new ReadAccessResult(queue, true);
+        assertEquals(0, queue.size());
+
+        SequenceOf<Result> results = lazy.getListOfResults();
+        assertEquals(7, results.getCount());
+        for (int i = 1; i <= 6; i++) {
+            assertFalse(results.get(i).isDecoded());
+            assertFalse(results.get(i).isError());
+        }
+        assertTrue(results.get(7).isError());
+
+        // Written out again as received, without decoding.
+        ByteQueue rewritten = new ByteQueue();
+        lazy.write(rewritten);
+        assertArrayEquals(bytes, rewritten.popAll());
+        assertFalse(results.get(1).isDecoded());
+
+        // Printed without decoding.
+        assertTrue(results.get(2).toString().contains("encoded bytes"));
+        assertFalse(results.get(2).isDecoded());
+
+        assertEquals(new Real(20), results.get(1).getReadResult().getDatum());
+        assertTrue(results.get(1).isDecoded());
+        assertFalse(results.get(2).isDecoded());
+
+        assertEquals(eager, lazy);
+    }
+
+    @Test(expected = BACnetException.class)
+    public void lazyTruncated() throws BACnetException {
+        ReadAccessResult original = new ReadAccessResult(new ObjectIdentifier(ObjectType.analogInput, 1),
+                new SequenceOf<Result>(new Result(PropertyIdentifier.presentValue, null, new Real(20))));
+        ByteQueue encoded = new ByteQueue();
+        original.write(encoded);
+        // Drop the closing tags and the last octet of the real.
+        encoded.tailPop();
+        encoded.tailPop();
+        encoded.tailPop();
+        new ReadAccessResult(encoded, true);
+    }
+
+    @Test
+    public void lazyMalformedToString() throws BACnetException {
+        // A present value of an analog input that is an unsigned rather than a real.
+        ByteQueue encoded = new ByteQueue();
+        new ObjectIdentifier(ObjectType.analogInput, 1).write(encoded, 0);
+        encoded.push(new byte[] { 0x1E, 0x29, 0x55, 0x4E, 0x21, 0x05, 0x4F, 0x1F });
+        ReadAccessResult lazy = new ReadAccessResult(encoded, true);
+
+        Result result = lazy.getListOfResults().get(1);
+        assertEquals("Result(pid=" + PropertyIdentifier.presentValue + ", value=4 encoded bytes)", result.toString());
+        assertFalse(result.isDecoded());
+        try {
+            result.getReadResult();
+            fail("BACnetRuntimeException expected");
+        }
+        catch (BACnetRuntimeException e) {
+            // Expected
+        }
+    }
+}
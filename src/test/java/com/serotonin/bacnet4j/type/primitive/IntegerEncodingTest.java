@@ -0,0 +1,81 @@
+package com.serotonin.bacnet4j.type.primitive;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class IntegerEncodingTest {
+    @Test
+    public void unsigned() {
+        assertUnsigned(0, "2100");
+        assertUnsigned(255, "21ff");
+        assertUnsigned(256, "220100");
+        assertUnsigned(0x7fffffffL, "247fffffff");
+        assertUnsigned(0xffffffffL, "24ffffffff");
+        assertEquals(new BigInteger("4294967296"), roundTrip(new UnsignedInteger(new BigInteger("4294967296")))
+                .bigIntegerValue());
+
+        // The same value built in different ways is equal, with the same hash.
+        UnsignedInteger a = new UnsignedInteger(5);
+        UnsignedInteger b = new UnsignedInteger(5L);
+        UnsignedInteger c = new UnsignedInteger(BigInteger.valueOf(5));
+        assertEquals(a, b);
+        assertEquals(a, c);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.hashCode(), c.hashCode());
+    }
+
+    @Test
+    public void signed() {
+        assertSigned(0, "3100");
+        assertSigned(127, "317f");
+        assertSigned(-128, "3180");
+        assertSigned(128, "320080");
+        assertSigned(-129, "32ff7f");
+        assertSigned(32767, "327fff");
+        assertSigned(-32768, "328000");
+        assertSigned(32768, "33008000");
+        assertSigned(-8388608, "33800000");
+        assertSigned(Integer.MIN_VALUE, "3480000000");
+        assertEquals(1L << 40, roundTrip(new SignedInteger(1L << 40)).longValue());
+        assertEquals(new SignedInteger(-5), new SignedInteger(BigInteger.valueOf(-5)));
+        assertEquals(new SignedInteger(-5).hashCode(), new SignedInteger(-5L).hashCode());
+    }
+
+    private static void assertUnsigned(long value, String hex) {
+        UnsignedInteger u = new UnsignedInteger(value);
+        assertArrayEquals(new ByteQueue(hex).popAll(), encode(u));
+        UnsignedInteger decoded = new UnsignedInteger(new ByteQueue(hex));
+        assertEquals(value, decoded.longValue());
+        assertEquals(u, decoded);
+        assertEquals(u.hashCode(), decoded.hashCode());
+    }
+
+    private static void assertSigned(int value, String hex) {
+        SignedInteger s = new SignedInteger(value);
+        assertArrayEquals(new ByteQueue(hex).popAll(), encode(s));
+        SignedInteger decoded = new SignedInteger(new ByteQueue(hex));
+        assertEquals(value, decoded.intValue());
+        assertEquals(s, decoded);
+        assertEquals(s.hashCode(), decoded.hashCode());
+    }
+
+    private static byte[] encode(Primitive p) {
+        ByteQueue queue = new ByteQueue();
+        p.write(queue);
+        return queue.popAll();
+    }
+
+    private static UnsignedInteger roundTrip(UnsignedInteger u) {
+        return new UnsignedInteger(new ByteQueue(encode(u)));
+    }
+
+    private static SignedInteger roundTrip(SignedInteger s) {
+        return new SignedInteger(new ByteQueue(encode(s)));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.enums.MaxApduLength;
+import com.serotonin.bacnet4j.npdu.VirtualNetworkProvider;
+import com.serotonin.bacnet4j.obj.AnalogValueObject;
+import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.util.load.RequestMix.Entry;
+
+public class DeviceFarmTest {
+    static final Logger LOG = LoggerFactory.getLogger(DeviceFarmTest.class);
+
+    private final VirtualNetworkProvider provider = new VirtualNetworkProvider(100, "0", MaxApduLength.UP_TO_1024);
+    private LocalDevice server;
+    private DeviceFarm farm;
+
+    @Before
+    public void before() throws Exception {
+        server = new LocalDevice(1, new DefaultTransport(provider.getVirtualNetwork("1")));
+        ObjectIdentifier[] oids = new ObjectIdentifier[10];
+        for (int i = 0; i < oids.length; i++) {
+            AnalogValueObject av = new AnalogValueObject(i, "av" + i, i, EngineeringUnits.amperes, false);
+            av.supportCovReporting(0.5F);
+            server.addObject(av);
+            oids[i] = av.getId();
+        }
+
+        provider.initilize();
+        server.initialize();
+
+        farm = new DeviceFarm(provider, server.getNetwork().getLocalAddress(), 200, 1000);
+        farm.setSeed(1);
+        farm.getRequestMix() //
+                .add("rp", 4, RequestMix.readProperty(PropertyIdentifier.presentValue, oids)) //
+                .add("rpm", 4, RequestMix.readPropertyMultiple(oids, PropertyIdentifier.presentValue,
+                        PropertyIdentifier.statusFlags, PropertyIdentifier.units)) //
+                .add("wp", 1, RequestMix.writeProperty(PropertyIdentifier.covIncrement, new Real(1), oids)) //
+                .add("cov", 1, RequestMix.subscribeCov(60, oids));
+        farm.start();
+    }
+
+    @After
+    public void after() {
+        farm.terminate();
+        server.terminate();
+        provider.terminate();
+    }
+
+    @Test
+    public void run() {
+        LoadReport report = farm.run(500, 2000);
+        LOG.info("{}", report);
+
+        assertTrue(report.getSent() > 500);
+        assertEquals(report.getSent(), report.getCompleted() + report.getFailed() + report.getTimeouts());
+        assertEquals(0, report.getFailed());
+        assertEquals(0, report.getTimeouts());
+        assertEquals(report.getCompleted(), report.getLatency().getCount());
+        assertTrue(report.getEntryLatency().get("cov").getCount() > 0);
+    }
+
+    @Test
+    public void expiredInvokeIdsAreQuarantined() throws Exception {
+        // A client of a server that never answers.
+        Address silent = provider.getVirtualNetwork("2001").getLocalAddress();
+        ClientDevice client = new ClientDevice(farm, provider, provider.getVirtualNetwork("2000").getLocalAddress(),
+                silent);
+        client.start();
+        try {
+            Entry entry = farm.getRequestMix().getEntries().get(0);
+            ConfirmedRequestService service = new ReadPropertyRequest(new ObjectIdentifier(ObjectType.device, 1),
+                    PropertyIdentifier.objectName);
+            for (int i = 0; i < 256; i++)
+                assertTrue(client.send(entry, service, 100));
+            assertFalse(client.send(entry, service, 100));
+
+            // The requests time out, but their ids stay out of use until the grace period has passed.
+            assertEquals(256, client.expire(200, 1000));
+            assertFalse(client.send(entry, service, 999));
+            assertTrue(client.send(entry, service, 1000));
+        }
+        finally {
+            client.terminate();
+        }
+    }
+
+    @Test
+    public void histogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++)
+            h.record(i);
+
+        assertEquals(10000, h.getCount());
+        assertEquals(10000, h.getMax());
+        assertEquals(5000.5, h.getMean(), 0.001);
+        assertEquals(5000, h.getPercentile(50), 5000 / 64);
+        assertEquals(9900, h.getPercentile(99), 9900 / 64);
+        assertEquals(10000, h.getPercentile(100));
+        assertEquals(63, h.getPercentile(0.63));
+    }
+}
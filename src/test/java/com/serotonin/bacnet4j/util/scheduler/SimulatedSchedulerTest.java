@@ -0,0 +1,175 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.util.scheduler.Scheduler.Timer;
+
+public class SimulatedSchedulerTest {
+    private final SimulatedScheduler scheduler = new SimulatedScheduler(1000);
+    private final Timer timer = scheduler.getTimer();
+    private final List<String> log = new ArrayList<String>();
+
+    @Test
+    public void runsTasksInTimeOrder() {
+        timer.schedule(new LogTask("b"), 200);
+        timer.schedule(new LogTask("a"), 100);
+        timer.schedule(new LogTask("c"), new Date(1300));
+        timer.schedule(new LogTask("d"), 200);
+
+        scheduler.advance(199);
+        assertEquals("[a]", log.toString());
+        assertEquals(1199, scheduler.currentTimeMillis());
+
+        scheduler.advance(1000);
+        assertEquals("[a, b, d, c]", log.toString());
+        assertEquals(2199, scheduler.currentTimeMillis());
+        assertEquals(0, scheduler.getPendingTaskCount());
+    }
+
+    @Test
+    public void periodicTasks() {
+        LogTask rate = new LogTask("r");
+        timer.scheduleAtFixedRate(rate, 0, 1000);
+        timer.schedule(new LogTask("d"), 500, 1000);
+
+        // A week of a one second timer.
+        scheduler.advance(7L * 24 * 60 * 60 * 1000);
+        assertEquals(7 * 24 * 60 * 60 * 2 + 1, log.size());
+
+        assertTrue(rate.cancel());
+        log.clear();
+        scheduler.advance(10000);
+        assertEquals(10, log.size());
+    }
+
+    @Test
+    public void tasksSeeTheirOwnTime() {
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                log.add(Long.toString(scheduler.currentTimeMillis()));
+                // Falls due within the same advance.
+                timer.schedule(new LogTask("nested"), 50);
+            }
+        }, 100);
+
+        scheduler.advance(1000);
+        assertEquals("[1100, nested]", log.toString());
+    }
+
+    @Test
+    public void cancel() {
+        LogTask task = new LogTask("x");
+        timer.schedule(task, 100);
+        assertTrue(task.cancel());
+        scheduler.advance(1000);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void getWaitsForTask() throws Exception {
+        final ScheduledFuture<?> future = scheduler.schedule(new LogTask("x"), 100, 0, false);
+        final AtomicBoolean returned = new AtomicBoolean();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    future.get();
+                    returned.set(true);
+                }
+                catch (Exception e) {
+                    // Leaves returned unset.
+                }
+            }
+        };
+        waiter.start();
+
+        Thread.sleep(100);
+        assertFalse(returned.get());
+
+        scheduler.advance(100);
+        waiter.join(1000);
+        assertTrue(returned.get());
+        assertEquals("[x]", log.toString());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void getTimesOut() throws Exception {
+        scheduler.schedule(new LogTask("x"), 100, 0, false).get(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void getCancelled() throws Exception {
+        ScheduledFuture<?> future = scheduler.schedule(new LogTask("x"), 100, 1000, false);
+        scheduler.advance(100);
+        assertTrue(future.cancel(false));
+        future.get();
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void getFailed() throws Exception {
+        ScheduledFuture<?> future = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        }, 100, 0, false);
+        scheduler.advance(100);
+        future.get();
+    }
+
+    class LogTask extends TimerTask {
+        final String name;
+
+        LogTask(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            log.add(name);
+        }
+    }
+}
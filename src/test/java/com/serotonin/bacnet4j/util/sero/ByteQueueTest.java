@@ -0,0 +1,201 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ * 
+ */
+
+package com.serotonin.bacnet4j.util.sero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ByteQueueTest {
+    @Test
+    public void wrapSharesUntilWrite() {
+        byte[] packet = { 1, 2, 3, 4 };
+        ByteQueue a = ByteQueue.wrap(packet);
+        ByteQueue b = ByteQueue.wrap(packet);
+
+        assertEquals(1, a.pop());
+        assertEquals(2, a.pop());
+        // There is room at the front of the array now, so this write would land in the shared packet.
+        a.push(9);
+        a.push(8);
+
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, packet);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, b.popAll());
+        assertArrayEquals(new byte[] { 3, 4, 9, 8 }, a.popAll());
+    }
+
+    @Test
+    public void wrapEmpty() {
+        ByteQueue q = ByteQueue.wrap(new byte[0]);
+        assertEquals(0, q.size());
+        q.push(5);
+        assertEquals(5, q.pop());
+    }
+
+    @Test
+    public void sliceAcrossWrap() {
+        ByteQueue q = new ByteQueue(4);
+        q.push(new byte[] { 1, 2, 3 });
+        q.pop(2);
+        q.push(new byte[] { 4, 5 });
+        // The content is now 3,4,5 and wraps around the end of the array.
+
+        ByteQueue slice = q.slice(1, 2);
+        assertEquals(3, q.size());
+        assertArrayEquals(new byte[] { 4, 5 }, slice.peekAll());
+
+        ByteQueue head = q.popSlice(2);
+        assertArrayEquals(new byte[] { 3, 4 }, head.popAll());
+        assertArrayEquals(new byte[] { 5 }, q.popAll());
+
+        // Writing to the slice must not disturb the queue it came from, and vice versa.
+        slice.push(6);
+        q.push(7);
+        assertArrayEquals(new byte[] { 4, 5, 6 }, slice.popAll());
+        assertArrayEquals(new byte[] { 7 }, q.popAll());
+    }
+
+    @Test
+    public void markSurvivesUnshare() {
+        byte[] packet = { 1, 2, 3, 4, 5 };
+        ByteQueue q = ByteQueue.wrap(packet, 1, 3);
+        q.pop();
+        q.mark();
+        assertEquals(3, q.pop());
+        // The write takes a copy of the shared array.
+        q.push(6);
+        q.reset();
+        assertArrayEquals(new byte[] { 3, 4 }, q.popAll());
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, packet);
+
+        // The same for a slice, and for a mark that is reset to more than once.
+        ByteQueue slice = new ByteQueue(new byte[] { 1, 2, 3, 4 }).slice(1, 3);
+        slice.mark();
+        slice.pop(2);
+        slice.push(new byte[] { 5, 6 });
+        assertArrayEquals(new byte[] { 4, 5, 6 }, slice.peekAll());
+        slice.reset();
+        assertEquals(2, slice.pop());
+        slice.reset();
+        assertArrayEquals(new byte[] { 2, 3, 4 }, slice.popAll());
+    }
+
+    @Test
+    public void markSurvivesExpand() {
+        ByteQueue q = new ByteQueue(4);
+        q.push(new byte[] { 1, 2, 3 });
+        q.pop();
+        q.mark();
+        q.pop();
+        // Wrap around the end of the array, then grow it.
+        q.push(new byte[] { 4, 5, 6, 7, 8 });
+        assertArrayEquals(new byte[] { 3, 4, 5, 6, 7, 8 }, q.peekAll());
+        q.reset();
+        assertArrayEquals(new byte[] { 2, 3 }, q.popAll());
+    }
+
+    @Test
+    public void cloneIsCopyOnWrite() {
+        ByteQueue q = new ByteQueue(new byte[] { 1, 2, 3 });
+        ByteQueue clone = (ByteQueue) q.clone();
+        q.push(4);
+        clone.pop();
+        clone.push(5);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, q.popAll());
+        assertArrayEquals(new byte[] { 2, 3, 5 }, clone.popAll());
+    }
+
+    @Test
+    public void pooledArraysAreReused() {
+        ByteArrayPool pool = new ByteArrayPool(2);
+        byte[] a = pool.take(100);
+        assertEquals(128, a.length);
+        pool.give(a);
+        assertSame(a, pool.take(65));
+
+        // Arrays of sizes the pool does not hold are not kept.
+        pool.give(new byte[100]);
+        assertEquals(0, pool.getFreeCount());
+
+        pool.give(new byte[64]);
+        pool.give(new byte[64]);
+        pool.give(new byte[64]);
+        assertEquals(2, pool.getFreeCount());
+    }
+
+    @Test
+    public void releaseKeepsSharedArrays() {
+        ByteQueue q = ByteQueue.pooled(64);
+        q.push(new byte[] { 1, 2, 3 });
+        ByteQueue slice = q.slice(0, 3);
+        q.release();
+        assertEquals(0, q.size());
+
+        // The slice still owns its content, and the released queue can be used again.
+        ByteQueue other = ByteQueue.pooled(64);
+        other.push(new byte[] { 9, 9, 9 });
+        assertArrayEquals(new byte[] { 1, 2, 3 }, slice.popAll());
+        q.push(4);
+        assertArrayEquals(new byte[] { 4 }, q.popAll());
+        other.release();
+    }
+
+    @Test
+    public void pooledQueueGrows() {
+        ByteQueue q = ByteQueue.pooled(64);
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        q.push(data, 0, 60);
+        q.pop(50);
+        // Wrap around the end of the array before growing.
+        q.push(data, 60, 10);
+        q.push(data, 70, 930);
+        byte[] expected = new byte[950];
+        System.arraycopy(data, 50, expected, 0, 950);
+        assertArrayEquals(expected, q.popAll());
+        q.release();
+    }
+
+    @Test
+    public void array() {
+        ByteQueue q = new ByteQueue(4);
+        q.push(new byte[] { 1, 2, 3 });
+        q.pop();
+        assertEquals(1, q.arrayOffset());
+        assertEquals(2, q.array()[q.arrayOffset()]);
+
+        // Wraps around the end of the array.
+        q.push(new byte[] { 4, 5 });
+        assertNull(q.array());
+    }
+}